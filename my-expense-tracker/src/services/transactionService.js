@@ -9,11 +9,13 @@ const API_URL = 'http://localhost:8080/api';
 /**
  * Fetches all transactions for a specific category from the API.
  *
- * This function sends a GET request to the `/categories/{categoryId}/transactions` endpoint.
- * It returns the response data which typically includes a list of transactions.
+ * This function sends GET requests to the `/categories/{categoryId}/transactions` endpoint.
+ * The endpoint is paginated: each response holds one page of transactions, newest first, and
+ * the `X-Next-Cursor` response header carries the cursor of the next page. Pages are followed
+ * until the last one and concatenated.
  *
  * @param {number} categoryId - The ID of the category to fetch transactions for.
- * @returns {Promise<Object[]>} The response data from the API.
+ * @returns {Promise<Object[]>} The transactions of the category.
  * @throws {Error} If the token is not found or the request fails.
  *
  * @example
@@ -25,12 +27,19 @@ export const getTransactions = async (categoryId) => {
     const token = localStorage.getItem('token');
     if (!token) throw new Error('No token found');
 
-    const response = await axios.get(`${API_URL}/categories/${categoryId}/transactions`, {
-        headers: {
-            Authorization: `Bearer ${token}`
-        }
-    });
-    return response.data;
+    let transactions = [];
+    let cursor;
+    do {
+        const response = await axios.get(`${API_URL}/categories/${categoryId}/transactions`, {
+            headers: {
+                Authorization: `Bearer ${token}`
+            },
+            params: cursor ? { cursor } : {}
+        });
+        transactions = transactions.concat(response.data);
+        cursor = response.headers['x-next-cursor'];
+    } while (cursor);
+    return transactions;
 };
 
 /**
@@ -16,4 +16,54 @@ public class Constants {
      * This example sets the validity to 2 hours (2 * 60 * 60 * 1000 milliseconds).
      */
     public static final long TOKEN_VALIDITY = 2 * 60 * 60 * 1000;
+
+    /**
+     * The number of transactions returned per page when the client does not ask for a specific size.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    /**
+     * The largest page size a client may request, keeping the memory used by a single request bounded.
+     */
+    public static final int MAX_PAGE_SIZE = 500;
+
+    /**
+     * The largest number of transactions accepted by a single bulk ingest request.
+     */
+    public static final int MAX_BATCH_SIZE = 10000;
+
+    /**
+     * The longest transaction note the database stores, as ET_TRANSACTIONS.NOTE is a VARCHAR(50).
+     */
+    public static final int MAX_NOTE_LENGTH = 50;
+
+    /**
+     * The longest category title the database stores, as ET_CATEGORIES.TITLE is a VARCHAR(20).
+     */
+    public static final int MAX_TITLE_LENGTH = 20;
+
+    /**
+     * The longest category description the database stores, as ET_CATEGORIES.DESCRIPTION is a VARCHAR(50).
+     */
+    public static final int MAX_DESCRIPTION_LENGTH = 50;
+
+    /**
+     * The longest first or last name the database stores, as ET_USERS.FIRST_NAME and LAST_NAME are VARCHAR(20).
+     */
+    public static final int MAX_NAME_LENGTH = 20;
+
+    /**
+     * The longest email the database stores, as ET_USERS.EMAIL is a VARCHAR(30).
+     */
+    public static final int MAX_EMAIL_LENGTH = 30;
+
+    /**
+     * The largest transaction amount the database stores, in absolute value, as ET_TRANSACTIONS.AMOUNT is a NUMERIC(10, 2).
+     */
+    public static final double MAX_AMOUNT = 99999999.99;
+
+    /**
+     * The response header carrying the opaque cursor of the next page of a paginated listing.
+     */
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
 }
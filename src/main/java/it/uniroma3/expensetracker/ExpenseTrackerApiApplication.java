@@ -1,15 +1,24 @@
 package it.uniroma3.expensetracker;
 
+import it.uniroma3.expensetracker.config.RateLimitProperties;
 import it.uniroma3.expensetracker.filters.AuthFilter;
+import it.uniroma3.expensetracker.filters.RateLimitFilter;
+import it.uniroma3.expensetracker.filters.ShardMigrationFilter;
+import it.uniroma3.expensetracker.repositories.ShardDirectory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.CorsFilter;
 
 @SpringBootApplication
+@EnableScheduling
+@EnableConfigurationProperties(RateLimitProperties.class)
 public class ExpenseTrackerApiApplication {
 
 	public static void main(String[] args) {
@@ -30,11 +39,30 @@ public class ExpenseTrackerApiApplication {
 	}
 
 	@Bean
-	public FilterRegistrationBean<AuthFilter> filterRegistrationBean() {
+	public FilterRegistrationBean<AuthFilter> filterRegistrationBean(@Value("${expensetracker.auth.token-cache-size:10000}") long tokenCacheSize) {
 		FilterRegistrationBean<AuthFilter> registrationBean = new FilterRegistrationBean<>();
-		AuthFilter authFilter = new AuthFilter();
+		AuthFilter authFilter = new AuthFilter(tokenCacheSize);
 		registrationBean.setFilter(authFilter);
-		registrationBean.addUrlPatterns("/api/categories/*");
+		registrationBean.addUrlPatterns("/api/categories/*", "/api/transactions/*", "/api/reports/*", "/api/budget/*");
+		registrationBean.setOrder(1);
+		return registrationBean;
+	}
+
+	@Bean
+	public FilterRegistrationBean<RateLimitFilter> rateLimitFilter(RateLimitProperties rateLimitProperties) {
+		FilterRegistrationBean<RateLimitFilter> registrationBean = new FilterRegistrationBean<>();
+		registrationBean.setFilter(new RateLimitFilter(rateLimitProperties));
+		registrationBean.addUrlPatterns("/api/*");
+		registrationBean.setOrder(2);  // After the AuthFilter, which sets the userId
+		return registrationBean;
+	}
+
+	@Bean
+	public FilterRegistrationBean<ShardMigrationFilter> shardMigrationFilter(ShardDirectory shardDirectory) {
+		FilterRegistrationBean<ShardMigrationFilter> registrationBean = new FilterRegistrationBean<>();
+		registrationBean.setFilter(new ShardMigrationFilter(shardDirectory));
+		registrationBean.addUrlPatterns("/api/categories/*", "/api/transactions/*", "/api/reports/*", "/api/budget/*");
+		registrationBean.setOrder(3);  // After the AuthFilter, which sets the userId
 		return registrationBean;
 	}
 
@@ -0,0 +1,201 @@
+package it.uniroma3.expensetracker.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import it.uniroma3.expensetracker.repositories.ShardDirectory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DataSource configuration sharding users across databases and splitting reads from writes.
+ * Shard 0 is configured with the standard {@code spring.datasource.*} properties and its
+ * replicas with {@code expensetracker.datasource.replicas[n].*}; further shards, each with
+ * their own replicas, with {@code expensetracker.sharding.shards[n].*}. Every pool shares the
+ * {@code spring.datasource.hikari.*} settings. With no shard and no replica configured, all
+ * the traffic goes to the single database as before.
+ * <p>
+ * Connections are routed first to the shard of the current user, then to a replica of that
+ * shard for read-only transactions. The shard directory and the ID allocator use shard 0's
+ * primary directly, through the {@code directory*} beans.
+ */
+@Configuration
+@EnableConfigurationProperties({ReplicaProperties.class, ShardProperties.class})
+public class DataSourceConfig implements DisposableBean {
+
+    // Connection pools created by this configuration, closed on shutdown
+    private final List<HikariDataSource> pools = new ArrayList<>();
+
+    /**
+     * Creates the pool of shard 0's primary, which holds the users, the ID sequences and the shard directory.
+     *
+     * @param properties the shard 0 database properties
+     * @param environment the environment holding the pool settings
+     * @return the pool
+     */
+    @Bean
+    public DataSource directoryDataSource(DataSourceProperties properties, Environment environment) {
+        return pool("shard-0", properties.determineUrl(), properties.determineUsername(),
+                properties.determinePassword(), environment);
+    }
+
+    /**
+     * Creates the application DataSource, routing each connection to the current user's shard
+     * and read-only transactions to that shard's replicas.
+     *
+     * @param directoryDataSource the pool of shard 0's primary
+     * @param properties the shard 0 database properties
+     * @param replicaProperties the replicas of shard 0
+     * @param shardProperties the further shards
+     * @param shardDirectory the directory mapping users to shards, resolved on first use as it
+     *                       itself depends on the database initialization of this DataSource
+     * @param environment the environment holding the pool settings
+     * @return the DataSource used by the JdbcTemplate and the transaction manager
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("directoryDataSource") DataSource directoryDataSource,
+                                 DataSourceProperties properties, ReplicaProperties replicaProperties,
+                                 ShardProperties shardProperties, @Lazy ShardDirectory shardDirectory, Environment environment) {
+        Map<Object, Object> shards = new HashMap<>();
+        shards.put(ShardDirectory.DIRECTORY_SHARD, replicated(0, directoryDataSource, replicaProperties.getReplicas(),
+                properties.determineUsername(), properties.determinePassword(), replicaProperties, environment));
+        for (ShardProperties.Shard shard : shardProperties.getShards()) {
+            int shardId = shards.size();
+            String username = shard.getUsername() != null ? shard.getUsername() : properties.determineUsername();
+            String password = shard.getPassword() != null ? shard.getPassword() : properties.determinePassword();
+            HikariDataSource primary = pool("shard-" + shardId, shard.getUrl(), username, password, environment);
+            shards.put(shardId, replicated(shardId, primary, shard.getReplicas(), username, password, replicaProperties, environment));
+        }
+
+        ShardRoutingDataSource routing = new ShardRoutingDataSource(shardDirectory);
+        routing.setTargetDataSources(shards);
+        routing.afterPropertiesSet();
+
+        // Defaults given up front, so the proxy does not open a connection at startup to detect them
+        LazyConnectionDataSourceProxy proxy = new LazyConnectionDataSourceProxy();
+        proxy.setDefaultAutoCommit(true);
+        proxy.setDefaultTransactionIsolation(Connection.TRANSACTION_READ_COMMITTED);
+        proxy.setTargetDataSource(routing);
+        proxy.afterPropertiesSet();
+        return proxy;
+    }
+
+    /**
+     * Creates the JdbcTemplate of the repositories, on the routing DataSource.
+     *
+     * @param dataSource the routing DataSource
+     * @return the JdbcTemplate
+     */
+    @Bean
+    @Primary
+    public JdbcTemplate jdbcTemplate(DataSource dataSource) {
+        return new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Creates the TransactionTemplate of the application, on the routing DataSource.
+     *
+     * @param transactionManager the transaction manager of the routing DataSource
+     * @return the TransactionTemplate
+     */
+    @Bean
+    @Primary
+    public TransactionTemplate transactionTemplate(PlatformTransactionManager transactionManager) {
+        return new TransactionTemplate(transactionManager);
+    }
+
+    /**
+     * Creates the JdbcTemplate of shard 0's primary, for the shard directory and the ID allocator.
+     *
+     * @param directoryDataSource the pool of shard 0's primary
+     * @return the JdbcTemplate
+     */
+    @Bean
+    public JdbcTemplate directoryJdbcTemplate(@Qualifier("directoryDataSource") DataSource directoryDataSource) {
+        return new JdbcTemplate(directoryDataSource);
+    }
+
+    /**
+     * Creates a TransactionTemplate on shard 0's primary, independent of any transaction of the routing DataSource.
+     *
+     * @param directoryDataSource the pool of shard 0's primary
+     * @return the TransactionTemplate
+     */
+    @Bean
+    public TransactionTemplate directoryTransactionTemplate(@Qualifier("directoryDataSource") DataSource directoryDataSource) {
+        return new TransactionTemplate(new DataSourceTransactionManager(directoryDataSource));
+    }
+
+    /**
+     * Closes the connection pools.
+     */
+    @Override
+    public void destroy() {
+        pools.forEach(HikariDataSource::close);
+    }
+
+    /**
+     * Puts a shard's primary and replicas behind a DataSource routing read-only transactions to the replicas.
+     */
+    private DataSource replicated(int shardId, DataSource primary, List<ReplicaProperties.Replica> replicas,
+                                  String username, String password, ReplicaProperties replicaProperties, Environment environment) {
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(ReplicaRoutingDataSource.PRIMARY, primary);
+        List<String> replicaKeys = new ArrayList<>();
+        for (ReplicaProperties.Replica replica : replicas) {
+            String key = "replica-" + replicaKeys.size();
+            targets.put(key, pool("shard-" + shardId + "-" + key, replica.getUrl(),
+                    replica.getUsername() != null ? replica.getUsername() : username,
+                    replica.getPassword() != null ? replica.getPassword() : password,
+                    environment));
+            replicaKeys.add(key);
+        }
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(replicaKeys,
+                replicaProperties.getStickyWindowMs(), replicaProperties.getMaxStickyUsers());
+        routing.setTargetDataSources(targets);
+        routing.setDefaultTargetDataSource(primary);
+        routing.afterPropertiesSet();
+        return routing;
+    }
+
+    /**
+     * Creates a connection pool. Connections are only opened on first use.
+     *
+     * @param name the name of the pool
+     * @param url the JDBC URL of the database
+     * @param username the username
+     * @param password the password
+     * @param environment the environment holding the pool settings
+     * @return the pool
+     */
+    private HikariDataSource pool(String name, String url, String username, String password, Environment environment) {
+        HikariDataSource pool = new HikariDataSource();
+        Binder.get(environment).bind("spring.datasource.hikari", Bindable.ofInstance(pool));
+        pool.setPoolName(name);
+        pool.setJdbcUrl(url);
+        pool.setUsername(username);
+        pool.setPassword(password);
+        pools.add(pool);
+        return pool;
+    }
+}
@@ -1,7 +1,9 @@
 package it.uniroma3.expensetracker.config;
 
+import it.uniroma3.expensetracker.Constants;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpHeaders;
 import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 import org.springframework.web.filter.CorsFilter;
@@ -44,6 +46,12 @@ public class GlobalCorsConfig {
         // Allow all HTTP methods (GET, POST, PUT, DELETE, etc.).
         config.addAllowedMethod("*");
 
+        // Let the frontend read the cursor of the next page of paginated listings.
+        config.addExposedHeader(Constants.NEXT_CURSOR_HEADER);
+
+        // Let the frontend read the version of the data, to send back in If-None-Match.
+        config.addExposedHeader(HttpHeaders.ETAG);
+
         // Register the configuration for all paths (/**).
         source.registerCorsConfiguration("/**", config);
 
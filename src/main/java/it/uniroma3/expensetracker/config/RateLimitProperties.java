@@ -0,0 +1,145 @@
+package it.uniroma3.expensetracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration properties of the API rate limits, bound from {@code expensetracker.rate-limit.*}.
+ * Each request is counted against the first route matching its path; requests matching no route
+ * are not limited.
+ */
+@ConfigurationProperties(prefix = "expensetracker.rate-limit")
+public class RateLimitProperties {
+
+    private List<Route> routes = new ArrayList<>();  // Limited routes, in matching order
+    private long maxKeys = 1000000;                  // Maximum number of buckets kept per route
+
+    /**
+     * Gets the limited routes, in matching order.
+     *
+     * @return the routes
+     */
+    public List<Route> getRoutes() {
+        return routes;
+    }
+
+    /**
+     * Sets the limited routes, in matching order.
+     *
+     * @param routes the routes to set
+     */
+    public void setRoutes(List<Route> routes) {
+        this.routes = routes;
+    }
+
+    /**
+     * Gets the maximum number of buckets kept per route.
+     *
+     * @return the maxKeys
+     */
+    public long getMaxKeys() {
+        return maxKeys;
+    }
+
+    /**
+     * Sets the maximum number of buckets kept per route.
+     *
+     * @param maxKeys the maxKeys to set
+     */
+    public void setMaxKeys(long maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * What requests are counted against: the authenticated user, or the client address.
+     */
+    public enum Key {
+        USER, IP
+    }
+
+    /**
+     * The limit applied to the requests of a route.
+     */
+    public static class Route {
+
+        private String pattern;                 // Ant-style path pattern, e.g. /api/categories/**
+        private Key key = Key.USER;             // What requests are counted against
+        private double permitsPerSecond = 10;   // Sustained rate allowed per key
+        private int burst = 20;                 // Requests allowed at once per key
+
+        /**
+         * Gets the Ant-style path pattern of the route.
+         *
+         * @return the pattern
+         */
+        public String getPattern() {
+            return pattern;
+        }
+
+        /**
+         * Sets the Ant-style path pattern of the route.
+         *
+         * @param pattern the pattern to set
+         */
+        public void setPattern(String pattern) {
+            this.pattern = pattern;
+        }
+
+        /**
+         * Gets what requests are counted against; requests without an authenticated user
+         * are counted against their client address.
+         *
+         * @return the key
+         */
+        public Key getKey() {
+            return key;
+        }
+
+        /**
+         * Sets what requests are counted against.
+         *
+         * @param key the key to set
+         */
+        public void setKey(Key key) {
+            this.key = key;
+        }
+
+        /**
+         * Gets the sustained rate allowed per key.
+         *
+         * @return the permitsPerSecond
+         */
+        public double getPermitsPerSecond() {
+            return permitsPerSecond;
+        }
+
+        /**
+         * Sets the sustained rate allowed per key.
+         *
+         * @param permitsPerSecond the permitsPerSecond to set
+         */
+        public void setPermitsPerSecond(double permitsPerSecond) {
+            this.permitsPerSecond = permitsPerSecond;
+        }
+
+        /**
+         * Gets the number of requests allowed at once per key.
+         *
+         * @return the burst
+         */
+        public int getBurst() {
+            return burst;
+        }
+
+        /**
+         * Sets the number of requests allowed at once per key.
+         *
+         * @param burst the burst to set
+         */
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+    }
+}
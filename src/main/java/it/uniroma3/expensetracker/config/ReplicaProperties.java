@@ -0,0 +1,137 @@
+package it.uniroma3.expensetracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration properties of the read replicas, bound from {@code expensetracker.datasource.*}.
+ * The primary database keeps its standard {@code spring.datasource.*} configuration.
+ */
+@ConfigurationProperties(prefix = "expensetracker.datasource")
+public class ReplicaProperties {
+
+    private List<Replica> replicas = new ArrayList<>();  // Replicas serving read-only transactions
+    private long stickyWindowMs = 5000;                   // How long a user's reads stay on the primary after a write
+    private long maxStickyUsers = 100000;                 // How many recent writers are remembered at once
+
+    /**
+     * Gets the replicas serving read-only transactions.
+     *
+     * @return the replicas
+     */
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    /**
+     * Sets the replicas serving read-only transactions.
+     *
+     * @param replicas the replicas to set
+     */
+    public void setReplicas(List<Replica> replicas) {
+        this.replicas = replicas;
+    }
+
+    /**
+     * Gets how long, in milliseconds, a user's reads stay on the primary after a write.
+     *
+     * @return the stickyWindowMs
+     */
+    public long getStickyWindowMs() {
+        return stickyWindowMs;
+    }
+
+    /**
+     * Sets how long, in milliseconds, a user's reads stay on the primary after a write.
+     *
+     * @param stickyWindowMs the stickyWindowMs to set
+     */
+    public void setStickyWindowMs(long stickyWindowMs) {
+        this.stickyWindowMs = stickyWindowMs;
+    }
+
+    /**
+     * Gets how many recent writers are remembered at once.
+     *
+     * @return the maxStickyUsers
+     */
+    public long getMaxStickyUsers() {
+        return maxStickyUsers;
+    }
+
+    /**
+     * Sets how many recent writers are remembered at once.
+     *
+     * @param maxStickyUsers the maxStickyUsers to set
+     */
+    public void setMaxStickyUsers(long maxStickyUsers) {
+        this.maxStickyUsers = maxStickyUsers;
+    }
+
+    /**
+     * The connection settings of a single replica.
+     * The username and password default to those of the primary.
+     */
+    public static class Replica {
+
+        private String url;       // JDBC URL of the replica
+        private String username;  // Username, or null to use the primary's
+        private String password;  // Password, or null to use the primary's
+
+        /**
+         * Gets the JDBC URL of the replica.
+         *
+         * @return the url
+         */
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * Sets the JDBC URL of the replica.
+         *
+         * @param url the url to set
+         */
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        /**
+         * Gets the username, or null to use the primary's.
+         *
+         * @return the username
+         */
+        public String getUsername() {
+            return username;
+        }
+
+        /**
+         * Sets the username.
+         *
+         * @param username the username to set
+         */
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        /**
+         * Gets the password, or null to use the primary's.
+         *
+         * @return the password
+         */
+        public String getPassword() {
+            return password;
+        }
+
+        /**
+         * Sets the password.
+         *
+         * @param password the password to set
+         */
+        public void setPassword(String password) {
+            this.password = password;
+        }
+    }
+}
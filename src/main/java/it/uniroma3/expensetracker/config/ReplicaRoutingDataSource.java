@@ -0,0 +1,95 @@
+package it.uniroma3.expensetracker.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DataSource routing read-only transactions to the replicas, round robin, and everything else
+ * to the primary. A user who has just committed a write keeps reading from the primary for a
+ * short window, so they always see their own writes despite replication lag. The recent writers
+ * are kept in a cache expiring each of them after the window and bounded in size; should it
+ * overflow, the evicted users merely go back to the replicas early.
+ * <p>
+ * The routing decision relies on the transaction's read-only flag, which Spring sets only after
+ * the transaction has begun: this DataSource must therefore be wrapped in a
+ * LazyConnectionDataSourceProxy, which defers fetching the connection to the first statement.
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+
+    /** Lookup key of the primary database. */
+    public static final String PRIMARY = "primary";
+
+    private final List<String> replicaKeys;
+    private final AtomicInteger next = new AtomicInteger();
+
+    // Users who wrote within the sticky window and must read from the primary
+    private final Cache<Integer, Boolean> recentWriters;
+
+    /**
+     * Constructs a new ReplicaRoutingDataSource.
+     *
+     * @param replicaKeys    the lookup keys of the replicas, possibly none
+     * @param stickyWindowMs how long, in milliseconds, a user's reads stay on the primary after a write
+     * @param maxStickyUsers the maximum number of recent writers remembered at once
+     */
+    public ReplicaRoutingDataSource(List<String> replicaKeys, long stickyWindowMs, long maxStickyUsers) {
+        this.replicaKeys = replicaKeys;
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMillis(stickyWindowMs))
+                .maximumSize(maxStickyUsers)
+                .build();
+    }
+
+    /**
+     * Picks the database of the connection about to be fetched.
+     *
+     * @return the lookup key of the primary or of a replica
+     */
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer userId = currentUserId();
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            Collection<Integer> writers = ShardContext.currentUsers();
+            if (writers == null && userId != null)
+                writers = Collections.singletonList(userId);
+            if (writers != null && TransactionSynchronizationManager.isSynchronizationActive()) {
+                Collection<Integer> userIds = writers;
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        for (Integer writer : userIds)
+                            recentWriters.put(writer, Boolean.TRUE);
+                    }
+                });
+            }
+            return PRIMARY;
+        }
+        if (replicaKeys.isEmpty() || (userId != null && recentWriters.getIfPresent(userId) != null))
+            return PRIMARY;
+        return replicaKeys.get(Math.floorMod(next.getAndIncrement(), replicaKeys.size()));
+    }
+
+    /**
+     * Gets the ID of the authenticated user of the current request, if any.
+     *
+     * @return the user ID, or null outside an authenticated request
+     */
+    private static Integer currentUserId() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null)
+            return null;
+        Object userId = attributes.getAttribute("userId", RequestAttributes.SCOPE_REQUEST);
+        return userId instanceof Integer ? (Integer) userId : null;
+    }
+}
@@ -1,5 +1,6 @@
 package it.uniroma3.expensetracker.config;
 
+import it.uniroma3.expensetracker.Constants;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
@@ -62,6 +63,9 @@ public class SecurityConfig extends WebSecurityConfigurerAdapter {
         // Allow all HTTP methods (GET, POST, PUT, DELETE, etc.).
         config.addAllowedMethod("*");
 
+        // Let the frontend read the cursor of the next page of paginated listings.
+        config.addExposedHeader(Constants.NEXT_CURSOR_HEADER);
+
         // Register the configuration for all paths (/**).
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
         source.registerCorsConfiguration("/**", config);
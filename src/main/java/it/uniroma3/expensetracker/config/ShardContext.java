@@ -0,0 +1,113 @@
+package it.uniroma3.expensetracker.config;
+
+import java.util.Collection;
+import java.util.Collections;
+
+/**
+ * Binds the current thread to a shard, for work running outside an authenticated request.
+ * Within a request the shard follows from the authenticated user; background jobs, shard
+ * migrations and asynchronous request processing state it explicitly here instead.
+ * The binding must be in place before the first statement of a database transaction,
+ * since that is when the connection, and so the shard, is chosen.
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> SHARD = new ThreadLocal<>();
+    private static final ThreadLocal<Integer> USER = new ThreadLocal<>();
+    private static final ThreadLocal<Collection<Integer>> USERS = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * Runs an action against a given shard.
+     *
+     * @param shardId the ID of the shard
+     * @param action  the action to run
+     */
+    public static void forShard(int shardId, Runnable action) {
+        Integer previous = SHARD.get();
+        SHARD.set(shardId);
+        try {
+            action.run();
+        } finally {
+            restore(SHARD, previous);
+        }
+    }
+
+    /**
+     * Runs an action against the shard of a given user.
+     *
+     * @param userId the ID of the user
+     * @param action the action to run
+     */
+    public static void forUser(Integer userId, Runnable action) {
+        Integer previous = USER.get();
+        USER.set(userId);
+        try {
+            action.run();
+        } finally {
+            restore(USER, previous);
+        }
+    }
+
+    /**
+     * Runs an action writing on behalf of several users of a given shard at once,
+     * so that each of them reads their own writes afterwards.
+     *
+     * @param shardId the ID of the shard
+     * @param userIds the IDs of the users, all on the shard
+     * @param action  the action to run
+     */
+    public static void forUsers(int shardId, Collection<Integer> userIds, Runnable action) {
+        Collection<Integer> previous = USERS.get();
+        USERS.set(userIds);
+        try {
+            forShard(shardId, action);
+        } finally {
+            if (previous == null)
+                USERS.remove();
+            else
+                USERS.set(previous);
+        }
+    }
+
+    /**
+     * Gets the shard the current thread is bound to.
+     *
+     * @return the shard ID, or null if none is bound
+     */
+    public static Integer currentShard() {
+        return SHARD.get();
+    }
+
+    /**
+     * Gets the user whose shard the current thread is bound to.
+     *
+     * @return the user ID, or null if none is bound
+     */
+    public static Integer currentUser() {
+        return USER.get();
+    }
+
+    /**
+     * Gets the users on whose behalf the current thread writes, as bound with {@link #forUsers}
+     * or {@link #forUser}.
+     *
+     * @return the user IDs, or null if none are bound
+     */
+    public static Collection<Integer> currentUsers() {
+        Collection<Integer> userIds = USERS.get();
+        if (userIds != null)
+            return userIds;
+        Integer userId = USER.get();
+        return userId == null ? null : Collections.singletonList(userId);
+    }
+
+    private static void restore(ThreadLocal<Integer> binding, Integer previous) {
+        if (previous == null)
+            binding.remove();
+        else
+            binding.set(previous);
+    }
+}
@@ -0,0 +1,176 @@
+package it.uniroma3.expensetracker.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration properties of the shards, bound from {@code expensetracker.sharding.*}.
+ * Shard 0 is the database configured with {@code spring.datasource.*} and its replicas;
+ * the shards listed here are numbered from 1 in order, so new shards must be appended.
+ */
+@ConfigurationProperties(prefix = "expensetracker.sharding")
+public class ShardProperties {
+
+    private List<Shard> shards = new ArrayList<>();             // Shards beyond shard 0
+    private List<Integer> newUserShards = new ArrayList<>();    // Shards new users are placed on, empty for all
+    private long directoryCacheTtlMs = 30000;                   // How long a user's shard is cached
+    private int moveThreads = 2;                                // Number of users moved at the same time
+
+    /**
+     * Gets the shards beyond shard 0.
+     *
+     * @return the shards
+     */
+    public List<Shard> getShards() {
+        return shards;
+    }
+
+    /**
+     * Sets the shards beyond shard 0.
+     *
+     * @param shards the shards to set
+     */
+    public void setShards(List<Shard> shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * Gets the shards new users are placed on; empty for all of them.
+     *
+     * @return the newUserShards
+     */
+    public List<Integer> getNewUserShards() {
+        return newUserShards;
+    }
+
+    /**
+     * Sets the shards new users are placed on.
+     *
+     * @param newUserShards the newUserShards to set
+     */
+    public void setNewUserShards(List<Integer> newUserShards) {
+        this.newUserShards = newUserShards;
+    }
+
+    /**
+     * Gets how long, in milliseconds, each instance caches the shard of a user.
+     *
+     * @return the directoryCacheTtlMs
+     */
+    public long getDirectoryCacheTtlMs() {
+        return directoryCacheTtlMs;
+    }
+
+    /**
+     * Sets how long, in milliseconds, each instance caches the shard of a user.
+     *
+     * @param directoryCacheTtlMs the directoryCacheTtlMs to set
+     */
+    public void setDirectoryCacheTtlMs(long directoryCacheTtlMs) {
+        this.directoryCacheTtlMs = directoryCacheTtlMs;
+    }
+
+    /**
+     * Gets the number of users moved to another shard at the same time.
+     *
+     * @return the moveThreads
+     */
+    public int getMoveThreads() {
+        return moveThreads;
+    }
+
+    /**
+     * Sets the number of users moved to another shard at the same time.
+     *
+     * @param moveThreads the moveThreads to set
+     */
+    public void setMoveThreads(int moveThreads) {
+        this.moveThreads = moveThreads;
+    }
+
+    /**
+     * The connection settings of a single shard.
+     * The username and password default to those of shard 0.
+     */
+    public static class Shard {
+
+        private String url;                                                  // JDBC URL of the shard's primary
+        private String username;                                             // Username, or null to use shard 0's
+        private String password;                                             // Password, or null to use shard 0's
+        private List<ReplicaProperties.Replica> replicas = new ArrayList<>();  // Replicas of the shard
+
+        /**
+         * Gets the JDBC URL of the shard's primary.
+         *
+         * @return the url
+         */
+        public String getUrl() {
+            return url;
+        }
+
+        /**
+         * Sets the JDBC URL of the shard's primary.
+         *
+         * @param url the url to set
+         */
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        /**
+         * Gets the username, or null to use shard 0's.
+         *
+         * @return the username
+         */
+        public String getUsername() {
+            return username;
+        }
+
+        /**
+         * Sets the username.
+         *
+         * @param username the username to set
+         */
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        /**
+         * Gets the password, or null to use shard 0's.
+         *
+         * @return the password
+         */
+        public String getPassword() {
+            return password;
+        }
+
+        /**
+         * Sets the password.
+         *
+         * @param password the password to set
+         */
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        /**
+         * Gets the replicas of the shard.
+         *
+         * @return the replicas
+         */
+        public List<ReplicaProperties.Replica> getReplicas() {
+            return replicas;
+        }
+
+        /**
+         * Sets the replicas of the shard.
+         *
+         * @param replicas the replicas to set
+         */
+        public void setReplicas(List<ReplicaProperties.Replica> replicas) {
+            this.replicas = replicas;
+        }
+    }
+}
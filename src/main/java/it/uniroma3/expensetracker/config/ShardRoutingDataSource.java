@@ -0,0 +1,58 @@
+package it.uniroma3.expensetracker.config;
+
+import it.uniroma3.expensetracker.repositories.ShardDirectory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+/**
+ * DataSource routing each connection to a shard.
+ * The shard is, in order of precedence, the one bound with {@link ShardContext#forShard},
+ * the one of the user bound with {@link ShardContext#forUser}, or the one of the request's
+ * authenticated user. Anything else (login, registration, user lookups) goes to shard 0,
+ * which also holds the users, the ID sequences and the shard directory.
+ * <p>
+ * Like {@link ReplicaRoutingDataSource}, it must be wrapped in a LazyConnectionDataSourceProxy.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    private final ShardDirectory shardDirectory;
+
+    /**
+     * Constructs a new ShardRoutingDataSource.
+     *
+     * @param shardDirectory the directory mapping users to shards
+     */
+    public ShardRoutingDataSource(ShardDirectory shardDirectory) {
+        this.shardDirectory = shardDirectory;
+    }
+
+    /**
+     * Picks the shard of the connection about to be fetched.
+     *
+     * @return the shard ID
+     */
+    @Override
+    protected Object determineCurrentLookupKey() {
+        Integer shardId = ShardContext.currentShard();
+        if (shardId != null)
+            return shardId;
+        Integer userId = ShardContext.currentUser();
+        if (userId == null)
+            userId = requestUserId();
+        return userId == null ? ShardDirectory.DIRECTORY_SHARD : shardDirectory.shardOf(userId);
+    }
+
+    /**
+     * Gets the ID of the authenticated user of the current request, if any.
+     *
+     * @return the user ID, or null outside an authenticated request
+     */
+    private static Integer requestUserId() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null)
+            return null;
+        Object userId = attributes.getAttribute("userId", RequestAttributes.SCOPE_REQUEST);
+        return userId instanceof Integer ? (Integer) userId : null;
+    }
+}
@@ -1,5 +1,6 @@
 package it.uniroma3.expensetracker.config;
 
+import it.uniroma3.expensetracker.Constants;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -31,6 +32,8 @@ public class WebConfig implements WebMvcConfigurer {
                 .allowedMethods("GET", "POST", "PUT", "DELETE", "OPTIONS")
                 // Allow all headers to be included in requests
                 .allowedHeaders("*")
+                // Let the frontend read the cursor of the next page of paginated listings
+                .exposedHeaders(Constants.NEXT_CURSOR_HEADER)
                 // Allow credentials to be included in requests (e.g., cookies, authorization headers)
                 .allowCredentials(true);
     }
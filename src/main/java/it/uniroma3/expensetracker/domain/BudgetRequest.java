@@ -0,0 +1,30 @@
+package it.uniroma3.expensetracker.domain;
+
+import javax.validation.constraints.NotNull;
+
+/**
+ * The BudgetRequest class represents the body of a request setting the budget.
+ */
+public class BudgetRequest {
+
+    @NotNull(message = "Total budget is required")
+    private Double totalBudget;
+
+    /**
+     * Gets the total budget.
+     *
+     * @return the totalBudget
+     */
+    public Double getTotalBudget() {
+        return totalBudget;
+    }
+
+    /**
+     * Sets the total budget.
+     *
+     * @param totalBudget the totalBudget to set
+     */
+    public void setTotalBudget(Double totalBudget) {
+        this.totalBudget = totalBudget;
+    }
+}
@@ -0,0 +1,57 @@
+package it.uniroma3.expensetracker.domain;
+
+import it.uniroma3.expensetracker.Constants;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+/**
+ * The CategoryRequest class represents the body of a request creating or updating a category.
+ */
+public class CategoryRequest {
+
+    @NotBlank(message = "Title is required")
+    @Size(max = Constants.MAX_TITLE_LENGTH, message = "Title cannot be longer than 20 characters")
+    private String title;
+
+    @NotNull(message = "Description is required")
+    @Size(max = Constants.MAX_DESCRIPTION_LENGTH, message = "Description cannot be longer than 50 characters")
+    private String description;
+
+    /**
+     * Gets the title of the category.
+     *
+     * @return the title
+     */
+    public String getTitle() {
+        return title;
+    }
+
+    /**
+     * Sets the title of the category.
+     *
+     * @param title the title to set
+     */
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    /**
+     * Gets the description of the category.
+     *
+     * @return the description
+     */
+    public String getDescription() {
+        return description;
+    }
+
+    /**
+     * Sets the description of the category.
+     *
+     * @param description the description to set
+     */
+    public void setDescription(String description) {
+        this.description = description;
+    }
+}
@@ -0,0 +1,51 @@
+package it.uniroma3.expensetracker.domain;
+
+/**
+ * The CategorySpending class represents the spending of a user in one category over a date range.
+ */
+public class CategorySpending {
+
+    private final Integer categoryId;        // ID of the category
+    private final Double total;              // Total amount spent in the category
+    private final Integer transactionCount;  // Number of transactions in the category
+
+    /**
+     * Constructs a new CategorySpending.
+     *
+     * @param categoryId       the ID of the category
+     * @param total            the total amount spent in the category
+     * @param transactionCount the number of transactions in the category
+     */
+    public CategorySpending(Integer categoryId, Double total, Integer transactionCount) {
+        this.categoryId = categoryId;
+        this.total = total;
+        this.transactionCount = transactionCount;
+    }
+
+    /**
+     * Gets the ID of the category.
+     *
+     * @return the categoryId
+     */
+    public Integer getCategoryId() {
+        return categoryId;
+    }
+
+    /**
+     * Gets the total amount spent in the category.
+     *
+     * @return the total
+     */
+    public Double getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets the number of transactions in the category.
+     *
+     * @return the transactionCount
+     */
+    public Integer getTransactionCount() {
+        return transactionCount;
+    }
+}
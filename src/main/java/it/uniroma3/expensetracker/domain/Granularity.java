@@ -0,0 +1,26 @@
+package it.uniroma3.expensetracker.domain;
+
+import it.uniroma3.expensetracker.exceptions.EtBadRequestException;
+
+/**
+ * The Granularity enum lists the bucket sizes of the spending-over-time series.
+ */
+public enum Granularity {
+
+    DAY,
+    MONTH;
+
+    /**
+     * Parses a granularity name, ignoring case.
+     *
+     * @param value the granularity name, "day" or "month"
+     * @return the matching granularity
+     * @throws EtBadRequestException if the name is not a known granularity
+     */
+    public static Granularity parse(String value) throws EtBadRequestException {
+        for (Granularity granularity : values())
+            if (granularity.name().equalsIgnoreCase(value))
+                return granularity;
+        throw new EtBadRequestException("Granularity must be day or month");
+    }
+}
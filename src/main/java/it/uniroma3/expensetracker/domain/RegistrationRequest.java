@@ -0,0 +1,99 @@
+package it.uniroma3.expensetracker.domain;
+
+import it.uniroma3.expensetracker.Constants;
+
+import javax.validation.constraints.NotBlank;
+import javax.validation.constraints.Size;
+
+/**
+ * The RegistrationRequest class represents the body of a registration request.
+ */
+public class RegistrationRequest {
+
+    @NotBlank(message = "First name is required")
+    @Size(max = Constants.MAX_NAME_LENGTH, message = "First name cannot be longer than 20 characters")
+    private String firstName;
+
+    @NotBlank(message = "Last name is required")
+    @Size(max = Constants.MAX_NAME_LENGTH, message = "Last name cannot be longer than 20 characters")
+    private String lastName;
+
+    @NotBlank(message = "Email is required")
+    @Size(max = Constants.MAX_EMAIL_LENGTH, message = "Email cannot be longer than 30 characters")
+    private String email;
+
+    @NotBlank(message = "Password is required")
+    private String password;
+
+    /**
+     * Gets the first name of the user.
+     *
+     * @return the firstName
+     */
+    public String getFirstName() {
+        return firstName;
+    }
+
+    /**
+     * Sets the first name of the user.
+     *
+     * @param firstName the firstName to set
+     */
+    public void setFirstName(String firstName) {
+        this.firstName = firstName;
+    }
+
+    /**
+     * Gets the last name of the user.
+     *
+     * @return the lastName
+     */
+    public String getLastName() {
+        return lastName;
+    }
+
+    /**
+     * Sets the last name of the user.
+     *
+     * @param lastName the lastName to set
+     */
+    public void setLastName(String lastName) {
+        this.lastName = lastName;
+    }
+
+    /**
+     * Gets the email of the user.
+     *
+     * @return the email
+     */
+    public String getEmail() {
+        return email;
+    }
+
+    /**
+     * Sets the email of the user.
+     *
+     * @param email the email to set
+     */
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    /**
+     * Gets the password of the user.
+     *
+     * @return the password
+     */
+    public String getPassword() {
+        return password;
+    }
+
+    /**
+     * Sets the password of the user.
+     *
+     * @param password the password to set
+     */
+    public void setPassword(String password) {
+        this.password = password;
+    }
+}
@@ -0,0 +1,156 @@
+package it.uniroma3.expensetracker.domain;
+
+/**
+ * The ShardMove class represents the move of a user's data to another shard, running in the
+ * background. It is updated by the thread running the move and read by the status requests.
+ */
+public class ShardMove {
+
+    /**
+     * The stages of a move.
+     */
+    public enum State {
+        /** Waiting for a thread to run it. */
+        QUEUED,
+        /** Copying the user's data; their writes are refused. */
+        RUNNING,
+        /** Done; the user's data is on the target shard. */
+        COMPLETED,
+        /** Stopped by an error; the user's data is still on the source shard. */
+        FAILED
+    }
+
+    private final Integer userId;             // ID of the user being moved
+    private final int targetShard;            // ID of the shard the user is moved to
+    private final long requestedAt;           // When the move was requested, in milliseconds since epoch
+    private volatile Integer sourceShard;     // ID of the shard the user is moved from, known once running
+    private volatile State state = State.QUEUED;
+    private volatile long copiedRows;         // Number of rows copied, once completed
+    private volatile String error;            // Reason of the failure, if failed
+    private volatile Long finishedAt;         // When the move completed or failed, in milliseconds since epoch
+
+    /**
+     * Constructs a new queued ShardMove.
+     *
+     * @param userId      the ID of the user being moved
+     * @param targetShard the ID of the shard the user is moved to
+     */
+    public ShardMove(Integer userId, int targetShard) {
+        this.userId = userId;
+        this.targetShard = targetShard;
+        this.requestedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Records that the move started.
+     *
+     * @param sourceShard the ID of the shard the user is moved from
+     */
+    public void started(int sourceShard) {
+        this.sourceShard = sourceShard;
+        this.state = State.RUNNING;
+    }
+
+    /**
+     * Records that the move completed.
+     *
+     * @param copiedRows the number of rows copied
+     */
+    public void completed(long copiedRows) {
+        this.copiedRows = copiedRows;
+        this.finishedAt = System.currentTimeMillis();
+        this.state = State.COMPLETED;
+    }
+
+    /**
+     * Records that the move failed.
+     *
+     * @param error the reason of the failure
+     */
+    public void failed(String error) {
+        this.error = error;
+        this.finishedAt = System.currentTimeMillis();
+        this.state = State.FAILED;
+    }
+
+    /**
+     * Checks whether the move completed or failed.
+     *
+     * @return whether the move is over
+     */
+    public boolean isFinished() {
+        return state == State.COMPLETED || state == State.FAILED;
+    }
+
+    /**
+     * Gets the ID of the user being moved.
+     *
+     * @return the userId
+     */
+    public Integer getUserId() {
+        return userId;
+    }
+
+    /**
+     * Gets the ID of the shard the user is moved to.
+     *
+     * @return the targetShard
+     */
+    public int getTargetShard() {
+        return targetShard;
+    }
+
+    /**
+     * Gets the ID of the shard the user is moved from.
+     *
+     * @return the sourceShard, or null while queued
+     */
+    public Integer getSourceShard() {
+        return sourceShard;
+    }
+
+    /**
+     * Gets the stage of the move.
+     *
+     * @return the state
+     */
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Gets the number of rows copied.
+     *
+     * @return the copiedRows, 0 until completed
+     */
+    public long getCopiedRows() {
+        return copiedRows;
+    }
+
+    /**
+     * Gets the reason of the failure.
+     *
+     * @return the error, or null unless failed
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Gets when the move was requested.
+     *
+     * @return the requestedAt, in milliseconds since epoch
+     */
+    public long getRequestedAt() {
+        return requestedAt;
+    }
+
+    /**
+     * Gets when the move completed or failed.
+     *
+     * @return the finishedAt, in milliseconds since epoch, or null while not finished
+     */
+    public Long getFinishedAt() {
+        return finishedAt;
+    }
+}
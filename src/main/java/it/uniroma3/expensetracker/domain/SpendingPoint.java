@@ -0,0 +1,53 @@
+package it.uniroma3.expensetracker.domain;
+
+/**
+ * The SpendingPoint class represents one bucket of a spending-over-time series.
+ * It holds the total spent and the number of transactions between the start of the bucket
+ * and the start of the next one.
+ */
+public class SpendingPoint {
+
+    private final Long bucketStart;       // Start of the bucket in milliseconds since epoch (UTC)
+    private final Double total;           // Total amount spent in the bucket
+    private final Integer transactionCount;  // Number of transactions in the bucket
+
+    /**
+     * Constructs a new SpendingPoint.
+     *
+     * @param bucketStart      the start of the bucket in milliseconds since epoch (UTC)
+     * @param total            the total amount spent in the bucket
+     * @param transactionCount the number of transactions in the bucket
+     */
+    public SpendingPoint(Long bucketStart, Double total, Integer transactionCount) {
+        this.bucketStart = bucketStart;
+        this.total = total;
+        this.transactionCount = transactionCount;
+    }
+
+    /**
+     * Gets the start of the bucket in milliseconds since epoch (UTC).
+     *
+     * @return the bucketStart
+     */
+    public Long getBucketStart() {
+        return bucketStart;
+    }
+
+    /**
+     * Gets the total amount spent in the bucket.
+     *
+     * @return the total
+     */
+    public Double getTotal() {
+        return total;
+    }
+
+    /**
+     * Gets the number of transactions in the bucket.
+     *
+     * @return the transactionCount
+     */
+    public Integer getTransactionCount() {
+        return transactionCount;
+    }
+}
@@ -0,0 +1,25 @@
+package it.uniroma3.expensetracker.domain;
+
+/**
+ * The SuccessResponse class represents the body of a successful update or delete,
+ * {@code {"success": true}}. Immutable, so a single instance is shared by every response.
+ */
+public final class SuccessResponse {
+
+    /**
+     * The only instance.
+     */
+    public static final SuccessResponse INSTANCE = new SuccessResponse();
+
+    private SuccessResponse() {
+    }
+
+    /**
+     * Tells that the operation succeeded.
+     *
+     * @return true
+     */
+    public boolean isSuccess() {
+        return true;
+    }
+}
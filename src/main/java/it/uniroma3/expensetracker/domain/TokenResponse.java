@@ -0,0 +1,27 @@
+package it.uniroma3.expensetracker.domain;
+
+/**
+ * The TokenResponse class represents the body of a successful sign-in or registration.
+ */
+public class TokenResponse {
+
+    private final String token;  // JWT authenticating the user's next requests
+
+    /**
+     * Constructs a new TokenResponse.
+     *
+     * @param token the JWT authenticating the user's next requests
+     */
+    public TokenResponse(String token) {
+        this.token = token;
+    }
+
+    /**
+     * Gets the JWT authenticating the user's next requests.
+     *
+     * @return the token
+     */
+    public String getToken() {
+        return token;
+    }
+}
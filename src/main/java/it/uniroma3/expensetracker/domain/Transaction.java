@@ -1,5 +1,10 @@
 package it.uniroma3.expensetracker.domain;
 
+import it.uniroma3.expensetracker.Constants;
+import it.uniroma3.expensetracker.exceptions.EtBadRequestException;
+
+import java.math.BigDecimal;
+
 /**
  * The Transaction class represents a financial transaction in the Expense Tracker application.
  * Each transaction is associated with a specific category and user, and contains details about the amount, note, and transaction date.
@@ -33,6 +38,30 @@ public class Transaction {
         this.transactionDate = transactionDate;
     }
 
+    /**
+     * Checks that the fields of a transaction fit the columns of ET_TRANSACTIONS, so that a write
+     * is refused with a reason instead of being rejected by the database.
+     *
+     * @param amount          the amount of money involved in the transaction
+     * @param note            the note or description about the transaction
+     * @param transactionDate the date of the transaction in milliseconds since epoch
+     * @throws EtBadRequestException if a field is missing or does not fit its column
+     */
+    public static void checkFields(Double amount, String note, Long transactionDate) throws EtBadRequestException {
+        if (amount == null)
+            throw new EtBadRequestException("Amount is required");
+        if (amount.isNaN() || amount.isInfinite())
+            throw new EtBadRequestException("Amount must be a finite number");
+        if (Math.abs(amount) > Constants.MAX_AMOUNT)
+            throw new EtBadRequestException("Amount cannot exceed " + BigDecimal.valueOf(Constants.MAX_AMOUNT).toPlainString() + " in absolute value");
+        if (note == null)
+            throw new EtBadRequestException("Note is required");
+        if (note.length() > Constants.MAX_NOTE_LENGTH)
+            throw new EtBadRequestException("Note cannot be longer than " + Constants.MAX_NOTE_LENGTH + " characters");
+        if (transactionDate == null)
+            throw new EtBadRequestException("Transaction date is required");
+    }
+
     // Getter and setter methods for each field
 
     /**
@@ -0,0 +1,81 @@
+package it.uniroma3.expensetracker.domain;
+
+import java.util.List;
+
+/**
+ * The TransactionBatchResult class represents the outcome of a bulk transaction ingest.
+ * The generated IDs are aligned with the submitted items: a rejected item has a null ID
+ * and a matching entry in the list of errors.
+ */
+public class TransactionBatchResult {
+
+    private final List<Integer> transactionIds;  // Generated IDs, in submission order, null for rejected items
+    private final List<ItemError> errors;        // Validation errors of the rejected items
+
+    /**
+     * Constructs a new TransactionBatchResult.
+     *
+     * @param transactionIds the generated IDs, in submission order, null for rejected items
+     * @param errors         the validation errors of the rejected items
+     */
+    public TransactionBatchResult(List<Integer> transactionIds, List<ItemError> errors) {
+        this.transactionIds = transactionIds;
+        this.errors = errors;
+    }
+
+    /**
+     * Gets the generated IDs, in submission order.
+     *
+     * @return the transactionIds
+     */
+    public List<Integer> getTransactionIds() {
+        return transactionIds;
+    }
+
+    /**
+     * Gets the validation errors of the rejected items.
+     *
+     * @return the errors
+     */
+    public List<ItemError> getErrors() {
+        return errors;
+    }
+
+    /**
+     * The ItemError class describes why a single item of a batch was rejected.
+     */
+    public static class ItemError {
+
+        private final int index;        // Position of the rejected item in the submitted batch
+        private final String message;   // Reason why the item was rejected
+
+        /**
+         * Constructs a new ItemError.
+         *
+         * @param index   the position of the rejected item in the submitted batch
+         * @param message the reason why the item was rejected
+         */
+        public ItemError(int index, String message) {
+            this.index = index;
+            this.message = message;
+        }
+
+        /**
+         * Gets the position of the rejected item in the submitted batch.
+         *
+         * @return the index
+         */
+        public int getIndex() {
+            return index;
+        }
+
+        /**
+         * Gets the reason why the item was rejected.
+         *
+         * @return the message
+         */
+        public String getMessage() {
+            return message;
+        }
+    }
+}
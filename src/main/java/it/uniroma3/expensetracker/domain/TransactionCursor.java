@@ -0,0 +1,86 @@
+package it.uniroma3.expensetracker.domain;
+
+import it.uniroma3.expensetracker.exceptions.EtBadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * The TransactionCursor class represents a position in a keyset-paginated transaction listing.
+ * It holds the sort key (transaction date, transaction ID) of the last transaction returned,
+ * and is exchanged with clients as an opaque URL-safe string.
+ */
+public class TransactionCursor {
+
+    private final Long transactionDate;   // Date of the last transaction returned, in milliseconds since epoch
+    private final Integer transactionId;  // ID of the last transaction returned, used as a tie-breaker
+
+    /**
+     * Constructs a new TransactionCursor pointing after the given sort key.
+     *
+     * @param transactionDate the date of the last transaction returned
+     * @param transactionId   the ID of the last transaction returned
+     */
+    public TransactionCursor(Long transactionDate, Integer transactionId) {
+        this.transactionDate = transactionDate;
+        this.transactionId = transactionId;
+    }
+
+    /**
+     * Builds a cursor pointing after the given transaction.
+     *
+     * @param transaction the last transaction of a page
+     * @return a cursor positioned after the transaction
+     */
+    public static TransactionCursor after(Transaction transaction) {
+        return new TransactionCursor(transaction.getTransactionDate(), transaction.getTransactionId());
+    }
+
+    /**
+     * Decodes an opaque cursor string previously produced by {@link #encode()}.
+     *
+     * @param cursor the opaque cursor string
+     * @return the decoded cursor
+     * @throws EtBadRequestException if the cursor is malformed
+     */
+    public static TransactionCursor decode(String cursor) throws EtBadRequestException {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            int separator = raw.indexOf(':');
+            if (separator < 0)
+                throw new EtBadRequestException("Invalid cursor");
+            return new TransactionCursor(Long.parseLong(raw.substring(0, separator)),
+                    Integer.parseInt(raw.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new EtBadRequestException("Invalid cursor");
+        }
+    }
+
+    /**
+     * Encodes this cursor as an opaque URL-safe string.
+     *
+     * @return the encoded cursor
+     */
+    public String encode() {
+        String raw = transactionDate + ":" + transactionId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Gets the date of the last transaction returned.
+     *
+     * @return the transactionDate
+     */
+    public Long getTransactionDate() {
+        return transactionDate;
+    }
+
+    /**
+     * Gets the ID of the last transaction returned.
+     *
+     * @return the transactionId
+     */
+    public Integer getTransactionId() {
+        return transactionId;
+    }
+}
@@ -0,0 +1,107 @@
+package it.uniroma3.expensetracker.domain;
+
+import it.uniroma3.expensetracker.exceptions.EtBadRequestException;
+
+/**
+ * The TransactionFilter class represents the criteria of a transaction listing.
+ * Every criterion is optional: a null value leaves the listing unrestricted on that attribute.
+ */
+public class TransactionFilter {
+
+    private final Integer categoryId;  // Category the transactions belong to, or null for all categories
+    private final Long fromDate;       // Earliest transaction date, inclusive, in milliseconds since epoch
+    private final Long toDate;         // Latest transaction date, inclusive, in milliseconds since epoch
+    private final Double minAmount;    // Smallest amount, inclusive
+    private final Double maxAmount;    // Largest amount, inclusive
+
+    /**
+     * Constructs a new TransactionFilter, rejecting empty ranges.
+     *
+     * @param categoryId the category the transactions belong to, or null for all categories
+     * @param fromDate   the earliest transaction date, inclusive, or null
+     * @param toDate     the latest transaction date, inclusive, or null
+     * @param minAmount  the smallest amount, inclusive, or null
+     * @param maxAmount  the largest amount, inclusive, or null
+     * @throws EtBadRequestException if a range has its lower bound above its upper bound
+     */
+    public TransactionFilter(Integer categoryId, Long fromDate, Long toDate, Double minAmount, Double maxAmount) throws EtBadRequestException {
+        if (fromDate != null && toDate != null && fromDate > toDate)
+            throw new EtBadRequestException("Date range must have a start date not after its end date");
+        if (minAmount != null && maxAmount != null && minAmount > maxAmount)
+            throw new EtBadRequestException("Amount range must have a minimum not above its maximum");
+        this.categoryId = categoryId;
+        this.fromDate = fromDate;
+        this.toDate = toDate;
+        this.minAmount = minAmount;
+        this.maxAmount = maxAmount;
+    }
+
+    /**
+     * Creates a filter matching every transaction of a category.
+     *
+     * @param categoryId the category the transactions belong to
+     * @return the filter
+     */
+    public static TransactionFilter ofCategory(Integer categoryId) {
+        return new TransactionFilter(categoryId, null, null, null, null);
+    }
+
+    /**
+     * Checks whether a transaction matches this filter.
+     *
+     * @param transaction the transaction
+     * @return whether the transaction satisfies every criterion
+     */
+    public boolean matches(Transaction transaction) {
+        return (categoryId == null || categoryId.equals(transaction.getCategoryId()))
+                && (fromDate == null || transaction.getTransactionDate() >= fromDate)
+                && (toDate == null || transaction.getTransactionDate() <= toDate)
+                && (minAmount == null || transaction.getAmount() >= minAmount)
+                && (maxAmount == null || transaction.getAmount() <= maxAmount);
+    }
+
+    /**
+     * Gets the category the transactions belong to.
+     *
+     * @return the categoryId, or null for all categories
+     */
+    public Integer getCategoryId() {
+        return categoryId;
+    }
+
+    /**
+     * Gets the earliest transaction date, inclusive.
+     *
+     * @return the fromDate, or null
+     */
+    public Long getFromDate() {
+        return fromDate;
+    }
+
+    /**
+     * Gets the latest transaction date, inclusive.
+     *
+     * @return the toDate, or null
+     */
+    public Long getToDate() {
+        return toDate;
+    }
+
+    /**
+     * Gets the smallest amount, inclusive.
+     *
+     * @return the minAmount, or null
+     */
+    public Double getMinAmount() {
+        return minAmount;
+    }
+
+    /**
+     * Gets the largest amount, inclusive.
+     *
+     * @return the maxAmount, or null
+     */
+    public Double getMaxAmount() {
+        return maxAmount;
+    }
+}
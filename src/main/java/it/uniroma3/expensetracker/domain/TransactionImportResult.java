@@ -0,0 +1,104 @@
+package it.uniroma3.expensetracker.domain;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The TransactionImportResult class represents the outcome of a CSV transaction import.
+ * It counts the imported and rejected lines and keeps the reasons for the first rejected lines.
+ */
+public class TransactionImportResult {
+
+    // Maximum number of rejected lines whose reason is reported, keeping the result bounded
+    private static final int MAX_REPORTED_REJECTIONS = 1000;
+
+    private long importedCount;                                   // Number of lines imported
+    private long rejectedCount;                                   // Number of lines rejected
+    private final List<RejectedLine> rejectedLines = new ArrayList<>();  // Reasons of the first rejected lines
+
+    /**
+     * Records a successfully imported batch of lines.
+     *
+     * @param count the number of lines imported
+     */
+    public void addImported(long count) {
+        importedCount += count;
+    }
+
+    /**
+     * Records a rejected line.
+     *
+     * @param line    the 1-based number of the rejected line in the file
+     * @param message the reason why the line was rejected
+     */
+    public void addRejected(long line, String message) {
+        rejectedCount++;
+        if (rejectedLines.size() < MAX_REPORTED_REJECTIONS)
+            rejectedLines.add(new RejectedLine(line, message));
+    }
+
+    /**
+     * Gets the number of lines imported.
+     *
+     * @return the importedCount
+     */
+    public long getImportedCount() {
+        return importedCount;
+    }
+
+    /**
+     * Gets the number of lines rejected.
+     *
+     * @return the rejectedCount
+     */
+    public long getRejectedCount() {
+        return rejectedCount;
+    }
+
+    /**
+     * Gets the reasons of the first rejected lines.
+     *
+     * @return the rejectedLines
+     */
+    public List<RejectedLine> getRejectedLines() {
+        return rejectedLines;
+    }
+
+    /**
+     * The RejectedLine class describes why a single line of an import was rejected.
+     */
+    public static class RejectedLine {
+
+        private final long line;        // 1-based number of the rejected line in the file
+        private final String message;   // Reason why the line was rejected
+
+        /**
+         * Constructs a new RejectedLine.
+         *
+         * @param line    the 1-based number of the rejected line in the file
+         * @param message the reason why the line was rejected
+         */
+        public RejectedLine(long line, String message) {
+            this.line = line;
+            this.message = message;
+        }
+
+        /**
+         * Gets the 1-based number of the rejected line in the file.
+         *
+         * @return the line
+         */
+        public long getLine() {
+            return line;
+        }
+
+        /**
+         * Gets the reason why the line was rejected.
+         *
+         * @return the message
+         */
+        public String getMessage() {
+            return message;
+        }
+    }
+}
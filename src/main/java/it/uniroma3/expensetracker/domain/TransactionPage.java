@@ -0,0 +1,42 @@
+package it.uniroma3.expensetracker.domain;
+
+import java.util.List;
+
+/**
+ * The TransactionPage class represents one page of a keyset-paginated transaction listing.
+ * It contains the transactions of the page and the cursor to request the next one, if any.
+ */
+public class TransactionPage {
+
+    private final List<Transaction> transactions;  // Transactions belonging to this page
+    private final String nextCursor;               // Opaque cursor of the next page, or null on the last page
+
+    /**
+     * Constructs a new TransactionPage.
+     *
+     * @param transactions the transactions belonging to this page
+     * @param nextCursor   the opaque cursor of the next page, or null if this is the last page
+     */
+    public TransactionPage(List<Transaction> transactions, String nextCursor) {
+        this.transactions = transactions;
+        this.nextCursor = nextCursor;
+    }
+
+    /**
+     * Gets the transactions belonging to this page.
+     *
+     * @return the transactions
+     */
+    public List<Transaction> getTransactions() {
+        return transactions;
+    }
+
+    /**
+     * Gets the opaque cursor of the next page.
+     *
+     * @return the nextCursor, or null if this is the last page
+     */
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
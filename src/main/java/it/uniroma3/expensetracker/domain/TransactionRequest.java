@@ -0,0 +1,82 @@
+package it.uniroma3.expensetracker.domain;
+
+import it.uniroma3.expensetracker.Constants;
+
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.NotNull;
+import javax.validation.constraints.Size;
+
+/**
+ * The TransactionRequest class represents the body of a request creating a transaction,
+ * or one item of a batch of them, or replacing one. The constraints are those of the columns;
+ * the items of a batch are checked one by one instead, with Transaction.checkFields.
+ */
+public class TransactionRequest {
+
+    @NotNull(message = "Amount is required")
+    @DecimalMin(value = "-" + Constants.MAX_AMOUNT, message = "Amount cannot exceed 99999999.99 in absolute value")
+    @DecimalMax(value = "" + Constants.MAX_AMOUNT, message = "Amount cannot exceed 99999999.99 in absolute value")
+    private Double amount;
+
+    @NotNull(message = "Note is required")
+    @Size(max = Constants.MAX_NOTE_LENGTH, message = "Note cannot be longer than 50 characters")
+    private String note;
+
+    @NotNull(message = "Transaction date is required")
+    private Long transactionDate;  // Milliseconds since epoch
+
+    /**
+     * Gets the amount of the transaction.
+     *
+     * @return the amount
+     */
+    public Double getAmount() {
+        return amount;
+    }
+
+    /**
+     * Sets the amount of the transaction.
+     *
+     * @param amount the amount to set
+     */
+    public void setAmount(Double amount) {
+        this.amount = amount;
+    }
+
+    /**
+     * Gets the note of the transaction.
+     *
+     * @return the note
+     */
+    public String getNote() {
+        return note;
+    }
+
+    /**
+     * Sets the note of the transaction.
+     *
+     * @param note the note to set
+     */
+    public void setNote(String note) {
+        this.note = note;
+    }
+
+    /**
+     * Gets the date of the transaction, in milliseconds since epoch.
+     *
+     * @return the transactionDate
+     */
+    public Long getTransactionDate() {
+        return transactionDate;
+    }
+
+    /**
+     * Sets the date of the transaction, in milliseconds since epoch.
+     *
+     * @param transactionDate the transactionDate to set
+     */
+    public void setTransactionDate(Long transactionDate) {
+        this.transactionDate = transactionDate;
+    }
+}
@@ -0,0 +1,101 @@
+package it.uniroma3.expensetracker.domain;
+
+import it.uniroma3.expensetracker.exceptions.EtBadRequestException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * The TransactionSearchCursor class represents a position in keyset-paginated search results.
+ * It holds the sort key (rank, transaction date, transaction ID) of the last hit returned,
+ * and is exchanged with clients as an opaque URL-safe string. The rank is carried as its exact
+ * bits, so that the next page starts exactly after the last hit.
+ */
+public class TransactionSearchCursor {
+
+    private final float rank;             // Rank of the last hit returned
+    private final Long transactionDate;   // Date of the last hit returned, in milliseconds since epoch
+    private final Integer transactionId;  // ID of the last hit returned, used as a tie-breaker
+
+    /**
+     * Constructs a new TransactionSearchCursor pointing after the given sort key.
+     *
+     * @param rank            the rank of the last hit returned
+     * @param transactionDate the date of the last hit returned
+     * @param transactionId   the ID of the last hit returned
+     */
+    public TransactionSearchCursor(float rank, Long transactionDate, Integer transactionId) {
+        this.rank = rank;
+        this.transactionDate = transactionDate;
+        this.transactionId = transactionId;
+    }
+
+    /**
+     * Builds a cursor pointing after the given hit.
+     *
+     * @param hit the last hit of a page
+     * @return a cursor positioned after the hit
+     */
+    public static TransactionSearchCursor after(TransactionSearchHit hit) {
+        return new TransactionSearchCursor(hit.getRank(), hit.getTransaction().getTransactionDate(),
+                hit.getTransaction().getTransactionId());
+    }
+
+    /**
+     * Decodes an opaque cursor string previously produced by {@link #encode()}.
+     *
+     * @param cursor the opaque cursor string
+     * @return the decoded cursor
+     * @throws EtBadRequestException if the cursor is malformed
+     */
+    public static TransactionSearchCursor decode(String cursor) throws EtBadRequestException {
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII).split(":");
+            if (parts.length != 3)
+                throw new EtBadRequestException("Invalid cursor");
+            float rank = Float.intBitsToFloat(Integer.parseInt(parts[0]));
+            if (Float.isNaN(rank) || Float.isInfinite(rank))  // Never produced by ts_rank; the page would be empty
+                throw new EtBadRequestException("Invalid cursor");
+            return new TransactionSearchCursor(rank, Long.parseLong(parts[1]), Integer.parseInt(parts[2]));
+        } catch (IllegalArgumentException e) {
+            throw new EtBadRequestException("Invalid cursor");
+        }
+    }
+
+    /**
+     * Encodes this cursor as an opaque URL-safe string.
+     *
+     * @return the encoded cursor
+     */
+    public String encode() {
+        String raw = Float.floatToIntBits(rank) + ":" + transactionDate + ":" + transactionId;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Gets the rank of the last hit returned.
+     *
+     * @return the rank
+     */
+    public float getRank() {
+        return rank;
+    }
+
+    /**
+     * Gets the date of the last hit returned.
+     *
+     * @return the transactionDate
+     */
+    public Long getTransactionDate() {
+        return transactionDate;
+    }
+
+    /**
+     * Gets the ID of the last hit returned.
+     *
+     * @return the transactionId
+     */
+    public Integer getTransactionId() {
+        return transactionId;
+    }
+}
@@ -0,0 +1,40 @@
+package it.uniroma3.expensetracker.domain;
+
+/**
+ * The TransactionSearchHit class represents a transaction matching a full-text search,
+ * together with the relevance of its note to the searched text.
+ */
+public class TransactionSearchHit {
+
+    private final Transaction transaction;  // Matching transaction
+    private final float rank;               // Relevance of the note, higher first
+
+    /**
+     * Constructs a new TransactionSearchHit.
+     *
+     * @param transaction the matching transaction
+     * @param rank        the relevance of the note to the searched text
+     */
+    public TransactionSearchHit(Transaction transaction, float rank) {
+        this.transaction = transaction;
+        this.rank = rank;
+    }
+
+    /**
+     * Gets the matching transaction.
+     *
+     * @return the transaction
+     */
+    public Transaction getTransaction() {
+        return transaction;
+    }
+
+    /**
+     * Gets the relevance of the note to the searched text.
+     *
+     * @return the rank
+     */
+    public float getRank() {
+        return rank;
+    }
+}
@@ -0,0 +1,21 @@
+package it.uniroma3.expensetracker.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception class to handle requests refused because the server is temporarily overloaded.
+ * The exception is annotated with @ResponseStatus to automatically map it to an HTTP status code.
+ */
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+public class EtServiceUnavailableException extends RuntimeException {
+
+    /**
+     * Constructs a new EtServiceUnavailableException with the specified detail message.
+     *
+     * @param message the detail message explaining the reason for the exception
+     */
+    public EtServiceUnavailableException(String message) {
+        super(message);
+    }
+}
@@ -1,7 +1,10 @@
 package it.uniroma3.expensetracker.filters;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import it.uniroma3.expensetracker.Constants;
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import org.springframework.http.HttpStatus;
 import org.springframework.web.filter.GenericFilterBean;
@@ -13,15 +16,51 @@ import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Date;
 
 /**
  * Authentication filter to validate JWT tokens in incoming requests.
  * This filter checks for the presence and validity of a JWT token in the Authorization header.
  * If the token is valid, it extracts user details from the token and sets them in the request attributes.
  * If the token is invalid or missing, it returns a 403 Forbidden response.
+ * <p>
+ * The tokens already verified are cached with their user ID and expiry, keyed by their SHA-256
+ * digest, so a client sending the same token again skips the signature check and the claims
+ * parsing until the token expires.
  */
 public class AuthFilter extends GenericFilterBean {
 
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    // Parses and verifies the tokens; configured once, it holds no per-token state
+    private static final JwtParser PARSER = Jwts.parser().setSigningKey(Constants.API_SECRET_KEY);
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    });
+
+    // Verified tokens by digest, each dropped at the latest when any token would have expired
+    private final Cache<ByteBuffer, VerifiedToken> verifiedTokens;
+
+    /**
+     * Constructs a new AuthFilter.
+     *
+     * @param maxCachedTokens the maximum number of verified tokens cached
+     */
+    public AuthFilter(long maxCachedTokens) {
+        verifiedTokens = Caffeine.newBuilder().maximumSize(maxCachedTokens)
+                .expireAfterWrite(Duration.ofMillis(Constants.TOKEN_VALIDITY)).build();
+    }
+
     /**
      * The doFilter method processes the incoming request and response to validate the JWT token.
      *
@@ -39,16 +78,11 @@ public class AuthFilter extends GenericFilterBean {
         // Retrieve the Authorization header from the request
         String authHeader = httpRequest.getHeader("Authorization");
         if (authHeader != null) {
-            // Split the Authorization header to extract the token
-            String[] authHeaderArr = authHeader.split("Bearer ");
-            if (authHeaderArr.length > 1 && authHeaderArr[1] != null) {
-                String token = authHeaderArr[1];
+            if (authHeader.startsWith(BEARER_PREFIX) && authHeader.length() > BEARER_PREFIX.length()) {
+                String token = authHeader.substring(BEARER_PREFIX.length());
                 try {
-                    // Parse and validate the JWT token
-                    Claims claims = Jwts.parser().setSigningKey(Constants.API_SECRET_KEY)
-                            .parseClaimsJws(token).getBody();
                     // Set the userId attribute in the request for further processing
-                    httpRequest.setAttribute("userId", Integer.parseInt(claims.get("userId").toString()));
+                    httpRequest.setAttribute("userId", verify(token));
                 } catch (Exception e) {
                     // If token validation fails, send a 403 Forbidden response with an error message
                     httpResponse.sendError(HttpStatus.FORBIDDEN.value(), "invalid/expired token");
@@ -67,4 +101,39 @@ public class AuthFilter extends GenericFilterBean {
         // Proceed with the next filter in the chain
         filterChain.doFilter(servletRequest, servletResponse);
     }
+
+    /**
+     * Gets the user ID of a token, verifying it unless it is cached and not expired yet.
+     *
+     * @param token The JWT token.
+     * @return The ID of the user the token was issued to.
+     * @throws Exception If the token is invalid or expired.
+     */
+    private Integer verify(String token) throws Exception {
+        ByteBuffer digest = ByteBuffer.wrap(SHA_256.get().digest(token.getBytes(StandardCharsets.UTF_8)));
+        VerifiedToken verified = verifiedTokens.getIfPresent(digest);
+        if (verified != null && verified.expiresAt > System.currentTimeMillis())
+            return verified.userId;
+        // Parse and validate the JWT token; an expired one is rejected here
+        Claims claims = PARSER.parseClaimsJws(token).getBody();
+        Integer userId = ((Number) claims.get("userId")).intValue();
+        Date expiration = claims.getExpiration();
+        verifiedTokens.put(digest, new VerifiedToken(userId,
+                expiration == null ? Long.MAX_VALUE : expiration.getTime()));
+        return userId;
+    }
+
+    /**
+     * The user ID and expiry of a verified token.
+     */
+    private static class VerifiedToken {
+
+        private final Integer userId;
+        private final long expiresAt;
+
+        private VerifiedToken(Integer userId, long expiresAt) {
+            this.userId = userId;
+            this.expiresAt = expiresAt;
+        }
+    }
 }
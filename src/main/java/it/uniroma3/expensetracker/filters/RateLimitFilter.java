@@ -0,0 +1,90 @@
+package it.uniroma3.expensetracker.filters;
+
+import it.uniroma3.expensetracker.config.RateLimitProperties;
+import it.uniroma3.expensetracker.util.RateLimiter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.web.filter.GenericFilterBean;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filter limiting the rate of requests per authenticated user or per client address, route by route.
+ * Requests over the limit get a 429 Too Many Requests response with a Retry-After header, before
+ * they reach the services and take a database connection. Must run after the AuthFilter, which
+ * sets the userId. Behind a proxy, the client address is only right with forwarded headers enabled.
+ */
+public class RateLimitFilter extends GenericFilterBean {
+
+    private final AntPathMatcher pathMatcher = new AntPathMatcher();
+    private final List<LimitedRoute> routes = new ArrayList<>();
+
+    /**
+     * Constructs a new RateLimitFilter, with a bucket per key for each configured route.
+     *
+     * @param properties the limits of the routes
+     */
+    public RateLimitFilter(RateLimitProperties properties) {
+        for (RateLimitProperties.Route route : properties.getRoutes())
+            routes.add(new LimitedRoute(route.getPattern(), route.getKey(),
+                    new RateLimiter(route.getPermitsPerSecond(), route.getBurst(), properties.getMaxKeys())));
+    }
+
+    /**
+     * Refuses the request if its key is over the limit of the first route it matches, and lets it through otherwise.
+     *
+     * @param servletRequest  The incoming request
+     * @param servletResponse The outgoing response
+     * @param filterChain     The filter chain to pass the request and response to the next filter
+     * @throws IOException      If an I/O error occurs during the filter process
+     * @throws ServletException If a servlet error occurs during the filter process
+     */
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain) throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) servletRequest;
+        HttpServletResponse httpResponse = (HttpServletResponse) servletResponse;
+
+        String path = httpRequest.getRequestURI().substring(httpRequest.getContextPath().length());
+        for (LimitedRoute route : routes) {
+            if (!pathMatcher.match(route.pattern, path))
+                continue;
+            Object userId = httpRequest.getAttribute("userId");
+            Object key = route.key == RateLimitProperties.Key.USER && userId instanceof Integer ? userId : httpRequest.getRemoteAddr();
+            long waitNanos = route.limiter.tryAcquire(key);
+            if (waitNanos > 0) {
+                long retryAfter = Math.max(1, (waitNanos + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+                httpResponse.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(retryAfter));
+                httpResponse.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), "Too many requests, retry later");
+                return;
+            }
+            break;
+        }
+        filterChain.doFilter(servletRequest, servletResponse);
+    }
+
+    /**
+     * A route and the buckets of its keys.
+     */
+    private static class LimitedRoute {
+
+        private final String pattern;
+        private final RateLimitProperties.Key key;
+        private final RateLimiter limiter;
+
+        private LimitedRoute(String pattern, RateLimitProperties.Key key, RateLimiter limiter) {
+            this.pattern = pattern;
+            this.key = key;
+            this.limiter = limiter;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package it.uniroma3.expensetracker.filters;
+
+import it.uniroma3.expensetracker.repositories.ShardDirectory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.filter.GenericFilterBean;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * Filter refusing the writes of users whose data is being moved to another shard.
+ * Reads are still served while the copy runs; writes get a 503 Service Unavailable response
+ * with a Retry-After header until the move completes. Must run after the AuthFilter.
+ * Writes already past this filter when the move starts are fenced in the database instead,
+ * as ShardMigrationServiceImpl describes.
+ */
+public class ShardMigrationFilter extends GenericFilterBean {
+
+    // Seconds after which a refused client may retry
+    private static final String RETRY_AFTER_SECONDS = "30";
+
+    private final ShardDirectory shardDirectory;
+
+    /**
+     * Constructs a new ShardMigrationFilter.
+     *
+     * @param shardDirectory the directory mapping users to shards
+     */
+    public ShardMigrationFilter(ShardDirectory shardDirectory) {
+        this.shardDirectory = shardDirectory;
+    }
+
+    /**
+     * Refuses the request if it is a write by a user being moved, and lets it through otherwise.
+     *
+     * @param servletRequest  The incoming request
+     * @param servletResponse The outgoing response
+     * @param filterChain     The filter chain to pass the request and response to the next filter
+     * @throws IOException      If an I/O error occurs during the filter process
+     * @throws ServletException If a servlet error occurs during the filter process
+     */
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain) throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) servletRequest;
+        HttpServletResponse httpResponse = (HttpServletResponse) servletResponse;
+
+        Object userId = httpRequest.getAttribute("userId");
+        boolean write = !"GET".equals(httpRequest.getMethod()) && !"HEAD".equals(httpRequest.getMethod())
+                && !"OPTIONS".equals(httpRequest.getMethod());
+        if (write && userId instanceof Integer && shardDirectory.isMoving((Integer) userId)) {
+            httpResponse.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+            httpResponse.sendError(HttpStatus.SERVICE_UNAVAILABLE.value(), "Account maintenance in progress, retry shortly");
+            return;
+        }
+        filterChain.doFilter(servletRequest, servletResponse);
+    }
+}
@@ -0,0 +1,28 @@
+package it.uniroma3.expensetracker.jobs;
+
+import it.uniroma3.expensetracker.services.CacheInvalidationBus;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled job applying the cache invalidations published by the other instances, when the bus is enabled.
+ * The invalidations received between two runs are applied together, each distinct one once.
+ */
+@Component
+@ConditionalOnProperty(name = "expensetracker.invalidation.enabled", havingValue = "true")
+public class CacheInvalidationListenJob {
+
+    @Autowired
+    CacheInvalidationBus cacheInvalidationBus;
+
+    /**
+     * Applies the pending invalidations.
+     */
+    @Scheduled(fixedDelayString = "${expensetracker.invalidation.poll-interval-ms:100}",
+            initialDelayString = "${expensetracker.invalidation.poll-interval-ms:100}")
+    public void receive() {
+        cacheInvalidationBus.receive();
+    }
+}
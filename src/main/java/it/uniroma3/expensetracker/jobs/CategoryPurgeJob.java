@@ -0,0 +1,66 @@
+package it.uniroma3.expensetracker.jobs;
+
+import it.uniroma3.expensetracker.config.ShardContext;
+import it.uniroma3.expensetracker.domain.Category;
+import it.uniroma3.expensetracker.repositories.CategoryRepository;
+import it.uniroma3.expensetracker.repositories.ShardDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Scheduled job purging the transactions of the categories marked as deleted.
+ * Each chunk is deleted and its progress recorded in its own short transaction, so locks and
+ * WAL stay bounded whatever the size of the category. All the state lives in ET_CATEGORIES,
+ * so a purge interrupted by a restart simply resumes on the next run, and several instances
+ * can purge at the same time without waiting on each other's rows.
+ */
+@Component
+public class CategoryPurgeJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(CategoryPurgeJob.class);
+
+    @Autowired
+    CategoryRepository categoryRepository;
+
+    @Autowired
+    ShardDirectory shardDirectory;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Value("${expensetracker.categories.purge-chunk-size:5000}")
+    int chunkSize;
+
+    /**
+     * Purges the deleted categories of every shard.
+     */
+    @Scheduled(fixedDelayString = "${expensetracker.categories.purge-interval:60000}",
+            initialDelayString = "${expensetracker.categories.purge-interval:60000}")
+    public void purge() {
+        for (int shardId : shardDirectory.shardIds())
+            ShardContext.forShard(shardId, this::purgeShard);
+    }
+
+    /**
+     * Purges every deleted category of the current shard, chunk by chunk, then deletes the category rows left empty.
+     */
+    private void purgeShard() {
+        for (Category category : categoryRepository.findDeleted()) {
+            long purged = 0;
+            int chunk;
+            do {
+                chunk = transactionTemplate.execute(status -> categoryRepository.purgeTransactions(
+                        category.getUserId(), category.getCategoryId(), chunkSize));
+                purged += chunk;
+            } while (chunk == chunkSize);
+            boolean removed = categoryRepository.removePurged(category.getCategoryId());
+            logger.info("Purged {} transactions of deleted category {}{}", purged, category.getCategoryId(),
+                    removed ? ", category removed" : ", rows still locked by another purge");
+        }
+    }
+}
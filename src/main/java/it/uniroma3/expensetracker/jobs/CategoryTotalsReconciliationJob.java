@@ -0,0 +1,76 @@
+package it.uniroma3.expensetracker.jobs;
+
+import it.uniroma3.expensetracker.config.ShardContext;
+import it.uniroma3.expensetracker.repositories.CategoryRepository;
+import it.uniroma3.expensetracker.repositories.DataVersionRepository;
+import it.uniroma3.expensetracker.repositories.ShardDirectory;
+import it.uniroma3.expensetracker.services.CacheInvalidationBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+/**
+ * Scheduled job checking the per-category running totals against the sum of their transactions.
+ * The totals are maintained incrementally on every transaction write; this job detects any drift
+ * (e.g. rows changed outside the application) and, if enabled, repairs the drifted categories.
+ */
+@Component
+public class CategoryTotalsReconciliationJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(CategoryTotalsReconciliationJob.class);
+
+    @Autowired
+    CategoryRepository categoryRepository;
+
+    @Autowired
+    ShardDirectory shardDirectory;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    CacheInvalidationBus cacheInvalidationBus;
+
+    @Autowired
+    DataVersionRepository dataVersionRepository;
+
+    @Value("${expensetracker.totals.repair-drift:true}")
+    boolean repairDrift;
+
+    /**
+     * Reconciles the category totals of every shard.
+     */
+    @Scheduled(cron = "${expensetracker.totals.reconcile-cron:0 30 3 * * *}")
+    public void reconcile() {
+        for (int shardId : shardDirectory.shardIds())
+            ShardContext.forShard(shardId, this::reconcileShard);
+    }
+
+    /**
+     * Finds the drifted categories of the current shard and recomputes their totals,
+     * each in its own short transaction.
+     */
+    private void reconcileShard() {
+        List<Integer> drifted = categoryRepository.findCategoriesWithTotalDrift();
+        if (drifted.isEmpty()) {
+            logger.info("Category totals reconciled, no drift found");
+            return;
+        }
+        logger.warn("Category totals drifted for {} categories: {}", drifted.size(), drifted);
+        if (!repairDrift)
+            return;
+        for (Integer categoryId : drifted)
+            transactionTemplate.executeWithoutResult(status -> {
+                categoryRepository.recomputeTotal(categoryId);
+                dataVersionRepository.incrementByCategory(categoryId);
+            });
+        cacheInvalidationBus.clear();  // Only the category IDs are known; drift is rare enough to drop everything
+        logger.info("Category totals repaired for {} categories", drifted.size());
+    }
+}
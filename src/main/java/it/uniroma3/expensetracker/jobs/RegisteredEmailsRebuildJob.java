@@ -0,0 +1,35 @@
+package it.uniroma3.expensetracker.jobs;
+
+import it.uniroma3.expensetracker.services.RegisteredEmails;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled job building the filter of registered emails right after startup, then rebuilding it
+ * periodically. Registration keeps working, only with an extra query, while no filter is built.
+ */
+@Component
+public class RegisteredEmailsRebuildJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(RegisteredEmailsRebuildJob.class);
+
+    @Autowired
+    RegisteredEmails registeredEmails;
+
+    /**
+     * Rebuilds the filter of registered emails.
+     */
+    @Scheduled(fixedDelayString = "${expensetracker.users.email-filter.rebuild-interval-ms:3600000}", initialDelay = 0)
+    public void rebuild() {
+        long start = System.currentTimeMillis();
+        try {
+            registeredEmails.rebuild();
+            logger.info("Rebuilt the filter of registered emails in {} ms", System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            logger.warn("Could not rebuild the filter of registered emails", e);
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package it.uniroma3.expensetracker.jobs;
+
+import it.uniroma3.expensetracker.repositories.JournaledTransactionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Scheduled job applying the journaled transaction writes to the database, when the journal is enabled.
+ * Each run applies batches until the journal is drained or the database fails, in which case
+ * the writes stay in the journal for the next run.
+ */
+@Component
+@ConditionalOnProperty(name = "expensetracker.journal.enabled", havingValue = "true")
+public class TransactionJournalApplyJob {
+
+    @Autowired
+    JournaledTransactionRepository journaledTransactionRepository;
+
+    @Value("${expensetracker.journal.apply-batch-size:500}")
+    int batchSize;
+
+    /**
+     * Applies the pending journaled writes, batch by batch.
+     */
+    @Scheduled(fixedDelayString = "${expensetracker.journal.apply-interval-ms:50}",
+            initialDelayString = "${expensetracker.journal.apply-interval-ms:50}")
+    public void apply() {
+        while (journaledTransactionRepository.applyPending(batchSize) == batchSize) {
+            // A full batch was applied, more may be waiting
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package it.uniroma3.expensetracker.jobs;
+
+import it.uniroma3.expensetracker.config.ShardContext;
+import it.uniroma3.expensetracker.repositories.ShardDirectory;
+import it.uniroma3.expensetracker.repositories.TransactionPartitionRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+/**
+ * Scheduled job creating the monthly partitions of ET_TRANSACTIONS ahead of time.
+ * Transactions dated outside every partition, beyond the last one or in a past month such as
+ * imported history, land in the default partition; each run also creates the partitions of the
+ * months found there, which moves those rows into them.
+ */
+@Component
+public class TransactionPartitionJob {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransactionPartitionJob.class);
+
+    @Autowired
+    TransactionPartitionRepository transactionPartitionRepository;
+
+    @Autowired
+    ShardDirectory shardDirectory;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Value("${expensetracker.partitions.months-ahead:3}")
+    int monthsAhead;
+
+    /**
+     * Creates the future partitions, and those of the months held in the default partition,
+     * on every shard.
+     */
+    @Scheduled(cron = "${expensetracker.partitions.maintain-cron:0 15 0 * * *}")
+    public void createPartitions() {
+        for (int shardId : shardDirectory.shardIds())
+            ShardContext.forShard(shardId, this::createPartitionsOnShard);
+    }
+
+    /**
+     * Makes sure a partition exists on the current shard for the current month, the
+     * configured months ahead and the months of the rows in the default partition, each
+     * created in its own transaction.
+     */
+    private void createPartitionsOnShard() {
+        SortedSet<YearMonth> months = new TreeSet<>();
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        for (int i = 0; i <= monthsAhead; i++)
+            months.add(current.plusMonths(i));
+        try {
+            for (long monthStart : transactionPartitionRepository.findDefaultPartitionMonths())
+                months.add(YearMonth.from(Instant.ofEpochMilli(monthStart).atZone(ZoneOffset.UTC)));
+        } catch (Exception e) {
+            logger.error("Could not read the months held in the default transaction partition", e);
+        }
+        for (YearMonth month : months) {
+            String partition = partitionName(month);
+            try {
+                if (transactionPartitionRepository.exists(partition))
+                    continue;
+                transactionTemplate.executeWithoutResult(status -> transactionPartitionRepository.create(
+                        partition, startOf(month), startOf(month.plusMonths(1))));
+                logger.info("Created transaction partition {}", partition);
+            } catch (Exception e) {
+                logger.error("Could not create transaction partition {}", partition, e);
+            }
+        }
+    }
+
+    /**
+     * Gets the name of the partition of a month, e.g. ET_TRANSACTIONS_Y2024M01.
+     *
+     * @param month The month.
+     * @return The partition name.
+     */
+    static String partitionName(YearMonth month) {
+        return String.format("ET_TRANSACTIONS_Y%04dM%02d", month.getYear(), month.getMonthValue());
+    }
+
+    /**
+     * Gets the start of a month in milliseconds since epoch (UTC).
+     *
+     * @param month The month.
+     * @return The start of the month.
+     */
+    static long startOf(YearMonth month) {
+        return month.atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+    }
+}
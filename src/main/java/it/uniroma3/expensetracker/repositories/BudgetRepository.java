@@ -7,7 +7,7 @@ public interface BudgetRepository {
 
     Budget findByUserId(Integer userId) throws EtResourceNotFoundException;
 
-    Integer create(Integer userId, Double totalBudget) throws EtResourceNotFoundException;
+    Budget create(Integer userId, Double totalBudget) throws EtResourceNotFoundException;
 
-    void update(Integer userId, Double totalBudget) throws EtResourceNotFoundException;
+    Budget update(Integer userId, Double totalBudget) throws EtResourceNotFoundException;
 }
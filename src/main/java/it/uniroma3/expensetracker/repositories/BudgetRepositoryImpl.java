@@ -3,23 +3,26 @@ package it.uniroma3.expensetracker.repositories;
 import it.uniroma3.expensetracker.domain.Budget;
 import it.uniroma3.expensetracker.exceptions.EtResourceNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.stereotype.Repository;
 
-import java.sql.PreparedStatement;
-import java.sql.Statement;
-
 @Repository
 public class BudgetRepositoryImpl implements BudgetRepository {
 
     private static final String SQL_FIND_BY_USER_ID = "SELECT BUDGET_ID, USER_ID, TOTAL_BUDGET FROM ET_BUDGETS WHERE USER_ID = ?";
-    private static final String SQL_CREATE = "INSERT INTO ET_BUDGETS (BUDGET_ID, USER_ID, TOTAL_BUDGET) VALUES(NEXTVAL('ET_BUDGETS_SEQ'), ?, ?)";
-    private static final String SQL_UPDATE = "UPDATE ET_BUDGETS SET TOTAL_BUDGET = ? WHERE USER_ID = ?";
+    private static final String SQL_CREATE = "INSERT INTO ET_BUDGETS (BUDGET_ID, USER_ID, TOTAL_BUDGET) VALUES(?, ?, ?) " +
+            "RETURNING BUDGET_ID, USER_ID, TOTAL_BUDGET";
+    private static final String SQL_UPDATE = "UPDATE ET_BUDGETS SET TOTAL_BUDGET = ? WHERE USER_ID = ? " +
+            "RETURNING BUDGET_ID, USER_ID, TOTAL_BUDGET";
 
     @Autowired
     JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    IdAllocator idAllocator;
+
     @Override
     public Budget findByUserId(Integer userId) throws EtResourceNotFoundException {
         try {
@@ -30,24 +33,20 @@ public class BudgetRepositoryImpl implements BudgetRepository {
     }
 
     @Override
-    public Integer create(Integer userId, Double totalBudget) throws EtResourceNotFoundException {
+    public Budget create(Integer userId, Double totalBudget) throws EtResourceNotFoundException {
         try {
-            jdbcTemplate.update(connection -> {
-                PreparedStatement ps = connection.prepareStatement(SQL_CREATE, Statement.RETURN_GENERATED_KEYS);
-                ps.setInt(1, userId);
-                ps.setDouble(2, totalBudget);
-                return ps;
-            });
-            return userId;
+            return jdbcTemplate.queryForObject(SQL_CREATE, budgetRowMapper, idAllocator.nextId(IdAllocator.BUDGETS_SEQ), userId, totalBudget);
         } catch (Exception e) {
             throw new EtResourceNotFoundException("Invalid request");
         }
     }
 
     @Override
-    public void update(Integer userId, Double totalBudget) throws EtResourceNotFoundException {
+    public Budget update(Integer userId, Double totalBudget) throws EtResourceNotFoundException {
         try {
-            jdbcTemplate.update(SQL_UPDATE, new Object[]{totalBudget, userId});
+            return jdbcTemplate.queryForObject(SQL_UPDATE, budgetRowMapper, totalBudget, userId);
+        } catch (EmptyResultDataAccessException e) {
+            throw new EtResourceNotFoundException("Budget not found");
         } catch (Exception e) {
             throw new EtResourceNotFoundException("Invalid request");
         }
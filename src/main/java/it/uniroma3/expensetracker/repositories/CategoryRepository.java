@@ -37,10 +37,10 @@ public interface CategoryRepository {
      * @param userId The ID of the user for whom the category is to be created.
      * @param title The title of the new category.
      * @param description The description of the new category.
-     * @return The ID of the newly created category.
+     * @return The newly created category.
      * @throws EtBadRequestException If the request to create the category is invalid.
      */
-    Integer create(Integer userId, String title, String description) throws EtBadRequestException;
+    Category create(Integer userId, String title, String description) throws EtBadRequestException;
 
     /**
      * Updates an existing category for a given user.
@@ -57,6 +57,48 @@ public interface CategoryRepository {
      *
      * @param userId The ID of the user to whom the category belongs.
      * @param categoryId The ID of the category to be removed.
+     * @throws EtResourceNotFoundException If the category is not found.
+     */
+    void removeById(Integer userId, Integer categoryId) throws EtResourceNotFoundException;
+
+    /**
+     * Fetches the categories marked as deleted whose purge is not finished.
+     *
+     * @return The deleted categories.
+     */
+    List<Category> findDeleted();
+
+    /**
+     * Deletes one chunk of the transactions of a deleted category and records the progress.
+     * Must be called within a database transaction.
+     *
+     * @param userId The ID of the user to whom the category belongs.
+     * @param categoryId The ID of the deleted category.
+     * @param limit The maximum number of transactions to delete.
+     * @return The number of transactions deleted.
+     */
+    int purgeTransactions(Integer userId, Integer categoryId, int limit);
+
+    /**
+     * Deletes a deleted category's row once none of its transactions is left.
+     *
+     * @param categoryId The ID of the deleted category.
+     * @return Whether the row was deleted.
+     */
+    boolean removePurged(Integer categoryId);
+
+    /**
+     * Finds the categories whose running total no longer matches the sum of their transactions.
+     *
+     * @return The IDs of the drifted categories.
+     */
+    List<Integer> findCategoriesWithTotalDrift();
+
+    /**
+     * Recomputes the running total of a category from its transactions.
+     * Must be called within a database transaction.
+     *
+     * @param categoryId The ID of the category whose total is to be recomputed.
      */
-    void removeById(Integer userId, Integer categoryId);
+    void recomputeTotal(Integer categoryId);
 }
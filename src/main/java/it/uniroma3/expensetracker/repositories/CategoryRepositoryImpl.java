@@ -6,12 +6,8 @@ import it.uniroma3.expensetracker.exceptions.EtResourceNotFoundException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 
-import java.sql.PreparedStatement;
-import java.sql.Statement;
 import java.util.List;
 
 /**
@@ -22,24 +18,47 @@ import java.util.List;
 public class CategoryRepositoryImpl implements CategoryRepository {
 
     // SQL queries for the Category entity operations
-    private static final String SQL_FIND_ALL = "SELECT C.CATEGORY_ID, C.USER_ID, C.TITLE, C.DESCRIPTION, " +
-            "COALESCE(SUM(T.AMOUNT), 0) TOTAL_EXPENSE " +
-            "FROM ET_TRANSACTIONS T RIGHT OUTER JOIN ET_CATEGORIES C ON C.CATEGORY_ID = T.CATEGORY_ID " +
-            "WHERE C.USER_ID = ? GROUP BY C.CATEGORY_ID";
-    private static final String SQL_FIND_BY_ID = "SELECT C.CATEGORY_ID, C.USER_ID, C.TITLE, C.DESCRIPTION, " +
-            "COALESCE(SUM(T.AMOUNT), 0) TOTAL_EXPENSE " +
-            "FROM ET_TRANSACTIONS T RIGHT OUTER JOIN ET_CATEGORIES C ON C.CATEGORY_ID = T.CATEGORY_ID " +
-            "WHERE C.USER_ID = ? AND C.CATEGORY_ID = ? GROUP BY C.CATEGORY_ID";
-    private static final String SQL_CREATE = "INSERT INTO ET_CATEGORIES (CATEGORY_ID, USER_ID, TITLE, DESCRIPTION) VALUES(NEXTVAL('ET_CATEGORIES_SEQ'), ?, ?, ?)";
+    // The running total is maintained by TransactionRepositoryImpl on every transaction write,
+    // so reading a category costs the same whatever the number of its transactions
+    private static final String SQL_FIND_ALL = "SELECT CATEGORY_ID, USER_ID, TITLE, DESCRIPTION, TOTAL_EXPENSE " +
+            "FROM ET_CATEGORIES WHERE USER_ID = ? AND NOT DELETED";
+    private static final String SQL_FIND_BY_ID = "SELECT CATEGORY_ID, USER_ID, TITLE, DESCRIPTION, TOTAL_EXPENSE " +
+            "FROM ET_CATEGORIES WHERE USER_ID = ? AND CATEGORY_ID = ? AND NOT DELETED";
+    private static final String SQL_CREATE = "INSERT INTO ET_CATEGORIES (CATEGORY_ID, USER_ID, TITLE, DESCRIPTION) VALUES(?, ?, ?, ?) " +
+            "RETURNING CATEGORY_ID, USER_ID, TITLE, DESCRIPTION, TOTAL_EXPENSE";
     private static final String SQL_UPDATE = "UPDATE ET_CATEGORIES SET TITLE = ?, DESCRIPTION = ? " +
-            "WHERE USER_ID = ? AND CATEGORY_ID = ?";
-    private static final String SQL_DELETE_CATEGORY = "DELETE FROM ET_CATEGORIES WHERE USER_ID = ? AND CATEGORY_ID = ?";
-    private static final String SQL_DELETE_ALL_TRANSACTIONS = "DELETE FROM ET_TRANSACTIONS WHERE CATEGORY_ID = ?";
+            "WHERE USER_ID = ? AND CATEGORY_ID = ? AND NOT DELETED";
+    // Removal only marks the category; its transactions are purged in chunks by CategoryPurgeJob
+    private static final String SQL_MARK_DELETED = "UPDATE ET_CATEGORIES SET DELETED = TRUE " +
+            "WHERE USER_ID = ? AND CATEGORY_ID = ? AND NOT DELETED";
+    private static final String SQL_FIND_DELETED = "SELECT CATEGORY_ID, USER_ID, TITLE, DESCRIPTION, TOTAL_EXPENSE " +
+            "FROM ET_CATEGORIES WHERE DELETED ORDER BY CATEGORY_ID";
+    // Deletes a chunk of the category's transactions, skipping rows another purger has locked,
+    // and records the progress in the same database transaction
+    private static final String SQL_PURGE_CHUNK = "WITH P AS (DELETE FROM ET_TRANSACTIONS WHERE TRANSACTION_ID IN " +
+            "(SELECT TRANSACTION_ID FROM ET_TRANSACTIONS WHERE USER_ID = ? AND CATEGORY_ID = ? LIMIT ? FOR UPDATE SKIP LOCKED) " +
+            "RETURNING 1), N AS (SELECT COUNT(*) PURGED FROM P), " +
+            "U AS (UPDATE ET_CATEGORIES SET PURGED_TRANSACTIONS = PURGED_TRANSACTIONS + N.PURGED FROM N " +
+            "WHERE CATEGORY_ID = ? AND N.PURGED > 0) " +
+            "SELECT PURGED FROM N";
+    private static final String SQL_DELETE_PURGED_CATEGORY = "DELETE FROM ET_CATEGORIES WHERE CATEGORY_ID = ? AND DELETED " +
+            "AND NOT EXISTS (SELECT 1 FROM ET_TRANSACTIONS WHERE USER_ID = ET_CATEGORIES.USER_ID AND CATEGORY_ID = ET_CATEGORIES.CATEGORY_ID)";
+    private static final String SQL_DELETE_DAILY_ROLLUPS = "DELETE FROM ET_SPENDING_DAILY WHERE USER_ID = ? AND CATEGORY_ID = ?";
+    private static final String SQL_DELETE_MONTHLY_ROLLUPS = "DELETE FROM ET_SPENDING_MONTHLY WHERE USER_ID = ? AND CATEGORY_ID = ?";
+    private static final String SQL_FIND_TOTAL_DRIFT = "SELECT C.CATEGORY_ID FROM ET_CATEGORIES C " +
+            "LEFT JOIN (SELECT CATEGORY_ID, SUM(AMOUNT) TOTAL FROM ET_TRANSACTIONS GROUP BY CATEGORY_ID) S ON S.CATEGORY_ID = C.CATEGORY_ID " +
+            "WHERE NOT C.DELETED AND ABS(C.TOTAL_EXPENSE - COALESCE(S.TOTAL, 0)) > 0.005";
+    private static final String SQL_LOCK_CATEGORY = "SELECT CATEGORY_ID FROM ET_CATEGORIES WHERE CATEGORY_ID = ? FOR UPDATE";
+    private static final String SQL_RECOMPUTE_TOTAL = "UPDATE ET_CATEGORIES SET TOTAL_EXPENSE = " +
+            "(SELECT COALESCE(SUM(AMOUNT), 0) FROM ET_TRANSACTIONS WHERE CATEGORY_ID = ?) WHERE CATEGORY_ID = ?";
 
     // JdbcTemplate for interacting with the database
     @Autowired
     JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    IdAllocator idAllocator;
+
     /**
      * Fetches all categories for a given user.
      *
@@ -75,21 +94,13 @@ public class CategoryRepositoryImpl implements CategoryRepository {
      * @param userId The ID of the user for whom the category is to be created.
      * @param title The title of the new category.
      * @param description The description of the new category.
-     * @return The ID of the newly created category.
+     * @return The newly created category, as returned by the insert itself.
      * @throws EtBadRequestException If the request to create the category is invalid.
      */
     @Override
-    public Integer create(Integer userId, String title, String description) throws EtBadRequestException {
+    public Category create(Integer userId, String title, String description) throws EtBadRequestException {
         try {
-            KeyHolder keyHolder = new GeneratedKeyHolder();
-            jdbcTemplate.update(connection -> {
-                PreparedStatement ps = connection.prepareStatement(SQL_CREATE, Statement.RETURN_GENERATED_KEYS);
-                ps.setInt(1, userId);
-                ps.setString(2, title);
-                ps.setString(3, description);
-                return ps;
-            }, keyHolder);
-            return (Integer) keyHolder.getKeys().get("CATEGORY_ID");
+            return jdbcTemplate.queryForObject(SQL_CREATE, categoryRowMapper, idAllocator.nextId(IdAllocator.CATEGORIES_SEQ), userId, title, description);
         } catch (Exception e) {
             throw new EtBadRequestException("Invalid request");
         }
@@ -114,23 +125,79 @@ public class CategoryRepositoryImpl implements CategoryRepository {
 
     /**
      * Removes a category by user ID and category ID.
+     * The category is only marked as deleted, which hides it and its transactions from every read
+     * at once; its spending rollups are small and dropped right away, while its transactions are
+     * purged in the background by CategoryPurgeJob.
      *
      * @param userId The ID of the user to whom the category belongs.
      * @param categoryId The ID of the category to be removed.
+     * @throws EtResourceNotFoundException If the category is not found.
+     */
+    @Override
+    public void removeById(Integer userId, Integer categoryId) throws EtResourceNotFoundException {
+        int count = jdbcTemplate.update(SQL_MARK_DELETED, new Object[]{userId, categoryId});
+        if (count == 0)
+            throw new EtResourceNotFoundException("Category not found");
+        jdbcTemplate.update(SQL_DELETE_DAILY_ROLLUPS, new Object[]{userId, categoryId});
+        jdbcTemplate.update(SQL_DELETE_MONTHLY_ROLLUPS, new Object[]{userId, categoryId});
+    }
+
+    /**
+     * Fetches the categories marked as deleted whose purge is not finished.
+     *
+     * @return The deleted categories, in ID order.
+     */
+    @Override
+    public List<Category> findDeleted() {
+        return jdbcTemplate.query(SQL_FIND_DELETED, categoryRowMapper);
+    }
+
+    /**
+     * Deletes one chunk of the transactions of a deleted category and records the progress.
+     * Rows locked by a concurrent purge of the same category are skipped rather than waited for.
+     *
+     * @param userId The ID of the user to whom the category belongs.
+     * @param categoryId The ID of the deleted category.
+     * @param limit The maximum number of transactions to delete.
+     * @return The number of transactions deleted.
+     */
+    @Override
+    public int purgeTransactions(Integer userId, Integer categoryId, int limit) {
+        return jdbcTemplate.queryForObject(SQL_PURGE_CHUNK, Integer.class, userId, categoryId, limit, categoryId);
+    }
+
+    /**
+     * Deletes a deleted category's row once none of its transactions is left.
+     *
+     * @param categoryId The ID of the deleted category.
+     * @return Whether the row was deleted.
      */
     @Override
-    public void removeById(Integer userId, Integer categoryId) {
-        this.removeAllCatTransactions(categoryId);
-        jdbcTemplate.update(SQL_DELETE_CATEGORY, new Object[]{userId, categoryId});
+    public boolean removePurged(Integer categoryId) {
+        return jdbcTemplate.update(SQL_DELETE_PURGED_CATEGORY, categoryId) > 0;
     }
 
     /**
-     * Removes all transactions associated with a given category.
+     * Finds the categories whose running total no longer matches the sum of their transactions.
      *
-     * @param categoryId The ID of the category whose transactions are to be removed.
+     * @return The IDs of the drifted categories.
      */
-    private void removeAllCatTransactions(Integer categoryId) {
-        jdbcTemplate.update(SQL_DELETE_ALL_TRANSACTIONS, new Object[]{categoryId});
+    @Override
+    public List<Integer> findCategoriesWithTotalDrift() {
+        return jdbcTemplate.queryForList(SQL_FIND_TOTAL_DRIFT, Integer.class);
+    }
+
+    /**
+     * Recomputes the running total of a category from its transactions.
+     * The category row is locked first, so the sum is taken after every concurrent
+     * transaction write to the category has either committed or rolled back.
+     *
+     * @param categoryId The ID of the category whose total is to be recomputed.
+     */
+    @Override
+    public void recomputeTotal(Integer categoryId) {
+        jdbcTemplate.queryForList(SQL_LOCK_CATEGORY, Integer.class, categoryId);
+        jdbcTemplate.update(SQL_RECOMPUTE_TOTAL, categoryId, categoryId);
     }
 
     // RowMapper for mapping result set rows to Category objects
@@ -0,0 +1,47 @@
+package it.uniroma3.expensetracker.repositories;
+
+import it.uniroma3.expensetracker.exceptions.EtServiceUnavailableException;
+
+/**
+ * Repository interface for the version of each user's data, which every write increments.
+ */
+public interface DataVersionRepository {
+
+    /**
+     * Fetches the version of a user's data.
+     *
+     * @param userId The ID of the user.
+     * @return The version, 0 if the user's data was never written.
+     */
+    long findByUserId(Integer userId);
+
+    /**
+     * Increments the version of a user's data, locking it until the current transaction ends.
+     *
+     * @param userId The ID of the user.
+     * @throws EtServiceUnavailableException If the user's writes are fenced on this shard.
+     */
+    void increment(Integer userId) throws EtServiceUnavailableException;
+
+    /**
+     * Increments the version of the data of the user owning a category.
+     *
+     * @param categoryId The ID of the category.
+     */
+    void incrementByCategory(Integer categoryId);
+
+    /**
+     * Fences a user's writes on the current shard: the increments of later write transactions
+     * fail. Waits for the write transactions that already incremented the version to end.
+     *
+     * @param userId The ID of the user.
+     */
+    void fence(Integer userId);
+
+    /**
+     * Accepts a user's writes on the current shard again.
+     *
+     * @param userId The ID of the user.
+     */
+    void unfence(Integer userId);
+}
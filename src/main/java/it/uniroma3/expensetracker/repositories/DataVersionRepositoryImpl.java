@@ -0,0 +1,61 @@
+package it.uniroma3.expensetracker.repositories;
+
+import it.uniroma3.expensetracker.exceptions.EtServiceUnavailableException;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Implementation of the DataVersionRepository interface.
+ * An increment locks the user's version row until the database transaction commits, so the
+ * writes of a user commit one after the other, each with its own version. A fenced row is
+ * not incremented, which makes the write fail; a fence set while a write holds the lock waits
+ * for it, and the write's increment, if still to come, sees the fence.
+ */
+@Repository
+public class DataVersionRepositoryImpl implements DataVersionRepository {
+
+    private static final String SQL_FIND_BY_USER_ID = "SELECT VERSION FROM ET_DATA_VERSIONS WHERE USER_ID = ?";
+    private static final String SQL_INCREMENT = "INSERT INTO ET_DATA_VERSIONS (USER_ID, VERSION) VALUES(?, 1) " +
+            "ON CONFLICT (USER_ID) DO UPDATE SET VERSION = ET_DATA_VERSIONS.VERSION + 1 WHERE NOT ET_DATA_VERSIONS.FENCED";
+    // Not fenced: it goes with recomputed category totals, which the next reconciliation repairs if a move loses them
+    private static final String SQL_INCREMENT_BY_CATEGORY = "INSERT INTO ET_DATA_VERSIONS (USER_ID, VERSION) " +
+            "SELECT USER_ID, 1 FROM ET_CATEGORIES WHERE CATEGORY_ID = ? " +
+            "ON CONFLICT (USER_ID) DO UPDATE SET VERSION = ET_DATA_VERSIONS.VERSION + 1";
+    private static final String SQL_FENCE = "INSERT INTO ET_DATA_VERSIONS (USER_ID, VERSION, FENCED) VALUES(?, 0, TRUE) " +
+            "ON CONFLICT (USER_ID) DO UPDATE SET FENCED = TRUE";
+    private static final String SQL_UNFENCE = "UPDATE ET_DATA_VERSIONS SET FENCED = FALSE WHERE USER_ID = ?";
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Override
+    public long findByUserId(Integer userId) {
+        List<Long> versions = jdbcTemplate.queryForList(SQL_FIND_BY_USER_ID, Long.class, userId);
+        return versions.isEmpty() ? 0 : versions.get(0);
+    }
+
+    @Override
+    public void increment(Integer userId) throws EtServiceUnavailableException {
+        if (jdbcTemplate.update(SQL_INCREMENT, userId) == 0)
+            throw new EtServiceUnavailableException("Account maintenance in progress, retry shortly");
+    }
+
+    @Override
+    public void incrementByCategory(Integer categoryId) {
+        jdbcTemplate.update(SQL_INCREMENT_BY_CATEGORY, categoryId);
+    }
+
+    @Override
+    public void fence(Integer userId) {
+        jdbcTemplate.update(SQL_FENCE, userId);
+    }
+
+    @Override
+    public void unfence(Integer userId) {
+        jdbcTemplate.update(SQL_UNFENCE, userId);
+    }
+}
@@ -0,0 +1,39 @@
+package it.uniroma3.expensetracker.repositories;
+
+import java.util.List;
+
+/**
+ * This interface defines the contract for IdAllocator.
+ * It hands out primary keys drawn from the database sequences without a round trip per key.
+ */
+public interface IdAllocator {
+
+    /** Sequence of the ET_TRANSACTIONS primary keys. */
+    String TRANSACTIONS_SEQ = "ET_TRANSACTIONS_SEQ";
+
+    /** Sequence of the ET_CATEGORIES primary keys. */
+    String CATEGORIES_SEQ = "ET_CATEGORIES_SEQ";
+
+    /** Sequence of the ET_USERS primary keys. */
+    String USERS_SEQ = "ET_USERS_SEQ";
+
+    /** Sequence of the ET_BUDGETS primary keys. */
+    String BUDGETS_SEQ = "ET_BUDGETS_SEQ";
+
+    /**
+     * Allocates one ID from a sequence.
+     *
+     * @param sequence The name of the sequence.
+     * @return An ID never handed out before, by this or any other instance of the application.
+     */
+    Integer nextId(String sequence);
+
+    /**
+     * Allocates many IDs from a sequence at once.
+     *
+     * @param sequence The name of the sequence.
+     * @param count The number of IDs to allocate.
+     * @return The allocated IDs, not necessarily contiguous.
+     */
+    List<Integer> nextIds(String sequence, int count);
+}
@@ -0,0 +1,212 @@
+package it.uniroma3.expensetracker.repositories;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Implementation of the IdAllocator interface using pooled hi/lo allocation.
+ * Each sequence is incremented by the block size, so a single NEXTVAL returning {@code v}
+ * reserves the whole block {@code (v - increment, v]} for this instance. IDs are then handed
+ * out from memory with an atomic increment, and the database is only asked for a new block
+ * once the current one is exhausted. Since the sequence itself never hands the same block
+ * to two callers, IDs stay unique across any number of application instances.
+ * <p>
+ * The increment is part of the schema (migration 005): it is only checked against
+ * {@code expensetracker.ids.block-size} at startup, and a mismatch stops the application
+ * rather than have instances with different block sizes fight over it. Each sequence is
+ * refilled under its own lock, so a slow refill only holds up the IDs of its own table.
+ */
+@Repository
+public class IdAllocatorImpl implements IdAllocator, InitializingBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(IdAllocatorImpl.class);
+
+    // The increment is read in the same database transaction as NEXTVAL: NEXTVAL holds a lock
+    // on the sequence that ALTER SEQUENCE waits for, so the increment read is the one NEXTVAL used
+    private static final String SQL_NEXT_BLOCK = "SELECT NEXTVAL(?::REGCLASS)";
+    private static final String SQL_NEXT_BLOCKS = "SELECT NEXTVAL(?::REGCLASS) FROM GENERATE_SERIES(1, ?)";
+    private static final String SQL_INCREMENT = "SELECT SEQINCREMENT FROM PG_SEQUENCE WHERE SEQRELID = ?::REGCLASS";
+
+    // The sequences live on shard 0; blocks are reserved there, outside of the caller's transaction
+    @Autowired
+    @Qualifier("directoryJdbcTemplate")
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    @Qualifier("directoryTransactionTemplate")
+    TransactionTemplate transactionTemplate;
+
+    @Value("${expensetracker.ids.block-size:1000}")
+    int blockSize;
+
+    // Current block of each sequence, replaced as a whole when exhausted
+    private final Map<String, Block> blocks = new ConcurrentHashMap<>();
+
+    // Lock of each sequence, held while its current block is replaced
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+
+    // Sequences whose increment has been checked against the block size
+    private final Map<String, Boolean> verified = new ConcurrentHashMap<>();
+
+    /**
+     * Checks the increment of every sequence against the block size, failing the startup on a mismatch.
+     * If the database cannot be reached yet, each sequence is checked on its first use instead.
+     */
+    @Override
+    public void afterPropertiesSet() {
+        try {
+            for (String sequence : Arrays.asList(TRANSACTIONS_SEQ, CATEGORIES_SEQ, USERS_SEQ, BUDGETS_SEQ))
+                verifyIncrement(sequence);
+        } catch (DataAccessResourceFailureException e) {
+            logger.warn("Could not check the sequence increments at startup, checking them on first use: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Allocates one ID from a sequence, only reaching the database when the current block is exhausted.
+     *
+     * @param sequence The name of the sequence.
+     * @return An ID never handed out before, by this or any other instance of the application.
+     */
+    @Override
+    public Integer nextId(String sequence) {
+        while (true) {
+            Block block = blocks.get(sequence);
+            if (block != null) {
+                long id = block.next.incrementAndGet();
+                if (id <= block.last)
+                    return (int) id;
+            }
+            refill(sequence, block);
+        }
+    }
+
+    /**
+     * Allocates many IDs from a sequence at once.
+     * The current block is drained first; the whole blocks still needed are then reserved
+     * with a single query, and the remainder is taken from a fresh current block.
+     *
+     * @param sequence The name of the sequence.
+     * @param count The number of IDs to allocate.
+     * @return The allocated IDs, not necessarily contiguous.
+     */
+    @Override
+    public List<Integer> nextIds(String sequence, int count) {
+        List<Integer> ids = new ArrayList<>(count);
+        Block block = blocks.get(sequence);
+        if (block != null)
+            block.claim(count, ids);
+        if (count - ids.size() >= blockSize) {
+            List<long[]> reserved = reserveBlocks(sequence, (count - ids.size()) / blockSize);
+            for (long[] range : reserved)
+                for (long id = range[0]; id <= range[1]; id++)
+                    ids.add((int) id);
+        }
+        while (ids.size() < count) {
+            block = blocks.get(sequence);
+            if (block == null || !block.claim(count - ids.size(), ids))
+                refill(sequence, block);
+        }
+        return ids;
+    }
+
+    /**
+     * Replaces the exhausted block of a sequence, unless another thread already did.
+     *
+     * @param sequence The name of the sequence.
+     * @param exhausted The block found exhausted, or null if the sequence had none yet.
+     */
+    private void refill(String sequence, Block exhausted) {
+        synchronized (locks.computeIfAbsent(sequence, key -> new Object())) {
+            if (blocks.get(sequence) != exhausted)
+                return;
+            long[] range = reserveBlocks(sequence, 1).get(0);
+            blocks.put(sequence, new Block(range[0], range[1]));
+        }
+    }
+
+    /**
+     * Reserves blocks of IDs from the database.
+     *
+     * @param sequence The name of the sequence.
+     * @param count The number of blocks to reserve.
+     * @return The reserved blocks, each as its first and last ID, inclusive.
+     */
+    private List<long[]> reserveBlocks(String sequence, int count) {
+        return transactionTemplate.execute(status -> {
+            verifyIncrement(sequence);
+            List<Long> lasts = count == 1
+                    ? jdbcTemplate.queryForList(SQL_NEXT_BLOCK, Long.class, sequence)
+                    : jdbcTemplate.queryForList(SQL_NEXT_BLOCKS, Long.class, sequence, count);
+            long increment = jdbcTemplate.queryForObject(SQL_INCREMENT, Long.class, sequence);
+            List<long[]> ranges = new ArrayList<>(lasts.size());
+            for (long last : lasts)  // The first NEXTVAL of a sequence returns its start, 1: nothing lies below it
+                ranges.add(new long[]{Math.max(last - increment + 1, 1), last});
+            return ranges;
+        });
+    }
+
+    /**
+     * Checks that the increment of a sequence is the configured block size, the first time
+     * this instance uses the sequence. Uniqueness does not depend on it, since every block is
+     * sized by the increment actually in force, but a mismatch means the schema and the
+     * configuration disagree on the block size.
+     *
+     * @param sequence The name of the sequence.
+     * @throws IllegalStateException If the increment differs from the block size.
+     */
+    private void verifyIncrement(String sequence) {
+        if (verified.containsKey(sequence))
+            return;
+        long increment = jdbcTemplate.queryForObject(SQL_INCREMENT, Long.class, sequence);
+        if (increment != blockSize)
+            throw new IllegalStateException("Sequence " + sequence + " is incremented by " + increment
+                    + " but expensetracker.ids.block-size is " + blockSize);
+        verified.put(sequence, Boolean.TRUE);
+    }
+
+    /**
+     * A block of IDs reserved by this instance, handed out with an atomic counter.
+     */
+    private static class Block {
+
+        private final AtomicLong next;  // Last ID handed out from the block
+        private final long last;        // Last ID of the block, inclusive
+
+        private Block(long first, long last) {
+            this.next = new AtomicLong(first - 1);
+            this.last = last;
+        }
+
+        /**
+         * Claims up to {@code count} IDs from the block.
+         *
+         * @param count The number of IDs wanted.
+         * @param ids The list the claimed IDs are added to.
+         * @return Whether any ID was claimed.
+         */
+        private boolean claim(int count, List<Integer> ids) {
+            long first = next.getAndAdd(count) + 1;
+            if (first > last)
+                return false;
+            for (long id = first; id <= Math.min(first + count - 1, last); id++)
+                ids.add((int) id);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package it.uniroma3.expensetracker.repositories;
+
+import it.uniroma3.expensetracker.config.ShardContext;
+import it.uniroma3.expensetracker.domain.Transaction;
+import it.uniroma3.expensetracker.domain.TransactionCursor;
+import it.uniroma3.expensetracker.domain.TransactionFilter;
+import it.uniroma3.expensetracker.domain.TransactionSearchCursor;
+import it.uniroma3.expensetracker.domain.TransactionSearchHit;
+import it.uniroma3.expensetracker.exceptions.EtBadRequestException;
+import it.uniroma3.expensetracker.exceptions.EtResourceNotFoundException;
+import it.uniroma3.expensetracker.services.CacheInvalidationBus;
+import it.uniroma3.expensetracker.services.CategoryCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * TransactionRepository acknowledging single creates, updates and deletes once they are
+ * appended to a local {@link TransactionJournal}, and applying them to the database in the
+ * background, in journal order. Enabled with {@code expensetracker.journal.enabled=true}.
+ * <p>
+ * The latest unapplied write of each transaction is kept in memory, per user, and laid over
+ * what the database returns, so the user reads their own writes before they are applied.
+ * The overlay is taken before the database is read: a write applied in between is then seen
+ * in one or the other. Search results leave out unapplied creates, which have no rank yet.
+ * Only reads of transactions are overlaid, along with the reports computed from them: the
+ * categories' running totals and the spending rollups, and so the timeseries report, only
+ * reflect a write once it is applied, normally within {@code expensetracker.journal.apply-interval-ms}.
+ * <p>
+ * Before a write is journaled, its fields are checked against the columns they are stored in,
+ * and the category of a create, through the category cache, and the transaction of an update
+ * or delete, overlay included, are looked up for the user, so that writes the database would
+ * reject, or to missing or other users' data, are refused rather than acknowledged. A change in
+ * between, such as the category being deleted, is only found when the write is applied: the
+ * write is then dropped with a warning. Bulk creates and imports bypass the journal. Applying
+ * a write twice, after a crash between its commit and the journal's record of it, has no effect.
+ * <p>
+ * The journal is local to the instance: every instance must keep its journal directory,
+ * and drain it before the directory is discarded.
+ */
+@Repository
+@Primary
+@ConditionalOnProperty(name = "expensetracker.journal.enabled", havingValue = "true")
+public class JournaledTransactionRepository implements TransactionRepository, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(JournaledTransactionRepository.class);
+
+    // How often a caller waiting for a user's writes to be applied checks again
+    private static final long AWAIT_POLL_MS = 50;
+
+    @Autowired
+    TransactionRepositoryImpl database;
+
+    @Autowired
+    IdAllocator idAllocator;
+
+    @Autowired
+    ShardDirectory shardDirectory;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    // Resolved on first use: the bus itself reaches this repository through the ledger analytics
+    @Autowired
+    @Lazy
+    CacheInvalidationBus cacheInvalidationBus;
+
+    @Autowired
+    DataVersionRepository dataVersionRepository;
+
+    @Autowired
+    CategoryCache categoryCache;
+
+    private final TransactionJournal journal;
+
+    // Latest unapplied journal entry of each transaction, per user
+    private final Map<Integer, Map<Integer, TransactionJournal.Entry>> overlay = new ConcurrentHashMap<>();
+
+    /**
+     * Opens the journal, laying the writes not applied before the last shutdown over the database.
+     *
+     * @param directory   the directory of the journal segments
+     * @param segmentSize the size of each segment file, in bytes
+     * @param fsync       whether each write is forced to disk before it is acknowledged
+     * @throws IOException if the journal cannot be read
+     */
+    public JournaledTransactionRepository(@Value("${expensetracker.journal.directory:journal}") String directory,
+                                          @Value("${expensetracker.journal.segment-size:67108864}") int segmentSize,
+                                          @Value("${expensetracker.journal.fsync:true}") boolean fsync) throws IOException {
+        journal = new TransactionJournal(Paths.get(directory), segmentSize, fsync);
+        List<TransactionJournal.Entry> replayed = journal.pending(Integer.MAX_VALUE);
+        replayed.forEach(this::addToOverlay);
+        if (!replayed.isEmpty())
+            logger.info("Replaying {} journaled transaction writes", replayed.size());
+    }
+
+    @Override
+    public List<Transaction> findAll(Integer userId, Integer categoryId) {
+        Map<Integer, TransactionJournal.Entry> pending = pendingOf(userId);
+        return merge(database.findAll(userId, categoryId), pending,
+                transaction -> transaction.getCategoryId().equals(categoryId));
+    }
+
+    /**
+     * Fetches one page of a user's transactions, newest first, including their unapplied writes.
+     * The database is asked for as many more rows as the user has unapplied writes, which may
+     * hide as many of its rows, so the page is still full when more transactions exist.
+     */
+    @Override
+    public List<Transaction> findPage(Integer userId, TransactionFilter filter, TransactionCursor after, int limit) {
+        Map<Integer, TransactionJournal.Entry> pending = pendingOf(userId);
+        List<Transaction> transactions = merge(database.findPage(userId, filter, after, limit + pending.size()), pending,
+                transaction -> filter.matches(transaction) && (after == null || isBefore(transaction, after)));
+        transactions.sort(Comparator.comparing(Transaction::getTransactionDate).thenComparing(Transaction::getTransactionId).reversed());
+        return transactions.size() > limit ? new ArrayList<>(transactions.subList(0, limit)) : transactions;
+    }
+
+    @Override
+    public List<TransactionSearchHit> search(Integer userId, String query, TransactionFilter filter, TransactionSearchCursor after, int limit) {
+        Map<Integer, TransactionJournal.Entry> pending = pendingOf(userId);
+        List<TransactionSearchHit> hits = new ArrayList<>();
+        for (TransactionSearchHit hit : database.search(userId, query, filter, after, limit + pending.size()))
+            if (!pending.containsKey(hit.getTransaction().getTransactionId()) && hits.size() < limit)
+                hits.add(hit);
+        return hits;
+    }
+
+    /**
+     * Streams a user's transactions; their unapplied writes come after those read from the database.
+     */
+    @Override
+    public void streamAllByUser(Integer userId, Consumer<Transaction> action) {
+        Map<Integer, TransactionJournal.Entry> pending = pendingOf(userId);
+        database.streamAllByUser(userId, transaction -> {
+            if (!pending.containsKey(transaction.getTransactionId()))
+                action.accept(transaction);
+        });
+        for (TransactionJournal.Entry entry : pending.values())
+            if (entry.getType() != TransactionJournal.DELETE)
+                action.accept(copy(entry.getTransaction()));
+    }
+
+    @Override
+    public Transaction findById(Integer userId, Integer categoryId, Integer transactionId) throws EtResourceNotFoundException {
+        TransactionJournal.Entry entry = pendingOf(userId).get(transactionId);
+        if (entry == null)
+            return database.findById(userId, categoryId, transactionId);
+        if (entry.getType() == TransactionJournal.DELETE || !entry.getTransaction().getCategoryId().equals(categoryId))
+            throw new EtResourceNotFoundException("Transaction not found");
+        return copy(entry.getTransaction());
+    }
+
+    @Override
+    public Transaction create(Integer userId, Integer categoryId, Double amount, String note, Long transactionDate) throws EtBadRequestException {
+        if (categoryId == null)
+            throw new EtBadRequestException("Invalid request");
+        Transaction.checkFields(amount, note, transactionDate);
+        try {
+            categoryCache.fetchById(userId, categoryId);
+        } catch (EtResourceNotFoundException e) {
+            throw new EtBadRequestException("Invalid request");
+        }
+        Transaction transaction = new Transaction(idAllocator.nextId(IdAllocator.TRANSACTIONS_SEQ), categoryId, userId, amount, note, transactionDate);
+        journal.append(TransactionJournal.CREATE, transaction, this::addToOverlay);
+        return copy(transaction);
+    }
+
+    @Override
+    public List<Transaction> createEach(List<Transaction> transactions) throws EtBadRequestException {
+        List<Transaction> created = new ArrayList<>(transactions.size());
+        for (Transaction transaction : transactions)
+            created.add(create(transaction.getUserId(), transaction.getCategoryId(), transaction.getAmount(),
+                    transaction.getNote(), transaction.getTransactionDate()));
+        return created;
+    }
+
+    @Override
+    public List<Integer> createBatch(List<Transaction> transactions) throws EtBadRequestException {
+        return database.createBatch(transactions);
+    }
+
+    @Override
+    public long copyIn(List<Transaction> transactions) throws EtBadRequestException {
+        return database.copyIn(transactions);
+    }
+
+    @Override
+    public void update(Integer userId, Integer categoryId, Integer transactionId, Transaction transaction) throws EtBadRequestException {
+        Transaction.checkFields(transaction.getAmount(), transaction.getNote(), transaction.getTransactionDate());
+        try {
+            findById(userId, categoryId, transactionId);
+        } catch (EtResourceNotFoundException e) {
+            throw new EtBadRequestException("Invalid request");
+        }
+        journal.append(TransactionJournal.UPDATE, new Transaction(transactionId, categoryId, userId, transaction.getAmount(),
+                transaction.getNote(), transaction.getTransactionDate()), this::addToOverlay);
+    }
+
+    @Override
+    public void removeById(Integer userId, Integer categoryId, Integer transactionId) throws EtResourceNotFoundException {
+        findById(userId, categoryId, transactionId);
+        journal.append(TransactionJournal.DELETE, new Transaction(transactionId, categoryId, userId, null, null, null), this::addToOverlay);
+    }
+
+    /**
+     * Applies the oldest journaled writes to the database, in journal order. Consecutive writes
+     * of the same shard are applied in one database transaction; if it fails, they are applied
+     * one by one, and those the database rejects are dropped. A transient failure, such as the
+     * database being unreachable, stops the run; the remaining writes are retried on the next one.
+     *
+     * @param max The maximum number of writes applied.
+     * @return The number of writes applied or dropped.
+     */
+    public int applyPending(int max) {
+        List<TransactionJournal.Entry> entries = journal.pending(max);
+        int done = 0;
+        while (done < entries.size()) {
+            int shardId = shardDirectory.shardOf(entries.get(done).getTransaction().getUserId());
+            int end = done + 1;
+            while (end < entries.size() && shardDirectory.shardOf(entries.get(end).getTransaction().getUserId()) == shardId)
+                end++;
+            List<TransactionJournal.Entry> group = entries.subList(done, end);
+            try {
+                applyInTransaction(shardId, group);
+                applied(group);
+            } catch (RuntimeException e) {
+                if (isTransient(e)) {
+                    logger.warn("Could not apply journaled transaction writes, will retry: {}", e.getMessage());
+                    return done;
+                }
+                for (TransactionJournal.Entry entry : group) {
+                    try {
+                        applyInTransaction(shardId, Collections.singletonList(entry));
+                    } catch (RuntimeException failure) {
+                        if (isTransient(failure)) {
+                            logger.warn("Could not apply journaled transaction writes, will retry: {}", failure.getMessage());
+                            return done;
+                        }
+                        logger.error("Dropping journaled write of transaction {} rejected by the database",
+                                entry.getTransaction().getTransactionId(), failure);
+                        Transaction dropped = entry.getTransaction();  // What the user reads changes back
+                        ShardContext.forUsers(shardId, Collections.singleton(dropped.getUserId()), () ->
+                                transactionTemplate.executeWithoutResult(status -> {
+                                    dataVersionRepository.increment(dropped.getUserId());
+                                    cacheInvalidationBus.transactionsChanged(dropped.getUserId(), dropped.getCategoryId());
+                                }));
+                    }
+                    applied(Collections.singletonList(entry));
+                    done++;
+                }
+                continue;
+            }
+            done = end;
+        }
+        return done;
+    }
+
+    /**
+     * Waits until every journaled write of a user is applied, such as before moving the user to another shard.
+     *
+     * @param userId The ID of the user.
+     * @param timeoutMs How long to wait at most, in milliseconds.
+     * @throws IllegalStateException If the writes are not applied in time.
+     */
+    public void awaitApplied(Integer userId, long timeoutMs) {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!pendingOf(userId).isEmpty()) {
+            if (System.currentTimeMillis() > deadline)
+                throw new IllegalStateException("Journaled writes of user " + userId + " not applied in time");
+            try {
+                Thread.sleep(AWAIT_POLL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for journaled writes", e);
+            }
+        }
+    }
+
+    /**
+     * Forces the journal to disk and closes it.
+     *
+     * @throws IOException If the journal cannot be closed.
+     */
+    @Override
+    public void destroy() throws IOException {
+        journal.close();
+    }
+
+    /**
+     * Applies journal entries of one shard in a single database transaction, batching consecutive creates.
+     */
+    private void applyInTransaction(int shardId, List<TransactionJournal.Entry> entries) {
+        Set<Integer> userIds = new LinkedHashSet<>();
+        for (TransactionJournal.Entry entry : entries)
+            userIds.add(entry.getTransaction().getUserId());
+        ShardContext.forUsers(shardId, userIds, () -> transactionTemplate.executeWithoutResult(status -> {
+            List<Transaction> creates = new ArrayList<>();
+            for (TransactionJournal.Entry entry : entries) {
+                Transaction transaction = entry.getTransaction();
+                // The category's total only changes now, and other instances only see the write now
+                cacheInvalidationBus.transactionsChanged(transaction.getUserId(), transaction.getCategoryId());
+                if (entry.getType() == TransactionJournal.CREATE) {
+                    creates.add(copy(transaction));
+                    continue;
+                }
+                insert(creates);
+                if (entry.getType() == TransactionJournal.UPDATE)
+                    database.updateRow(transaction.getUserId(), transaction.getCategoryId(), transaction.getTransactionId(), transaction);
+                else
+                    database.deleteRow(transaction.getUserId(), transaction.getCategoryId(), transaction.getTransactionId());
+            }
+            insert(creates);
+            // The totals the users read change now, so their cached reports must not be revalidated
+            for (Integer userId : userIds)
+                dataVersionRepository.increment(userId);
+        }));
+    }
+
+    private void insert(List<Transaction> creates) {
+        if (creates.isEmpty())
+            return;
+        List<Transaction> inserted = database.insertEach(creates);
+        for (int i = 0; i < creates.size(); i++)
+            if (inserted.get(i) == null)
+                logger.warn("Dropping journaled transaction {}: category {} not found",
+                        creates.get(i).getTransactionId(), creates.get(i).getCategoryId());
+        creates.clear();
+    }
+
+    /**
+     * Records entries as applied, in the journal and in the overlay.
+     */
+    private void applied(List<TransactionJournal.Entry> entries) {
+        journal.markApplied(entries.get(entries.size() - 1));
+        for (TransactionJournal.Entry entry : entries) {
+            Transaction transaction = entry.getTransaction();
+            Map<Integer, TransactionJournal.Entry> pending = overlay.get(transaction.getUserId());
+            if (pending != null) {
+                pending.remove(transaction.getTransactionId(), entry);  // Unless a later write replaced it
+                if (pending.isEmpty())
+                    overlay.remove(transaction.getUserId(), pending);
+            }
+        }
+    }
+
+    private void addToOverlay(TransactionJournal.Entry entry) {
+        Transaction transaction = entry.getTransaction();
+        overlay.compute(transaction.getUserId(), (userId, pending) -> {
+            Map<Integer, TransactionJournal.Entry> entries = pending == null ? new ConcurrentHashMap<>() : pending;
+            entries.put(transaction.getTransactionId(), entry);
+            return entries;
+        });
+    }
+
+    /**
+     * Takes a snapshot of a user's unapplied writes.
+     */
+    private Map<Integer, TransactionJournal.Entry> pendingOf(Integer userId) {
+        Map<Integer, TransactionJournal.Entry> pending = overlay.get(userId);
+        return pending == null ? new HashMap<>() : new HashMap<>(pending);
+    }
+
+    /**
+     * Replaces the rows of transactions with unapplied writes by their latest version,
+     * adding the written transactions that match.
+     */
+    private static List<Transaction> merge(List<Transaction> rows, Map<Integer, TransactionJournal.Entry> pending,
+                                           Predicate<Transaction> matches) {
+        if (pending.isEmpty())
+            return rows;
+        List<Transaction> merged = new ArrayList<>(rows.size() + pending.size());
+        for (Transaction row : rows)
+            if (!pending.containsKey(row.getTransactionId()))
+                merged.add(row);
+        for (TransactionJournal.Entry entry : pending.values())
+            if (entry.getType() != TransactionJournal.DELETE && matches.test(entry.getTransaction()))
+                merged.add(copy(entry.getTransaction()));
+        return merged;
+    }
+
+    private static boolean isBefore(Transaction transaction, TransactionCursor cursor) {
+        int byDate = Long.compare(transaction.getTransactionDate(), cursor.getTransactionDate());
+        return byDate < 0 || (byDate == 0 && transaction.getTransactionId() < cursor.getTransactionId());
+    }
+
+    /**
+     * Tells failures worth retrying later from writes the database will never accept.
+     */
+    private static boolean isTransient(RuntimeException e) {
+        return !(e instanceof DataAccessException) || e instanceof TransientDataAccessException
+                || e instanceof RecoverableDataAccessException || e instanceof DataAccessResourceFailureException;
+    }
+
+    /**
+     * Copies a journaled transaction, which callers must not be able to change.
+     */
+    private static Transaction copy(Transaction transaction) {
+        return new Transaction(transaction.getTransactionId(), transaction.getCategoryId(), transaction.getUserId(),
+                transaction.getAmount(), transaction.getNote(), transaction.getTransactionDate());
+    }
+}
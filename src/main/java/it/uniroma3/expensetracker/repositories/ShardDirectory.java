@@ -0,0 +1,62 @@
+package it.uniroma3.expensetracker.repositories;
+
+import java.util.List;
+
+/**
+ * This interface defines the contract for ShardDirectory.
+ * It maps each user to the shard holding their categories, transactions and budget.
+ * The directory itself, like the users and the ID sequences, lives on shard 0.
+ */
+public interface ShardDirectory {
+
+    /** The shard holding the directory, the users and the ID sequences. */
+    int DIRECTORY_SHARD = 0;
+
+    /**
+     * Lists the configured shards.
+     *
+     * @return The shard IDs, from 0.
+     */
+    List<Integer> shardIds();
+
+    /**
+     * Finds the shard of a user. Users missing from the directory are on shard 0.
+     *
+     * @param userId The ID of the user.
+     * @return The shard ID.
+     */
+    int shardOf(Integer userId);
+
+    /**
+     * Checks whether a user is being moved to another shard, during which their writes are refused.
+     *
+     * @param userId The ID of the user.
+     * @return Whether the user is being moved.
+     */
+    boolean isMoving(Integer userId);
+
+    /**
+     * Places a new user on a shard, keeping any existing placement.
+     * Must be called in the transaction creating the user, bound to shard 0.
+     *
+     * @param userId The ID of the user.
+     * @return The shard ID of the user.
+     */
+    int assign(Integer userId);
+
+    /**
+     * Records the shard of a user.
+     *
+     * @param userId The ID of the user.
+     * @param shardId The ID of the shard now holding the user's data.
+     */
+    void setShard(Integer userId, int shardId);
+
+    /**
+     * Marks a user as being moved, or no longer being moved, to another shard.
+     *
+     * @param userId The ID of the user.
+     * @param moving Whether the user is being moved.
+     */
+    void setMoving(Integer userId, boolean moving);
+}
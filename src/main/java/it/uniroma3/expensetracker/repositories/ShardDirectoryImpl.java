@@ -0,0 +1,190 @@
+package it.uniroma3.expensetracker.repositories;
+
+import it.uniroma3.expensetracker.config.ShardProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Implementation of the ShardDirectory interface backed by the ET_USER_SHARDS table.
+ * Placements are cached for {@code expensetracker.sharding.directory-cache-ttl-ms}, so the
+ * directory costs one query per user and TTL; a shard migration waits for that TTL before
+ * relying on every instance having seen a change. New users are placed by rendezvous
+ * hashing over the accepting shards, so adding a shard only attracts new users to it.
+ */
+@Repository
+public class ShardDirectoryImpl implements ShardDirectory {
+
+    // Bound on the number of cached placements; the cache is simply reset when it is reached
+    private static final int MAX_CACHED_USERS = 100000;
+
+    // SQL queries, run on shard 0 outside of the caller's transaction, except SQL_ASSIGN
+    private static final String SQL_FIND = "SELECT SHARD_ID, MOVING FROM ET_USER_SHARDS WHERE USER_ID = ?";
+    private static final String SQL_ASSIGN = "WITH I AS (INSERT INTO ET_USER_SHARDS (USER_ID, SHARD_ID) VALUES (?, ?) " +
+            "ON CONFLICT (USER_ID) DO NOTHING RETURNING SHARD_ID) " +
+            "SELECT SHARD_ID FROM I UNION ALL SELECT SHARD_ID FROM ET_USER_SHARDS WHERE USER_ID = ? LIMIT 1";
+    private static final String SQL_SET_SHARD = "UPDATE ET_USER_SHARDS SET SHARD_ID = ? WHERE USER_ID = ?";
+    private static final String SQL_SET_MOVING = "UPDATE ET_USER_SHARDS SET MOVING = ? WHERE USER_ID = ?";
+
+    @Autowired
+    @Qualifier("directoryJdbcTemplate")
+    JdbcTemplate jdbcTemplate;
+
+    // Joins the caller's transaction: a new user's entry references the ET_USERS row
+    // inserted, and not yet committed, in that same transaction
+    @Autowired
+    JdbcTemplate routingJdbcTemplate;
+
+    @Autowired
+    ShardProperties shardProperties;
+
+    private final Map<Integer, Placement> cache = new ConcurrentHashMap<>();
+
+    /**
+     * Lists the configured shards.
+     *
+     * @return The shard IDs, from 0.
+     */
+    @Override
+    public List<Integer> shardIds() {
+        List<Integer> ids = new ArrayList<>();
+        for (int i = 0; i <= shardProperties.getShards().size(); i++)
+            ids.add(i);
+        return ids;
+    }
+
+    /**
+     * Finds the shard of a user. Users missing from the directory are on shard 0.
+     *
+     * @param userId The ID of the user.
+     * @return The shard ID.
+     */
+    @Override
+    public int shardOf(Integer userId) {
+        return placement(userId).shardId;
+    }
+
+    /**
+     * Checks whether a user is being moved to another shard.
+     *
+     * @param userId The ID of the user.
+     * @return Whether the user is being moved.
+     */
+    @Override
+    public boolean isMoving(Integer userId) {
+        return placement(userId).moving;
+    }
+
+    /**
+     * Places a new user on the accepting shard with the highest rendezvous score for the user,
+     * keeping any existing placement. The entry is written in the caller's transaction, which
+     * must be bound to shard 0 and have created the user.
+     *
+     * @param userId The ID of the user.
+     * @return The shard ID of the user.
+     */
+    @Override
+    public int assign(Integer userId) {
+        List<Integer> candidates = shardProperties.getNewUserShards().isEmpty()
+                ? shardIds() : shardProperties.getNewUserShards();
+        int shardId = routingJdbcTemplate.queryForObject(SQL_ASSIGN, Integer.class, userId, rendezvous(userId, candidates), userId);
+        cache.remove(userId);
+        return shardId;
+    }
+
+    /**
+     * Records the shard of a user.
+     *
+     * @param userId The ID of the user.
+     * @param shardId The ID of the shard now holding the user's data.
+     */
+    @Override
+    public void setShard(Integer userId, int shardId) {
+        jdbcTemplate.update(SQL_SET_SHARD, shardId, userId);
+        cache.remove(userId);
+    }
+
+    /**
+     * Marks a user as being moved, or no longer being moved, to another shard.
+     *
+     * @param userId The ID of the user.
+     * @param moving Whether the user is being moved.
+     */
+    @Override
+    public void setMoving(Integer userId, boolean moving) {
+        jdbcTemplate.update(SQL_SET_MOVING, moving, userId);
+        cache.remove(userId);
+    }
+
+    /**
+     * Picks the shard of a user by rendezvous (highest random weight) hashing: every shard gets
+     * a pseudo-random score for the user and the highest wins. Adding a shard only moves the
+     * users it now wins, and removing one only the users it held.
+     *
+     * @param userId The ID of the user.
+     * @param shardIds The candidate shards.
+     * @return The chosen shard ID.
+     */
+    static int rendezvous(int userId, List<Integer> shardIds) {
+        int best = shardIds.get(0);
+        long bestScore = Long.MIN_VALUE;
+        for (int shardId : shardIds) {
+            long score = mix(((long) userId << 32) | (shardId & 0xFFFFFFFFL));
+            if (score > bestScore) {
+                bestScore = score;
+                best = shardId;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Scrambles the bits of a value (the SplitMix64 finalizer).
+     */
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Gets the placement of a user, from the cache while it is fresh.
+     */
+    private Placement placement(Integer userId) {
+        long now = System.currentTimeMillis();
+        Placement placement = cache.get(userId);
+        if (placement != null && placement.expiresAt > now)
+            return placement;
+        List<Placement> found = jdbcTemplate.query(SQL_FIND, new Object[]{userId}, (rs, rowNum) ->
+                new Placement(rs.getInt("SHARD_ID"), rs.getBoolean("MOVING"), now + shardProperties.getDirectoryCacheTtlMs()));
+        placement = found.isEmpty()
+                ? new Placement(DIRECTORY_SHARD, false, now + shardProperties.getDirectoryCacheTtlMs())
+                : found.get(0);
+        if (cache.size() >= MAX_CACHED_USERS)
+            cache.clear();
+        cache.put(userId, placement);
+        return placement;
+    }
+
+    /**
+     * The placement of a user, as cached by this instance.
+     */
+    private static class Placement {
+
+        private final int shardId;
+        private final boolean moving;
+        private final long expiresAt;
+
+        private Placement(int shardId, boolean moving, long expiresAt) {
+            this.shardId = shardId;
+            this.moving = moving;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
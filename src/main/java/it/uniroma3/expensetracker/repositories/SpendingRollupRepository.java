@@ -0,0 +1,26 @@
+package it.uniroma3.expensetracker.repositories;
+
+import it.uniroma3.expensetracker.domain.Granularity;
+import it.uniroma3.expensetracker.domain.SpendingPoint;
+
+import java.util.List;
+
+/**
+ * Interface for the Spending Rollup Repository.
+ * The daily and monthly rollups are kept up to date by TransactionRepository on every write;
+ * this repository only reads them.
+ */
+public interface SpendingRollupRepository {
+
+    /**
+     * Fetches the spending series of a user between two dates.
+     *
+     * @param userId The ID of the user whose spending is to be fetched.
+     * @param categoryId The ID of the category to restrict the series to, or null for all categories.
+     * @param granularity The size of the buckets.
+     * @param from The start of the range, in milliseconds since epoch; its bucket is included.
+     * @param to The end of the range, in milliseconds since epoch, inclusive.
+     * @return The non-empty buckets of the range, in chronological order.
+     */
+    List<SpendingPoint> findSeries(Integer userId, Integer categoryId, Granularity granularity, Long from, Long to);
+}
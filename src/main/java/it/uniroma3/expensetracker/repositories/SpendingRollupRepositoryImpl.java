@@ -0,0 +1,69 @@
+package it.uniroma3.expensetracker.repositories;
+
+import it.uniroma3.expensetracker.domain.Granularity;
+import it.uniroma3.expensetracker.domain.SpendingPoint;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Implementation of the SpendingRollupRepository interface.
+ * Reads the ET_SPENDING_DAILY and ET_SPENDING_MONTHLY rollup tables, so a series costs
+ * one row per bucket and category instead of one row per transaction.
+ */
+@Repository
+public class SpendingRollupRepositoryImpl implements SpendingRollupRepository {
+
+    // SQL queries, one per granularity, with and without a category filter
+    private static final String SQL_DAILY = seriesQuery("ET_SPENDING_DAILY", "ET_DAY_BUCKET", false);
+    private static final String SQL_DAILY_BY_CATEGORY = seriesQuery("ET_SPENDING_DAILY", "ET_DAY_BUCKET", true);
+    private static final String SQL_MONTHLY = seriesQuery("ET_SPENDING_MONTHLY", "ET_MONTH_BUCKET", false);
+    private static final String SQL_MONTHLY_BY_CATEGORY = seriesQuery("ET_SPENDING_MONTHLY", "ET_MONTH_BUCKET", true);
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    /**
+     * Fetches the spending series of a user between two dates.
+     *
+     * @param userId The ID of the user whose spending is to be fetched.
+     * @param categoryId The ID of the category to restrict the series to, or null for all categories.
+     * @param granularity The size of the buckets.
+     * @param from The start of the range, in milliseconds since epoch; its bucket is included.
+     * @param to The end of the range, in milliseconds since epoch, inclusive.
+     * @return The non-empty buckets of the range, in chronological order.
+     */
+    @Override
+    public List<SpendingPoint> findSeries(Integer userId, Integer categoryId, Granularity granularity, Long from, Long to) {
+        boolean daily = granularity == Granularity.DAY;
+        if (categoryId == null)
+            return jdbcTemplate.query(daily ? SQL_DAILY : SQL_MONTHLY, new Object[]{userId, from, to}, spendingPointRowMapper);
+        return jdbcTemplate.query(daily ? SQL_DAILY_BY_CATEGORY : SQL_MONTHLY_BY_CATEGORY,
+                new Object[]{userId, categoryId, from, to}, spendingPointRowMapper);
+    }
+
+    /**
+     * Builds the query summing a rollup table over a range of buckets.
+     *
+     * @param table The rollup table.
+     * @param bucketFunction The SQL function mapping a date to the start of its bucket.
+     * @param byCategory Whether the query is restricted to one category.
+     * @return The series query.
+     */
+    private static String seriesQuery(String table, String bucketFunction, boolean byCategory) {
+        return "SELECT BUCKET_START, SUM(TOTAL) TOTAL, SUM(TX_COUNT) TX_COUNT FROM " + table + " " +
+                "WHERE USER_ID = ? " + (byCategory ? "AND CATEGORY_ID = ? " : "") +
+                "AND BUCKET_START >= " + bucketFunction + "(?) AND BUCKET_START <= ? " +
+                "GROUP BY BUCKET_START HAVING SUM(TX_COUNT) > 0 ORDER BY BUCKET_START";
+    }
+
+    // RowMapper for mapping result set rows to SpendingPoint objects
+    private RowMapper<SpendingPoint> spendingPointRowMapper = ((rs, rowNum) -> {
+        return new SpendingPoint(rs.getLong("BUCKET_START"),
+                rs.getDouble("TOTAL"),
+                rs.getInt("TX_COUNT"));
+    });
+}
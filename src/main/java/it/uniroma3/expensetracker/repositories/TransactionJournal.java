@@ -0,0 +1,329 @@
+package it.uniroma3.expensetracker.repositories;
+
+import it.uniroma3.expensetracker.domain.Transaction;
+import it.uniroma3.expensetracker.exceptions.EtBadRequestException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of transaction writes, kept in memory-mapped segment files.
+ * <p>
+ * Each segment starts with a header holding how far its records have been applied to the
+ * database, followed by the records: a length, a CRC32 and the encoded write. A zero length,
+ * or a record whose CRC does not match because it was torn by a crash, marks the end.
+ * Segments are preallocated, written to until full, and deleted once all their records are
+ * applied. On opening, the records past each segment's applied offset are read back as the
+ * pending entries, in the order they were appended.
+ * <p>
+ * Appends are serialized; with {@code fsync} every append is forced to disk before it returns,
+ * otherwise it survives a crash of the process but not of the machine.
+ */
+class TransactionJournal implements Closeable {
+
+    static final byte CREATE = 1;
+    static final byte UPDATE = 2;
+    static final byte DELETE = 3;
+
+    private static final int MAGIC = 0x45544A31;  // "ETJ1"
+    private static final int HEADER_SIZE = 16;    // Magic, reserved, applied offset
+    private static final int APPLIED_OFFSET = 8;
+    private static final int RECORD_OVERHEAD = 8; // Length and CRC of a record
+    private static final String PREFIX = "transactions-";
+    private static final String SUFFIX = ".journal";
+
+    private final Path directory;
+    private final int segmentSize;
+    private final boolean fsync;
+
+    private final Deque<Segment> segments = new ArrayDeque<>();  // Oldest first, appending to the last
+    private final Deque<Entry> pending = new ArrayDeque<>();     // Unapplied entries, in append order
+    private long nextSegment;
+
+    /**
+     * Opens the journal in a directory, reading back the entries not applied yet.
+     *
+     * @param directory   the directory of the segment files, created if missing
+     * @param segmentSize the size of each segment file, in bytes
+     * @param fsync       whether each append is forced to disk before it returns
+     * @throws IOException if the segment files cannot be read
+     */
+    TransactionJournal(Path directory, int segmentSize, boolean fsync) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsync = fsync;
+        Files.createDirectories(directory);
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            stream.forEach(files::add);
+        }
+        files.sort(null);  // Sequence numbers are zero-padded, so names sort in creation order
+        for (Path file : files) {
+            String name = file.getFileName().toString();
+            long sequence = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+            Segment segment = open(file);
+            segments.add(segment);
+            nextSegment = sequence + 1;
+        }
+    }
+
+    /**
+     * Appends a write to the journal.
+     *
+     * @param type        the kind of write, {@link #CREATE}, {@link #UPDATE} or {@link #DELETE}
+     * @param transaction the written transaction; only the IDs are used for a delete
+     * @param onAppended  called with the new entry before any other append can happen
+     * @return the new entry
+     * @throws EtBadRequestException if the write is too large for a segment
+     */
+    synchronized Entry append(byte type, Transaction transaction, Consumer<Entry> onAppended) throws EtBadRequestException {
+        byte[] payload = encode(type, transaction);
+        int recordSize = RECORD_OVERHEAD + payload.length;
+        if (HEADER_SIZE + recordSize + 4 > segmentSize)
+            throw new EtBadRequestException("Transaction too large");
+        Segment segment = segments.peekLast();
+        if (segment == null || segment.writeOffset + recordSize + 4 > segmentSize)
+            segment = newSegment();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        MappedByteBuffer buffer = segment.buffer;
+        int offset = segment.writeOffset;
+        buffer.putInt(offset, payload.length);
+        buffer.putInt(offset + 4, (int) crc.getValue());
+        for (int i = 0; i < payload.length; i++)
+            buffer.put(offset + RECORD_OVERHEAD + i, payload[i]);
+        buffer.putInt(offset + recordSize, 0);  // Ends the journal, whatever a torn write left behind
+        if (fsync)
+            buffer.force();
+        segment.writeOffset = offset + recordSize;
+        Entry entry = new Entry(type, transaction, segment, segment.writeOffset);
+        pending.add(entry);
+        onAppended.accept(entry);
+        return entry;
+    }
+
+    /**
+     * Lists the oldest entries not applied yet, in append order.
+     *
+     * @param max the maximum number of entries listed
+     * @return the entries
+     */
+    synchronized List<Entry> pending(int max) {
+        List<Entry> entries = new ArrayList<>(Math.min(max, pending.size()));
+        for (Entry entry : pending) {
+            if (entries.size() == max)
+                break;
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Records that every entry up to a given one has been applied, deleting the segments
+     * left with nothing to apply.
+     *
+     * @param entry the last applied entry
+     */
+    synchronized void markApplied(Entry entry) {
+        Segment previous = null;
+        while (!pending.isEmpty()) {
+            Entry applied = pending.poll();
+            if (previous != null && previous != applied.segment)
+                persistApplied(previous);
+            applied.segment.appliedOffset = applied.end;
+            previous = applied.segment;
+            if (applied == entry)
+                break;
+        }
+        if (previous != null)
+            persistApplied(previous);
+        while (segments.size() > 1 && segments.peekFirst().appliedOffset == segments.peekFirst().writeOffset) {
+            Segment done = segments.poll();
+            try {
+                done.channel.close();
+                Files.deleteIfExists(done.file);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    /**
+     * Writes a segment's applied offset to its header.
+     */
+    private void persistApplied(Segment segment) {
+        segment.buffer.putLong(APPLIED_OFFSET, segment.appliedOffset);
+        if (fsync)
+            segment.buffer.force();
+    }
+
+    /**
+     * Forces the segments to disk and closes them.
+     *
+     * @throws IOException if a segment cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        for (Segment segment : segments) {
+            segment.buffer.force();
+            segment.channel.close();
+        }
+        segments.clear();
+    }
+
+    /**
+     * Opens an existing segment, reading back its unapplied records.
+     */
+    private Segment open(Path file) throws IOException {
+        Segment segment = map(file);
+        if (segment.buffer.getInt(0) != MAGIC)
+            throw new IOException("Not a transaction journal: " + file);
+        int offset = (int) segment.buffer.getLong(APPLIED_OFFSET);
+        segment.appliedOffset = offset;
+        while (offset + RECORD_OVERHEAD <= segmentSize) {
+            int length = segment.buffer.getInt(offset);
+            if (length <= 0 || offset + RECORD_OVERHEAD + length > segmentSize)
+                break;
+            byte[] payload = new byte[length];
+            for (int i = 0; i < length; i++)
+                payload[i] = segment.buffer.get(offset + RECORD_OVERHEAD + i);
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if ((int) crc.getValue() != segment.buffer.getInt(offset + 4))
+                break;
+            offset += RECORD_OVERHEAD + length;
+            pending.add(decode(payload, segment, offset));
+        }
+        segment.writeOffset = offset;
+        return segment;
+    }
+
+    /**
+     * Creates the next segment and makes it the one appended to.
+     */
+    private Segment newSegment() {
+        Path file = directory.resolve(String.format("%s%020d%s", PREFIX, nextSegment++, SUFFIX));
+        try {
+            try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+                raf.setLength(segmentSize);
+            }
+            Segment segment = map(file);
+            segment.buffer.putInt(0, MAGIC);
+            segment.buffer.putLong(APPLIED_OFFSET, HEADER_SIZE);
+            segment.buffer.force();
+            segment.appliedOffset = HEADER_SIZE;
+            segment.writeOffset = HEADER_SIZE;
+            segments.add(segment);
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private Segment map(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new Segment(file, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize));
+    }
+
+    private static byte[] encode(byte type, Transaction transaction) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(type);
+            out.writeInt(transaction.getTransactionId());
+            out.writeInt(transaction.getUserId());
+            out.writeInt(transaction.getCategoryId());
+            if (type != DELETE) {
+                out.writeDouble(transaction.getAmount());
+                out.writeLong(transaction.getTransactionDate());
+                byte[] note = transaction.getNote() == null ? null : transaction.getNote().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(note == null ? -1 : note.length);
+                if (note != null)
+                    out.write(note);
+            }
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Entry decode(byte[] payload, Segment segment, int end) {
+        ByteBuffer in = ByteBuffer.wrap(payload);
+        byte type = in.get();
+        Transaction transaction = new Transaction(in.getInt(), null, in.getInt(), null, null, null);
+        transaction.setCategoryId(in.getInt());
+        if (type != DELETE) {
+            transaction.setAmount(in.getDouble());
+            transaction.setTransactionDate(in.getLong());
+            int length = in.getInt();
+            if (length >= 0) {
+                byte[] note = new byte[length];
+                in.get(note);
+                transaction.setNote(new String(note, StandardCharsets.UTF_8));
+            }
+        }
+        return new Entry(type, transaction, segment, end);
+    }
+
+    /**
+     * A journaled write not applied to the database yet.
+     */
+    static class Entry {
+
+        private final byte type;
+        private final Transaction transaction;
+        private final Segment segment;
+        private final int end;  // Offset right after the record in its segment
+
+        private Entry(byte type, Transaction transaction, Segment segment, int end) {
+            this.type = type;
+            this.transaction = transaction;
+            this.segment = segment;
+            this.end = end;
+        }
+
+        byte getType() {
+            return type;
+        }
+
+        Transaction getTransaction() {
+            return transaction;
+        }
+    }
+
+    /**
+     * A segment file, mapped in memory.
+     */
+    private static class Segment {
+
+        private final Path file;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        private int appliedOffset;
+        private int writeOffset;
+
+        private Segment(Path file, FileChannel channel, MappedByteBuffer buffer) {
+            this.file = file;
+            this.channel = channel;
+            this.buffer = buffer;
+        }
+    }
+}
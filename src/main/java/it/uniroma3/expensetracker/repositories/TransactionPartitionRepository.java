@@ -0,0 +1,36 @@
+package it.uniroma3.expensetracker.repositories;
+
+import java.util.List;
+
+/**
+ * This interface defines the contract for TransactionPartitionRepository.
+ * It manages the monthly partitions of the ET_TRANSACTIONS table.
+ */
+public interface TransactionPartitionRepository {
+
+    /**
+     * Checks whether a partition exists.
+     *
+     * @param partition The name of the partition table.
+     * @return Whether the partition exists.
+     */
+    boolean exists(String partition);
+
+    /**
+     * Gets the months of the transactions stored in the default partition, i.e. those
+     * without a partition of their own.
+     *
+     * @return The start of each month, in milliseconds since epoch (UTC), in ascending order.
+     */
+    List<Long> findDefaultPartitionMonths();
+
+    /**
+     * Creates a partition holding the transactions dated within a range.
+     * Must be called within a database transaction.
+     *
+     * @param partition The name of the partition table.
+     * @param from The start of the range, inclusive, in milliseconds since epoch.
+     * @param to The end of the range, exclusive, in milliseconds since epoch.
+     */
+    void create(String partition, long from, long to);
+}
@@ -0,0 +1,75 @@
+package it.uniroma3.expensetracker.repositories;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+/**
+ * Implementation of the TransactionPartitionRepository interface.
+ * Partitions are built as standalone tables and then attached, so any rows of their range
+ * that landed in the default partition are moved first and the attach never fails on them.
+ */
+@Repository
+public class TransactionPartitionRepositoryImpl implements TransactionPartitionRepository {
+
+    // SQL statements; DDL cannot take bind parameters, so names and bounds are formatted in.
+    // Names are generated by the application and bounds are numbers, never user input
+    private static final String SQL_EXISTS = "SELECT TO_REGCLASS(?) IS NOT NULL";
+    private static final String SQL_FIND_DEFAULT_MONTHS = "SELECT DISTINCT (EXTRACT(EPOCH FROM " +
+            "DATE_TRUNC('month', TO_TIMESTAMP(TRANSACTION_DATE / 1000.0) AT TIME ZONE 'UTC')) * 1000)::BIGINT AS MONTH_START " +
+            "FROM ET_TRANSACTIONS_DEFAULT ORDER BY MONTH_START";
+    private static final String SQL_CREATE_TABLE = "CREATE TABLE %s (LIKE ET_TRANSACTIONS INCLUDING DEFAULTS INCLUDING CONSTRAINTS)";
+    private static final String SQL_MOVE_FROM_DEFAULT = "WITH M AS (DELETE FROM ET_TRANSACTIONS_DEFAULT " +
+            "WHERE TRANSACTION_DATE >= %d AND TRANSACTION_DATE < %d RETURNING *) INSERT INTO %s SELECT * FROM M";
+    // Lets the attach trust the bounds instead of scanning the new table; once attached, the
+    // partition constraint enforces the same bounds and the check would only be evaluated twice
+    private static final String SQL_ADD_BOUNDS = "ALTER TABLE %s ADD CONSTRAINT %s_BOUNDS " +
+            "CHECK (TRANSACTION_DATE >= %d AND TRANSACTION_DATE < %d)";
+    private static final String SQL_ATTACH = "ALTER TABLE ET_TRANSACTIONS ATTACH PARTITION %s FOR VALUES FROM (%d) TO (%d)";
+    private static final String SQL_DROP_BOUNDS = "ALTER TABLE %s DROP CONSTRAINT %s_BOUNDS";
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    /**
+     * Checks whether a partition exists.
+     *
+     * @param partition The name of the partition table.
+     * @return Whether the partition exists.
+     */
+    @Override
+    public boolean exists(String partition) {
+        return jdbcTemplate.queryForObject(SQL_EXISTS, Boolean.class, partition);
+    }
+
+    /**
+     * Gets the months of the transactions stored in the default partition.
+     *
+     * @return The start of each month, in milliseconds since epoch (UTC), in ascending order.
+     */
+    @Override
+    public List<Long> findDefaultPartitionMonths() {
+        return jdbcTemplate.queryForList(SQL_FIND_DEFAULT_MONTHS, Long.class);
+    }
+
+    /**
+     * Creates a partition holding the transactions dated within a range, moving into it
+     * the rows of the range already stored in the default partition.
+     *
+     * @param partition The name of the partition table.
+     * @param from The start of the range, inclusive, in milliseconds since epoch.
+     * @param to The end of the range, exclusive, in milliseconds since epoch.
+     */
+    @Override
+    public void create(String partition, long from, long to) {
+        if (!partition.matches("[A-Za-z_][A-Za-z0-9_]*"))
+            throw new IllegalArgumentException("Invalid partition name: " + partition);
+        jdbcTemplate.execute(String.format(SQL_CREATE_TABLE, partition));
+        jdbcTemplate.execute(String.format(SQL_MOVE_FROM_DEFAULT, from, to, partition));
+        jdbcTemplate.execute(String.format(SQL_ADD_BOUNDS, partition, partition, from, to));
+        jdbcTemplate.execute(String.format(SQL_ATTACH, partition, from, to));
+        jdbcTemplate.execute(String.format(SQL_DROP_BOUNDS, partition, partition));
+    }
+}
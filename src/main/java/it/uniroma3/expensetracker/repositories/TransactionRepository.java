@@ -1,10 +1,15 @@
 package it.uniroma3.expensetracker.repositories;
 
 import it.uniroma3.expensetracker.domain.Transaction;
+import it.uniroma3.expensetracker.domain.TransactionCursor;
+import it.uniroma3.expensetracker.domain.TransactionFilter;
+import it.uniroma3.expensetracker.domain.TransactionSearchCursor;
+import it.uniroma3.expensetracker.domain.TransactionSearchHit;
 import it.uniroma3.expensetracker.exceptions.EtBadRequestException;
 import it.uniroma3.expensetracker.exceptions.EtResourceNotFoundException;
 
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * Interface for the Transaction Repository.
@@ -21,6 +26,43 @@ public interface TransactionRepository {
      */
     List<Transaction> findAll(Integer userId, Integer categoryId);
 
+    /**
+     * Fetches one page of the transactions of a given user that match a filter, newest first.
+     * Pagination is keyset based: the page starts right after the given cursor, so the cost
+     * of a page does not depend on how deep into the listing it is.
+     *
+     * @param userId The ID of the user whose transactions are to be fetched.
+     * @param filter The criteria the transactions must match.
+     * @param after The cursor after which the page starts, or null for the first page.
+     * @param limit The maximum number of transactions to be fetched.
+     * @return A list of at most {@code limit} transactions, ordered by date and ID descending.
+     */
+    List<Transaction> findPage(Integer userId, TransactionFilter filter, TransactionCursor after, int limit);
+
+    /**
+     * Fetches one page of the transactions of a given user whose note matches a full-text query,
+     * most relevant first, across all categories.
+     *
+     * @param userId The ID of the user whose transactions are to be searched.
+     * @param query The searched text, in web search syntax.
+     * @param filter The criteria the transactions must also match.
+     * @param after The cursor after which the page starts, or null for the first page.
+     * @param limit The maximum number of hits to be fetched.
+     * @return A list of at most {@code limit} hits, ordered by rank, date and ID descending.
+     */
+    List<TransactionSearchHit> search(Integer userId, String query, TransactionFilter filter, TransactionSearchCursor after, int limit);
+
+    /**
+     * Streams every transaction of a given user, across all categories, to the given action.
+     * Rows are read through a forward-only cursor with a bounded fetch size, so memory use does
+     * not depend on the number of transactions. Must be called within a database transaction
+     * for the fetch size to take effect.
+     *
+     * @param userId The ID of the user whose transactions are to be streamed.
+     * @param action The action invoked for each transaction, in category and date order.
+     */
+    void streamAllByUser(Integer userId, Consumer<Transaction> action);
+
     /**
      * Fetches a specific transaction by user ID, category ID, and transaction ID.
      *
@@ -40,10 +82,42 @@ public interface TransactionRepository {
      * @param amount The amount of the transaction.
      * @param note The note for the transaction.
      * @param transactionDate The date of the transaction.
-     * @return The ID of the newly created transaction.
+     * @return The newly created transaction.
      * @throws EtBadRequestException If the request to create the transaction is invalid.
      */
-    Integer create(Integer userId, Integer categoryId, Double amount, String note, Long transactionDate) throws EtBadRequestException;
+    Transaction create(Integer userId, Integer categoryId, Double amount, String note, Long transactionDate) throws EtBadRequestException;
+
+    /**
+     * Creates independent transactions, possibly of different users and categories, in a single batch.
+     *
+     * @param transactions The transactions to be created.
+     * @return The created transactions, with their IDs, in the same order as the input;
+     *         null in place of those whose category was not found.
+     * @throws EtBadRequestException If any of the transactions cannot be written, in which case none is.
+     */
+    List<Transaction> createEach(List<Transaction> transactions) throws EtBadRequestException;
+
+    /**
+     * Creates many transactions at once using JDBC batching.
+     * Each transaction carries its own user ID and category ID; the transaction ID is generated.
+     * The fields must fit their columns, as checked by {@link Transaction#checkFields}.
+     *
+     * @param transactions The transactions to be created.
+     * @return The IDs of the newly created transactions, in the same order as the input.
+     * @throws EtBadRequestException If a category does not exist or does not belong to the transaction's user.
+     */
+    List<Integer> createBatch(List<Transaction> transactions) throws EtBadRequestException;
+
+    /**
+     * Bulk-loads transactions with the PostgreSQL COPY protocol.
+     * Each transaction carries its own user ID and category ID; the transaction ID is generated.
+     * This is the fastest way to load large volumes of rows, meant for imports.
+     *
+     * @param transactions The transactions to be loaded.
+     * @return The number of rows loaded.
+     * @throws EtBadRequestException If the rows cannot be loaded.
+     */
+    long copyIn(List<Transaction> transactions) throws EtBadRequestException;
 
     /**
      * Updates an existing transaction for a given user and category.
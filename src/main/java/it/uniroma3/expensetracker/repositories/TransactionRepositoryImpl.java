@@ -1,18 +1,33 @@
 package it.uniroma3.expensetracker.repositories;
 
 import it.uniroma3.expensetracker.domain.Transaction;
+import it.uniroma3.expensetracker.domain.TransactionCursor;
+import it.uniroma3.expensetracker.domain.TransactionFilter;
+import it.uniroma3.expensetracker.domain.TransactionSearchCursor;
+import it.uniroma3.expensetracker.domain.TransactionSearchHit;
 import it.uniroma3.expensetracker.exceptions.EtBadRequestException;
 import it.uniroma3.expensetracker.exceptions.EtResourceNotFoundException;
+import it.uniroma3.expensetracker.util.Csv;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.sql.PreparedStatement;
-import java.sql.Statement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Implementation of the TransactionRepository interface.
@@ -21,16 +36,90 @@ import java.util.List;
 @Repository
 public class TransactionRepositoryImpl implements TransactionRepository {
 
+    // Number of rows sent to the database per JDBC batch
+    private static final int BATCH_SIZE = 1000;
+
+    // Number of rows fetched per round trip when streaming a user's ledger
+    private static final int STREAM_FETCH_SIZE = 500;
+
+    // Number of characters buffered before they are sent to the COPY stream
+    private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
     // SQL queries
-    private static final String SQL_FIND_ALL = "SELECT TRANSACTION_ID, CATEGORY_ID, USER_ID, AMOUNT, NOTE, TRANSACTION_DATE FROM ET_TRANSACTIONS WHERE USER_ID = ? AND CATEGORY_ID = ?";
-    private static final String SQL_FIND_BY_ID = "SELECT TRANSACTION_ID, CATEGORY_ID, USER_ID, AMOUNT, NOTE, TRANSACTION_DATE FROM ET_TRANSACTIONS WHERE USER_ID = ? AND CATEGORY_ID = ? AND TRANSACTION_ID = ?";
-    private static final String SQL_CREATE = "INSERT INTO ET_TRANSACTIONS (TRANSACTION_ID, CATEGORY_ID, USER_ID, AMOUNT, NOTE, TRANSACTION_DATE) VALUES(NEXTVAL('ET_TRANSACTIONS_SEQ'), ?, ?, ?, ?, ?)";
-    private static final String SQL_UPDATE = "UPDATE ET_TRANSACTIONS SET AMOUNT = ?, NOTE = ?, TRANSACTION_DATE = ? WHERE USER_ID = ? AND CATEGORY_ID = ? AND TRANSACTION_ID = ?";
-    private static final String SQL_DELETE = "DELETE FROM ET_TRANSACTIONS WHERE USER_ID = ? AND CATEGORY_ID = ? AND TRANSACTION_ID = ?";
+    // Hides the transactions of categories marked as deleted until CategoryPurgeJob removes them;
+    // the deleted categories are few, so this is a cheap anti-join on a partial index
+    private static final String SQL_LIVE_CATEGORY = " AND NOT EXISTS (SELECT 1 FROM ET_CATEGORIES DC " +
+            "WHERE DC.CATEGORY_ID = ET_TRANSACTIONS.CATEGORY_ID AND DC.DELETED)";
+    private static final String SQL_FIND_ALL = "SELECT TRANSACTION_ID, CATEGORY_ID, USER_ID, AMOUNT, NOTE, TRANSACTION_DATE FROM ET_TRANSACTIONS WHERE USER_ID = ? AND CATEGORY_ID = ?" + SQL_LIVE_CATEGORY;
+    private static final String SQL_FIND_PAGE = "SELECT TRANSACTION_ID, CATEGORY_ID, USER_ID, AMOUNT, NOTE, TRANSACTION_DATE FROM ET_TRANSACTIONS WHERE USER_ID = ?" + SQL_LIVE_CATEGORY;
+    private static final String SQL_PAGE_ORDER = " ORDER BY TRANSACTION_DATE DESC, TRANSACTION_ID DESC LIMIT ?";
+    // Full-text search over the notes; the tsvector expression must match the one of ET_TRANSACTIONS_NOTE_SEARCH_IDX
+    private static final String SQL_NOTE_VECTOR = "TO_TSVECTOR('simple', COALESCE(NOTE, ''))";
+    private static final String SQL_SEARCH = "SELECT * FROM (SELECT TRANSACTION_ID, CATEGORY_ID, USER_ID, AMOUNT, NOTE, TRANSACTION_DATE, " +
+            "TS_RANK(" + SQL_NOTE_VECTOR + ", Q) SEARCH_RANK FROM ET_TRANSACTIONS, WEBSEARCH_TO_TSQUERY('simple', ?) Q " +
+            "WHERE USER_ID = ? AND " + SQL_NOTE_VECTOR + " @@ Q" + SQL_LIVE_CATEGORY;
+    private static final String SQL_SEARCH_ORDER = " ORDER BY SEARCH_RANK DESC, TRANSACTION_DATE DESC, TRANSACTION_ID DESC LIMIT ?";
+    private static final String SQL_FIND_ALL_BY_USER = "SELECT TRANSACTION_ID, CATEGORY_ID, USER_ID, AMOUNT, NOTE, TRANSACTION_DATE FROM ET_TRANSACTIONS " +
+            "WHERE USER_ID = ?" + SQL_LIVE_CATEGORY + " ORDER BY CATEGORY_ID, TRANSACTION_DATE DESC, TRANSACTION_ID DESC";
+    private static final String SQL_FIND_BY_ID = "SELECT TRANSACTION_ID, CATEGORY_ID, USER_ID, AMOUNT, NOTE, TRANSACTION_DATE FROM ET_TRANSACTIONS WHERE USER_ID = ? AND CATEGORY_ID = ? AND TRANSACTION_ID = ?" + SQL_LIVE_CATEGORY;
+    // Upserts the rollup deltas of a CTE named R (USER_ID, CATEGORY_ID, TRANSACTION_DATE, AMOUNT, TX_COUNT)
+    // into the daily and monthly spending rollups
+    private static final String SQL_ROLLUP_DAILY = rollupUpsert("ET_SPENDING_DAILY", "ET_DAY_BUCKET");
+    private static final String SQL_ROLLUP_MONTHLY = rollupUpsert("ET_SPENDING_MONTHLY", "ET_MONTH_BUCKET");
+    // Adds the amount to the category's running total, inserts the row only if the category belongs to the user,
+    // and adds it to the spending rollups
+    private static final String SQL_CREATE = "WITH C AS (UPDATE ET_CATEGORIES SET TOTAL_EXPENSE = TOTAL_EXPENSE + ? " +
+            "WHERE USER_ID = ? AND CATEGORY_ID = ? AND NOT DELETED RETURNING CATEGORY_ID, USER_ID), " +
+            "T AS (INSERT INTO ET_TRANSACTIONS (TRANSACTION_ID, CATEGORY_ID, USER_ID, AMOUNT, NOTE, TRANSACTION_DATE) " +
+            "SELECT ?, C.CATEGORY_ID, C.USER_ID, ?, ?, ? FROM C " +
+            "RETURNING TRANSACTION_ID, CATEGORY_ID, USER_ID, AMOUNT, NOTE, TRANSACTION_DATE), " +
+            "R AS (SELECT USER_ID, CATEGORY_ID, TRANSACTION_DATE, AMOUNT, 1 TX_COUNT FROM T), " +
+            "D AS (" + SQL_ROLLUP_DAILY + "), M AS (" + SQL_ROLLUP_MONTHLY + ") " +
+            "SELECT TRANSACTION_ID, CATEGORY_ID, USER_ID, AMOUNT, NOTE, TRANSACTION_DATE FROM T";
+    // Same as SQL_CREATE, for JDBC batches: the monthly rollup upsert is the main statement, so nothing is
+    // returned and the update count is 1 when the row was inserted, 0 when the category was not found
+    private static final String SQL_CREATE_EACH = "WITH C AS (UPDATE ET_CATEGORIES SET TOTAL_EXPENSE = TOTAL_EXPENSE + ? " +
+            "WHERE USER_ID = ? AND CATEGORY_ID = ? AND NOT DELETED RETURNING CATEGORY_ID, USER_ID), " +
+            "T AS (INSERT INTO ET_TRANSACTIONS (TRANSACTION_ID, CATEGORY_ID, USER_ID, AMOUNT, NOTE, TRANSACTION_DATE) " +
+            "SELECT ?, C.CATEGORY_ID, C.USER_ID, ?, ?, ? FROM C " +
+            "RETURNING USER_ID, CATEGORY_ID, TRANSACTION_DATE, AMOUNT), " +
+            "R AS (SELECT USER_ID, CATEGORY_ID, TRANSACTION_DATE, AMOUNT, 1 TX_COUNT FROM T), " +
+            "D AS (" + SQL_ROLLUP_DAILY + ") " + SQL_ROLLUP_MONTHLY;
+    private static final String SQL_CREATE_WITH_ID = "INSERT INTO ET_TRANSACTIONS (TRANSACTION_ID, CATEGORY_ID, USER_ID, AMOUNT, NOTE, TRANSACTION_DATE) VALUES(?, ?, ?, ?, ?, ?)";
+    // An empty note is sent as an empty field, which CSV reads as NULL unless the column is forced not null
+    private static final String SQL_COPY_IN = "COPY ET_TRANSACTIONS (TRANSACTION_ID, CATEGORY_ID, USER_ID, AMOUNT, NOTE, TRANSACTION_DATE) " +
+            "FROM STDIN WITH (FORMAT csv, FORCE_NOT_NULL (NOTE))";
+    // Locks the row to read its current values, updates it, moves the category's running total by the difference,
+    // and moves the amount between the old and the new rollup buckets
+    private static final String SQL_UPDATE = "WITH O AS (SELECT TRANSACTION_ID, USER_ID, CATEGORY_ID, AMOUNT, TRANSACTION_DATE FROM ET_TRANSACTIONS " +
+            "WHERE USER_ID = ? AND CATEGORY_ID = ? AND TRANSACTION_ID = ?" + SQL_LIVE_CATEGORY + " FOR UPDATE), " +
+            "T AS (UPDATE ET_TRANSACTIONS SET AMOUNT = ?, NOTE = ?, TRANSACTION_DATE = ? FROM O " +
+            "WHERE ET_TRANSACTIONS.TRANSACTION_ID = O.TRANSACTION_ID RETURNING O.USER_ID, O.CATEGORY_ID, " +
+            "O.AMOUNT OLD_AMOUNT, O.TRANSACTION_DATE OLD_DATE, ET_TRANSACTIONS.AMOUNT NEW_AMOUNT, ET_TRANSACTIONS.TRANSACTION_DATE NEW_DATE), " +
+            "R AS (SELECT USER_ID, CATEGORY_ID, OLD_DATE TRANSACTION_DATE, -OLD_AMOUNT AMOUNT, -1 TX_COUNT FROM T " +
+            "UNION ALL SELECT USER_ID, CATEGORY_ID, NEW_DATE, NEW_AMOUNT, 1 FROM T), " +
+            "D AS (" + SQL_ROLLUP_DAILY + "), M AS (" + SQL_ROLLUP_MONTHLY + ") " +
+            "UPDATE ET_CATEGORIES SET TOTAL_EXPENSE = TOTAL_EXPENSE + T.NEW_AMOUNT - T.OLD_AMOUNT FROM T " +
+            "WHERE ET_CATEGORIES.CATEGORY_ID = T.CATEGORY_ID";
+    // Deletes the row, subtracts its amount from the category's running total and from the spending rollups
+    private static final String SQL_DELETE = "WITH T AS (DELETE FROM ET_TRANSACTIONS WHERE USER_ID = ? AND CATEGORY_ID = ? AND TRANSACTION_ID = ?" + SQL_LIVE_CATEGORY + " " +
+            "RETURNING USER_ID, CATEGORY_ID, AMOUNT, TRANSACTION_DATE), " +
+            "R AS (SELECT USER_ID, CATEGORY_ID, TRANSACTION_DATE, -AMOUNT AMOUNT, -1 TX_COUNT FROM T), " +
+            "D AS (" + SQL_ROLLUP_DAILY + "), M AS (" + SQL_ROLLUP_MONTHLY + ") " +
+            "UPDATE ET_CATEGORIES SET TOTAL_EXPENSE = TOTAL_EXPENSE - T.AMOUNT FROM T WHERE ET_CATEGORIES.CATEGORY_ID = T.CATEGORY_ID";
+    // Adds a set of newly inserted rows, given as an array of IDs and their date range, to the spending rollups;
+    // the date range restricts the lookup to the partitions the rows were inserted into
+    private static final String SQL_ADD_TO_ROLLUPS = "WITH R AS (SELECT USER_ID, CATEGORY_ID, TRANSACTION_DATE, AMOUNT, 1 TX_COUNT " +
+            "FROM ET_TRANSACTIONS WHERE TRANSACTION_ID = ANY(?) AND TRANSACTION_DATE BETWEEN ? AND ?), " +
+            "M AS (" + SQL_ROLLUP_MONTHLY + ") " + SQL_ROLLUP_DAILY;
+    private static final String SQL_ADD_TO_CATEGORY_TOTAL = "UPDATE ET_CATEGORIES SET TOTAL_EXPENSE = TOTAL_EXPENSE + ? WHERE USER_ID = ? AND CATEGORY_ID = ? AND NOT DELETED";
 
     @Autowired
     JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    IdAllocator idAllocator;
+
     /**
      * Fetches all transactions for a given user and category.
      *
@@ -43,6 +132,118 @@ public class TransactionRepositoryImpl implements TransactionRepository {
         return jdbcTemplate.query(SQL_FIND_ALL, new Object[]{userId, categoryId}, transactionRowMapper);
     }
 
+    /**
+     * Fetches one page of the transactions of a given user that match a filter, newest first.
+     * Only the criteria set on the filter are added to the query, so the database can pick the
+     * index matching them: (USER_ID, CATEGORY_ID, TRANSACTION_DATE) within a category and
+     * (USER_ID, TRANSACTION_DATE) across categories. Amount bounds are checked on the rows of
+     * the date range.
+     *
+     * @param userId The ID of the user whose transactions are to be fetched.
+     * @param filter The criteria the transactions must match.
+     * @param after The cursor after which the page starts, or null for the first page.
+     * @param limit The maximum number of transactions to be fetched.
+     * @return A list of at most {@code limit} transactions, ordered by date and ID descending.
+     */
+    @Override
+    public List<Transaction> findPage(Integer userId, TransactionFilter filter, TransactionCursor after, int limit) {
+        StringBuilder sql = new StringBuilder(SQL_FIND_PAGE);
+        List<Object> args = new ArrayList<>();
+        args.add(userId);
+        appendFilter(sql, args, filter);
+        if (after != null) {
+            // The plain bound is implied by the row comparison, but only it lets the planner
+            // skip the monthly partitions newer than the cursor
+            sql.append(" AND TRANSACTION_DATE <= ? AND (TRANSACTION_DATE, TRANSACTION_ID) < (?, ?)");
+            args.add(after.getTransactionDate());
+            args.add(after.getTransactionDate());
+            args.add(after.getTransactionId());
+        }
+        sql.append(SQL_PAGE_ORDER);
+        args.add(limit);
+        return jdbcTemplate.query(sql.toString(), args.toArray(), transactionRowMapper);
+    }
+
+    /**
+     * Fetches one page of the transactions of a given user whose note matches a full-text query,
+     * most relevant first. Matching and ranking use the expression index on the notes' tsvector,
+     * so only the user's matching rows are read, whatever the size of their ledger.
+     *
+     * @param userId The ID of the user whose transactions are to be searched.
+     * @param query The searched text, in web search syntax.
+     * @param filter The criteria the transactions must also match.
+     * @param after The cursor after which the page starts, or null for the first page.
+     * @param limit The maximum number of hits to be fetched.
+     * @return A list of at most {@code limit} hits, ordered by rank, date and ID descending.
+     */
+    @Override
+    public List<TransactionSearchHit> search(Integer userId, String query, TransactionFilter filter,
+                                             TransactionSearchCursor after, int limit) {
+        StringBuilder sql = new StringBuilder(SQL_SEARCH);
+        List<Object> args = new ArrayList<>();
+        args.add(query);
+        args.add(userId);
+        appendFilter(sql, args, filter);
+        sql.append(") S");
+        if (after != null) {
+            sql.append(" WHERE (SEARCH_RANK, TRANSACTION_DATE, TRANSACTION_ID) < (?, ?, ?)");
+            args.add(after.getRank());
+            args.add(after.getTransactionDate());
+            args.add(after.getTransactionId());
+        }
+        sql.append(SQL_SEARCH_ORDER);
+        args.add(limit);
+        return jdbcTemplate.query(sql.toString(), args.toArray(), (rs, rowNum) ->
+                new TransactionSearchHit(transactionRowMapper.mapRow(rs, rowNum), rs.getFloat("SEARCH_RANK")));
+    }
+
+    /**
+     * Appends the conditions of a filter to a query on ET_TRANSACTIONS.
+     *
+     * @param sql The query, ending with its WHERE clause.
+     * @param args The arguments of the query, to which those of the conditions are added.
+     * @param filter The criteria the transactions must match.
+     */
+    private void appendFilter(StringBuilder sql, List<Object> args, TransactionFilter filter) {
+        if (filter.getCategoryId() != null) {
+            sql.append(" AND CATEGORY_ID = ?");
+            args.add(filter.getCategoryId());
+        }
+        if (filter.getFromDate() != null) {
+            sql.append(" AND TRANSACTION_DATE >= ?");
+            args.add(filter.getFromDate());
+        }
+        if (filter.getToDate() != null) {
+            sql.append(" AND TRANSACTION_DATE <= ?");
+            args.add(filter.getToDate());
+        }
+        if (filter.getMinAmount() != null) {
+            sql.append(" AND AMOUNT >= ?");
+            args.add(filter.getMinAmount());
+        }
+        if (filter.getMaxAmount() != null) {
+            sql.append(" AND AMOUNT <= ?");
+            args.add(filter.getMaxAmount());
+        }
+    }
+
+    /**
+     * Streams every transaction of a given user, across all categories, to the given action.
+     *
+     * @param userId The ID of the user whose transactions are to be streamed.
+     * @param action The action invoked for each transaction, in category and date order.
+     */
+    @Override
+    public void streamAllByUser(Integer userId, Consumer<Transaction> action) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(SQL_FIND_ALL_BY_USER,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            ps.setInt(1, userId);
+            return ps;
+        }, (RowCallbackHandler) rs -> action.accept(transactionRowMapper.mapRow(rs, rs.getRow())));
+    }
+
     /**
      * Fetches a specific transaction by user ID, category ID, and transaction ID.
      *
@@ -69,28 +270,220 @@ public class TransactionRepositoryImpl implements TransactionRepository {
      * @param amount The amount of the transaction.
      * @param note The note for the transaction.
      * @param transactionDate The date of the transaction.
-     * @return The ID of the newly created transaction.
+     * @return The newly created transaction, as returned by the insert itself.
      * @throws EtBadRequestException If the request to create the transaction is invalid.
      */
     @Override
-    public Integer create(Integer userId, Integer categoryId, Double amount, String note, Long transactionDate) throws EtBadRequestException {
+    public Transaction create(Integer userId, Integer categoryId, Double amount, String note, Long transactionDate) throws EtBadRequestException {
+        try {
+            return jdbcTemplate.queryForObject(SQL_CREATE, transactionRowMapper,
+                    amount, userId, categoryId, idAllocator.nextId(IdAllocator.TRANSACTIONS_SEQ), amount, note, transactionDate);
+        } catch (Exception e) {
+            throw new EtBadRequestException("Invalid request");
+        }
+    }
+
+    /**
+     * Creates independent transactions, possibly of different users and categories, in a single
+     * JDBC batch. Each row is written as by {@link #create}, except that a row whose category is
+     * not found is skipped instead of failing the others.
+     *
+     * @param transactions The transactions to be created.
+     * @return The created transactions, with their IDs, in the same order as the input;
+     *         null in place of those whose category was not found.
+     * @throws EtBadRequestException If any of the transactions cannot be written, in which case none is.
+     */
+    @Override
+    public List<Transaction> createEach(List<Transaction> transactions) throws EtBadRequestException {
+        if (transactions.isEmpty())
+            return new ArrayList<>();
+        try {
+            List<Integer> ids = idAllocator.nextIds(IdAllocator.TRANSACTIONS_SEQ, transactions.size());
+            for (int i = 0; i < transactions.size(); i++)
+                transactions.get(i).setTransactionId(ids.get(i));
+            return insertEach(transactions);
+        } catch (Exception e) {
+            throw new EtBadRequestException("Invalid request");
+        }
+    }
+
+    /**
+     * Inserts transactions whose IDs are already set, as {@link #createEach} does.
+     * Database errors are not translated, so that callers can tell transient failures apart.
+     *
+     * @param transactions The transactions to be inserted, with their IDs.
+     * @return The inserted transactions, null in place of those whose category was not found.
+     */
+    List<Transaction> insertEach(List<Transaction> transactions) {
+        int[][] counts = jdbcTemplate.batchUpdate(SQL_CREATE_EACH, transactions, BATCH_SIZE, (ps, transaction) -> {
+            ps.setDouble(1, transaction.getAmount());
+            ps.setInt(2, transaction.getUserId());
+            ps.setInt(3, transaction.getCategoryId());
+            ps.setInt(4, transaction.getTransactionId());
+            ps.setDouble(5, transaction.getAmount());
+            ps.setString(6, transaction.getNote());
+            ps.setLong(7, transaction.getTransactionDate());
+        });
+        List<Transaction> inserted = new ArrayList<>(transactions.size());
+        for (int[] batch : counts)
+            for (int count : batch)
+                inserted.add(count == 0 ? null : transactions.get(inserted.size()));
+        return inserted;
+    }
+
+    /**
+     * Creates many transactions at once using JDBC batching.
+     * All the IDs are taken from the ID allocator at once, then the rows are inserted
+     * in batches of {@value #BATCH_SIZE} statements.
+     * The transactions must have been validated with {@link Transaction#checkFields}: database
+     * errors are not translated, since they are not caused by the request.
+     *
+     * @param transactions The transactions to be created.
+     * @return The IDs of the newly created transactions, in the same order as the input.
+     * @throws EtBadRequestException If the category does not exist or does not belong to the user.
+     */
+    @Override
+    public List<Integer> createBatch(List<Transaction> transactions) throws EtBadRequestException {
+        if (transactions.isEmpty())
+            return new ArrayList<>();
+        List<Integer> ids = idAllocator.nextIds(IdAllocator.TRANSACTIONS_SEQ, transactions.size());
+        for (int i = 0; i < transactions.size(); i++)
+            transactions.get(i).setTransactionId(ids.get(i));
+        jdbcTemplate.batchUpdate(SQL_CREATE_WITH_ID, transactions, BATCH_SIZE, (ps, transaction) -> {
+            ps.setInt(1, transaction.getTransactionId());
+            ps.setInt(2, transaction.getCategoryId());
+            ps.setInt(3, transaction.getUserId());
+            ps.setDouble(4, transaction.getAmount());
+            ps.setString(5, transaction.getNote());
+            ps.setLong(6, transaction.getTransactionDate());
+        });
+        addToCategoryTotals(transactions);
+        addToRollups(transactions);
+        return ids;
+    }
+
+    /**
+     * Bulk-loads transactions with the PostgreSQL COPY protocol.
+     * The IDs are taken from the ID allocator first, since the connection cannot run other
+     * statements while the COPY is in progress. Rows are then sent as CSV in large chunks.
+     *
+     * @param transactions The transactions to be loaded.
+     * @return The number of rows loaded.
+     * @throws EtBadRequestException If the rows cannot be loaded.
+     */
+    @Override
+    public long copyIn(List<Transaction> transactions) throws EtBadRequestException {
+        if (transactions.isEmpty())
+            return 0;
         try {
-            KeyHolder keyHolder = new GeneratedKeyHolder();
-            jdbcTemplate.update(connection -> {
-                PreparedStatement ps = connection.prepareStatement(SQL_CREATE, Statement.RETURN_GENERATED_KEYS);
-                ps.setInt(1, categoryId);
-                ps.setInt(2, userId);
-                ps.setDouble(3, amount);
-                ps.setString(4, note);
-                ps.setLong(5, transactionDate);
-                return ps;
-            }, keyHolder);
-            return (Integer) keyHolder.getKeys().get("TRANSACTION_ID");
+            List<Integer> ids = idAllocator.nextIds(IdAllocator.TRANSACTIONS_SEQ, transactions.size());
+            for (int i = 0; i < transactions.size(); i++)
+                transactions.get(i).setTransactionId(ids.get(i));
+            long copied = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+                CopyIn copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(SQL_COPY_IN);
+                try {
+                    StringBuilder rows = new StringBuilder(COPY_BUFFER_SIZE + 512);
+                    for (Transaction transaction : transactions) {
+                        rows.append(transaction.getTransactionId()).append(',')
+                                .append(transaction.getCategoryId()).append(',')
+                                .append(transaction.getUserId()).append(',')
+                                .append(BigDecimal.valueOf(transaction.getAmount()).toPlainString()).append(',')
+                                .append(Csv.escape(transaction.getNote())).append(',')
+                                .append(transaction.getTransactionDate()).append('\n');
+                        if (rows.length() >= COPY_BUFFER_SIZE)
+                            writeToCopy(copyIn, rows);
+                    }
+                    writeToCopy(copyIn, rows);
+                    return copyIn.endCopy();
+                } finally {
+                    if (copyIn.isActive())
+                        copyIn.cancelCopy();
+                }
+            });
+            addToCategoryTotals(transactions);
+            addToRollups(transactions);
+            return copied;
         } catch (Exception e) {
             throw new EtBadRequestException("Invalid request");
         }
     }
 
+    /**
+     * Adds the amounts of newly inserted transactions to the running totals of their categories,
+     * with one statement per category in a single JDBC batch.
+     *
+     * @param transactions The newly inserted transactions.
+     * @throws EtBadRequestException If a category does not exist or does not belong to the transaction's user.
+     */
+    private void addToCategoryTotals(List<Transaction> transactions) throws EtBadRequestException {
+        Map<List<Integer>, BigDecimal> totals = new HashMap<>();
+        for (Transaction transaction : transactions)
+            totals.merge(Arrays.asList(transaction.getUserId(), transaction.getCategoryId()),
+                    BigDecimal.valueOf(transaction.getAmount()), BigDecimal::add);
+        List<Object[]> args = new ArrayList<>(totals.size());
+        totals.forEach((key, total) -> args.add(new Object[]{total, key.get(0), key.get(1)}));
+        for (int count : jdbcTemplate.batchUpdate(SQL_ADD_TO_CATEGORY_TOTAL, args))
+            if (count == 0)
+                throw new EtBadRequestException("Category not found");
+    }
+
+    /**
+     * Adds newly inserted transactions to the daily and monthly spending rollups.
+     * The rows are aggregated by the database, so each bucket is upserted once.
+     *
+     * @param transactions The newly inserted transactions.
+     */
+    private void addToRollups(List<Transaction> transactions) {
+        Object[] ids = new Object[transactions.size()];
+        long from = Long.MAX_VALUE;
+        long to = Long.MIN_VALUE;
+        for (int i = 0; i < ids.length; i++) {
+            Transaction transaction = transactions.get(i);
+            ids[i] = transaction.getTransactionId();
+            from = Math.min(from, transaction.getTransactionDate());
+            to = Math.max(to, transaction.getTransactionDate());
+        }
+        long first = from;
+        long last = to;
+        jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(SQL_ADD_TO_ROLLUPS);
+            ps.setArray(1, connection.createArrayOf("integer", ids));
+            ps.setLong(2, first);
+            ps.setLong(3, last);
+            return ps;
+        });
+    }
+
+    /**
+     * Builds the statement upserting rollup deltas into a rollup table.
+     * The deltas are read from a CTE named R and grouped by bucket, since a single upsert
+     * cannot touch the same row twice.
+     *
+     * @param table The rollup table.
+     * @param bucketFunction The SQL function mapping a transaction date to the start of its bucket.
+     * @return The upsert statement.
+     */
+    private static String rollupUpsert(String table, String bucketFunction) {
+        return "INSERT INTO " + table + " (USER_ID, CATEGORY_ID, BUCKET_START, TOTAL, TX_COUNT) " +
+                "SELECT USER_ID, CATEGORY_ID, " + bucketFunction + "(TRANSACTION_DATE), SUM(AMOUNT), SUM(TX_COUNT) FROM R " +
+                "GROUP BY USER_ID, CATEGORY_ID, " + bucketFunction + "(TRANSACTION_DATE) " +
+                "ON CONFLICT (USER_ID, CATEGORY_ID, BUCKET_START) DO UPDATE SET " +
+                "TOTAL = " + table + ".TOTAL + EXCLUDED.TOTAL, TX_COUNT = " + table + ".TX_COUNT + EXCLUDED.TX_COUNT";
+    }
+
+    /**
+     * Sends the buffered rows to the COPY stream and clears the buffer.
+     *
+     * @param copyIn The COPY operation in progress.
+     * @param rows The buffered CSV rows.
+     * @throws SQLException If the rows cannot be sent.
+     */
+    private void writeToCopy(CopyIn copyIn, StringBuilder rows) throws SQLException {
+        byte[] bytes = rows.toString().getBytes(StandardCharsets.UTF_8);
+        copyIn.writeToCopy(bytes, 0, bytes.length);
+        rows.setLength(0);
+    }
+
     /**
      * Updates an existing transaction for a given user and category.
      *
@@ -103,12 +496,21 @@ public class TransactionRepositoryImpl implements TransactionRepository {
     @Override
     public void update(Integer userId, Integer categoryId, Integer transactionId, Transaction transaction) throws EtBadRequestException {
         try {
-            jdbcTemplate.update(SQL_UPDATE, new Object[]{transaction.getAmount(), transaction.getNote(), transaction.getTransactionDate(), userId, categoryId, transactionId});
+            updateRow(userId, categoryId, transactionId, transaction);
         } catch (Exception e) {
             throw new EtBadRequestException("Invalid request");
         }
     }
 
+    /**
+     * Updates a transaction as {@link #update} does, without translating database errors.
+     *
+     * @return The number of rows updated.
+     */
+    int updateRow(Integer userId, Integer categoryId, Integer transactionId, Transaction transaction) {
+        return jdbcTemplate.update(SQL_UPDATE, new Object[]{userId, categoryId, transactionId, transaction.getAmount(), transaction.getNote(), transaction.getTransactionDate()});
+    }
+
     /**
      * Removes a transaction by user ID, category ID, and transaction ID.
      *
@@ -119,11 +521,19 @@ public class TransactionRepositoryImpl implements TransactionRepository {
      */
     @Override
     public void removeById(Integer userId, Integer categoryId, Integer transactionId) throws EtResourceNotFoundException {
-        int count = jdbcTemplate.update(SQL_DELETE, new Object[]{userId, categoryId, transactionId});
-        if (count == 0)
+        if (deleteRow(userId, categoryId, transactionId) == 0)
             throw new EtResourceNotFoundException("Transaction not found");
     }
 
+    /**
+     * Removes a transaction as {@link #removeById} does, without failing when it is not found.
+     *
+     * @return The number of rows removed.
+     */
+    int deleteRow(Integer userId, Integer categoryId, Integer transactionId) {
+        return jdbcTemplate.update(SQL_DELETE, new Object[]{userId, categoryId, transactionId});
+    }
+
     /**
      * Maps a row of the result set to a Transaction object.
      */
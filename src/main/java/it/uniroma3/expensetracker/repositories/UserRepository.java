@@ -3,10 +3,12 @@ package it.uniroma3.expensetracker.repositories;
 import it.uniroma3.expensetracker.domain.User;
 import it.uniroma3.expensetracker.exceptions.EtAuthException;
 
+import java.util.function.Consumer;
+
 /**
  * UserRepository interface for performing CRUD operations on the User domain.
- * It defines methods for creating a user, finding a user by email and password,
- * counting users by email, and finding a user by ID.
+ * It defines methods for creating a user, finding a user by email, updating a password,
+ * counting users by email, and finding a user by ID. Passwords are stored and passed hashed.
  */
 public interface UserRepository {
 
@@ -16,21 +18,28 @@ public interface UserRepository {
      * @param firstName The first name of the user.
      * @param lastName The last name of the user.
      * @param email The email of the user.
-     * @param password The password of the user.
-     * @return The ID of the newly created user.
-     * @throws EtAuthException If there is an issue during user creation.
+     * @param hashedPassword The hash of the password of the user.
+     * @return The newly created user.
+     * @throws EtAuthException If the email is already in use, or there is another issue during user creation.
      */
-    Integer create(String firstName, String lastName, String email, String password) throws EtAuthException;
+    User create(String firstName, String lastName, String email, String hashedPassword) throws EtAuthException;
 
     /**
-     * Finds a user by their email and password.
+     * Finds a user by their email.
      *
      * @param email The email of the user.
-     * @param password The password of the user.
-     * @return The User object if found.
-     * @throws EtAuthException If the user is not found or the credentials are incorrect.
+     * @return The User object, with the hash of their password.
+     * @throws EtAuthException If no user has this email.
+     */
+    User findByEmail(String email) throws EtAuthException;
+
+    /**
+     * Replaces the password hash of a user.
+     *
+     * @param userId The ID of the user.
+     * @param hashedPassword The new hash of the password.
      */
-    User findByEmailAndPassword(String email, String password) throws EtAuthException;
+    void updatePassword(Integer userId, String hashedPassword);
 
     /**
      * Gets the count of users with the given email.
@@ -40,6 +49,21 @@ public interface UserRepository {
      */
     Integer getCountByEmail(String email);
 
+    /**
+     * Gets the number of users.
+     *
+     * @return The number of users.
+     */
+    long getCount();
+
+    /**
+     * Streams the email of every user, without holding them all in memory.
+     * Must be called within a transaction for the rows to be fetched in batches.
+     *
+     * @param action The action called with each email.
+     */
+    void streamAllEmails(Consumer<String> action);
+
     /**
      * Finds a user by their ID.
      *
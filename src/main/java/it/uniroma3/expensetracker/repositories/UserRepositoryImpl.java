@@ -2,84 +2,116 @@ package it.uniroma3.expensetracker.repositories;
 
 import it.uniroma3.expensetracker.domain.User;
 import it.uniroma3.expensetracker.exceptions.EtAuthException;
-import org.mindrot.jbcrypt.BCrypt;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.EmptyResultDataAccessException;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
 import org.springframework.jdbc.core.RowMapper;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
 import org.springframework.stereotype.Repository;
 
 import java.sql.PreparedStatement;
-import java.sql.Statement;
+import java.sql.ResultSet;
+import java.util.function.Consumer;
 
 /**
  * Implementation of the UserRepository interface for managing User entities.
- * This class uses Spring's JdbcTemplate for database operations and BCrypt for password hashing.
+ * This class uses Spring's JdbcTemplate for database operations; passwords arrive already hashed.
  */
 @Repository
 public class UserRepositoryImpl implements UserRepository {
 
     // SQL queries used in this repository
-    private static final String SQL_CREATE = "INSERT INTO ET_USERS(USER_ID, FIRST_NAME, LAST_NAME, EMAIL, PASSWORD) VALUES(NEXTVAL('ET_USERS_SEQ'), ?, ?, ?, ?)";
+    private static final String SQL_CREATE = "INSERT INTO ET_USERS(USER_ID, FIRST_NAME, LAST_NAME, EMAIL, PASSWORD) VALUES(?, ?, ?, ?, ?) " +
+            "ON CONFLICT (EMAIL) DO NOTHING RETURNING USER_ID, FIRST_NAME, LAST_NAME, EMAIL, PASSWORD";
+    private static final String SQL_COUNT = "SELECT COUNT(*) FROM ET_USERS";
+    private static final String SQL_FIND_ALL_EMAILS = "SELECT EMAIL FROM ET_USERS";
     private static final String SQL_COUNT_BY_EMAIL = "SELECT COUNT(*) FROM ET_USERS WHERE EMAIL = ?";
     private static final String SQL_FIND_BY_ID = "SELECT USER_ID, FIRST_NAME, LAST_NAME, EMAIL, PASSWORD FROM ET_USERS WHERE USER_ID = ?";
     private static final String SQL_FIND_BY_EMAIL = "SELECT USER_ID, FIRST_NAME, LAST_NAME, EMAIL, PASSWORD FROM ET_USERS WHERE EMAIL = ?";
+    private static final String SQL_UPDATE_PASSWORD = "UPDATE ET_USERS SET PASSWORD = ? WHERE USER_ID = ?";
+
+    private static final int STREAM_FETCH_SIZE = 1000;
 
     @Autowired
     JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    IdAllocator idAllocator;
+
     /**
      * Creates a new user with the given details.
      *
      * @param firstName The first name of the user.
      * @param lastName The last name of the user.
      * @param email The email of the user.
-     * @param password The password of the user.
-     * @return The ID of the newly created user.
-     * @throws EtAuthException If there is an error during user creation.
+     * @param hashedPassword The hash of the password of the user.
+     * @return The newly created user, as returned by the insert itself.
+     * @throws EtAuthException If the email is already in use, as told by the unique index on EMAIL
+     * in the same round trip, or if there is another error during user creation.
      */
     @Override
-    public Integer create(String firstName, String lastName, String email, String password) throws EtAuthException {
-        String hashedPassword = BCrypt.hashpw(password, BCrypt.gensalt(10));
+    public User create(String firstName, String lastName, String email, String hashedPassword) throws EtAuthException {
         try {
-            KeyHolder keyHolder = new GeneratedKeyHolder();
-            jdbcTemplate.update(connection -> {
-                PreparedStatement ps = connection.prepareStatement(SQL_CREATE, Statement.RETURN_GENERATED_KEYS);
-                ps.setString(1, firstName);
-                ps.setString(2, lastName);
-                ps.setString(3, email);
-                ps.setString(4, hashedPassword);
-                return ps;
-            }, keyHolder);
-            return (Integer) keyHolder.getKeys().get("USER_ID");
+            return jdbcTemplate.queryForObject(SQL_CREATE, userRowMapper, idAllocator.nextId(IdAllocator.USERS_SEQ), firstName, lastName, email, hashedPassword);
+        } catch (EmptyResultDataAccessException e) {
+            throw new EtAuthException("Email already in use");  // Nothing inserted, nothing returned
         } catch (Exception e) {
             throw new EtAuthException("Invalid details. Failed to create account");
         }
     }
 
     /**
-     * Finds a user by their email and password.
+     * Finds a user by their email.
      *
      * @param email The email of the user.
-     * @param password The password of the user.
-     * @return The User object if found and password matches.
-     * @throws EtAuthException If the email or password is invalid.
+     * @return The User object, with the hash of their password.
+     * @throws EtAuthException If no user has this email, with the same message as a wrong password.
      */
     @Override
-    public User findByEmailAndPassword(String email, String password) throws EtAuthException {
+    public User findByEmail(String email) throws EtAuthException {
         try {
-            User user = jdbcTemplate.queryForObject(SQL_FIND_BY_EMAIL, new Object[]{email}, userRowMapper);
-            if (!BCrypt.checkpw(password, user.getPassword())) {
-                throw new EtAuthException("Invalid email/password");
-            }
-            return user;
+            return jdbcTemplate.queryForObject(SQL_FIND_BY_EMAIL, new Object[]{email}, userRowMapper);
         } catch (EmptyResultDataAccessException e) {
             throw new EtAuthException("Invalid email/password");
         }
     }
 
+    /**
+     * Replaces the password hash of a user.
+     *
+     * @param userId The ID of the user.
+     * @param hashedPassword The new hash of the password.
+     */
+    @Override
+    public void updatePassword(Integer userId, String hashedPassword) {
+        jdbcTemplate.update(SQL_UPDATE_PASSWORD, hashedPassword, userId);
+    }
+
+    /**
+     * Gets the number of users.
+     *
+     * @return The number of users.
+     */
+    @Override
+    public long getCount() {
+        return jdbcTemplate.queryForObject(SQL_COUNT, Long.class);
+    }
+
+    /**
+     * Streams the email of every user, fetching the rows in batches.
+     *
+     * @param action The action called with each email.
+     */
+    @Override
+    public void streamAllEmails(Consumer<String> action) {
+        jdbcTemplate.query(connection -> {
+            PreparedStatement ps = connection.prepareStatement(SQL_FIND_ALL_EMAILS,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(STREAM_FETCH_SIZE);
+            return ps;
+        }, (RowCallbackHandler) rs -> action.accept(rs.getString("EMAIL")));
+    }
+
     /**
      * Gets the count of users with the given email.
      *
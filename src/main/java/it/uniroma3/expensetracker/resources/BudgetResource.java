@@ -1,15 +1,17 @@
 package it.uniroma3.expensetracker.resources;
 
 import it.uniroma3.expensetracker.domain.Budget;
+import it.uniroma3.expensetracker.domain.BudgetRequest;
 import it.uniroma3.expensetracker.services.BudgetService;
+import it.uniroma3.expensetracker.services.DataVersionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.servlet.http.HttpServletRequest;
-import java.util.HashMap;
-import java.util.Map;
+import javax.validation.Valid;
 
 @RestController
 @RequestMapping("/api/budget")
@@ -18,18 +20,23 @@ public class BudgetResource {
     @Autowired
     BudgetService budgetService;
 
+    @Autowired
+    DataVersionService dataVersionService;
+
     @GetMapping("")
-    public ResponseEntity<Budget> getBudget(HttpServletRequest request) {
+    public ResponseEntity<Budget> getBudget(HttpServletRequest request, WebRequest webRequest) {
         int userId = (Integer) request.getAttribute("userId");
+        String eTag = dataVersionService.eTagOf(userId);
+        if (webRequest.checkNotModified(eTag))
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
         Budget budget = budgetService.fetchBudgetByUserId(userId);
         return new ResponseEntity<>(budget, HttpStatus.OK);
     }
 
     @PutMapping("")
-    public ResponseEntity<Budget> updateBudget(HttpServletRequest request, @RequestBody Map<String, Object> budgetMap) {
+    public ResponseEntity<Budget> updateBudget(HttpServletRequest request, @Valid @RequestBody BudgetRequest budgetRequest) {
         int userId = (Integer) request.getAttribute("userId");
-        Double totalBudget = Double.valueOf(budgetMap.get("totalBudget").toString());
-        Budget budget = budgetService.updateBudget(userId, totalBudget);
+        Budget budget = budgetService.updateBudget(userId, budgetRequest.getTotalBudget());
         return new ResponseEntity<>(budget, HttpStatus.OK);
     }
 }
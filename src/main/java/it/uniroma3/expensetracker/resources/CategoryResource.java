@@ -1,16 +1,19 @@
 package it.uniroma3.expensetracker.resources;
 
 import it.uniroma3.expensetracker.domain.Category;
+import it.uniroma3.expensetracker.domain.CategoryRequest;
+import it.uniroma3.expensetracker.domain.SuccessResponse;
 import it.uniroma3.expensetracker.services.CategoryService;
+import it.uniroma3.expensetracker.services.DataVersionService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.servlet.http.HttpServletRequest;
-import java.util.HashMap;
+import javax.validation.Valid;
 import java.util.List;
-import java.util.Map;
 
 /**
  * REST Controller for handling category-related requests.
@@ -22,31 +25,48 @@ public class CategoryResource {
     @Autowired
     CategoryService categoryService;
 
+    @Autowired
+    DataVersionService dataVersionService;
+
     /**
      * Fetches all categories for the authenticated user.
+     * Answers 304 without reading them if the ETag sent in If-None-Match is still current; otherwise
+     * cached categories are only sent if they are at least as new as the ETag's version.
      *
      * @param request HttpServletRequest to get the authenticated user's ID.
+     * @param webRequest WebRequest to check and set the ETag.
      * @return ResponseEntity containing a list of categories and an HTTP status code.
      */
     @GetMapping("")
-    public ResponseEntity<List<Category>> getAllCategories(HttpServletRequest request) {
+    public ResponseEntity<List<Category>> getAllCategories(HttpServletRequest request, WebRequest webRequest) {
         int userId = (Integer) request.getAttribute("userId");
-        List<Category> categories = categoryService.fetchAllCategories(userId);
+        long version = dataVersionService.versionOf(userId);
+        String eTag = dataVersionService.eTagOf(userId, version);
+        if (webRequest.checkNotModified(eTag))
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        List<Category> categories = categoryService.fetchAllCategories(userId, version);
         return new ResponseEntity<>(categories, HttpStatus.OK);
     }
 
     /**
      * Fetches a specific category by ID for the authenticated user.
+     * Answers 304 without reading it if the ETag sent in If-None-Match is still current; otherwise
+     * a cached category is only sent if it is at least as new as the ETag's version.
      *
      * @param request HttpServletRequest to get the authenticated user's ID.
+     * @param webRequest WebRequest to check and set the ETag.
      * @param categoryId ID of the category to fetch.
      * @return ResponseEntity containing the category and an HTTP status code.
      */
     @GetMapping("/{categoryId}")
-    public ResponseEntity<Category> getCategoryById(HttpServletRequest request,
+    public ResponseEntity<Category> getCategoryById(HttpServletRequest request, WebRequest webRequest,
                                                     @PathVariable("categoryId") Integer categoryId) {
         int userId = (Integer) request.getAttribute("userId");
-        Category category = categoryService.fetchCategoryById(userId, categoryId);
+        long version = dataVersionService.versionOf(userId);
+        String eTag = dataVersionService.eTagOf(userId, version);
+        if (webRequest.checkNotModified(eTag))
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        Category category = categoryService.fetchCategoryById(userId, categoryId, version);
         return new ResponseEntity<>(category, HttpStatus.OK);
     }
 
@@ -54,16 +74,14 @@ public class CategoryResource {
      * Adds a new category for the authenticated user.
      *
      * @param request HttpServletRequest to get the authenticated user's ID.
-     * @param categoryMap Map containing the title and description of the new category.
+     * @param categoryRequest The title and description of the new category.
      * @return ResponseEntity containing the created category and an HTTP status code.
      */
     @PostMapping("")
     public ResponseEntity<Category> addCategory(HttpServletRequest request,
-                                                @RequestBody Map<String, Object> categoryMap) {
+                                                @Valid @RequestBody CategoryRequest categoryRequest) {
         int userId = (Integer) request.getAttribute("userId");
-        String title = (String) categoryMap.get("title");
-        String description = (String) categoryMap.get("description");
-        Category category = categoryService.addCategory(userId, title, description);
+        Category category = categoryService.addCategory(userId, categoryRequest.getTitle(), categoryRequest.getDescription());
         return new ResponseEntity<>(category, HttpStatus.CREATED);
     }
 
@@ -72,18 +90,17 @@ public class CategoryResource {
      *
      * @param request HttpServletRequest to get the authenticated user's ID.
      * @param categoryId ID of the category to update.
-     * @param category Category object containing updated data.
+     * @param categoryRequest The new title and description of the category.
      * @return ResponseEntity containing a success flag and an HTTP status code.
      */
     @PutMapping("/{categoryId}")
-    public ResponseEntity<Map<String, Boolean>> updateCategory(HttpServletRequest request,
-                                                               @PathVariable("categoryId") Integer categoryId,
-                                                               @RequestBody Category category) {
+    public ResponseEntity<SuccessResponse> updateCategory(HttpServletRequest request,
+                                                          @PathVariable("categoryId") Integer categoryId,
+                                                          @Valid @RequestBody CategoryRequest categoryRequest) {
         int userId = (Integer) request.getAttribute("userId");
+        Category category = new Category(categoryId, userId, categoryRequest.getTitle(), categoryRequest.getDescription(), null);
         categoryService.updateCategory(userId, categoryId, category);
-        Map<String, Boolean> map = new HashMap<>();
-        map.put("success", true);
-        return new ResponseEntity<>(map, HttpStatus.OK);
+        return new ResponseEntity<>(SuccessResponse.INSTANCE, HttpStatus.OK);
     }
 
     /**
@@ -94,12 +111,10 @@ public class CategoryResource {
      * @return ResponseEntity containing a success flag and an HTTP status code.
      */
     @DeleteMapping("/{categoryId}")
-    public ResponseEntity<Map<String, Boolean>> deleteCategory(HttpServletRequest request,
-                                                               @PathVariable("categoryId") Integer categoryId) {
+    public ResponseEntity<SuccessResponse> deleteCategory(HttpServletRequest request,
+                                                          @PathVariable("categoryId") Integer categoryId) {
         int userId = (Integer) request.getAttribute("userId");
         categoryService.removeCategoryWithAllTransactions(userId, categoryId);
-        Map<String, Boolean> map = new HashMap<>();
-        map.put("success", true);
-        return new ResponseEntity<>(map, HttpStatus.OK);
+        return new ResponseEntity<>(SuccessResponse.INSTANCE, HttpStatus.OK);
     }
 }
@@ -0,0 +1,243 @@
+package it.uniroma3.expensetracker.resources;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import it.uniroma3.expensetracker.Constants;
+import it.uniroma3.expensetracker.domain.Transaction;
+import it.uniroma3.expensetracker.domain.TransactionFilter;
+import it.uniroma3.expensetracker.domain.TransactionImportResult;
+import it.uniroma3.expensetracker.domain.TransactionPage;
+import it.uniroma3.expensetracker.exceptions.EtBadRequestException;
+import it.uniroma3.expensetracker.services.TransactionService;
+import it.uniroma3.expensetracker.util.Csv;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * REST Controller for handling requests that span a user's whole ledger, across all categories.
+ */
+@RestController
+@RequestMapping("/api/transactions")
+public class LedgerResource {
+
+    // Size of the buffer between the row stream and the response, in characters
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+
+    @Autowired
+    TransactionService transactionService;
+
+    @Autowired
+    ObjectMapper objectMapper;
+
+    /**
+     * Fetches one page of the authenticated user's transactions across all categories, newest first,
+     * optionally restricted to a category, a date range and an amount range.
+     * The cursor of the next page, if any, is returned in the {@value Constants#NEXT_CURSOR_HEADER} header.
+     *
+     * @param request HttpServletRequest to get the authenticated user's ID.
+     * @param categoryId Optional ID of the category the transactions belong to.
+     * @param from Optional earliest transaction date, inclusive, in milliseconds since epoch.
+     * @param to Optional latest transaction date, inclusive, in milliseconds since epoch.
+     * @param minAmount Optional smallest amount, inclusive.
+     * @param maxAmount Optional largest amount, inclusive.
+     * @param cursor Opaque cursor returned with the previous page, omitted for the first page.
+     * @param limit Maximum number of transactions in the page.
+     * @return ResponseEntity containing a list of transactions and an HTTP status code.
+     */
+    @GetMapping("")
+    public ResponseEntity<List<Transaction>> getTransactions(HttpServletRequest request,
+                                                             @RequestParam(value = "categoryId", required = false) Integer categoryId,
+                                                             @RequestParam(value = "from", required = false) Long from,
+                                                             @RequestParam(value = "to", required = false) Long to,
+                                                             @RequestParam(value = "minAmount", required = false) Double minAmount,
+                                                             @RequestParam(value = "maxAmount", required = false) Double maxAmount,
+                                                             @RequestParam(value = "cursor", required = false) String cursor,
+                                                             @RequestParam(value = "limit", defaultValue = "" + Constants.DEFAULT_PAGE_SIZE) Integer limit) {
+        int userId = (Integer) request.getAttribute("userId");
+        TransactionFilter filter = new TransactionFilter(categoryId, from, to, minAmount, maxAmount);
+        TransactionPage page = transactionService.fetchTransactionPage(userId, filter, cursor, limit);
+        HttpHeaders headers = new HttpHeaders();
+        if (page.getNextCursor() != null)
+            headers.set(Constants.NEXT_CURSOR_HEADER, page.getNextCursor());
+        return new ResponseEntity<>(page.getTransactions(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * Searches the authenticated user's transactions across all categories by free text in their note,
+     * most relevant first, optionally restricted to a category, a date range and an amount range.
+     * Words are matched whole and case-insensitively; quoted phrases, "or" and "-word" exclusions
+     * are supported. The cursor of the next page, if any, is returned in the
+     * {@value Constants#NEXT_CURSOR_HEADER} header.
+     *
+     * @param request HttpServletRequest to get the authenticated user's ID.
+     * @param query The searched text.
+     * @param categoryId Optional ID of the category the transactions belong to.
+     * @param from Optional earliest transaction date, inclusive, in milliseconds since epoch.
+     * @param to Optional latest transaction date, inclusive, in milliseconds since epoch.
+     * @param minAmount Optional smallest amount, inclusive.
+     * @param maxAmount Optional largest amount, inclusive.
+     * @param cursor Opaque cursor returned with the previous page, omitted for the first page.
+     * @param limit Maximum number of transactions in the page.
+     * @return ResponseEntity containing a list of transactions and an HTTP status code.
+     */
+    @GetMapping("/search")
+    public ResponseEntity<List<Transaction>> searchTransactions(HttpServletRequest request,
+                                                                @RequestParam("q") String query,
+                                                                @RequestParam(value = "categoryId", required = false) Integer categoryId,
+                                                                @RequestParam(value = "from", required = false) Long from,
+                                                                @RequestParam(value = "to", required = false) Long to,
+                                                                @RequestParam(value = "minAmount", required = false) Double minAmount,
+                                                                @RequestParam(value = "maxAmount", required = false) Double maxAmount,
+                                                                @RequestParam(value = "cursor", required = false) String cursor,
+                                                                @RequestParam(value = "limit", defaultValue = "" + Constants.DEFAULT_PAGE_SIZE) Integer limit) {
+        int userId = (Integer) request.getAttribute("userId");
+        TransactionFilter filter = new TransactionFilter(categoryId, from, to, minAmount, maxAmount);
+        TransactionPage page = transactionService.searchTransactions(userId, query, filter, cursor, limit);
+        HttpHeaders headers = new HttpHeaders();
+        if (page.getNextCursor() != null)
+            headers.set(Constants.NEXT_CURSOR_HEADER, page.getNextCursor());
+        return new ResponseEntity<>(page.getTransactions(), headers, HttpStatus.OK);
+    }
+
+    /**
+     * Streams every transaction of the authenticated user as CSV or newline-delimited JSON.
+     * Rows are written to the response as they are read from the database, so the export
+     * starts immediately and uses constant memory whatever the size of the ledger.
+     *
+     * @param request HttpServletRequest to get the authenticated user's ID.
+     * @param format Output format, either "csv" or "ndjson".
+     * @return ResponseEntity streaming the exported transactions.
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(HttpServletRequest request,
+                                                                    @RequestParam(value = "format", defaultValue = "csv") String format) {
+        int userId = (Integer) request.getAttribute("userId");
+        StreamingResponseBody body;
+        MediaType mediaType;
+        if ("csv".equalsIgnoreCase(format)) {
+            mediaType = new MediaType("text", "csv", StandardCharsets.UTF_8);
+            body = out -> writeCsv(userId, out);
+        } else if ("ndjson".equalsIgnoreCase(format)) {
+            mediaType = new MediaType("application", "x-ndjson");
+            body = out -> writeNdjson(userId, out);
+        } else {
+            throw new EtBadRequestException("Export format must be csv or ndjson");
+        }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(mediaType);
+        headers.set(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"transactions." + format.toLowerCase() + "\"");
+        return new ResponseEntity<>(body, headers, HttpStatus.OK);
+    }
+
+    /**
+     * Imports transactions from a bank-export CSV file sent as the request body.
+     * The file is read as a stream and loaded with the PostgreSQL COPY protocol; lines that
+     * cannot be imported are reported back without stopping the import.
+     *
+     * @param request HttpServletRequest to get the authenticated user's ID and the file.
+     * @return ResponseEntity containing the import counts, the rejected lines and an HTTP status code.
+     * @throws IOException If the request body cannot be read.
+     */
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<TransactionImportResult> importTransactions(HttpServletRequest request) throws IOException {
+        int userId = (Integer) request.getAttribute("userId");
+        TransactionImportResult result = transactionService.importTransactions(userId, request.getInputStream());
+        return new ResponseEntity<>(result, HttpStatus.OK);
+    }
+
+    /**
+     * Writes the user's transactions to the output stream as CSV, one row per transaction.
+     *
+     * @param userId The ID of the user whose transactions are exported.
+     * @param out The response output stream.
+     * @throws IOException If writing to the response fails.
+     */
+    private void writeCsv(int userId, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), EXPORT_BUFFER_SIZE);
+        writer.write("transactionId,categoryId,amount,note,transactionDate\n");
+        writer.flush();
+        try {
+            transactionService.exportTransactions(userId, transaction -> {
+                try {
+                    writer.write(transaction.getTransactionId().toString());
+                    writer.write(',');
+                    writer.write(transaction.getCategoryId().toString());
+                    writer.write(',');
+                    writer.write(BigDecimal.valueOf(transaction.getAmount()).toPlainString());
+                    writer.write(',');
+                    writer.write(Csv.escape(transaction.getNote()));
+                    writer.write(',');
+                    writer.write(transaction.getTransactionDate().toString());
+                    writer.write('\n');
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        writer.flush();
+    }
+
+    /**
+     * Writes the user's transactions to the output stream as newline-delimited JSON,
+     * one object per line.
+     *
+     * @param userId The ID of the user whose transactions are exported.
+     * @param out The response output stream.
+     * @throws IOException If writing to the response fails.
+     */
+    private void writeNdjson(int userId, OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(out, JsonEncoding.UTF8);
+        generator.setRootValueSeparator(null);
+        try {
+            transactionService.exportTransactions(userId, transaction -> {
+                try {
+                    writeJson(generator, transaction);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        generator.flush();
+    }
+
+    /**
+     * Writes a single transaction as a JSON object followed by a line break.
+     *
+     * @param generator The generator writing to the response.
+     * @param transaction The transaction to write.
+     * @throws IOException If writing to the response fails.
+     */
+    private void writeJson(JsonGenerator generator, Transaction transaction) throws IOException {
+        generator.writeStartObject();
+        generator.writeNumberField("transactionId", transaction.getTransactionId());
+        generator.writeNumberField("categoryId", transaction.getCategoryId());
+        generator.writeNumberField("userId", transaction.getUserId());
+        generator.writeNumberField("amount", transaction.getAmount());
+        generator.writeStringField("note", transaction.getNote());
+        generator.writeNumberField("transactionDate", transaction.getTransactionDate());
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+    }
+}
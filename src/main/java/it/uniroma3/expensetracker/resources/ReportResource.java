@@ -0,0 +1,90 @@
+package it.uniroma3.expensetracker.resources;
+
+import it.uniroma3.expensetracker.domain.CategorySpending;
+import it.uniroma3.expensetracker.domain.SpendingPoint;
+import it.uniroma3.expensetracker.services.LedgerAnalyticsService;
+import it.uniroma3.expensetracker.services.ReportService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import javax.servlet.http.HttpServletRequest;
+import java.util.List;
+
+/**
+ * REST Controller for handling report-related requests.
+ */
+@RestController
+@RequestMapping("/api/reports")
+public class ReportResource {
+
+    @Autowired
+    ReportService reportService;
+
+    @Autowired
+    LedgerAnalyticsService ledgerAnalyticsService;
+
+    /**
+     * Fetches the authenticated user's spending over time.
+     *
+     * @param request HttpServletRequest to get the authenticated user's ID.
+     * @param from Start of the range, in milliseconds since epoch.
+     * @param to End of the range, in milliseconds since epoch, inclusive.
+     * @param granularity Size of the buckets, "day" or "month".
+     * @param categoryId Optional ID of the category to restrict the series to.
+     * @return ResponseEntity containing the non-empty buckets of the range and an HTTP status code.
+     */
+    @GetMapping("/timeseries")
+    public ResponseEntity<List<SpendingPoint>> getSpendingSeries(HttpServletRequest request,
+                                                                 @RequestParam("from") Long from,
+                                                                 @RequestParam("to") Long to,
+                                                                 @RequestParam(value = "granularity", defaultValue = "month") String granularity,
+                                                                 @RequestParam(value = "categoryId", required = false) Integer categoryId) {
+        int userId = (Integer) request.getAttribute("userId");
+        List<SpendingPoint> series = reportService.fetchSpendingSeries(userId, categoryId, granularity, from, to);
+        return new ResponseEntity<>(series, HttpStatus.OK);
+    }
+
+    /**
+     * Fetches the authenticated user's spending per category, largest first, such as the top 5
+     * categories of the month with {@code limit=5}.
+     *
+     * @param request HttpServletRequest to get the authenticated user's ID.
+     * @param from Optional earliest transaction date, inclusive, in milliseconds since epoch.
+     * @param to Optional latest transaction date, inclusive, in milliseconds since epoch.
+     * @param limit Maximum number of categories returned.
+     * @return ResponseEntity containing the categories with spending in the range and an HTTP status code.
+     */
+    @GetMapping("/categories")
+    public ResponseEntity<List<CategorySpending>> getCategoryTotals(HttpServletRequest request,
+                                                                    @RequestParam(value = "from", required = false) Long from,
+                                                                    @RequestParam(value = "to", required = false) Long to,
+                                                                    @RequestParam(value = "limit", defaultValue = "" + Integer.MAX_VALUE) Integer limit) {
+        int userId = (Integer) request.getAttribute("userId");
+        List<CategorySpending> totals = ledgerAnalyticsService.fetchCategoryTotals(userId, from, to, limit);
+        return new ResponseEntity<>(totals, HttpStatus.OK);
+    }
+
+    /**
+     * Fetches the authenticated user's spending per calendar month (UTC).
+     *
+     * @param request HttpServletRequest to get the authenticated user's ID.
+     * @param from Optional earliest transaction date, inclusive, in milliseconds since epoch.
+     * @param to Optional latest transaction date, inclusive, in milliseconds since epoch.
+     * @param categoryId Optional ID of the category to restrict the totals to.
+     * @return ResponseEntity containing the months with spending in the range and an HTTP status code.
+     */
+    @GetMapping("/months")
+    public ResponseEntity<List<SpendingPoint>> getMonthlyTotals(HttpServletRequest request,
+                                                                @RequestParam(value = "from", required = false) Long from,
+                                                                @RequestParam(value = "to", required = false) Long to,
+                                                                @RequestParam(value = "categoryId", required = false) Integer categoryId) {
+        int userId = (Integer) request.getAttribute("userId");
+        List<SpendingPoint> totals = ledgerAnalyticsService.fetchMonthlyTotals(userId, from, to, categoryId);
+        return new ResponseEntity<>(totals, HttpStatus.OK);
+    }
+}
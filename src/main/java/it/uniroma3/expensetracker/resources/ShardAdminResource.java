@@ -0,0 +1,79 @@
+package it.uniroma3.expensetracker.resources;
+
+import it.uniroma3.expensetracker.domain.ShardMove;
+import it.uniroma3.expensetracker.exceptions.EtAuthException;
+import it.uniroma3.expensetracker.exceptions.EtResourceNotFoundException;
+import it.uniroma3.expensetracker.services.ShardMigrationService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * REST Controller for operating the shards.
+ * Requests must carry the {@code X-Admin-Token} header matching {@code expensetracker.admin.token};
+ * the endpoints are disabled while no token is configured.
+ */
+@RestController
+@RequestMapping("/api/admin/shards")
+public class ShardAdminResource {
+
+    @Autowired
+    ShardMigrationService shardMigrationService;
+
+    @Value("${expensetracker.admin.token:}")
+    private String adminToken;
+
+    /**
+     * Starts moving a user's data to another shard. The move runs in the background, taking at
+     * least twice the directory cache TTL, during which the user's writes are refused; its
+     * progress is then read with {@link #getMove}.
+     *
+     * @param token The admin token.
+     * @param userId ID of the user to move.
+     * @param shard ID of the target shard.
+     * @return ResponseEntity containing the move and an HTTP status code.
+     */
+    @PostMapping("/users/{userId}/move")
+    public ResponseEntity<ShardMove> moveUser(@RequestHeader(value = "X-Admin-Token", required = false) String token,
+                                              @PathVariable("userId") Integer userId,
+                                              @RequestParam("shard") Integer shard) {
+        checkToken(token);
+        ShardMove move = shardMigrationService.moveUser(userId, shard);
+        return new ResponseEntity<>(move, HttpStatus.ACCEPTED);
+    }
+
+    /**
+     * Gets the progress of the latest move of a user started by this instance.
+     *
+     * @param token The admin token.
+     * @param userId ID of the moved user.
+     * @return ResponseEntity containing the move and an HTTP status code.
+     * @throws EtResourceNotFoundException If this instance has no recent move of the user.
+     */
+    @GetMapping("/users/{userId}/move")
+    public ResponseEntity<ShardMove> getMove(@RequestHeader(value = "X-Admin-Token", required = false) String token,
+                                             @PathVariable("userId") Integer userId) {
+        checkToken(token);
+        ShardMove move = shardMigrationService.findMove(userId);
+        if (move == null)
+            throw new EtResourceNotFoundException("No move of user " + userId);
+        return new ResponseEntity<>(move, HttpStatus.OK);
+    }
+
+    /**
+     * Checks the admin token of a request.
+     *
+     * @param token The admin token.
+     * @throws EtAuthException If the token is missing or wrong, or no token is configured.
+     */
+    private void checkToken(String token) {
+        if (adminToken.isEmpty() || token == null
+                || !MessageDigest.isEqual(adminToken.getBytes(StandardCharsets.UTF_8), token.getBytes(StandardCharsets.UTF_8)))
+            throw new EtAuthException("Invalid admin token");
+    }
+}
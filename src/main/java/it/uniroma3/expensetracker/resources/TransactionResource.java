@@ -1,16 +1,27 @@
 package it.uniroma3.expensetracker.resources;
 
+import it.uniroma3.expensetracker.Constants;
+import it.uniroma3.expensetracker.domain.SuccessResponse;
 import it.uniroma3.expensetracker.domain.Transaction;
+import it.uniroma3.expensetracker.domain.TransactionBatchResult;
+import it.uniroma3.expensetracker.domain.TransactionFilter;
+import it.uniroma3.expensetracker.domain.TransactionPage;
+import it.uniroma3.expensetracker.domain.TransactionRequest;
+import it.uniroma3.expensetracker.exceptions.EtBadRequestException;
+import it.uniroma3.expensetracker.services.DataVersionService;
 import it.uniroma3.expensetracker.services.TransactionService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import javax.servlet.http.HttpServletRequest;
-import java.util.HashMap;
+import javax.validation.Valid;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.Map;
 
 /**
  * REST Controller for handling transaction-related requests within a specific category.
@@ -22,34 +33,65 @@ public class TransactionResource {
     @Autowired
     TransactionService transactionService;
 
+    @Autowired
+    DataVersionService dataVersionService;
+
     /**
-     * Fetches all transactions for a specific category and authenticated user.
+     * Fetches one page of transactions for a specific category and authenticated user, newest first,
+     * optionally restricted to a date range and an amount range.
+     * The cursor of the next page, if any, is returned in the {@value Constants#NEXT_CURSOR_HEADER} header.
+     * Answers 304 without reading them if the ETag sent in If-None-Match is still current.
      *
      * @param request HttpServletRequest to get the authenticated user's ID.
+     * @param webRequest WebRequest to check and set the ETag.
      * @param categoryId ID of the category whose transactions are to be fetched.
+     * @param from Optional earliest transaction date, inclusive, in milliseconds since epoch.
+     * @param to Optional latest transaction date, inclusive, in milliseconds since epoch.
+     * @param minAmount Optional smallest amount, inclusive.
+     * @param maxAmount Optional largest amount, inclusive.
+     * @param cursor Opaque cursor returned with the previous page, omitted for the first page.
+     * @param limit Maximum number of transactions in the page.
      * @return ResponseEntity containing a list of transactions and an HTTP status code.
      */
     @GetMapping("")
-    public ResponseEntity<List<Transaction>> getAllTransactions(HttpServletRequest request,
-                                                                @PathVariable("categoryId") Integer categoryId) {
+    public ResponseEntity<List<Transaction>> getAllTransactions(HttpServletRequest request, WebRequest webRequest,
+                                                                @PathVariable("categoryId") Integer categoryId,
+                                                                @RequestParam(value = "from", required = false) Long from,
+                                                                @RequestParam(value = "to", required = false) Long to,
+                                                                @RequestParam(value = "minAmount", required = false) Double minAmount,
+                                                                @RequestParam(value = "maxAmount", required = false) Double maxAmount,
+                                                                @RequestParam(value = "cursor", required = false) String cursor,
+                                                                @RequestParam(value = "limit", defaultValue = "" + Constants.DEFAULT_PAGE_SIZE) Integer limit) {
         int userId = (Integer) request.getAttribute("userId");
-        List<Transaction> transactions = transactionService.fetchAllTransactions(userId, categoryId);
-        return new ResponseEntity<>(transactions, HttpStatus.OK);
+        String eTag = dataVersionService.eTagOf(userId);
+        if (webRequest.checkNotModified(eTag))
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
+        TransactionFilter filter = new TransactionFilter(categoryId, from, to, minAmount, maxAmount);
+        TransactionPage page = transactionService.fetchTransactionPage(userId, filter, cursor, limit);
+        HttpHeaders headers = new HttpHeaders();
+        if (page.getNextCursor() != null)
+            headers.set(Constants.NEXT_CURSOR_HEADER, page.getNextCursor());
+        return new ResponseEntity<>(page.getTransactions(), headers, HttpStatus.OK);
     }
 
     /**
      * Fetches a specific transaction by ID within a category for the authenticated user.
+     * Answers 304 without reading it if the ETag sent in If-None-Match is still current.
      *
      * @param request HttpServletRequest to get the authenticated user's ID.
+     * @param webRequest WebRequest to check and set the ETag.
      * @param categoryId ID of the category.
      * @param transactionId ID of the transaction to fetch.
      * @return ResponseEntity containing the transaction and an HTTP status code.
      */
     @GetMapping("/{transactionId}")
-    public ResponseEntity<Transaction> getTransactionById(HttpServletRequest request,
+    public ResponseEntity<Transaction> getTransactionById(HttpServletRequest request, WebRequest webRequest,
                                                           @PathVariable("categoryId") Integer categoryId,
                                                           @PathVariable("transactionId") Integer transactionId) {
         int userId = (Integer) request.getAttribute("userId");
+        String eTag = dataVersionService.eTagOf(userId);
+        if (webRequest.checkNotModified(eTag))
+            return new ResponseEntity<>(HttpStatus.NOT_MODIFIED);
         Transaction transaction = transactionService.fetchTransactionById(userId,                                                      categoryId, transactionId);
         return new ResponseEntity<>(transaction, HttpStatus.OK);
     }
@@ -59,40 +101,78 @@ public class TransactionResource {
      *
      * @param request HttpServletRequest to get the authenticated user's ID.
      * @param categoryId ID of the category to add the transaction to.
-     * @param transactionMap Map containing the transaction details.
+     * @param transactionRequest The transaction details.
      * @return ResponseEntity containing the created transaction and an HTTP status code.
      */
     @PostMapping("")
     public ResponseEntity<Transaction> addTransaction(HttpServletRequest request,
                                                       @PathVariable("categoryId") Integer categoryId,
-                                                      @RequestBody Map<String, Object> transactionMap) {
+                                                      @Valid @RequestBody TransactionRequest transactionRequest) {
         int userId = (Integer) request.getAttribute("userId");
-        Double amount = Double.valueOf(transactionMap.get("amount").toString());
-        String note = (String) transactionMap.get("note");
-        Long transactionDate = Long.valueOf(transactionMap.get("transactionDate").toString());
-        Transaction transaction = transactionService.addTransaction(userId, categoryId, amount, note, transactionDate);
+        Transaction transaction = transactionService.addTransaction(userId, categoryId, transactionRequest.getAmount(),
+                transactionRequest.getNote(), transactionRequest.getTransactionDate());
         return new ResponseEntity<>(transaction, HttpStatus.CREATED);
     }
 
+    /**
+     * Adds many transactions to a specific category for the authenticated user in one request.
+     * Every item is validated on its own: valid items are inserted together, invalid ones are
+     * reported back with their position in the batch and left out.
+     *
+     * @param request HttpServletRequest to get the authenticated user's ID.
+     * @param categoryId ID of the category to add the transactions to.
+     * @param transactionRequests The details of each transaction.
+     * @return ResponseEntity containing the generated IDs, the per-item errors and an HTTP status code.
+     */
+    @PostMapping("/batch")
+    public ResponseEntity<TransactionBatchResult> addTransactions(HttpServletRequest request,
+                                                                  @PathVariable("categoryId") Integer categoryId,
+                                                                  @RequestBody List<TransactionRequest> transactionRequests) {
+        int userId = (Integer) request.getAttribute("userId");
+        if (transactionRequests.isEmpty())
+            throw new EtBadRequestException("A batch must contain at least one transaction");
+        if (transactionRequests.size() > Constants.MAX_BATCH_SIZE)
+            throw new EtBadRequestException("A batch can contain at most " + Constants.MAX_BATCH_SIZE + " transactions");
+        List<Transaction> valid = new ArrayList<>(transactionRequests.size());
+        List<Integer> positions = new ArrayList<>(transactionRequests.size());
+        List<TransactionBatchResult.ItemError> errors = new ArrayList<>();
+        for (int i = 0; i < transactionRequests.size(); i++) {
+            try {
+                valid.add(toTransaction(transactionRequests.get(i)));
+                positions.add(i);
+            } catch (EtBadRequestException e) {
+                errors.add(new TransactionBatchResult.ItemError(i, e.getMessage()));
+            }
+        }
+        List<Integer> transactionIds = new ArrayList<>(Collections.nCopies(transactionRequests.size(), (Integer) null));
+        if (!valid.isEmpty()) {
+            List<Integer> createdIds = transactionService.addTransactions(userId, categoryId, valid);
+            for (int i = 0; i < createdIds.size(); i++)
+                transactionIds.set(positions.get(i), createdIds.get(i));
+        }
+        HttpStatus status = valid.isEmpty() ? HttpStatus.BAD_REQUEST : HttpStatus.CREATED;
+        return new ResponseEntity<>(new TransactionBatchResult(transactionIds, errors), status);
+    }
+
     /**
      * Updates an existing transaction within a specific category for the authenticated user.
      *
      * @param request HttpServletRequest to get the authenticated user's ID.
      * @param categoryId ID of the category.
      * @param transactionId ID of the transaction to update.
-     * @param transaction Transaction object containing updated data.
+     * @param transactionRequest The new amount, note and date of the transaction.
      * @return ResponseEntity containing a success flag and an HTTP status code.
      */
     @PutMapping("/{transactionId}")
-    public ResponseEntity<Map<String, Boolean>> updateTransaction(HttpServletRequest request,
-                                                                  @PathVariable("categoryId") Integer categoryId,
-                                                                  @PathVariable("transactionId") Integer transactionId,
-                                                                  @RequestBody Transaction transaction) {
+    public ResponseEntity<SuccessResponse> updateTransaction(HttpServletRequest request,
+                                                             @PathVariable("categoryId") Integer categoryId,
+                                                             @PathVariable("transactionId") Integer transactionId,
+                                                             @Valid @RequestBody TransactionRequest transactionRequest) {
         int userId = (Integer) request.getAttribute("userId");
+        Transaction transaction = new Transaction(transactionId, categoryId, userId, transactionRequest.getAmount(),
+                transactionRequest.getNote(), transactionRequest.getTransactionDate());
         transactionService.updateTransaction(userId, categoryId, transactionId, transaction);
-        Map<String, Boolean> map = new HashMap<>();
-        map.put("success", true);
-        return new ResponseEntity<>(map, HttpStatus.OK);
+        return new ResponseEntity<>(SuccessResponse.INSTANCE, HttpStatus.OK);
     }
 
     /**
@@ -104,14 +184,26 @@ public class TransactionResource {
      * @return ResponseEntity containing a success flag and an HTTP status code.
      */
     @DeleteMapping("/{transactionId}")
-    public ResponseEntity<Map<String, Boolean>> deleteTransaction(HttpServletRequest request,
-                                                                  @PathVariable("categoryId") Integer categoryId,
-                                                                  @PathVariable("transactionId") Integer transactionId) {
+    public ResponseEntity<SuccessResponse> deleteTransaction(HttpServletRequest request,
+                                                             @PathVariable("categoryId") Integer categoryId,
+                                                             @PathVariable("transactionId") Integer transactionId) {
         int userId = (Integer) request.getAttribute("userId");
         transactionService.removeTransaction(userId, categoryId, transactionId);
-        Map<String, Boolean> map = new HashMap<>();
-        map.put("success", true);
-        return new ResponseEntity<>(map, HttpStatus.OK);
+        return new ResponseEntity<>(SuccessResponse.INSTANCE, HttpStatus.OK);
     }
-}
 
+    /**
+     * Converts one item of a bulk request into a transaction, validating its fields.
+     *
+     * @param transactionRequest The transaction details.
+     * @return The transaction described by the request, without IDs.
+     * @throws EtBadRequestException If a field is missing or does not fit its column.
+     */
+    private Transaction toTransaction(TransactionRequest transactionRequest) throws EtBadRequestException {
+        if (transactionRequest == null)
+            throw new EtBadRequestException("Transaction must not be null");
+        Transaction.checkFields(transactionRequest.getAmount(), transactionRequest.getNote(), transactionRequest.getTransactionDate());
+        return new Transaction(null, null, null, transactionRequest.getAmount(), transactionRequest.getNote(),
+                transactionRequest.getTransactionDate());
+    }
+}
@@ -1,6 +1,9 @@
 package it.uniroma3.expensetracker.resources;
 
 import it.uniroma3.expensetracker.Constants;
+import it.uniroma3.expensetracker.domain.LoginRequest;
+import it.uniroma3.expensetracker.domain.RegistrationRequest;
+import it.uniroma3.expensetracker.domain.TokenResponse;
 import it.uniroma3.expensetracker.domain.User;
 import it.uniroma3.expensetracker.services.UserService;
 import io.jsonwebtoken.Jwts;
@@ -10,12 +13,13 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import javax.validation.Valid;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * REST Controller for handling user-related requests, such as login and registration.
+ * Both complete asynchronously, so the request thread is released while the password is hashed.
  */
 @RestController
 @RequestMapping("/api/users")
@@ -27,40 +31,35 @@ public class UserResource {
     /**
      * Authenticates a user and returns a JWT token if successful.
      *
-     * @param userMap A map containing the user's email and password.
-     * @return ResponseEntity containing the JWT token and an HTTP status code.
+     * @param loginRequest The user's email and password.
+     * @return ResponseEntity containing the JWT token and an HTTP status code, once the password is checked.
      */
     @PostMapping("/login")
-    public ResponseEntity<Map<String, String>> loginUser(@RequestBody Map<String, Object> userMap) {
-        String email = (String) userMap.get("email");
-        String password = (String) userMap.get("password");
-        User user = userService.validateUser(email, password);
-        return new ResponseEntity<>(generateJWTToken(user), HttpStatus.OK);
+    public CompletableFuture<ResponseEntity<TokenResponse>> loginUser(@Valid @RequestBody LoginRequest loginRequest) {
+        return userService.validateUser(loginRequest.getEmail(), loginRequest.getPassword())
+                .thenApply(user -> new ResponseEntity<>(generateJWTToken(user), HttpStatus.OK));
     }
 
     /**
      * Registers a new user and returns a JWT token if successful.
      *
-     * @param userMap A map containing the user's first name, last name, email, and password.
-     * @return ResponseEntity containing the JWT token and an HTTP status code.
+     * @param registrationRequest The user's first name, last name, email, and password.
+     * @return ResponseEntity containing the JWT token and an HTTP status code, once the user is stored.
      */
     @PostMapping("/register")
-    public ResponseEntity<Map<String, String>> registerUser(@RequestBody Map<String, Object> userMap) {
-        String firstName = (String) userMap.get("firstName");
-        String lastName = (String) userMap.get("lastName");
-        String email = (String) userMap.get("email");
-        String password = (String) userMap.get("password");
-        User user = userService.registerUser(firstName, lastName, email, password);
-        return new ResponseEntity<>(generateJWTToken(user), HttpStatus.OK);
+    public CompletableFuture<ResponseEntity<TokenResponse>> registerUser(@Valid @RequestBody RegistrationRequest registrationRequest) {
+        return userService.registerUser(registrationRequest.getFirstName(), registrationRequest.getLastName(),
+                        registrationRequest.getEmail(), registrationRequest.getPassword())
+                .thenApply(user -> new ResponseEntity<>(generateJWTToken(user), HttpStatus.OK));
     }
 
     /**
      * Generates a JWT token for the authenticated user.
      *
      * @param user The authenticated user.
-     * @return A map containing the JWT token.
+     * @return The JWT token.
      */
-    private Map<String, String> generateJWTToken(User user) {
+    private TokenResponse generateJWTToken(User user) {
         long timestamp = System.currentTimeMillis();
         String token = Jwts.builder()
                 .signWith(SignatureAlgorithm.HS256, Constants.API_SECRET_KEY)
@@ -71,8 +70,6 @@ public class UserResource {
                 .claim("firstName", user.getFirstName())
                 .claim("lastName", user.getLastName())
                 .compact();
-        Map<String, String> map = new HashMap<>();
-        map.put("token", token);
-        return map;
+        return new TokenResponse(token);
     }
 }
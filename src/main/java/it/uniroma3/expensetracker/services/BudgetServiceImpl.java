@@ -14,14 +14,19 @@ public class BudgetServiceImpl implements BudgetService {
     @Autowired
     BudgetRepository budgetRepository;
 
+    @Autowired
+    DataVersionService dataVersionService;
+
     @Override
+    @Transactional(readOnly = true)
     public Budget fetchBudgetByUserId(Integer userId) throws EtResourceNotFoundException {
         return budgetRepository.findByUserId(userId);
     }
 
     @Override
     public Budget updateBudget(Integer userId, Double totalBudget) throws EtResourceNotFoundException {
-        budgetRepository.update(userId, totalBudget);
-        return budgetRepository.findByUserId(userId);
+        Budget budget = budgetRepository.update(userId, totalBudget);
+        dataVersionService.dataChanged(userId);
+        return budget;
     }
 }
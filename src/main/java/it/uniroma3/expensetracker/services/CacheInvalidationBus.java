@@ -0,0 +1,36 @@
+package it.uniroma3.expensetracker.services;
+
+/**
+ * Service interface evicting the in-process caches of every instance when a user's data changes.
+ * The other services report their writes here instead of to the caches; the caches of this
+ * instance are evicted once the current transaction commits, and, when the bus is enabled,
+ * those of the other instances once they receive the invalidations published with it.
+ */
+public interface CacheInvalidationBus {
+
+    /**
+     * Evicts a category of a user, and the user's category list, after its title, description or total changed.
+     *
+     * @param userId The ID of the user.
+     * @param categoryId The ID of the category.
+     */
+    void categoryChanged(Integer userId, Integer categoryId);
+
+    /**
+     * Evicts what is cached of a user's transactions, and of the category holding them.
+     *
+     * @param userId The ID of the user.
+     * @param categoryId The ID of the category of the transactions.
+     */
+    void transactionsChanged(Integer userId, Integer categoryId);
+
+    /**
+     * Evicts everything cached, for every user.
+     */
+    void clear();
+
+    /**
+     * Applies the invalidations published by the other instances since the last call.
+     */
+    void receive();
+}
@@ -0,0 +1,317 @@
+package it.uniroma3.expensetracker.services;
+
+import it.uniroma3.expensetracker.config.ShardContext;
+import it.uniroma3.expensetracker.repositories.ShardDirectory;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Implementation of the CacheInvalidationBus interface, over PostgreSQL LISTEN/NOTIFY.
+ * <p>
+ * The invalidations of a database transaction are collected and sent as a single NOTIFY just
+ * before it commits, on its own connection, so the other instances receive them if and only
+ * if the transaction commits, and after its data is visible. Each message is a letter and the
+ * IDs it applies to, such as {@code t42.17} for the transactions of user 42 in category 17;
+ * a payload holds as many as fit, after the ID of the sending instance, which ignores its own.
+ * <p>
+ * Every instance keeps one connection per shard listening on the channel, taken from the
+ * shard's pool for as long as it works. {@link #receive} drains them all, applying each
+ * distinct message once however many times it was sent. Invalidations sent while a listening
+ * connection is down are lost, so when one is (re)opened every cache is cleared instead.
+ * <p>
+ * Disabled with {@code expensetracker.invalidation.enabled=false}, the default for a single
+ * instance: only the caches of this instance are evicted.
+ */
+@Service
+public class CacheInvalidationBusImpl implements CacheInvalidationBus, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(CacheInvalidationBusImpl.class);
+
+    private static final String CHANNEL = "et_invalidation";
+
+    // NOTIFY payloads must be shorter than 8000 bytes
+    private static final int MAX_PAYLOAD_BYTES = 7900;
+
+    // How long a listening connection can stay silent before it is checked
+    private static final long VALIDATION_INTERVAL_MS = 5000;
+
+    private static final String CLEAR = "*";
+    private static final char CATEGORY = 'c';
+    private static final char TRANSACTIONS = 't';
+
+    private static final String SQL_NOTIFY = "SELECT PG_NOTIFY(?, ?)";
+    private static final String SQL_LISTEN = "LISTEN " + CHANNEL;
+
+    @Autowired
+    CategoryCache categoryCache;
+
+    @Autowired
+    LedgerAnalyticsService ledgerAnalyticsService;
+
+    @Autowired
+    ShardDirectory shardDirectory;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    DataSource dataSource;
+
+    @Value("${expensetracker.invalidation.enabled:false}")
+    boolean enabled;
+
+    // Tells this instance's notifications apart from the others'
+    private final String instanceId = UUID.randomUUID().toString().substring(0, 8);
+
+    // Listening connection of each shard, only used by receive()
+    private final Map<Integer, Listener> listeners = new HashMap<>();
+
+    /**
+     * Evicts a category of a user once the current transaction commits, here and on the other instances.
+     *
+     * @param userId The ID of the user.
+     * @param categoryId The ID of the category.
+     */
+    @Override
+    public void categoryChanged(Integer userId, Integer categoryId) {
+        categoryCache.categoryChanged(userId, categoryId);
+        publish(CATEGORY + userId.toString() + "." + categoryId);
+    }
+
+    /**
+     * Evicts a category of a user once the current transaction commits, here and on the other
+     * instances, which also drop the user's ledger. The ledger of this instance is kept up to
+     * date by LedgerAnalyticsService itself.
+     *
+     * @param userId The ID of the user.
+     * @param categoryId The ID of the category of the transactions.
+     */
+    @Override
+    public void transactionsChanged(Integer userId, Integer categoryId) {
+        categoryCache.categoryChanged(userId, categoryId);
+        publish(TRANSACTIONS + userId.toString() + "." + categoryId);
+    }
+
+    /**
+     * Evicts every category once the current transaction commits, and everything cached on the other instances.
+     */
+    @Override
+    public void clear() {
+        categoryCache.clear();
+        publish(CLEAR);
+    }
+
+    /**
+     * Drains the listening connection of every shard and applies the distinct invalidations
+     * received, or clears every cache if a connection had to be opened.
+     */
+    @Override
+    public synchronized void receive() {
+        Set<String> messages = new LinkedHashSet<>();
+        boolean resync = false;
+        for (int shardId : shardDirectory.shardIds()) {
+            Listener listener = listeners.get(shardId);
+            try {
+                if (listener == null) {
+                    resync = true;
+                    listener = listen(shardId);
+                    listeners.put(shardId, listener);
+                }
+                listener.drain(messages);
+            } catch (SQLException e) {
+                logger.warn("Invalidation listener of shard {} lost, clearing the caches: {}", shardId, e.getMessage());
+                listeners.remove(shardId);
+                if (listener != null)
+                    listener.close();
+            }
+        }
+        if (resync || messages.contains(CLEAR)) {
+            categoryCache.clear();
+            ledgerAnalyticsService.clear();
+            return;
+        }
+        for (String message : messages)
+            apply(message);
+    }
+
+    /**
+     * Closes the listening connections.
+     */
+    @Override
+    public synchronized void destroy() {
+        listeners.values().forEach(Listener::close);
+        listeners.clear();
+    }
+
+    /**
+     * Sends an invalidation to the other instances, just before the current transaction commits,
+     * or right away outside of a transaction.
+     */
+    private void publish(String message) {
+        if (!enabled)
+            return;
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            send(Collections.singleton(message));
+            return;
+        }
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingInvalidations && ((PendingInvalidations) synchronization).bus() == this) {
+                ((PendingInvalidations) synchronization).messages.add(message);
+                return;
+            }
+        }
+        PendingInvalidations pending = new PendingInvalidations();
+        pending.messages.add(message);
+        TransactionSynchronizationManager.registerSynchronization(pending);
+    }
+
+    /**
+     * Sends invalidations in as few notifications as they fit in.
+     */
+    private void send(Collection<String> messages) {
+        StringBuilder payload = new StringBuilder(instanceId).append('|');
+        int empty = payload.length();
+        for (String message : messages) {
+            if (payload.length() > empty && payload.length() + 1 + message.length() > MAX_PAYLOAD_BYTES) {
+                jdbcTemplate.queryForList(SQL_NOTIFY, CHANNEL, payload.toString());
+                payload.setLength(empty);
+            }
+            if (payload.length() > empty)
+                payload.append(',');
+            payload.append(message);
+        }
+        jdbcTemplate.queryForList(SQL_NOTIFY, CHANNEL, payload.toString());
+    }
+
+    /**
+     * Applies an invalidation received from another instance, right away.
+     */
+    private void apply(String message) {
+        try {
+            int dot = message.indexOf('.');
+            Integer userId = Integer.valueOf(message.substring(1, dot));
+            Integer categoryId = Integer.valueOf(message.substring(dot + 1));
+            switch (message.charAt(0)) {
+                case TRANSACTIONS:
+                    ledgerAnalyticsService.ledgerChanged(userId);
+                    // Fall through: the category's total changed too
+                case CATEGORY:
+                    categoryCache.categoryChanged(userId, categoryId);
+                    break;
+                default:
+                    logger.warn("Ignoring unknown invalidation {}", message);
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Ignoring malformed invalidation {}", message);
+        }
+    }
+
+    /**
+     * Opens a connection to a shard's primary and starts listening on it.
+     */
+    private Listener listen(int shardId) throws SQLException {
+        AtomicReference<Object> opened = new AtomicReference<>();
+        ShardContext.forShard(shardId, () -> {  // The connection is only fetched from the shard at the first statement
+            try {
+                Connection connection = dataSource.getConnection();
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(SQL_LISTEN);
+                } catch (SQLException e) {
+                    connection.close();
+                    throw e;
+                }
+                opened.set(connection);
+            } catch (SQLException e) {
+                opened.set(e);
+            }
+        });
+        if (opened.get() instanceof SQLException)
+            throw (SQLException) opened.get();
+        return new Listener((Connection) opened.get());
+    }
+
+    /**
+     * The invalidations published in a database transaction, sent just before it commits.
+     */
+    private class PendingInvalidations implements TransactionSynchronization {
+
+        private final Set<String> messages = new LinkedHashSet<>();
+
+        private CacheInvalidationBusImpl bus() {
+            return CacheInvalidationBusImpl.this;
+        }
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            send(messages);
+        }
+    }
+
+    /**
+     * A connection listening on the invalidation channel.
+     */
+    private class Listener {
+
+        private final Connection connection;
+        private long lastHeardAt = System.currentTimeMillis();
+
+        private Listener(Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * Adds the messages received from the other instances since the last call,
+         * checking the connection if it has been silent for a while.
+         */
+        private void drain(Set<String> messages) throws SQLException {
+            PGNotification[] notifications = connection.unwrap(PGConnection.class).getNotifications();
+            long now = System.currentTimeMillis();
+            if (notifications == null || notifications.length == 0) {
+                if (now - lastHeardAt > VALIDATION_INTERVAL_MS) {
+                    if (!connection.isValid((int) (VALIDATION_INTERVAL_MS / 1000)))
+                        throw new SQLException("Connection closed");
+                    lastHeardAt = now;
+                }
+                return;
+            }
+            lastHeardAt = now;
+            for (PGNotification notification : notifications) {
+                String payload = notification.getParameter();
+                int separator = payload.indexOf('|');
+                if (separator < 0 || payload.substring(0, separator).equals(instanceId))
+                    continue;
+                Collections.addAll(messages, payload.substring(separator + 1).split(","));
+            }
+        }
+
+        private void close() {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                logger.debug("Could not close an invalidation listener", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package it.uniroma3.expensetracker.services;
+
+import it.uniroma3.expensetracker.domain.Category;
+import it.uniroma3.expensetracker.exceptions.EtResourceNotFoundException;
+
+import java.util.List;
+
+/**
+ * Service interface for the in-process cache of the users' categories, with their running totals.
+ * The other services report the categories their writes change here, so that the cache
+ * never serves a category older than the last write committed through this instance.
+ */
+public interface CategoryCache {
+
+    /**
+     * Fetches all categories of a user, from the cache if possible.
+     *
+     * @param userId The ID of the user.
+     * @return A list of categories.
+     */
+    List<Category> fetchAll(Integer userId);
+
+    /**
+     * Fetches all categories of a user, from the cache if the cached list is at least as new as a version.
+     *
+     * @param userId The ID of the user.
+     * @param version The version of the user's data, read before this call, the list must be at least as new as.
+     * @return A list of categories.
+     */
+    List<Category> fetchAll(Integer userId, long version);
+
+    /**
+     * Fetches a category of a user, from the cache if possible.
+     *
+     * @param userId The ID of the user.
+     * @param categoryId The ID of the category.
+     * @return The category.
+     * @throws EtResourceNotFoundException If the category is not found.
+     */
+    Category fetchById(Integer userId, Integer categoryId) throws EtResourceNotFoundException;
+
+    /**
+     * Fetches a category of a user, from the cache if the cached entry is at least as new as a version.
+     *
+     * @param userId The ID of the user.
+     * @param categoryId The ID of the category.
+     * @param version The version of the user's data, read before this call, the category must be at least as new as.
+     * @return The category.
+     * @throws EtResourceNotFoundException If the category is not found.
+     */
+    Category fetchById(Integer userId, Integer categoryId, long version) throws EtResourceNotFoundException;
+
+    /**
+     * Evicts a category of a user, and the user's list, once the current transaction commits.
+     *
+     * @param userId The ID of the user.
+     * @param categoryId The ID of the category created, changed, removed or whose total changed.
+     */
+    void categoryChanged(Integer userId, Integer categoryId);
+
+    /**
+     * Evicts every category of every user, once the current transaction commits.
+     */
+    void clear();
+}
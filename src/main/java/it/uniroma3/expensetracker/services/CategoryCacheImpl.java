@@ -0,0 +1,200 @@
+package it.uniroma3.expensetracker.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import it.uniroma3.expensetracker.domain.Category;
+import it.uniroma3.expensetracker.exceptions.EtResourceNotFoundException;
+import it.uniroma3.expensetracker.repositories.CategoryRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Implementation of the CategoryCache interface.
+ * <p>
+ * Two Caffeine caches hold each user's category list and the categories fetched one by one,
+ * bounded in size and expiring after {@code expensetracker.categories.cache-ttl-ms}, which
+ * is how long a write made through another instance can go unseen. A single category is
+ * served from its user's list when that is cached. Callers get copies, so the cached
+ * categories never change.
+ * <p>
+ * Evictions run after the write commits. A load still running at that point is waited for
+ * and its result evicted too, so a list read before the commit is never kept.
+ * <p>
+ * Each entry records the version of the user's data it was loaded at, as read before the load.
+ * Callers that send the data with the ETag of a version get entries at least as new: an older
+ * one, such as one missing a write made through another instance, is loaded again.
+ * Hit and miss counts are published as the {@code cache.*} meters, tagged {@code cache=categories}
+ * and {@code cache=category}.
+ */
+@Service
+public class CategoryCacheImpl implements CategoryCache {
+
+    @Autowired
+    CategoryRepository categoryRepository;
+
+    private final Cache<Integer, Loaded<List<Category>>> lists;
+    private final Cache<Long, Loaded<Category>> categories;
+
+    /**
+     * Constructs the caches and registers their metrics.
+     *
+     * @param maxUsers the maximum number of users whose list is cached
+     * @param maxCategories the maximum number of single categories cached
+     * @param ttlMs how long an entry is kept after it is loaded, in milliseconds
+     * @param meterRegistry the registry the cache metrics are published to
+     */
+    public CategoryCacheImpl(@Value("${expensetracker.categories.cache-max-users:10000}") long maxUsers,
+                             @Value("${expensetracker.categories.cache-max-categories:50000}") long maxCategories,
+                             @Value("${expensetracker.categories.cache-ttl-ms:300000}") long ttlMs,
+                             MeterRegistry meterRegistry) {
+        lists = Caffeine.newBuilder().maximumSize(maxUsers).expireAfterWrite(Duration.ofMillis(ttlMs)).recordStats().build();
+        categories = Caffeine.newBuilder().maximumSize(maxCategories).expireAfterWrite(Duration.ofMillis(ttlMs)).recordStats().build();
+        CaffeineCacheMetrics.monitor(meterRegistry, lists, "categories");
+        CaffeineCacheMetrics.monitor(meterRegistry, categories, "category");
+    }
+
+    /**
+     * Fetches all categories of a user, loading them on a miss.
+     *
+     * @param userId The ID of the user.
+     * @return A list of copies of the categories.
+     */
+    @Override
+    public List<Category> fetchAll(Integer userId) {
+        return fetchAll(userId, 0);
+    }
+
+    /**
+     * Fetches all categories of a user, loading them on a miss or if the cached list is older than a version.
+     *
+     * @param userId The ID of the user.
+     * @param version The version of the user's data, read before this call, the list must be at least as new as.
+     * @return A list of copies of the categories.
+     */
+    @Override
+    public List<Category> fetchAll(Integer userId, long version) {
+        Function<Integer, Loaded<List<Category>>> load = id ->
+                new Loaded<>(Collections.unmodifiableList(categoryRepository.findAll(id)), version);
+        Loaded<List<Category>> cached = lists.get(userId, load);
+        if (cached.version < version)
+            cached = lists.asMap().compute(userId, (id, old) -> old != null && old.version >= version ? old : load.apply(id));
+        List<Category> copies = new ArrayList<>(cached.value.size());
+        for (Category category : cached.value)
+            copies.add(copy(category));
+        return copies;
+    }
+
+    /**
+     * Fetches a category of a user from the user's cached list, or else from the single categories, loading it on a miss.
+     *
+     * @param userId The ID of the user.
+     * @param categoryId The ID of the category.
+     * @return A copy of the category.
+     * @throws EtResourceNotFoundException If the category is not found.
+     */
+    @Override
+    public Category fetchById(Integer userId, Integer categoryId) throws EtResourceNotFoundException {
+        return fetchById(userId, categoryId, 0);
+    }
+
+    /**
+     * Fetches a category of a user as {@link #fetchById(Integer, Integer)} does, from cached
+     * entries at least as new as a version only.
+     *
+     * @param userId The ID of the user.
+     * @param categoryId The ID of the category.
+     * @param version The version of the user's data, read before this call, the category must be at least as new as.
+     * @return A copy of the category.
+     * @throws EtResourceNotFoundException If the category is not found.
+     */
+    @Override
+    public Category fetchById(Integer userId, Integer categoryId, long version) throws EtResourceNotFoundException {
+        Loaded<List<Category>> list = lists.getIfPresent(userId);
+        if (list != null && list.version >= version) {
+            for (Category category : list.value)
+                if (category.getCategoryId().equals(categoryId))
+                    return copy(category);
+            throw new EtResourceNotFoundException("Category not found");
+        }
+        Function<Long, Loaded<Category>> load = key -> new Loaded<>(categoryRepository.findById(userId, categoryId), version);
+        Loaded<Category> cached = categories.get(key(userId, categoryId), load);
+        if (cached.version < version)
+            cached = categories.asMap().compute(key(userId, categoryId), (key, old) -> old != null && old.version >= version ? old : load.apply(key));
+        return copy(cached.value);
+    }
+
+    /**
+     * Evicts a category of a user, and the user's list, once the current transaction commits.
+     *
+     * @param userId The ID of the user.
+     * @param categoryId The ID of the category.
+     */
+    @Override
+    public void categoryChanged(Integer userId, Integer categoryId) {
+        afterCommit(() -> {
+            lists.invalidate(userId);
+            categories.invalidate(key(userId, categoryId));
+        });
+    }
+
+    /**
+     * Evicts every category of every user once the current transaction commits.
+     */
+    @Override
+    public void clear() {
+        afterCommit(() -> {
+            lists.invalidateAll();
+            categories.invalidateAll();
+        });
+    }
+
+    /**
+     * Runs an action once the current transaction commits, or right away outside of a transaction.
+     */
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * A cached value with the version of the user's data it was loaded at.
+     */
+    private static final class Loaded<T> {
+
+        final T value;
+        final long version;
+
+        Loaded(T value, long version) {
+            this.value = value;
+            this.version = version;
+        }
+    }
+
+    private static Long key(Integer userId, Integer categoryId) {
+        return ((long) userId << 32) | (categoryId & 0xFFFFFFFFL);
+    }
+
+    private static Category copy(Category category) {
+        return new Category(category.getCategoryId(), category.getUserId(), category.getTitle(),
+                category.getDescription(), category.getTotalExpense());
+    }
+}
@@ -19,6 +19,15 @@ public interface CategoryService {
      */
     List<Category> fetchAllCategories(Integer userId);
 
+    /**
+     * Fetches all categories for a specific user, at least as new as a version of the user's data.
+     *
+     * @param userId The ID of the user whose categories are to be fetched.
+     * @param version The version of the user's data the categories are sent with.
+     * @return A list of categories.
+     */
+    List<Category> fetchAllCategories(Integer userId, long version);
+
     /**
      * Fetches a specific category by its ID for a specific user.
      *
@@ -29,6 +38,17 @@ public interface CategoryService {
      */
     Category fetchCategoryById(Integer userId, Integer categoryId) throws EtResourceNotFoundException;
 
+    /**
+     * Fetches a specific category by its ID for a specific user, at least as new as a version of the user's data.
+     *
+     * @param userId The ID of the user.
+     * @param categoryId The ID of the category to be fetched.
+     * @param version The version of the user's data the category is sent with.
+     * @return The category with the specified ID.
+     * @throws EtResourceNotFoundException If the category is not found.
+     */
+    Category fetchCategoryById(Integer userId, Integer categoryId, long version) throws EtResourceNotFoundException;
+
     /**
      * Adds a new category for a specific user.
      *
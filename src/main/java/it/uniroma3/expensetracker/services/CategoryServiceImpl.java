@@ -21,19 +21,45 @@ public class CategoryServiceImpl implements CategoryService {
     @Autowired
     CategoryRepository categoryRepository;
 
+    @Autowired
+    LedgerAnalyticsService ledgerAnalyticsService;
+
+    @Autowired
+    CategoryCache categoryCache;
+
+    @Autowired
+    CacheInvalidationBus cacheInvalidationBus;
+
+    @Autowired
+    DataVersionService dataVersionService;
+
     /**
-     * Fetches all categories for a specific user.
+     * Fetches all categories for a specific user, from the CategoryCache if possible.
      *
      * @param userId The ID of the user whose categories are to be fetched.
      * @return A list of categories.
      */
     @Override
+    @Transactional(readOnly = true)
     public List<Category> fetchAllCategories(Integer userId) {
-        return categoryRepository.findAll(userId);
+        return categoryCache.fetchAll(userId);
+    }
+
+    /**
+     * Fetches all categories for a specific user, from the CategoryCache if its list is at least as new as a version.
+     *
+     * @param userId The ID of the user whose categories are to be fetched.
+     * @param version The version of the user's data the categories are sent with.
+     * @return A list of categories.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<Category> fetchAllCategories(Integer userId, long version) {
+        return categoryCache.fetchAll(userId, version);
     }
 
     /**
-     * Fetches a specific category by its ID for a specific user.
+     * Fetches a specific category by its ID for a specific user, from the CategoryCache if possible.
      *
      * @param userId The ID of the user.
      * @param categoryId The ID of the category to be fetched.
@@ -41,8 +67,24 @@ public class CategoryServiceImpl implements CategoryService {
      * @throws EtResourceNotFoundException If the category is not found.
      */
     @Override
+    @Transactional(readOnly = true)
     public Category fetchCategoryById(Integer userId, Integer categoryId) throws EtResourceNotFoundException {
-        return categoryRepository.findById(userId, categoryId);
+        return categoryCache.fetchById(userId, categoryId);
+    }
+
+    /**
+     * Fetches a specific category by its ID for a specific user, from the CategoryCache if its entry is at least as new as a version.
+     *
+     * @param userId The ID of the user.
+     * @param categoryId The ID of the category to be fetched.
+     * @param version The version of the user's data the category is sent with.
+     * @return The category with the specified ID.
+     * @throws EtResourceNotFoundException If the category is not found.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public Category fetchCategoryById(Integer userId, Integer categoryId, long version) throws EtResourceNotFoundException {
+        return categoryCache.fetchById(userId, categoryId, version);
     }
 
     /**
@@ -56,8 +98,10 @@ public class CategoryServiceImpl implements CategoryService {
      */
     @Override
     public Category addCategory(Integer userId, String title, String description) throws EtBadRequestException {
-        int categoryId = categoryRepository.create(userId, title, description);
-        return categoryRepository.findById(userId, categoryId);
+        Category category = categoryRepository.create(userId, title, description);
+        cacheInvalidationBus.categoryChanged(userId, category.getCategoryId());
+        dataVersionService.dataChanged(userId);
+        return category;
     }
 
     /**
@@ -71,10 +115,13 @@ public class CategoryServiceImpl implements CategoryService {
     @Override
     public void updateCategory(Integer userId, Integer categoryId, Category category) throws EtBadRequestException {
         categoryRepository.update(userId, categoryId, category);
+        cacheInvalidationBus.categoryChanged(userId, categoryId);
+        dataVersionService.dataChanged(userId);
     }
 
     /**
      * Removes a category and all its associated transactions for a specific user.
+     * The category disappears immediately; its transactions are purged in the background.
      *
      * @param userId The ID of the user.
      * @param categoryId The ID of the category to be removed.
@@ -82,7 +129,9 @@ public class CategoryServiceImpl implements CategoryService {
      */
     @Override
     public void removeCategoryWithAllTransactions(Integer userId, Integer categoryId) throws EtResourceNotFoundException {
-        this.fetchCategoryById(userId, categoryId);  // Ensure the category exists before attempting to delete
         categoryRepository.removeById(userId, categoryId);
+        cacheInvalidationBus.transactionsChanged(userId, categoryId);
+        dataVersionService.dataChanged(userId);
+        ledgerAnalyticsService.ledgerChanged(userId);
     }
 }
@@ -0,0 +1,40 @@
+package it.uniroma3.expensetracker.services;
+
+/**
+ * Service interface for the version of each user's data, used to answer conditional GET requests.
+ */
+public interface DataVersionService {
+
+    /**
+     * Gets the strong ETag of every representation of a user's data at its current version.
+     * It must be read before the data it is sent with, so that it is never newer than them.
+     *
+     * @param userId The ID of the user.
+     * @return The quoted ETag.
+     */
+    String eTagOf(Integer userId);
+
+    /**
+     * Gets the current version of a user's data. It must be read before the data it is sent with.
+     *
+     * @param userId The ID of the user.
+     * @return The version, 0 if the user's data never changed.
+     */
+    long versionOf(Integer userId);
+
+    /**
+     * Gets the strong ETag of every representation of a user's data at a given version.
+     *
+     * @param userId The ID of the user.
+     * @param version The version, as read with {@link #versionOf}.
+     * @return The quoted ETag.
+     */
+    String eTagOf(Integer userId, long version);
+
+    /**
+     * Records that a user's data changes in the current transaction.
+     *
+     * @param userId The ID of the user.
+     */
+    void dataChanged(Integer userId);
+}
@@ -0,0 +1,65 @@
+package it.uniroma3.expensetracker.services;
+
+import it.uniroma3.expensetracker.repositories.DataVersionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Implementation of the DataVersionService interface.
+ * The ETag holds the user ID as well as the version, so that a client switching accounts
+ * never gets a 304 for the other account's data.
+ */
+@Service
+@Transactional
+public class DataVersionServiceImpl implements DataVersionService {
+
+    @Autowired
+    DataVersionRepository dataVersionRepository;
+
+    /**
+     * Gets the ETag of a user's data at its current version.
+     *
+     * @param userId The ID of the user.
+     * @return The quoted ETag.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public String eTagOf(Integer userId) {
+        return eTagOf(userId, dataVersionRepository.findByUserId(userId));
+    }
+
+    /**
+     * Gets the current version of a user's data.
+     *
+     * @param userId The ID of the user.
+     * @return The version, 0 if the user's data never changed.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public long versionOf(Integer userId) {
+        return dataVersionRepository.findByUserId(userId);
+    }
+
+    /**
+     * Gets the ETag of a user's data at a given version.
+     *
+     * @param userId The ID of the user.
+     * @param version The version.
+     * @return The quoted ETag.
+     */
+    @Override
+    public String eTagOf(Integer userId, long version) {
+        return "\"" + userId + "." + version + "\"";
+    }
+
+    /**
+     * Increments the version of a user's data, in the current transaction.
+     *
+     * @param userId The ID of the user.
+     */
+    @Override
+    public void dataChanged(Integer userId) {
+        dataVersionRepository.increment(userId);
+    }
+}
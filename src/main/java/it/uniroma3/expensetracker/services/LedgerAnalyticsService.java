@@ -0,0 +1,77 @@
+package it.uniroma3.expensetracker.services;
+
+import it.uniroma3.expensetracker.domain.CategorySpending;
+import it.uniroma3.expensetracker.domain.SpendingPoint;
+import it.uniroma3.expensetracker.domain.Transaction;
+import it.uniroma3.expensetracker.exceptions.EtBadRequestException;
+
+import java.util.List;
+
+/**
+ * Service interface for analytics computed over an in-memory copy of each active user's ledger.
+ * The other services report their committed writes here to keep the copies up to date.
+ */
+public interface LedgerAnalyticsService {
+
+    /**
+     * Computes a user's spending per category between two dates, largest total first.
+     *
+     * @param userId The ID of the user.
+     * @param from The earliest transaction date, inclusive, in milliseconds since epoch, or null for no bound.
+     * @param to The latest transaction date, inclusive, in milliseconds since epoch, or null for no bound.
+     * @param limit The maximum number of categories returned.
+     * @return The categories with at least one transaction in the range.
+     * @throws EtBadRequestException If the range or the limit is not valid.
+     */
+    List<CategorySpending> fetchCategoryTotals(Integer userId, Long from, Long to, int limit) throws EtBadRequestException;
+
+    /**
+     * Computes a user's spending per calendar month (UTC) between two dates.
+     *
+     * @param userId The ID of the user.
+     * @param from The earliest transaction date, inclusive, in milliseconds since epoch, or null for no bound.
+     * @param to The latest transaction date, inclusive, in milliseconds since epoch, or null for no bound.
+     * @param categoryId The ID of the category to restrict the totals to, or null for all categories.
+     * @return The months with at least one transaction in the range, in chronological order.
+     * @throws EtBadRequestException If the range is not valid.
+     */
+    List<SpendingPoint> fetchMonthlyTotals(Integer userId, Long from, Long to, Integer categoryId) throws EtBadRequestException;
+
+    /**
+     * Records a transaction created or replaced in the current transaction, once it commits.
+     *
+     * @param transaction The transaction as written.
+     */
+    void transactionWritten(Transaction transaction);
+
+    /**
+     * Records the new date and amount of a transaction updated in the current transaction, once it commits.
+     *
+     * @param userId The ID of the user.
+     * @param categoryId The ID of the category of the transaction.
+     * @param transactionId The ID of the transaction.
+     * @param transaction The updated transaction data.
+     */
+    void transactionUpdated(Integer userId, Integer categoryId, Integer transactionId, Transaction transaction);
+
+    /**
+     * Records a transaction removed in the current transaction, once it commits.
+     *
+     * @param userId The ID of the user.
+     * @param transactionId The ID of the transaction.
+     */
+    void transactionRemoved(Integer userId, Integer transactionId);
+
+    /**
+     * Drops the in-memory ledger of a user after bulk changes, once the current transaction commits;
+     * it is loaded again on the next query.
+     *
+     * @param userId The ID of the user.
+     */
+    void ledgerChanged(Integer userId);
+
+    /**
+     * Drops every in-memory ledger, once the current transaction commits.
+     */
+    void clear();
+}
@@ -0,0 +1,226 @@
+package it.uniroma3.expensetracker.services;
+
+import it.uniroma3.expensetracker.domain.CategorySpending;
+import it.uniroma3.expensetracker.domain.SpendingPoint;
+import it.uniroma3.expensetracker.domain.Transaction;
+import it.uniroma3.expensetracker.exceptions.EtBadRequestException;
+import it.uniroma3.expensetracker.repositories.TransactionRepository;
+import it.uniroma3.expensetracker.util.ColumnarLedger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Implementation of the LedgerAnalyticsService interface.
+ * <p>
+ * The ledger of a user is loaded on their first query, from the primary so that it includes
+ * their latest writes, and then kept up to date with the writes committed through this
+ * instance. Changes are applied idempotently, so a write that commits while the ledger is
+ * being loaded is counted once whichever of the two comes first. Writes made through other
+ * instances are only seen once the ledger expires, after {@code expensetracker.analytics.ttl-ms}.
+ * <p>
+ * A ledger takes about 24 bytes per transaction; {@code expensetracker.analytics.max-users}
+ * bounds the number kept in memory.
+ */
+@Service
+@Transactional
+public class LedgerAnalyticsServiceImpl implements LedgerAnalyticsService {
+
+    @Autowired
+    TransactionRepository transactionRepository;
+
+    @Value("${expensetracker.analytics.max-users:1000}")
+    private int maxUsers;
+
+    @Value("${expensetracker.analytics.ttl-ms:300000}")
+    private long ttlMs;
+
+    private final Map<Integer, CachedLedger> ledgers = new ConcurrentHashMap<>();
+
+    /**
+     * Computes a user's spending per category between two dates, largest total first.
+     * Not read-only, so that a ledger being loaded is read from the primary.
+     *
+     * @param userId The ID of the user.
+     * @param from The earliest transaction date, inclusive, or null for no bound.
+     * @param to The latest transaction date, inclusive, or null for no bound.
+     * @param limit The maximum number of categories returned.
+     * @return The categories with at least one transaction in the range.
+     * @throws EtBadRequestException If the range or the limit is not valid.
+     */
+    @Override
+    public List<CategorySpending> fetchCategoryTotals(Integer userId, Long from, Long to, int limit) throws EtBadRequestException {
+        if (limit < 1)
+            throw new EtBadRequestException("Limit must be positive");
+        checkRange(from, to);
+        return ledger(userId).totalsByCategory(from == null ? Long.MIN_VALUE : from, to == null ? Long.MAX_VALUE : to, limit);
+    }
+
+    /**
+     * Computes a user's spending per calendar month (UTC) between two dates.
+     *
+     * @param userId The ID of the user.
+     * @param from The earliest transaction date, inclusive, or null for no bound.
+     * @param to The latest transaction date, inclusive, or null for no bound.
+     * @param categoryId The ID of the category to restrict the totals to, or null for all categories.
+     * @return The months with at least one transaction in the range, in chronological order.
+     * @throws EtBadRequestException If the range is not valid.
+     */
+    @Override
+    public List<SpendingPoint> fetchMonthlyTotals(Integer userId, Long from, Long to, Integer categoryId) throws EtBadRequestException {
+        checkRange(from, to);
+        return ledger(userId).totalsByMonth(from == null ? Long.MIN_VALUE : from, to == null ? Long.MAX_VALUE : to, categoryId);
+    }
+
+    /**
+     * Records a transaction created or replaced in the current transaction, once it commits.
+     *
+     * @param transaction The transaction as written.
+     */
+    @Override
+    public void transactionWritten(Transaction transaction) {
+        afterCommit(() -> {
+            ColumnarLedger ledger = loadedLedger(transaction.getUserId());
+            if (ledger != null)
+                ledger.put(transaction.getTransactionId(), transaction.getCategoryId(),
+                        transaction.getTransactionDate(), transaction.getAmount());
+        });
+    }
+
+    /**
+     * Records the new date and amount of a transaction updated in the current transaction, once it commits.
+     *
+     * @param userId The ID of the user.
+     * @param categoryId The ID of the category of the transaction.
+     * @param transactionId The ID of the transaction.
+     * @param transaction The updated transaction data.
+     */
+    @Override
+    public void transactionUpdated(Integer userId, Integer categoryId, Integer transactionId, Transaction transaction) {
+        afterCommit(() -> {
+            ColumnarLedger ledger = loadedLedger(userId);
+            if (ledger != null)
+                ledger.update(transactionId, categoryId, transaction.getTransactionDate(), transaction.getAmount());
+        });
+    }
+
+    /**
+     * Records a transaction removed in the current transaction, once it commits.
+     *
+     * @param userId The ID of the user.
+     * @param transactionId The ID of the transaction.
+     */
+    @Override
+    public void transactionRemoved(Integer userId, Integer transactionId) {
+        afterCommit(() -> {
+            ColumnarLedger ledger = loadedLedger(userId);
+            if (ledger != null)
+                ledger.remove(transactionId);
+        });
+    }
+
+    /**
+     * Drops the in-memory ledger of a user once the current transaction commits.
+     *
+     * @param userId The ID of the user.
+     */
+    @Override
+    public void ledgerChanged(Integer userId) {
+        afterCommit(() -> ledgers.remove(userId));
+    }
+
+    /**
+     * Drops every in-memory ledger once the current transaction commits.
+     */
+    @Override
+    public void clear() {
+        afterCommit(ledgers::clear);
+    }
+
+    /**
+     * Gets the ledger of a user, loading it if it is missing or expired. The ledger is
+     * published before it is filled, under its write lock, so that concurrent queries wait
+     * for the load instead of starting their own, and concurrent writes apply after it.
+     */
+    private ColumnarLedger ledger(Integer userId) {
+        long now = System.currentTimeMillis();
+        CachedLedger cached = ledgers.get(userId);
+        if (cached != null && cached.expiresAt > now)
+            return cached.ledger;
+        if (ledgers.size() >= maxUsers) {
+            ledgers.values().removeIf(entry -> entry.expiresAt <= now);
+            if (ledgers.size() >= maxUsers)
+                ledgers.clear();
+        }
+        CachedLedger loading = new CachedLedger(new ColumnarLedger(), now + ttlMs);
+        loading.ledger.getLock().writeLock().lock();
+        try {
+            CachedLedger current = ledgers.compute(userId, (id, existing) ->
+                    existing != null && existing != cached && existing.expiresAt > now ? existing : loading);
+            if (current != loading)
+                return current.ledger;
+            try {
+                transactionRepository.streamAllByUser(userId, transaction -> loading.ledger.append(
+                        transaction.getTransactionId(), transaction.getCategoryId(),
+                        transaction.getTransactionDate(), transaction.getAmount()));
+            } catch (RuntimeException e) {
+                ledgers.remove(userId, loading);
+                throw e;
+            }
+            return loading.ledger;
+        } finally {
+            loading.ledger.getLock().writeLock().unlock();
+        }
+    }
+
+    /**
+     * Gets the ledger of a user if it is loaded; changes to ledgers that are not loaded are
+     * simply dropped, as the next load reads them from the database.
+     */
+    private ColumnarLedger loadedLedger(Integer userId) {
+        CachedLedger cached = ledgers.get(userId);
+        return cached == null ? null : cached.ledger;
+    }
+
+    /**
+     * Runs an action once the current transaction commits, or right away outside of a transaction.
+     */
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private void checkRange(Long from, Long to) throws EtBadRequestException {
+        if (from != null && to != null && from > to)
+            throw new EtBadRequestException("Range must have a start date not after its end date");
+    }
+
+    /**
+     * A user's ledger and the time at which it must be loaded again.
+     */
+    private static class CachedLedger {
+
+        private final ColumnarLedger ledger;
+        private final long expiresAt;
+
+        private CachedLedger(ColumnarLedger ledger, long expiresAt) {
+            this.ledger = ledger;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
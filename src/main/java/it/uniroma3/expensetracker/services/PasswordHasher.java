@@ -0,0 +1,38 @@
+package it.uniroma3.expensetracker.services;
+
+import it.uniroma3.expensetracker.exceptions.EtServiceUnavailableException;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Service interface hashing and checking passwords off the request threads.
+ */
+public interface PasswordHasher {
+
+    /**
+     * Hashes a password with the configured cost.
+     *
+     * @param password The password.
+     * @return The hash, once computed.
+     * @throws EtServiceUnavailableException If too many hashes are waiting already.
+     */
+    CompletableFuture<String> hash(String password) throws EtServiceUnavailableException;
+
+    /**
+     * Checks a password against a hash.
+     *
+     * @param password The password.
+     * @param hash The hash it must match.
+     * @return Whether the password matches, once checked.
+     * @throws EtServiceUnavailableException If too many hashes are waiting already.
+     */
+    CompletableFuture<Boolean> verify(String password, String hash) throws EtServiceUnavailableException;
+
+    /**
+     * Tells whether a hash was computed with another cost than the configured one.
+     *
+     * @param hash The hash.
+     * @return Whether the password should be hashed again.
+     */
+    boolean needsRehash(String hash);
+}
@@ -0,0 +1,122 @@
+package it.uniroma3.expensetracker.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import it.uniroma3.expensetracker.exceptions.EtServiceUnavailableException;
+import org.mindrot.jbcrypt.BCrypt;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Implementation of the PasswordHasher interface, with BCrypt.
+ * <p>
+ * Hashes are computed on a dedicated pool of one thread per core, so that sign-in storms use
+ * at most the CPU and never the request threads, which cheap requests keep being served on.
+ * At most {@code expensetracker.password.queue-capacity} hashes wait for a thread; beyond that
+ * they are refused at once with a 503 rather than left to time out.
+ * <p>
+ * The time taken by each hash and check is published as the {@code expensetracker.password.hash}
+ * timer, and the number waiting as the {@code expensetracker.password.queue} gauge.
+ */
+@Service
+public class PasswordHasherImpl implements PasswordHasher, DisposableBean {
+
+    private final int cost;
+    private final ThreadPoolExecutor executor;
+    private final Timer hashTimer;
+    private final Timer verifyTimer;
+
+    /**
+     * Constructs the hashing pool and registers its metrics.
+     *
+     * @param cost the BCrypt cost of new hashes; raising it rehashes passwords at their next sign-in
+     * @param queueCapacity the maximum number of hashes waiting for a thread
+     * @param meterRegistry the registry the metrics are published to
+     */
+    @Autowired
+    public PasswordHasherImpl(@Value("${expensetracker.password.bcrypt-cost:10}") int cost,
+                              @Value("${expensetracker.password.queue-capacity:64}") int queueCapacity,
+                              MeterRegistry meterRegistry) {
+        this(cost, Runtime.getRuntime().availableProcessors(), queueCapacity, meterRegistry);
+    }
+
+    PasswordHasherImpl(int cost, int threads, int queueCapacity, MeterRegistry meterRegistry) {
+        this.cost = cost;
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "password-hasher-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        hashTimer = Timer.builder("expensetracker.password.hash").tag("operation", "hash").register(meterRegistry);
+        verifyTimer = Timer.builder("expensetracker.password.hash").tag("operation", "verify").register(meterRegistry);
+        meterRegistry.gauge("expensetracker.password.queue", executor, pool -> pool.getQueue().size());
+    }
+
+    /**
+     * Hashes a password with a new salt and the configured cost.
+     *
+     * @param password The password.
+     * @return The hash, once computed.
+     * @throws EtServiceUnavailableException If the queue is full.
+     */
+    @Override
+    public CompletableFuture<String> hash(String password) throws EtServiceUnavailableException {
+        return submit(() -> hashTimer.record(() -> BCrypt.hashpw(password, BCrypt.gensalt(cost))));
+    }
+
+    /**
+     * Checks a password against a hash.
+     *
+     * @param password The password.
+     * @param hash The hash it must match.
+     * @return Whether the password matches, once checked.
+     * @throws EtServiceUnavailableException If the queue is full.
+     */
+    @Override
+    public CompletableFuture<Boolean> verify(String password, String hash) throws EtServiceUnavailableException {
+        return submit(() -> verifyTimer.record(() -> BCrypt.checkpw(password, hash)));
+    }
+
+    /**
+     * Tells whether a hash was computed with another cost than the configured one,
+     * reading the cost from the hash itself ({@code $2a$10$...}).
+     *
+     * @param hash The hash.
+     * @return Whether the password should be hashed again.
+     */
+    @Override
+    public boolean needsRehash(String hash) {
+        try {
+            return Integer.parseInt(hash.substring(4, 6)) != cost;
+        } catch (RuntimeException e) {
+            return true;
+        }
+    }
+
+    /**
+     * Stops the hashing threads.
+     */
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        try {
+            return CompletableFuture.supplyAsync(task, executor);
+        } catch (RejectedExecutionException e) {
+            throw new EtServiceUnavailableException("Too many sign-ins in progress, retry shortly");
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package it.uniroma3.expensetracker.services;
+
+/**
+ * Service interface for telling, without a query, that an email is not registered yet.
+ */
+public interface RegisteredEmails {
+
+    /**
+     * Tells whether an email may be registered already.
+     *
+     * @param email The email, lowercase.
+     * @return false if the email is definitely free, true if it may be in use.
+     */
+    boolean mightBeRegistered(String email);
+
+    /**
+     * Records an email registered in the current transaction, once it commits.
+     *
+     * @param email The email, lowercase.
+     */
+    void registered(String email);
+
+    /**
+     * Rebuilds the set of registered emails from the database.
+     */
+    void rebuild();
+}
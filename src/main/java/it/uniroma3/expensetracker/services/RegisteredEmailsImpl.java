@@ -0,0 +1,95 @@
+package it.uniroma3.expensetracker.services;
+
+import it.uniroma3.expensetracker.repositories.UserRepository;
+import it.uniroma3.expensetracker.util.BloomFilter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Implementation of the RegisteredEmails interface, with a Bloom filter of the emails in ET_USERS.
+ * <p>
+ * The filter is built by streaming every email at startup and rebuilt periodically by the
+ * RegisteredEmailsRebuildJob, so that it picks up the emails registered through other instances
+ * and keeps its false positive rate once more users than expected have registered. Until the
+ * first build completes, every email may be registered. An email registered elsewhere since the
+ * last build may be reported free; the unique index on EMAIL still refuses it on insert.
+ * <p>
+ * About {@code 1.2 * expected-users} bytes at a 1% false positive rate.
+ */
+@Service
+public class RegisteredEmailsImpl implements RegisteredEmails {
+
+    @Autowired
+    UserRepository userRepository;
+
+    @Value("${expensetracker.users.email-filter.expected-users:1000000}")
+    private long expectedUsers;
+
+    @Value("${expensetracker.users.email-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    private volatile BloomFilter filter;    // Null until the first build completes
+    private volatile BloomFilter building;  // The filter being rebuilt, which gets the new emails too
+
+    /**
+     * Tells whether an email may be registered already.
+     *
+     * @param email The email, lowercase.
+     * @return false if the email is definitely free, true if it may be in use.
+     */
+    @Override
+    public boolean mightBeRegistered(String email) {
+        BloomFilter current = filter;
+        return current == null || current.mightContain(email);
+    }
+
+    /**
+     * Records an email registered in the current transaction, once it commits.
+     *
+     * @param email The email, lowercase.
+     */
+    @Override
+    public void registered(String email) {
+        Runnable add = () -> {
+            BloomFilter current = filter;
+            if (current != null)
+                current.put(email);
+            BloomFilter next = building;
+            if (next != null)
+                next.put(email);
+        };
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            add.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                add.run();
+            }
+        });
+    }
+
+    /**
+     * Rebuilds the filter from the database, sized for whichever is larger of the configured
+     * number of users and twice the current number, and swaps it in once complete.
+     * The registrations committed while it is built are added to it as well.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public synchronized void rebuild() {
+        long users = Math.max(expectedUsers, 2L * userRepository.getCount());
+        BloomFilter next = new BloomFilter(users, falsePositiveRate);
+        building = next;
+        try {
+            userRepository.streamAllEmails(next::put);
+            filter = next;
+        } finally {
+            building = null;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package it.uniroma3.expensetracker.services;
+
+import it.uniroma3.expensetracker.domain.SpendingPoint;
+import it.uniroma3.expensetracker.exceptions.EtBadRequestException;
+
+import java.util.List;
+
+/**
+ * Service interface for reports built on a user's spending.
+ */
+public interface ReportService {
+
+    /**
+     * Fetches the spending of a user over time, bucketed by day or by month.
+     *
+     * @param userId The ID of the user.
+     * @param categoryId The ID of the category to restrict the series to, or null for all categories.
+     * @param granularity The size of the buckets, "day" or "month".
+     * @param from The start of the range, in milliseconds since epoch; its bucket is included.
+     * @param to The end of the range, in milliseconds since epoch, inclusive.
+     * @return The non-empty buckets of the range, in chronological order.
+     * @throws EtBadRequestException If the granularity or the range is not valid.
+     */
+    List<SpendingPoint> fetchSpendingSeries(Integer userId, Integer categoryId, String granularity, Long from, Long to) throws EtBadRequestException;
+}
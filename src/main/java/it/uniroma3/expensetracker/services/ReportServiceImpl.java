@@ -0,0 +1,43 @@
+package it.uniroma3.expensetracker.services;
+
+import it.uniroma3.expensetracker.domain.Granularity;
+import it.uniroma3.expensetracker.domain.SpendingPoint;
+import it.uniroma3.expensetracker.exceptions.EtBadRequestException;
+import it.uniroma3.expensetracker.repositories.SpendingRollupRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+
+/**
+ * Implementation of the ReportService interface.
+ * Series are read from the spending rollups rather than from the raw transactions.
+ */
+@Service
+@Transactional
+public class ReportServiceImpl implements ReportService {
+
+    @Autowired
+    SpendingRollupRepository spendingRollupRepository;
+
+    /**
+     * Fetches the spending of a user over time, bucketed by day or by month.
+     *
+     * @param userId The ID of the user.
+     * @param categoryId The ID of the category to restrict the series to, or null for all categories.
+     * @param granularity The size of the buckets, "day" or "month".
+     * @param from The start of the range, in milliseconds since epoch; its bucket is included.
+     * @param to The end of the range, in milliseconds since epoch, inclusive.
+     * @return The non-empty buckets of the range, in chronological order.
+     * @throws EtBadRequestException If the granularity or the range is not valid.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public List<SpendingPoint> fetchSpendingSeries(Integer userId, Integer categoryId, String granularity, Long from, Long to) throws EtBadRequestException {
+        Granularity bucket = Granularity.parse(granularity);
+        if (from == null || to == null || from > to)
+            throw new EtBadRequestException("Range must have a start date not after its end date");
+        return spendingRollupRepository.findSeries(userId, categoryId, bucket, from, to);
+    }
+}
@@ -0,0 +1,30 @@
+package it.uniroma3.expensetracker.services;
+
+import it.uniroma3.expensetracker.domain.ShardMove;
+import it.uniroma3.expensetracker.exceptions.EtBadRequestException;
+
+/**
+ * Service interface for moving users between shards.
+ */
+public interface ShardMigrationService {
+
+    /**
+     * Starts moving a user's categories, transactions, budget and rollups to another shard, in
+     * the background, while the application keeps running. The user's writes are refused for
+     * the duration of the move. Requesting a move already in progress returns it.
+     *
+     * @param userId The ID of the user.
+     * @param targetShard The ID of the shard to move the user to.
+     * @return The move, to follow its progress.
+     * @throws EtBadRequestException If the target shard does not exist, or the user is being moved to another one.
+     */
+    ShardMove moveUser(Integer userId, int targetShard) throws EtBadRequestException;
+
+    /**
+     * Finds the latest move of a user started by this instance, in progress or recently finished.
+     *
+     * @param userId The ID of the user.
+     * @return The move, or null if there is none.
+     */
+    ShardMove findMove(Integer userId);
+}
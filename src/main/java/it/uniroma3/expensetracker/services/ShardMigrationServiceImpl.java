@@ -0,0 +1,308 @@
+package it.uniroma3.expensetracker.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import it.uniroma3.expensetracker.config.ShardContext;
+import it.uniroma3.expensetracker.config.ShardProperties;
+import it.uniroma3.expensetracker.domain.ShardMove;
+import it.uniroma3.expensetracker.exceptions.EtBadRequestException;
+import it.uniroma3.expensetracker.repositories.DataVersionRepository;
+import it.uniroma3.expensetracker.repositories.JournaledTransactionRepository;
+import it.uniroma3.expensetracker.repositories.ShardDirectory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Implementation of the ShardMigrationService interface.
+ * <p>
+ * A move goes through these steps, each safe to retry:
+ * <ol>
+ *     <li>mark the user as moving and wait for every instance's directory cache to see it,
+ *     after which the user's new writes are refused everywhere, and for this instance's
+ *     journaled writes of the user, if any, to be applied;</li>
+ *     <li>fence the user's writes on the source shard, which waits for the write transactions
+ *     already in progress there and fails those still to reach their data version bump,
+ *     such as a long import that got past the moving flag;</li>
+ *     <li>copy the user's rows to the target shard in chunks, after clearing any rows left
+ *     there by an earlier failed attempt, and lift the fence copied with them;</li>
+ *     <li>point the directory at the target shard and wait again, so that no instance
+ *     still reads from the source;</li>
+ *     <li>accept writes again and delete the rows from the source shard, except for the fenced
+ *     data version, which keeps refusing writes sent there by an instance that missed the move.</li>
+ * </ol>
+ * A move failing before the directory points at the target shard lifts the fence on the source.
+ * Moves run in the background, on {@code expensetracker.sharding.move-threads} threads, since
+ * each takes at least twice the directory cache TTL. Their progress is kept in memory: while
+ * in progress, and for a day once finished. A move interrupted by a shutdown is abandoned,
+ * or, once the directory points at the target shard, leaves the old rows on the source.
+ * <p>
+ * Not annotated with {@code @Transactional}: each step runs in its own transactions, on
+ * the shard bound with {@link ShardContext}.
+ */
+@Service
+public class ShardMigrationServiceImpl implements ShardMigrationService, InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ShardMigrationServiceImpl.class);
+
+    // Tables holding per-user data, parents first
+    private static final List<String> USER_TABLES = Arrays.asList(
+            "ET_CATEGORIES", "ET_BUDGETS", "ET_TRANSACTIONS", "ET_SPENDING_DAILY", "ET_SPENDING_MONTHLY",
+            "ET_DATA_VERSIONS");
+
+    // Number of transactions copied or deleted per database transaction
+    private static final int CHUNK_SIZE = 5000;
+
+    // Margin added to the directory cache TTL when waiting for every instance to see a change
+    private static final long CACHE_WAIT_MARGIN_MS = 1000;
+
+    // How long to wait for the user's journaled writes to reach the source shard
+    private static final long JOURNAL_WAIT_MS = 60000;
+
+    private static final String SQL_SELECT_ROWS = "SELECT * FROM %s WHERE USER_ID = ?";
+    private static final String SQL_SELECT_TRANSACTIONS = "SELECT * FROM ET_TRANSACTIONS WHERE USER_ID = ? AND TRANSACTION_ID > ? " +
+            "ORDER BY TRANSACTION_ID LIMIT ?";
+    private static final String SQL_DELETE_ROWS = "DELETE FROM %s WHERE USER_ID = ?";
+    private static final String SQL_DELETE_TRANSACTIONS = "DELETE FROM ET_TRANSACTIONS WHERE TRANSACTION_ID IN " +
+            "(SELECT TRANSACTION_ID FROM ET_TRANSACTIONS WHERE USER_ID = ? LIMIT ?)";
+
+    @Autowired
+    ShardDirectory shardDirectory;
+
+    @Autowired
+    ShardProperties shardProperties;
+
+    @Autowired
+    JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    DataVersionRepository dataVersionRepository;
+
+    @Autowired(required = false)
+    JournaledTransactionRepository journaledTransactionRepository;
+
+    // Moves queued or running, at most one per user
+    private final Map<Integer, ShardMove> activeMoves = new ConcurrentHashMap<>();
+
+    // Finished moves, kept for their status to be read
+    private final Cache<Integer, ShardMove> finishedMoves = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofDays(1))
+            .maximumSize(100000)
+            .build();
+
+    private ExecutorService executor;
+
+    /**
+     * Starts the threads running the moves.
+     */
+    @Override
+    public void afterPropertiesSet() {
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(shardProperties.getMoveThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "shard-move-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Stops the threads running the moves, interrupting those in progress.
+     */
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Starts moving a user's data to another shard in the background.
+     *
+     * @param userId The ID of the user.
+     * @param targetShard The ID of the shard to move the user to.
+     * @return The move, to follow its progress.
+     * @throws EtBadRequestException If the target shard does not exist, or the user is being moved to another one.
+     */
+    @Override
+    public ShardMove moveUser(Integer userId, int targetShard) throws EtBadRequestException {
+        if (!shardDirectory.shardIds().contains(targetShard))
+            throw new EtBadRequestException("Unknown shard " + targetShard);
+        ShardMove move = new ShardMove(userId, targetShard);
+        ShardMove existing = activeMoves.putIfAbsent(userId, move);
+        if (existing != null) {
+            if (existing.getTargetShard() != targetShard)
+                throw new EtBadRequestException("User " + userId + " is already being moved to shard " + existing.getTargetShard());
+            return existing;
+        }
+        executor.execute(() -> run(move));
+        return move;
+    }
+
+    /**
+     * Finds the latest move of a user started by this instance.
+     *
+     * @param userId The ID of the user.
+     * @return The move, or null if there is none.
+     */
+    @Override
+    public ShardMove findMove(Integer userId) {
+        ShardMove move = activeMoves.get(userId);
+        return move != null ? move : finishedMoves.getIfPresent(userId);
+    }
+
+    /**
+     * Runs a move, recording its progress.
+     */
+    private void run(ShardMove move) {
+        Integer userId = move.getUserId();
+        try {
+            int sourceShard = shardDirectory.shardOf(userId);
+            move.started(sourceShard);
+            move.completed(sourceShard == move.getTargetShard() ? 0 : move(userId, sourceShard, move.getTargetShard()));
+        } catch (RuntimeException e) {
+            logger.error("Could not move user {} to shard {}", userId, move.getTargetShard(), e);
+            move.failed(e.getMessage());
+        } finally {
+            finishedMoves.put(userId, move);  // Before leaving the active moves, so the status never goes missing
+            activeMoves.remove(userId, move);
+        }
+    }
+
+    /**
+     * Moves a user's data from one shard to another, step by step.
+     *
+     * @return The number of rows copied.
+     */
+    private long move(Integer userId, int sourceShard, int targetShard) {
+        logger.info("Moving user {} from shard {} to shard {}", userId, sourceShard, targetShard);
+        shardDirectory.setMoving(userId, true);
+        boolean fenced = false;
+        long copied;
+        try {
+            awaitDirectoryCaches();
+            if (journaledTransactionRepository != null)
+                journaledTransactionRepository.awaitApplied(userId, JOURNAL_WAIT_MS);
+            ShardContext.forShard(sourceShard, () -> dataVersionRepository.fence(userId));
+            fenced = true;
+            ShardContext.forShard(targetShard, () -> deleteUserRows(userId, false));
+            copied = copyUserRows(userId, sourceShard, targetShard);
+            ShardContext.forShard(targetShard, () -> dataVersionRepository.unfence(userId));
+            shardDirectory.setShard(userId, targetShard);
+        } catch (RuntimeException e) {
+            if (fenced)
+                ShardContext.forShard(sourceShard, () -> dataVersionRepository.unfence(userId));
+            shardDirectory.setMoving(userId, false);
+            throw e;
+        }
+        try {
+            awaitDirectoryCaches();
+        } finally {
+            shardDirectory.setMoving(userId, false);  // Even when interrupted: the data is already on the target
+        }
+        ShardContext.forShard(sourceShard, () -> deleteUserRows(userId, true));
+        logger.info("Moved user {} to shard {}, {} rows copied", userId, targetShard, copied);
+        return copied;
+    }
+
+    /**
+     * Copies every row of a user from one shard to another, table by table.
+     * The small tables are copied in one transaction each, the transactions in chunks.
+     */
+    private long copyUserRows(Integer userId, int sourceShard, int targetShard) {
+        AtomicLong copied = new AtomicLong();
+        for (String table : USER_TABLES) {
+            if (!table.equals("ET_TRANSACTIONS")) {
+                List<Map<String, Object>> rows = new ArrayList<>();
+                ShardContext.forShard(sourceShard, () ->
+                        rows.addAll(jdbcTemplate.queryForList(String.format(SQL_SELECT_ROWS, table), userId)));
+                ShardContext.forShard(targetShard, () -> insertRows(table, rows));
+                copied.addAndGet(rows.size());
+                continue;
+            }
+            int lastId = 0;
+            while (true) {
+                List<Map<String, Object>> rows = new ArrayList<>();
+                int after = lastId;
+                ShardContext.forShard(sourceShard, () ->
+                        rows.addAll(jdbcTemplate.queryForList(SQL_SELECT_TRANSACTIONS, userId, after, CHUNK_SIZE)));
+                if (rows.isEmpty())
+                    break;
+                ShardContext.forShard(targetShard, () -> insertRows(table, rows));
+                copied.addAndGet(rows.size());
+                lastId = ((Number) rows.get(rows.size() - 1).get("TRANSACTION_ID")).intValue();
+            }
+        }
+        return copied.get();
+    }
+
+    /**
+     * Inserts rows, as read from another shard, in a single transaction of the current shard.
+     */
+    private void insertRows(String table, List<Map<String, Object>> rows) {
+        if (rows.isEmpty())
+            return;
+        List<String> columns = new ArrayList<>(rows.get(0).keySet());
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(table).append(" (")
+                .append(String.join(", ", columns)).append(") VALUES (");
+        for (int i = 0; i < columns.size(); i++)
+            sql.append(i == 0 ? "?" : ", ?");
+        sql.append(")");
+        List<Object[]> args = new ArrayList<>(rows.size());
+        for (Map<String, Object> row : rows) {
+            Object[] values = new Object[columns.size()];
+            for (int i = 0; i < values.length; i++)
+                values[i] = row.get(columns.get(i));
+            args.add(values);
+        }
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(sql.toString(), args));
+    }
+
+    /**
+     * Deletes every row of a user from the current shard, children first.
+     *
+     * @param keepVersion Whether to keep the user's data version, fencing the user's writes.
+     */
+    private void deleteUserRows(Integer userId, boolean keepVersion) {
+        for (int i = USER_TABLES.size() - 1; i >= 0; i--) {
+            String table = USER_TABLES.get(i);
+            if (keepVersion && table.equals("ET_DATA_VERSIONS"))
+                continue;
+            if (!table.equals("ET_TRANSACTIONS")) {
+                jdbcTemplate.update(String.format(SQL_DELETE_ROWS, table), userId);
+                continue;
+            }
+            while (jdbcTemplate.update(SQL_DELETE_TRANSACTIONS, userId, CHUNK_SIZE) > 0) {
+                // Each chunk commits on its own, keeping locks and WAL bounded
+            }
+        }
+    }
+
+    /**
+     * Waits until every instance's cached placement of a user has expired.
+     */
+    private void awaitDirectoryCaches() {
+        try {
+            Thread.sleep(shardProperties.getDirectoryCacheTtlMs() + CACHE_WAIT_MARGIN_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while moving a user between shards", e);
+        }
+    }
+}
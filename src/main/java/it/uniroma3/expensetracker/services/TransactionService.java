@@ -1,10 +1,15 @@
 package it.uniroma3.expensetracker.services;
 
 import it.uniroma3.expensetracker.domain.Transaction;
+import it.uniroma3.expensetracker.domain.TransactionImportResult;
+import it.uniroma3.expensetracker.domain.TransactionFilter;
+import it.uniroma3.expensetracker.domain.TransactionPage;
 import it.uniroma3.expensetracker.exceptions.EtBadRequestException;
 import it.uniroma3.expensetracker.exceptions.EtResourceNotFoundException;
 
+import java.io.InputStream;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * TransactionService interface defines the business operations related to transactions.
@@ -21,6 +26,40 @@ public interface TransactionService {
      */
     List<Transaction> fetchAllTransactions(Integer userId, Integer categoryId);
 
+    /**
+     * Fetches one page of the transactions of a specific user that match a filter, newest first.
+     *
+     * @param userId The ID of the user.
+     * @param filter The criteria the transactions must match.
+     * @param cursor The opaque cursor returned with the previous page, or null for the first page.
+     * @param limit The maximum number of transactions in the page.
+     * @return The requested page, with the cursor of the next page if there is one.
+     * @throws EtBadRequestException If the cursor or the limit is invalid.
+     */
+    TransactionPage fetchTransactionPage(Integer userId, TransactionFilter filter, String cursor, int limit) throws EtBadRequestException;
+
+    /**
+     * Fetches one page of the transactions of a specific user whose note matches a free-text query,
+     * most relevant first.
+     *
+     * @param userId The ID of the user.
+     * @param query The searched text; quoted phrases, "or" and "-word" exclusions are supported.
+     * @param filter The criteria the transactions must also match.
+     * @param cursor The opaque cursor returned with the previous page, or null for the first page.
+     * @param limit The maximum number of transactions in the page.
+     * @return The requested page, with the cursor of the next page if there is one.
+     * @throws EtBadRequestException If the query, the cursor or the limit is invalid.
+     */
+    TransactionPage searchTransactions(Integer userId, String query, TransactionFilter filter, String cursor, int limit) throws EtBadRequestException;
+
+    /**
+     * Streams every transaction of a specific user, across all categories, to the given action.
+     *
+     * @param userId The ID of the user.
+     * @param action The action invoked for each transaction, in category and date order.
+     */
+    void exportTransactions(Integer userId, Consumer<Transaction> action);
+
     /**
      * Fetches a specific transaction by its ID for a specific user and category.
      *
@@ -45,6 +84,31 @@ public interface TransactionService {
      */
     Transaction addTransaction(Integer userId, Integer categoryId, Double amount, String note, Long transactionDate) throws EtBadRequestException;
 
+    /**
+     * Adds many transactions to a specific user's category in a single unit of work.
+     *
+     * @param userId The ID of the user.
+     * @param categoryId The ID of the category.
+     * @param transactions The validated transactions to be added.
+     * @return The IDs of the newly added transactions, in the same order as the input.
+     * @throws EtResourceNotFoundException If the category is not found.
+     * @throws EtBadRequestException If there is a problem with the request.
+     */
+    List<Integer> addTransactions(Integer userId, Integer categoryId, List<Transaction> transactions) throws EtResourceNotFoundException, EtBadRequestException;
+
+    /**
+     * Imports transactions from a bank-export CSV file into the user's categories.
+     * The file must start with a header naming at least the date, category and amount columns,
+     * and may have a note column. Categories are matched by title; lines that cannot be imported
+     * are rejected and reported without stopping the import.
+     *
+     * @param userId The ID of the user.
+     * @param csv The CSV file, read as a stream.
+     * @return The number of imported and rejected lines, with the reasons for rejection.
+     * @throws EtBadRequestException If the file cannot be read or has no valid header.
+     */
+    TransactionImportResult importTransactions(Integer userId, InputStream csv) throws EtBadRequestException;
+
     /**
      * Updates an existing transaction for a specific user and category.
      *
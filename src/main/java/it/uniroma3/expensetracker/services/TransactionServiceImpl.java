@@ -1,14 +1,38 @@
 package it.uniroma3.expensetracker.services;
 
+import it.uniroma3.expensetracker.Constants;
+import it.uniroma3.expensetracker.config.ShardContext;
+import it.uniroma3.expensetracker.domain.Category;
 import it.uniroma3.expensetracker.domain.Transaction;
+import it.uniroma3.expensetracker.domain.TransactionCursor;
+import it.uniroma3.expensetracker.domain.TransactionFilter;
+import it.uniroma3.expensetracker.domain.TransactionImportResult;
+import it.uniroma3.expensetracker.domain.TransactionPage;
+import it.uniroma3.expensetracker.domain.TransactionSearchCursor;
+import it.uniroma3.expensetracker.domain.TransactionSearchHit;
 import it.uniroma3.expensetracker.exceptions.EtBadRequestException;
 import it.uniroma3.expensetracker.exceptions.EtResourceNotFoundException;
+import it.uniroma3.expensetracker.repositories.CategoryRepository;
 import it.uniroma3.expensetracker.repositories.TransactionRepository;
+import it.uniroma3.expensetracker.util.Csv;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Implementation of the TransactionService interface.
@@ -18,9 +42,30 @@ import java.util.List;
 @Transactional
 public class TransactionServiceImpl implements TransactionService {
 
+    // Number of parsed rows loaded per COPY during a CSV import
+    private static final int IMPORT_CHUNK_SIZE = 5000;
+
+    // Longest accepted search text, keeping the parsed query small
+    private static final int MAX_SEARCH_LENGTH = 200;
+
     @Autowired
     TransactionRepository transactionRepository;
 
+    @Autowired
+    CategoryRepository categoryRepository;
+
+    @Autowired
+    LedgerAnalyticsService ledgerAnalyticsService;
+
+    @Autowired
+    TransactionWriteCoalescer transactionWriteCoalescer;
+
+    @Autowired
+    CacheInvalidationBus cacheInvalidationBus;
+
+    @Autowired
+    DataVersionService dataVersionService;
+
     /**
      * Fetches all transactions for a specific user and category.
      *
@@ -29,10 +74,85 @@ public class TransactionServiceImpl implements TransactionService {
      * @return A list of transactions.
      */
     @Override
+    @Transactional(readOnly = true)
     public List<Transaction> fetchAllTransactions(Integer userId, Integer categoryId) {
         return transactionRepository.findAll(userId, categoryId);
     }
 
+    /**
+     * Fetches one page of the transactions of a specific user that match a filter, newest first.
+     * One extra row is read to find out whether a next page exists without a separate count query.
+     *
+     * @param userId The ID of the user.
+     * @param filter The criteria the transactions must match.
+     * @param cursor The opaque cursor returned with the previous page, or null for the first page.
+     * @param limit The maximum number of transactions in the page.
+     * @return The requested page, with the cursor of the next page if there is one.
+     * @throws EtBadRequestException If the cursor or the limit is invalid.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public TransactionPage fetchTransactionPage(Integer userId, TransactionFilter filter, String cursor, int limit) throws EtBadRequestException {
+        if (limit < 1 || limit > Constants.MAX_PAGE_SIZE)
+            throw new EtBadRequestException("Page size must be between 1 and " + Constants.MAX_PAGE_SIZE);
+        TransactionCursor after = cursor == null || cursor.isEmpty() ? null : TransactionCursor.decode(cursor);
+        List<Transaction> transactions = transactionRepository.findPage(userId, filter, after, limit + 1);
+        if (transactions.size() <= limit)
+            return new TransactionPage(transactions, null);
+        transactions = transactions.subList(0, limit);
+        return new TransactionPage(transactions, TransactionCursor.after(transactions.get(limit - 1)).encode());
+    }
+
+    /**
+     * Fetches one page of the transactions of a specific user whose note matches a free-text query,
+     * most relevant first. One extra hit is read to find out whether a next page exists.
+     *
+     * @param userId The ID of the user.
+     * @param query The searched text; quoted phrases, "or" and "-word" exclusions are supported.
+     * @param filter The criteria the transactions must also match.
+     * @param cursor The opaque cursor returned with the previous page, or null for the first page.
+     * @param limit The maximum number of transactions in the page.
+     * @return The requested page, with the cursor of the next page if there is one.
+     * @throws EtBadRequestException If the query, the cursor or the limit is invalid.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public TransactionPage searchTransactions(Integer userId, String query, TransactionFilter filter, String cursor, int limit) throws EtBadRequestException {
+        if (query == null || query.trim().isEmpty())
+            throw new EtBadRequestException("Search text cannot be empty");
+        if (query.length() > MAX_SEARCH_LENGTH)
+            throw new EtBadRequestException("Search text cannot be longer than " + MAX_SEARCH_LENGTH + " characters");
+        if (limit < 1 || limit > Constants.MAX_PAGE_SIZE)
+            throw new EtBadRequestException("Page size must be between 1 and " + Constants.MAX_PAGE_SIZE);
+        TransactionSearchCursor after = cursor == null || cursor.isEmpty() ? null : TransactionSearchCursor.decode(cursor);
+        List<TransactionSearchHit> hits = transactionRepository.search(userId, query, filter, after, limit + 1);
+        String nextCursor = null;
+        if (hits.size() > limit) {
+            hits = hits.subList(0, limit);
+            nextCursor = TransactionSearchCursor.after(hits.get(limit - 1)).encode();
+        }
+        List<Transaction> transactions = new ArrayList<>(hits.size());
+        for (TransactionSearchHit hit : hits)
+            transactions.add(hit.getTransaction());
+        return new TransactionPage(transactions, nextCursor);
+    }
+
+    /**
+     * Streams every transaction of a specific user, across all categories, to the given action.
+     * The read-only transaction keeps the connection out of auto-commit mode, which the
+     * PostgreSQL driver requires to fetch the rows in chunks instead of all at once.
+     *
+     * @param userId The ID of the user.
+     * @param action The action invoked for each transaction, in category and date order.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public void exportTransactions(Integer userId, Consumer<Transaction> action) {
+        // Streamed responses are written on an async thread, outside of the request the user's
+        // shard is normally taken from; the connection is only fetched at the first statement
+        ShardContext.forUser(userId, () -> transactionRepository.streamAllByUser(userId, action));
+    }
+
     /**
      * Fetches a specific transaction by its ID for a specific user and category.
      *
@@ -43,12 +163,16 @@ public class TransactionServiceImpl implements TransactionService {
      * @throws EtResourceNotFoundException If the transaction is not found.
      */
     @Override
+    @Transactional(readOnly = true)
     public Transaction fetchTransactionById(Integer userId, Integer categoryId, Integer transactionId) throws EtResourceNotFoundException {
         return transactionRepository.findById(userId, categoryId, transactionId);
     }
 
     /**
      * Adds a new transaction for a specific user and category.
+     * Concurrent adds are committed together by the TransactionWriteCoalescer, in its own database
+     * transactions, with the user's data version and the cache invalidations. Not transactional,
+     * since nothing is left to do once the create is committed that could fail it.
      *
      * @param userId The ID of the user.
      * @param categoryId The ID of the category.
@@ -59,9 +183,118 @@ public class TransactionServiceImpl implements TransactionService {
      * @throws EtBadRequestException If there is a problem with the request.
      */
     @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public Transaction addTransaction(Integer userId, Integer categoryId, Double amount, String note, Long transactionDate) throws EtBadRequestException {
-        int transactionId = transactionRepository.create(userId, categoryId, amount, note, transactionDate);
-        return transactionRepository.findById(userId, categoryId, transactionId);
+        return transactionWriteCoalescer.create(userId, categoryId, amount, note, transactionDate);
+    }
+
+    /**
+     * Adds many transactions to a specific user's category in a single unit of work.
+     * The category is checked once for the whole batch, then the rows are written with JDBC batching.
+     *
+     * @param userId The ID of the user.
+     * @param categoryId The ID of the category.
+     * @param transactions The validated transactions to be added.
+     * @return The IDs of the newly added transactions, in the same order as the input.
+     * @throws EtResourceNotFoundException If the category is not found.
+     * @throws EtBadRequestException If there is a problem with the request.
+     */
+    @Override
+    public List<Integer> addTransactions(Integer userId, Integer categoryId, List<Transaction> transactions) throws EtResourceNotFoundException, EtBadRequestException {
+        categoryRepository.findById(userId, categoryId);  // Ensure the category exists and belongs to the user
+        for (Transaction transaction : transactions) {
+            transaction.setUserId(userId);
+            transaction.setCategoryId(categoryId);
+        }
+        List<Integer> transactionIds = transactionRepository.createBatch(transactions);
+        ledgerAnalyticsService.ledgerChanged(userId);
+        cacheInvalidationBus.transactionsChanged(userId, categoryId);
+        dataVersionService.dataChanged(userId);
+        return transactionIds;
+    }
+
+    /**
+     * Imports transactions from a bank-export CSV file into the user's categories.
+     * The file is parsed line by line and valid rows are loaded through COPY in chunks of
+     * {@value #IMPORT_CHUNK_SIZE}, so memory use stays bounded whatever the size of the file.
+     * Dates are either ISO dates (yyyy-MM-dd, taken as UTC midnight) or milliseconds since epoch.
+     * Lines whose values do not fit the columns are rejected one by one; notes default to empty.
+     *
+     * @param userId The ID of the user.
+     * @param csv The CSV file, read as a stream.
+     * @return The number of imported and rejected lines, with the reasons for rejection.
+     * @throws EtBadRequestException If the file cannot be read or has no valid header.
+     */
+    @Override
+    public TransactionImportResult importTransactions(Integer userId, InputStream csv) throws EtBadRequestException {
+        Map<String, Integer> categoryIds = new HashMap<>();
+        for (Category category : categoryRepository.findAll(userId))
+            categoryIds.put(category.getTitle().trim().toLowerCase(), category.getCategoryId());
+
+        TransactionImportResult result = new TransactionImportResult();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(csv, StandardCharsets.UTF_8))) {
+            String header = reader.readLine();
+            if (header == null)
+                throw new EtBadRequestException("The file is empty");
+            List<String> columns = new ArrayList<>();
+            for (String column : Csv.parseLine(header.replace("\uFEFF", "")))
+                columns.add(column.trim().toLowerCase());
+            int dateColumn = columns.indexOf("date");
+            int categoryColumn = columns.indexOf("category");
+            int amountColumn = columns.indexOf("amount");
+            int noteColumn = columns.indexOf("note");
+            if (dateColumn < 0 || categoryColumn < 0 || amountColumn < 0)
+                throw new EtBadRequestException("The header must contain the date, category and amount columns");
+
+            List<Transaction> chunk = new ArrayList<>(IMPORT_CHUNK_SIZE);
+            long lineNumber = 1;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.trim().isEmpty())
+                    continue;
+                try {
+                    List<String> fields = Csv.parseLine(line);
+                    if (fields.size() < columns.size())
+                        throw new IllegalArgumentException("Expected " + columns.size() + " fields");
+                    Integer categoryId = categoryIds.get(fields.get(categoryColumn).trim().toLowerCase());
+                    if (categoryId == null)
+                        throw new IllegalArgumentException("Unknown category '" + fields.get(categoryColumn) + "'");
+                    Double amount = Double.valueOf(fields.get(amountColumn).trim());
+                    String note = noteColumn < 0 ? "" : fields.get(noteColumn);
+                    Long transactionDate = parseDate(fields.get(dateColumn).trim());
+                    // A single row the database rejects would fail the whole COPY
+                    Transaction.checkFields(amount, note, transactionDate);
+                    chunk.add(new Transaction(null, categoryId, userId, amount, note, transactionDate));
+                } catch (IllegalArgumentException | DateTimeParseException | EtBadRequestException e) {
+                    result.addRejected(lineNumber, e.getMessage());
+                }
+                if (chunk.size() == IMPORT_CHUNK_SIZE) {
+                    result.addImported(transactionRepository.copyIn(chunk));
+                    chunk.clear();
+                }
+            }
+            result.addImported(transactionRepository.copyIn(chunk));
+            ledgerAnalyticsService.ledgerChanged(userId);
+            for (Integer categoryId : categoryIds.values())
+                cacheInvalidationBus.transactionsChanged(userId, categoryId);
+            dataVersionService.dataChanged(userId);
+        } catch (IOException e) {
+            throw new EtBadRequestException("Could not read the file");
+        }
+        return result;
+    }
+
+    /**
+     * Parses a transaction date given either as an ISO date or as milliseconds since epoch.
+     *
+     * @param value The date as found in the file.
+     * @return The date in milliseconds since epoch.
+     */
+    private Long parseDate(String value) {
+        if (!value.isEmpty() && value.chars().allMatch(Character::isDigit))
+            return Long.valueOf(value);
+        return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
     }
 
     /**
@@ -76,6 +309,9 @@ public class TransactionServiceImpl implements TransactionService {
     @Override
     public void updateTransaction(Integer userId, Integer categoryId, Integer transactionId, Transaction transaction) throws EtBadRequestException {
         transactionRepository.update(userId, categoryId, transactionId, transaction);
+        ledgerAnalyticsService.transactionUpdated(userId, categoryId, transactionId, transaction);
+        cacheInvalidationBus.transactionsChanged(userId, categoryId);
+        dataVersionService.dataChanged(userId);
     }
 
     /**
@@ -89,5 +325,8 @@ public class TransactionServiceImpl implements TransactionService {
     @Override
     public void removeTransaction(Integer userId, Integer categoryId, Integer transactionId) throws EtResourceNotFoundException {
         transactionRepository.removeById(userId, categoryId, transactionId);
+        ledgerAnalyticsService.transactionRemoved(userId, transactionId);
+        cacheInvalidationBus.transactionsChanged(userId, categoryId);
+        dataVersionService.dataChanged(userId);
     }
 }
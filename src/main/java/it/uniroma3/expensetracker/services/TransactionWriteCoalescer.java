@@ -0,0 +1,27 @@
+package it.uniroma3.expensetracker.services;
+
+import it.uniroma3.expensetracker.domain.Transaction;
+import it.uniroma3.expensetracker.exceptions.EtBadRequestException;
+import it.uniroma3.expensetracker.exceptions.EtServiceUnavailableException;
+
+/**
+ * Service interface for creating single transactions through shared database commits.
+ */
+public interface TransactionWriteCoalescer {
+
+    /**
+     * Creates a transaction, committing it together with the transactions other threads are
+     * creating at the same time. Returns once the transaction is committed, along with the bump
+     * of the user's data version and the cache invalidations it causes.
+     *
+     * @param userId The ID of the user.
+     * @param categoryId The ID of the category.
+     * @param amount The amount of the transaction.
+     * @param note A note for the transaction.
+     * @param transactionDate The date of the transaction.
+     * @return The newly created transaction.
+     * @throws EtBadRequestException If the transaction cannot be created.
+     * @throws EtServiceUnavailableException If the thread is interrupted before the transaction is written.
+     */
+    Transaction create(Integer userId, Integer categoryId, Double amount, String note, Long transactionDate) throws EtBadRequestException;
+}
@@ -0,0 +1,272 @@
+package it.uniroma3.expensetracker.services;
+
+import it.uniroma3.expensetracker.config.ShardContext;
+import it.uniroma3.expensetracker.domain.Transaction;
+import it.uniroma3.expensetracker.exceptions.EtBadRequestException;
+import it.uniroma3.expensetracker.exceptions.EtServiceUnavailableException;
+import it.uniroma3.expensetracker.repositories.ShardDirectory;
+import it.uniroma3.expensetracker.repositories.TransactionRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Implementation of the TransactionWriteCoalescer interface, committing concurrent creates in groups.
+ * <p>
+ * Creates are queued per shard. The first thread to find no flush in progress becomes the
+ * leader: it waits {@code expensetracker.writes.coalesce-window-ms} for other creates to
+ * arrive, then writes everything queued as one JDBC batch in one database transaction, and
+ * hands each waiting thread its own transaction or error. The leader stops leading once its
+ * own create is written; the other threads wait, trying to lead in turn every window until
+ * theirs is, so creates left queued behind a leader that stopped are always picked up.
+ * No thread of its own is needed, and a lone create only pays for the window.
+ * <p>
+ * An interrupted leader cuts its window short but still writes the group it leads. A waiting
+ * thread interrupted before its create is taken withdraws it; otherwise it waits for the
+ * outcome, so a create either fails without being written or returns what was written.
+ * <p>
+ * The transaction writing a create also bumps its user's data version and publishes its cache
+ * invalidations, so a create is acknowledged only once all of it is committed, and a shard
+ * move fencing the user's version row refuses it like any other write.
+ * <p>
+ * The rows of a group are written in user and category order, like any other writer would
+ * lock them, to avoid deadlocks. If the batch fails, its rows are written again one by one,
+ * each in its own transaction, so that only the faulty create fails.
+ * A window of 0 disables coalescing: each create is written in its own transaction.
+ */
+@Service
+public class TransactionWriteCoalescerImpl implements TransactionWriteCoalescer {
+
+    @Autowired
+    TransactionRepository transactionRepository;
+
+    @Autowired
+    ShardDirectory shardDirectory;
+
+    @Autowired
+    DataVersionService dataVersionService;
+
+    @Autowired
+    CacheInvalidationBus cacheInvalidationBus;
+
+    @Autowired
+    LedgerAnalyticsService ledgerAnalyticsService;
+
+    @Value("${expensetracker.writes.coalesce-window-ms:2}")
+    private long windowMs;
+
+    @Value("${expensetracker.writes.max-group-size:200}")
+    private int maxGroupSize;
+
+    private final Map<Integer, ShardQueue> queues = new ConcurrentHashMap<>();
+
+    // Groups are committed on their own, whatever transaction the leader is part of
+    private final TransactionTemplate groupTransaction;
+
+    /**
+     * Constructs a new TransactionWriteCoalescerImpl.
+     *
+     * @param transactionManager the transaction manager of the application DataSource
+     */
+    public TransactionWriteCoalescerImpl(PlatformTransactionManager transactionManager) {
+        groupTransaction = new TransactionTemplate(transactionManager);
+        groupTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Creates a transaction, committing it together with concurrent creates of the same shard.
+     *
+     * @param userId The ID of the user.
+     * @param categoryId The ID of the category.
+     * @param amount The amount of the transaction.
+     * @param note A note for the transaction.
+     * @param transactionDate The date of the transaction.
+     * @return The newly created transaction.
+     * @throws EtBadRequestException If the transaction cannot be created.
+     */
+    @Override
+    public Transaction create(Integer userId, Integer categoryId, Double amount, String note, Long transactionDate) throws EtBadRequestException {
+        int shardId = shardDirectory.shardOf(userId);
+        if (windowMs <= 0)
+            return createOne(shardId, new Transaction(null, categoryId, userId, amount, note, transactionDate));
+        ShardQueue queue = queues.computeIfAbsent(shardId, id -> new ShardQueue());
+        PendingCreate create = new PendingCreate(new Transaction(null, categoryId, userId, amount, note, transactionDate));
+        queue.pending.add(create);
+        boolean interrupted = false;
+        try {
+            while (true) {
+                interrupted |= lead(shardId, queue, create);
+                try {
+                    return create.result.get(windowMs, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException e) {
+                    // The leader may have stopped at its own create: try to lead again
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    if (queue.pending.remove(create))
+                        throw new EtServiceUnavailableException("The transaction was not written, retry shortly");
+                    // Already taken by a leader: wait for the outcome
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof RuntimeException)
+                        throw (RuntimeException) e.getCause();
+                    throw new IllegalStateException(e.getCause());
+                }
+            }
+        } finally {
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Flushes the queue of a shard, group after group, until the given create is written,
+     * unless another thread already flushes it.
+     *
+     * @return Whether the thread was interrupted while waiting for a group to fill.
+     */
+    private boolean lead(int shardId, ShardQueue queue, PendingCreate own) {
+        boolean interrupted = false;
+        while (!own.result.isDone() && !queue.pending.isEmpty() && queue.flushing.compareAndSet(false, true)) {
+            List<PendingCreate> group = new ArrayList<>();
+            try {
+                if (queue.pending.size() < maxGroupSize) {
+                    try {
+                        Thread.sleep(windowMs);
+                    } catch (InterruptedException e) {
+                        interrupted = true;  // Write what is queued already, then let the caller see the interrupt
+                    }
+                }
+                PendingCreate create;
+                while (group.size() < maxGroupSize && (create = queue.pending.poll()) != null)
+                    group.add(create);
+                flush(shardId, group);
+            } finally {
+                queue.flushing.set(false);
+                // Nothing is left waiting forever, whatever went wrong
+                for (PendingCreate create : group)
+                    create.result.completeExceptionally(new EtServiceUnavailableException("The transaction was not written, retry shortly"));
+            }
+        }
+        return interrupted;
+    }
+
+    /**
+     * Writes a group of creates of the same shard, in one batch if possible, one by one otherwise.
+     */
+    private void flush(int shardId, List<PendingCreate> group) {
+        try {
+            if (group.size() > 1)
+                flushBatch(shardId, group);
+        } catch (RuntimeException e) {
+            // The whole group was rolled back: fall through to writing its creates one by one
+        }
+        for (PendingCreate create : group) {
+            if (create.result.isDone())
+                continue;
+            try {
+                create.result.complete(createOne(shardId, create.transaction));
+            } catch (RuntimeException e) {
+                create.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Writes a group of creates as one JDBC batch in one database transaction.
+     */
+    private void flushBatch(int shardId, List<PendingCreate> group) {
+        group.sort(Comparator.comparing((PendingCreate create) -> create.transaction.getUserId())
+                .thenComparing(create -> create.transaction.getCategoryId()));
+        List<Transaction> transactions = new ArrayList<>(group.size());
+        Set<Integer> userIds = new LinkedHashSet<>();
+        for (PendingCreate create : group) {
+            transactions.add(create.transaction);
+            userIds.add(create.transaction.getUserId());
+        }
+        List<Transaction> created = new ArrayList<>(group.size());
+        ShardContext.forUsers(shardId, userIds, () -> created.addAll(groupTransaction.execute(status -> {
+            List<Transaction> inserted = transactionRepository.createEach(transactions);
+            written(inserted);
+            return inserted;
+        })));
+        for (int i = 0; i < group.size(); i++) {
+            if (created.get(i) != null)
+                group.get(i).result.complete(created.get(i));
+            else
+                group.get(i).result.completeExceptionally(new EtBadRequestException("Invalid request"));
+        }
+    }
+
+    /**
+     * Writes a single create in its own database transaction.
+     */
+    private Transaction createOne(int shardId, Transaction transaction) {
+        Transaction[] created = new Transaction[1];
+        ShardContext.forUsers(shardId, Collections.singletonList(transaction.getUserId()), () ->
+                created[0] = groupTransaction.execute(status -> {
+                    Transaction inserted = transactionRepository.create(transaction.getUserId(), transaction.getCategoryId(),
+                            transaction.getAmount(), transaction.getNote(), transaction.getTransactionDate());
+                    written(Collections.singletonList(inserted));
+                    return inserted;
+                }));
+        return created[0];
+    }
+
+    /**
+     * Records creates in the ledgers, caches and data versions, in the transaction writing them.
+     *
+     * @param created The created transactions, null in place of those not created.
+     */
+    private void written(List<Transaction> created) {
+        Set<Integer> userIds = new LinkedHashSet<>();
+        for (Transaction transaction : created) {
+            if (transaction == null)
+                continue;
+            ledgerAnalyticsService.transactionWritten(transaction);
+            cacheInvalidationBus.transactionsChanged(transaction.getUserId(), transaction.getCategoryId());
+            userIds.add(transaction.getUserId());
+        }
+        for (Integer userId : userIds)
+            dataVersionService.dataChanged(userId);
+    }
+
+    /**
+     * The creates waiting for a shard, and whether a thread is flushing them.
+     */
+    private static class ShardQueue {
+
+        private final Queue<PendingCreate> pending = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean flushing = new AtomicBoolean();
+    }
+
+    /**
+     * A create waiting to be written, and its outcome.
+     */
+    private static class PendingCreate {
+
+        private final Transaction transaction;
+        private final CompletableFuture<Transaction> result = new CompletableFuture<>();
+
+        private PendingCreate(Transaction transaction) {
+            this.transaction = transaction;
+        }
+    }
+}
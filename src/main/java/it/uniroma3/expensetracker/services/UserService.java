@@ -2,9 +2,14 @@ package it.uniroma3.expensetracker.services;
 
 import it.uniroma3.expensetracker.domain.User;
 import it.uniroma3.expensetracker.exceptions.EtAuthException;
+import it.uniroma3.expensetracker.exceptions.EtServiceUnavailableException;
+
+import java.util.concurrent.CompletableFuture;
 
 /**
  * Service interface for managing user authentication and registration.
+ * Passwords are hashed asynchronously, so both operations complete later; they fail with an
+ * EtAuthException or an EtServiceUnavailableException, either right away or through the future.
  */
 public interface UserService {
 
@@ -13,10 +18,11 @@ public interface UserService {
      *
      * @param email The email of the user.
      * @param password The password of the user.
-     * @return The validated user.
+     * @return The validated user, once the password is checked.
      * @throws EtAuthException If the email or password is incorrect.
+     * @throws EtServiceUnavailableException If too many passwords are being checked already.
      */
-    User validateUser(String email, String password) throws EtAuthException;
+    CompletableFuture<User> validateUser(String email, String password) throws EtAuthException, EtServiceUnavailableException;
 
     /**
      * Registers a new user with the provided details.
@@ -25,9 +31,11 @@ public interface UserService {
      * @param lastName The last name of the user.
      * @param email The email of the user.
      * @param password The password of the user.
-     * @return The newly registered user.
+     * @return The newly registered user, once the password is hashed and the user stored.
      * @throws EtAuthException If there is an issue with the registration process.
+     * @throws EtServiceUnavailableException If too many passwords are being hashed already.
      */
-    User registerUser(String firstName, String lastName, String email, String password) throws EtAuthException;
+    CompletableFuture<User> registerUser(String firstName, String lastName, String email, String password)
+            throws EtAuthException, EtServiceUnavailableException;
 
 }
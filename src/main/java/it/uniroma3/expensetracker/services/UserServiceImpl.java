@@ -1,36 +1,83 @@
 package it.uniroma3.expensetracker.services;
 
+import it.uniroma3.expensetracker.config.ShardContext;
 import it.uniroma3.expensetracker.domain.User;
 import it.uniroma3.expensetracker.exceptions.EtAuthException;
+import it.uniroma3.expensetracker.exceptions.EtServiceUnavailableException;
+import it.uniroma3.expensetracker.repositories.ShardDirectory;
 import it.uniroma3.expensetracker.repositories.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Pattern;
 
 /**
  * Service implementation for managing user authentication and registration.
+ * <p>
+ * Passwords are hashed and checked by the PasswordHasher, and the database work continues on the
+ * application task executor once the hash is ready, so the hasher's threads only hash and a slow
+ * database does not hold them: no database transaction is held open while hashing, and
+ * the registration is written in a transaction of its own afterwards, on shard 0, in a single
+ * insert that the unique index on EMAIL refuses if the email is taken, followed by the user's
+ * entry in the shard directory. Whether it is taken is only queried
+ * beforehand, to spare the hash, when the filter of registered emails cannot rule it out.
+ * A password hashed with
+ * another cost than the configured one is hashed again after a successful sign-in.
  */
 @Service
-@Transactional
 public class UserServiceImpl implements UserService {
 
+    private static final Logger logger = LoggerFactory.getLogger(UserServiceImpl.class);
+    private static final Pattern EMAIL_PATTERN = Pattern.compile("^(.+)@(.+)$");
+
     @Autowired
     UserRepository userRepository;
 
+    @Autowired
+    ShardDirectory shardDirectory;
+
+    @Autowired
+    PasswordHasher passwordHasher;
+
+    @Autowired
+    RegisteredEmails registeredEmails;
+
+    @Autowired
+    TransactionTemplate transactionTemplate;
+
+    @Autowired
+    @Qualifier("applicationTaskExecutor")
+    Executor executor;
+
     /**
      * Validates the user's credentials and returns the user information.
      *
      * @param email The email of the user.
      * @param password The password of the user.
-     * @return The validated user.
+     * @return The validated user, once the password is checked.
      * @throws EtAuthException If the email or password is incorrect.
+     * @throws EtServiceUnavailableException If too many passwords are being checked already.
      */
     @Override
-    public User validateUser(String email, String password) throws EtAuthException {
+    public CompletableFuture<User> validateUser(String email, String password) throws EtAuthException, EtServiceUnavailableException {
         if(email != null) email = email.toLowerCase();
-        return userRepository.findByEmailAndPassword(email, password);
+        if(password == null)
+            throw new EtAuthException("Invalid email/password");
+        User user = userRepository.findByEmail(email);
+        return passwordHasher.verify(password, user.getPassword()).thenApply(matches -> {
+            if(!matches)
+                throw new EtAuthException("Invalid email/password");
+            if(passwordHasher.needsRehash(user.getPassword()))
+                rehash(user.getUserId(), password);
+            return user;
+        });
     }
 
     /**
@@ -40,19 +87,47 @@ public class UserServiceImpl implements UserService {
      * @param lastName The last name of the user.
      * @param email The email of the user.
      * @param password The password of the user.
-     * @return The newly registered user.
+     * @return The newly registered user, once the password is hashed and the user stored.
      * @throws EtAuthException If there is an issue with the registration process.
+     * @throws EtServiceUnavailableException If too many passwords are being hashed already.
      */
     @Override
-    public User registerUser(String firstName, String lastName, String email, String password) throws EtAuthException {
-        Pattern pattern = Pattern.compile("^(.+)@(.+)$");
+    public CompletableFuture<User> registerUser(String firstName, String lastName, String email, String password)
+            throws EtAuthException, EtServiceUnavailableException {
         if(email != null) email = email.toLowerCase();
-        if(!pattern.matcher(email).matches())
+        if(email == null || !EMAIL_PATTERN.matcher(email).matches())
             throw new EtAuthException("Invalid email format");
-        Integer count = userRepository.getCountByEmail(email);
-        if(count > 0)
+        if(password == null)
+            throw new EtAuthException("Invalid details. Failed to create account");
+        if(registeredEmails.mightBeRegistered(email) && userRepository.getCountByEmail(email) > 0)
             throw new EtAuthException("Email already in use");
-        Integer userId = userRepository.create(firstName, lastName, email, password);
-        return userRepository.findById(userId);
+        String normalizedEmail = email;
+        return passwordHasher.hash(password).thenApplyAsync(hashedPassword -> {
+            AtomicReference<User> user = new AtomicReference<>();
+            ShardContext.forShard(ShardDirectory.DIRECTORY_SHARD, () -> user.set(transactionTemplate.execute(status -> {
+                User created = userRepository.create(firstName, lastName, normalizedEmail, hashedPassword);
+                shardDirectory.assign(created.getUserId());  // Place the new user's data on a shard
+                registeredEmails.registered(normalizedEmail);
+                return created;
+            })));
+            return user.get();
+        }, executor);
+    }
+
+    /**
+     * Hashes a password again with the configured cost and stores it, in the background.
+     * Best effort: when the hasher is busy or the update fails, the next sign-in tries again.
+     */
+    private void rehash(Integer userId, String password) {
+        try {
+            passwordHasher.hash(password)
+                    .thenAcceptAsync(hashedPassword -> userRepository.updatePassword(userId, hashedPassword), executor)
+                    .exceptionally(e -> {
+                        logger.warn("Could not rehash the password of user {}", userId, e);
+                        return null;
+                    });
+        } catch (EtServiceUnavailableException e) {
+            logger.debug("Rehash of the password of user {} deferred, hasher busy", userId);
+        }
     }
 }
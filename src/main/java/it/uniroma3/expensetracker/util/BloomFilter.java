@@ -0,0 +1,97 @@
+package it.uniroma3.expensetracker.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bloom filter of strings: answers whether a string may have been added, with no false negatives
+ * and a false positive rate set at construction for a given number of additions.
+ * <p>
+ * Each string is hashed once to 64 bits, split into two halves combined into the bit indexes
+ * ({@code h1 + i * h2}). Bits are set with compare-and-set on the words of an AtomicLongArray,
+ * so additions and lookups are lock-free, and a lookup concurrent with an addition of the same
+ * string sees it either way.
+ * <p>
+ * Thread-safe.
+ */
+public class BloomFilter {
+
+    private final AtomicLongArray words;
+    private final long bitCount;
+    private final int hashCount;
+
+    /**
+     * Constructs an empty BloomFilter sized for a number of additions.
+     *
+     * @param expectedInsertions   the number of strings expected to be added
+     * @param falsePositiveRate    the rate of false positives once that many are added, between 0 and 1
+     */
+    public BloomFilter(long expectedInsertions, double falsePositiveRate) {
+        if (expectedInsertions < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1)
+            throw new IllegalArgumentException("Invalid Bloom filter size");
+        long bits = (long) Math.ceil(-expectedInsertions * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+        int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, (bits + 63) / 64);
+        words = new AtomicLongArray(wordCount);
+        bitCount = wordCount * 64L;
+        hashCount = Math.max(1, (int) Math.round((double) bitCount / expectedInsertions * Math.log(2)));
+    }
+
+    /**
+     * Adds a string.
+     *
+     * @param value the string
+     */
+    public void put(CharSequence value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = index(h1 + i * h2);
+            int word = (int) (bit >>> 6);
+            long mask = 1L << bit;
+            long current;
+            while (((current = words.get(word)) & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                // Another bit of the word was set concurrently, retry
+            }
+        }
+    }
+
+    /**
+     * Tells whether a string may have been added.
+     *
+     * @param value the string
+     * @return false if the string was definitely never added, true if it may have been
+     */
+    public boolean mightContain(CharSequence value) {
+        long hash = hash(value);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 1; i <= hashCount; i++) {
+            long bit = index(h1 + i * h2);
+            if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0)
+                return false;
+        }
+        return true;
+    }
+
+    private long index(int combined) {
+        return (combined & 0xFFFFFFFFL) % bitCount;
+    }
+
+    /**
+     * Hashes the characters of a string to 64 bits: FNV-1a, then the finalizer of MurmurHash3
+     * to spread the bits of short, similar strings.
+     */
+    private static long hash(CharSequence value) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            hash ^= value.charAt(i);
+            hash *= 0x100000001B3L;
+        }
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,308 @@
+package it.uniroma3.expensetracker.util;
+
+import it.uniroma3.expensetracker.domain.CategorySpending;
+import it.uniroma3.expensetracker.domain.SpendingPoint;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The transactions of one user held as parallel primitive arrays, one per column, for analytics.
+ * <p>
+ * Aggregations scan the date, amount and category columns directly: no object is created per
+ * transaction, and the arrays are read sequentially. Categories are stored as dense slots,
+ * so that per-category totals are accumulated into a plain array indexed by slot.
+ * Transactions are not kept in any order; removals move the last transaction into the gap.
+ * <p>
+ * Thread-safe: aggregations share a read lock, changes take the write lock.
+ */
+public class ColumnarLedger {
+
+    private static final int INITIAL_CAPACITY = 256;
+    private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int size;
+    private int[] transactionIds = new int[INITIAL_CAPACITY];
+    private int[] categorySlots = new int[INITIAL_CAPACITY];
+    private long[] dates = new long[INITIAL_CAPACITY];
+    private double[] amounts = new double[INITIAL_CAPACITY];
+
+    private int slotCount;
+    private int[] slotCategoryIds = new int[16];  // Category ID of each slot
+
+    /**
+     * Gets the lock guarding this ledger, for callers filling it in several steps.
+     *
+     * @return the lock
+     */
+    public ReadWriteLock getLock() {
+        return lock;
+    }
+
+    /**
+     * Gets the number of transactions in the ledger.
+     *
+     * @return the size
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Appends a transaction known not to be in the ledger yet, as when loading it.
+     *
+     * @param transactionId   the ID of the transaction
+     * @param categoryId      the ID of its category
+     * @param transactionDate its date, in milliseconds since epoch
+     * @param amount          its amount
+     */
+    public void append(int transactionId, int categoryId, long transactionDate, double amount) {
+        lock.writeLock().lock();
+        try {
+            if (size == transactionIds.length)
+                grow();
+            transactionIds[size] = transactionId;
+            categorySlots[size] = slotOf(categoryId);
+            dates[size] = transactionDate;
+            amounts[size] = amount;
+            size++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a transaction, or replaces it if the ledger already holds it, so that
+     * the same change can safely be applied twice.
+     *
+     * @param transactionId   the ID of the transaction
+     * @param categoryId      the ID of its category
+     * @param transactionDate its date, in milliseconds since epoch
+     * @param amount          its amount
+     */
+    public void put(int transactionId, int categoryId, long transactionDate, double amount) {
+        lock.writeLock().lock();
+        try {
+            int index = indexOf(transactionId);
+            if (index < 0) {
+                append(transactionId, categoryId, transactionDate, amount);
+                return;
+            }
+            categorySlots[index] = slotOf(categoryId);
+            dates[index] = transactionDate;
+            amounts[index] = amount;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Changes the date and amount of a transaction of a category, if the ledger holds it.
+     *
+     * @param transactionId   the ID of the transaction
+     * @param categoryId      the ID of its category
+     * @param transactionDate its new date, in milliseconds since epoch
+     * @param amount          its new amount
+     */
+    public void update(int transactionId, int categoryId, long transactionDate, double amount) {
+        lock.writeLock().lock();
+        try {
+            int index = indexOf(transactionId);
+            if (index >= 0 && slotCategoryIds[categorySlots[index]] == categoryId) {
+                dates[index] = transactionDate;
+                amounts[index] = amount;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Removes a transaction, if the ledger holds it.
+     *
+     * @param transactionId the ID of the transaction
+     */
+    public void remove(int transactionId) {
+        lock.writeLock().lock();
+        try {
+            int index = indexOf(transactionId);
+            if (index >= 0)
+                moveLast(index);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Computes the spending per category between two dates, largest total first.
+     *
+     * @param from  the earliest date, inclusive, in milliseconds since epoch
+     * @param to    the latest date, inclusive, in milliseconds since epoch
+     * @param limit the maximum number of categories returned
+     * @return the categories with at least one transaction in the range
+     */
+    public List<CategorySpending> totalsByCategory(long from, long to, int limit) {
+        double[] totals;
+        int[] counts;
+        int[] categoryIds;
+        lock.readLock().lock();
+        try {
+            totals = new double[slotCount];
+            counts = new int[slotCount];
+            for (int i = 0; i < size; i++) {
+                long date = dates[i];
+                if (date >= from && date <= to) {
+                    int slot = categorySlots[i];
+                    totals[slot] += amounts[i];
+                    counts[slot]++;
+                }
+            }
+            categoryIds = Arrays.copyOf(slotCategoryIds, slotCount);
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<CategorySpending> result = new ArrayList<>();
+        for (int slot = 0; slot < totals.length; slot++)
+            if (counts[slot] > 0)
+                result.add(new CategorySpending(categoryIds[slot], totals[slot], counts[slot]));
+        result.sort(Comparator.comparing(CategorySpending::getTotal).reversed());
+        return result.size() > limit ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    /**
+     * Computes the spending per calendar month (UTC) between two dates.
+     *
+     * @param from       the earliest date, inclusive, in milliseconds since epoch
+     * @param to         the latest date, inclusive, in milliseconds since epoch
+     * @param categoryId the ID of the category to restrict the totals to, or null for all categories
+     * @return the months with at least one transaction in the range, in chronological order
+     */
+    public List<SpendingPoint> totalsByMonth(long from, long to, Integer categoryId) {
+        double[] totals;
+        int[] counts;
+        long firstMonth;
+        lock.readLock().lock();
+        try {
+            int slot = categoryId == null ? -1 : findSlot(categoryId);
+            if (categoryId != null && slot < 0)
+                return new ArrayList<>();
+            // First pass bounds the months actually present, so the range may be open-ended
+            long minDate = Long.MAX_VALUE;
+            long maxDate = Long.MIN_VALUE;
+            for (int i = 0; i < size; i++) {
+                long date = dates[i];
+                if (date >= from && date <= to && (slot < 0 || categorySlots[i] == slot)) {
+                    minDate = Math.min(minDate, date);
+                    maxDate = Math.max(maxDate, date);
+                }
+            }
+            if (minDate > maxDate)
+                return new ArrayList<>();
+            firstMonth = monthOf(minDate);
+            totals = new double[(int) (monthOf(maxDate) - firstMonth + 1)];
+            counts = new int[totals.length];
+            for (int i = 0; i < size; i++) {
+                long date = dates[i];
+                if (date >= from && date <= to && (slot < 0 || categorySlots[i] == slot)) {
+                    int bucket = (int) (monthOf(date) - firstMonth);
+                    totals[bucket] += amounts[i];
+                    counts[bucket]++;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<SpendingPoint> result = new ArrayList<>();
+        for (int bucket = 0; bucket < totals.length; bucket++)
+            if (counts[bucket] > 0)
+                result.add(new SpendingPoint(startOfMonth(firstMonth + bucket), totals[bucket], counts[bucket]));
+        return result;
+    }
+
+    /**
+     * Computes the month of a date as a number of months since year 0, in UTC,
+     * with the civil-from-days algorithm: pure arithmetic, no calendar object.
+     *
+     * @param epochMillis the date, in milliseconds since epoch
+     * @return {@code year * 12 + month - 1}
+     */
+    static long monthOf(long epochMillis) {
+        long days = Math.floorDiv(epochMillis, MILLIS_PER_DAY) + 719468;
+        long era = Math.floorDiv(days, 146097);
+        long dayOfEra = days - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;  // 0 is March
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 12 + month - 1;
+    }
+
+    /**
+     * Computes the start of a month numbered as by {@link #monthOf(long)}.
+     *
+     * @param month the month
+     * @return the first millisecond of the month, UTC
+     */
+    static long startOfMonth(long month) {
+        long year = Math.floorDiv(month, 12);
+        long monthOfYear = month - year * 12 + 1;
+        year -= monthOfYear <= 2 ? 1 : 0;
+        long era = Math.floorDiv(year, 400);
+        long yearOfEra = year - era * 400;
+        long dayOfYear = (153 * (monthOfYear + (monthOfYear > 2 ? -3 : 9)) + 2) / 5;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return (era * 146097 + dayOfEra - 719468) * MILLIS_PER_DAY;
+    }
+
+    private int indexOf(int transactionId) {
+        for (int i = 0; i < size; i++)
+            if (transactionIds[i] == transactionId)
+                return i;
+        return -1;
+    }
+
+    private int findSlot(int categoryId) {
+        for (int slot = 0; slot < slotCount; slot++)
+            if (slotCategoryIds[slot] == categoryId)
+                return slot;
+        return -1;
+    }
+
+    private int slotOf(int categoryId) {
+        int slot = findSlot(categoryId);
+        if (slot >= 0)
+            return slot;
+        if (slotCount == slotCategoryIds.length)
+            slotCategoryIds = Arrays.copyOf(slotCategoryIds, slotCount * 2);
+        slotCategoryIds[slotCount] = categoryId;
+        return slotCount++;
+    }
+
+    private void moveLast(int index) {
+        int last = --size;
+        transactionIds[index] = transactionIds[last];
+        categorySlots[index] = categorySlots[last];
+        dates[index] = dates[last];
+        amounts[index] = amounts[last];
+    }
+
+    private void grow() {
+        int capacity = transactionIds.length * 2;
+        transactionIds = Arrays.copyOf(transactionIds, capacity);
+        categorySlots = Arrays.copyOf(categorySlots, capacity);
+        dates = Arrays.copyOf(dates, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+    }
+}
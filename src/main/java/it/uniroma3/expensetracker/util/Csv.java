@@ -0,0 +1,71 @@
+package it.uniroma3.expensetracker.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helper methods for reading and writing CSV (RFC 4180) fields.
+ */
+public final class Csv {
+
+    private Csv() {
+    }
+
+    /**
+     * Escapes a value so it can be written as a single CSV field.
+     * Values containing a separator, a quote or a line break are quoted, with inner quotes doubled.
+     *
+     * @param value the value to escape, may be null
+     * @return the escaped field, an empty string for null
+     */
+    public static String escape(String value) {
+        if (value == null)
+            return "";
+        boolean needsQuotes = false;
+        for (int i = 0; i < value.length() && !needsQuotes; i++) {
+            char c = value.charAt(i);
+            needsQuotes = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!needsQuotes)
+            return value;
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * Splits one CSV record into its fields, honouring quoted fields and doubled quotes.
+     * Records spanning several lines are not supported.
+     *
+     * @param line the record to split
+     * @return the unescaped fields of the record
+     * @throws IllegalArgumentException if a quoted field is not terminated
+     */
+    public static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted)
+            throw new IllegalArgumentException("Unterminated quoted field");
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,90 @@
+package it.uniroma3.expensetracker.util;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Token buckets, one per key, refilled at a fixed rate up to a maximum burst.
+ * <p>
+ * Each bucket is a single AtomicLong holding the time at which it will be full again
+ * (the generic cell rate algorithm): a request takes a token by pushing that time forward by
+ * one refill interval, with a compare-and-set, and is refused if this would put it more than a
+ * burst ahead of now. No lock is taken, and contention is limited to requests sharing a key.
+ * <p>
+ * The buckets live in a Caffeine cache, itself striped, that drops a bucket once it has been idle
+ * long enough to be full again, when it is indistinguishable from a new one; the number of
+ * buckets kept is also capped, dropping the least recently used first.
+ * <p>
+ * Thread-safe.
+ */
+public class RateLimiter {
+
+    private final long intervalNanos;  // Time to refill one token
+    private final long burstNanos;     // Time to refill the whole bucket
+    private final Cache<Object, AtomicLong> buckets;
+
+    /**
+     * Constructs a new RateLimiter.
+     *
+     * @param permitsPerSecond the rate at which each bucket is refilled
+     * @param burst            the capacity of each bucket, i.e. the number of requests allowed at once
+     * @param maxKeys          the maximum number of buckets kept
+     */
+    public RateLimiter(double permitsPerSecond, int burst, long maxKeys) {
+        this(permitsPerSecond, burst, maxKeys, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Constructs a new RateLimiter whose evictions run on the given executor, e.g. the calling
+     * thread for tests that need the number of buckets kept to be exact.
+     */
+    RateLimiter(double permitsPerSecond, int burst, long maxKeys, Executor executor) {
+        if (permitsPerSecond <= 0 || burst < 1)
+            throw new IllegalArgumentException("Rate and burst must be positive");
+        intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        burstNanos = intervalNanos * burst;
+        buckets = Caffeine.newBuilder()
+                .executor(executor)
+                .maximumSize(maxKeys)
+                .expireAfterAccess(burstNanos, TimeUnit.NANOSECONDS)
+                .build();
+    }
+
+    /**
+     * Takes a token from the bucket of a key.
+     *
+     * @param key the key, e.g. a user ID or a client address
+     * @return 0 if a token was taken, or else the number of nanoseconds until one is available
+     */
+    public long tryAcquire(Object key) {
+        return tryAcquire(key, System.nanoTime());
+    }
+
+    long tryAcquire(Object key, long now) {
+        AtomicLong fullAt = buckets.get(key, k -> new AtomicLong(now));
+        while (true) {
+            long current = fullAt.get();
+            long next = Math.max(current, now) + intervalNanos;
+            long excess = next - now - burstNanos;
+            if (excess > 0)
+                return excess;
+            if (fullAt.compareAndSet(current, next))
+                return 0;
+        }
+    }
+
+    /**
+     * Gets an estimate of the number of buckets kept.
+     *
+     * @return the number of buckets
+     */
+    public long size() {
+        buckets.cleanUp();
+        return buckets.estimatedSize();
+    }
+}
@@ -0,0 +1,8 @@
+-- Supports keyset pagination of a category's transactions (newest first).
+-- TransactionRepositoryImpl.findPage seeks on (TRANSACTION_DATE, TRANSACTION_ID) within
+-- a user's category, so each page is an index range scan of at most LIMIT rows.
+--
+-- Apply manually with psql; CONCURRENTLY avoids blocking writes on large tables.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ET_TRANSACTIONS_USER_CAT_DATE_IDX
+    ON ET_TRANSACTIONS (USER_ID, CATEGORY_ID, TRANSACTION_DATE DESC, TRANSACTION_ID DESC);
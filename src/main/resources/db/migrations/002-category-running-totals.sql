@@ -0,0 +1,18 @@
+-- Persists each category's total expense so that category reads no longer join and sum
+-- ET_TRANSACTIONS. TransactionRepositoryImpl keeps the column up to date in the same
+-- statement as every transaction insert, update and delete.
+--
+-- Run with the application stopped, or at least with writes paused: the backfill must
+-- see a stable set of transactions.
+
+BEGIN;
+
+ALTER TABLE ET_CATEGORIES ADD COLUMN IF NOT EXISTS TOTAL_EXPENSE NUMERIC NOT NULL DEFAULT 0;
+
+LOCK TABLE ET_TRANSACTIONS IN SHARE MODE;
+
+UPDATE ET_CATEGORIES C SET TOTAL_EXPENSE = S.TOTAL
+FROM (SELECT CATEGORY_ID, SUM(AMOUNT) TOTAL FROM ET_TRANSACTIONS GROUP BY CATEGORY_ID) S
+WHERE C.CATEGORY_ID = S.CATEGORY_ID;
+
+COMMIT;
@@ -0,0 +1,52 @@
+-- Daily and monthly spending per user and category, for the spending-over-time report.
+-- TransactionRepositoryImpl upserts the deltas of every transaction insert, update and
+-- delete in the same statement, so a 5-year monthly series reads at most 60 rows per
+-- category instead of every transaction of the period.
+--
+-- Buckets are keyed by their start in milliseconds since epoch (UTC), matching
+-- ET_TRANSACTIONS.TRANSACTION_DATE.
+--
+-- Run with the application stopped, or at least with writes paused: the backfill must
+-- see a stable set of transactions.
+
+BEGIN;
+
+CREATE OR REPLACE FUNCTION ET_DAY_BUCKET(MILLIS BIGINT) RETURNS BIGINT
+    LANGUAGE SQL IMMUTABLE STRICT
+    AS $$ SELECT (FLOOR(MILLIS / 86400000.0) * 86400000)::BIGINT $$;
+
+CREATE OR REPLACE FUNCTION ET_MONTH_BUCKET(MILLIS BIGINT) RETURNS BIGINT
+    LANGUAGE SQL IMMUTABLE STRICT
+    AS $$ SELECT (EXTRACT(EPOCH FROM DATE_TRUNC('month', TO_TIMESTAMP(MILLIS / 1000.0) AT TIME ZONE 'UTC')) * 1000)::BIGINT $$;
+
+CREATE TABLE IF NOT EXISTS ET_SPENDING_DAILY (
+    USER_ID INTEGER NOT NULL,
+    CATEGORY_ID INTEGER NOT NULL,
+    BUCKET_START BIGINT NOT NULL,
+    TOTAL NUMERIC NOT NULL DEFAULT 0,
+    TX_COUNT INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (USER_ID, CATEGORY_ID, BUCKET_START)
+);
+
+CREATE TABLE IF NOT EXISTS ET_SPENDING_MONTHLY (
+    USER_ID INTEGER NOT NULL,
+    CATEGORY_ID INTEGER NOT NULL,
+    BUCKET_START BIGINT NOT NULL,
+    TOTAL NUMERIC NOT NULL DEFAULT 0,
+    TX_COUNT INTEGER NOT NULL DEFAULT 0,
+    PRIMARY KEY (USER_ID, CATEGORY_ID, BUCKET_START)
+);
+
+LOCK TABLE ET_TRANSACTIONS IN SHARE MODE;
+
+TRUNCATE ET_SPENDING_DAILY, ET_SPENDING_MONTHLY;
+
+INSERT INTO ET_SPENDING_DAILY (USER_ID, CATEGORY_ID, BUCKET_START, TOTAL, TX_COUNT)
+SELECT USER_ID, CATEGORY_ID, ET_DAY_BUCKET(TRANSACTION_DATE), SUM(AMOUNT), COUNT(*)
+FROM ET_TRANSACTIONS GROUP BY 1, 2, 3;
+
+INSERT INTO ET_SPENDING_MONTHLY (USER_ID, CATEGORY_ID, BUCKET_START, TOTAL, TX_COUNT)
+SELECT USER_ID, CATEGORY_ID, ET_MONTH_BUCKET(TRANSACTION_DATE), SUM(AMOUNT), COUNT(*)
+FROM ET_TRANSACTIONS GROUP BY 1, 2, 3;
+
+COMMIT;
@@ -0,0 +1,10 @@
+-- Supports the filtered transaction listings. A date range within a category is a range
+-- scan of ET_TRANSACTIONS_USER_CAT_DATE_IDX (migration 001), whose leading columns are
+-- (USER_ID, CATEGORY_ID, TRANSACTION_DATE); this index covers the same range across all
+-- of a user's categories, e.g. "last 30 days". Amount bounds are checked on the rows of
+-- the range.
+--
+-- Apply manually with psql; CONCURRENTLY avoids blocking writes on large tables.
+
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ET_TRANSACTIONS_USER_DATE_IDX
+    ON ET_TRANSACTIONS (USER_ID, TRANSACTION_DATE DESC, TRANSACTION_ID DESC);
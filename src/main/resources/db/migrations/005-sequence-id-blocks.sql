@@ -0,0 +1,14 @@
+-- Switches the primary-key sequences to block allocation. IdAllocatorImpl reserves a whole
+-- block of IDs with one NEXTVAL and hands them out from memory, so each NEXTVAL returning
+-- v reserves (v - increment, v]. The increment must therefore equal the block size
+-- configured in expensetracker.ids.block-size; the application checks it at startup and
+-- refuses to start on a mismatch. To change the block size, alter the sequences in a new
+-- migration and roll out the new setting with it.
+--
+-- IDs already handed out stay below the current value of each sequence, so existing rows
+-- cannot collide with the new blocks.
+
+ALTER SEQUENCE ET_TRANSACTIONS_SEQ INCREMENT BY 1000;
+ALTER SEQUENCE ET_CATEGORIES_SEQ INCREMENT BY 1000;
+ALTER SEQUENCE ET_USERS_SEQ INCREMENT BY 1000;
+ALTER SEQUENCE ET_BUDGETS_SEQ INCREMENT BY 1000;
@@ -0,0 +1,13 @@
+-- Deleting a category now only marks it: reads hide a deleted category and its transactions
+-- at once, and CategoryPurgeJob deletes the transactions in small chunks before removing
+-- the category row. PURGED_TRANSACTIONS records how many have been purged so far.
+--
+-- Apply manually with psql; the new columns have constant defaults, so adding them does
+-- not rewrite the table.
+
+ALTER TABLE ET_CATEGORIES ADD COLUMN IF NOT EXISTS DELETED BOOLEAN NOT NULL DEFAULT FALSE;
+ALTER TABLE ET_CATEGORIES ADD COLUMN IF NOT EXISTS PURGED_TRANSACTIONS BIGINT NOT NULL DEFAULT 0;
+
+-- Keeps the "category is not deleted" check on transaction reads a lookup in a tiny index
+CREATE INDEX CONCURRENTLY IF NOT EXISTS ET_CATEGORIES_DELETED_IDX
+    ON ET_CATEGORIES (CATEGORY_ID) WHERE DELETED;
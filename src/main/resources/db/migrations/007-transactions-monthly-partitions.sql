@@ -0,0 +1,70 @@
+-- Partitions ET_TRANSACTIONS by month of TRANSACTION_DATE (milliseconds since epoch, UTC).
+-- Queries bounded by date only visit the partitions of their range, and vacuum and index
+-- maintenance work one partition at a time. TransactionPartitionJob creates the partitions
+-- of the coming months; rows dated beyond them go to ET_TRANSACTIONS_DEFAULT until their
+-- partition exists.
+--
+-- Old months can be taken offline cheaply with
+--   ALTER TABLE ET_TRANSACTIONS DETACH PARTITION ET_TRANSACTIONS_YyyyyMmm CONCURRENTLY;
+-- Category totals and spending rollups still count the detached rows, and the nightly totals
+-- reconciliation would treat them as drift, so disable its repair
+-- (expensetracker.totals.repair-drift=false) or recompute the totals deliberately.
+--
+-- The primary key of a partitioned table must include the partition key, hence
+-- (TRANSACTION_ID, TRANSACTION_DATE); IDs remain unique as they come from the sequence.
+--
+-- Run with the application stopped: the table is rewritten under an exclusive lock.
+
+BEGIN;
+
+LOCK TABLE ET_TRANSACTIONS IN ACCESS EXCLUSIVE MODE;
+
+ALTER TABLE ET_TRANSACTIONS RENAME TO ET_TRANSACTIONS_UNPARTITIONED;
+
+CREATE TABLE ET_TRANSACTIONS (LIKE ET_TRANSACTIONS_UNPARTITIONED INCLUDING DEFAULTS INCLUDING CONSTRAINTS)
+    PARTITION BY RANGE (TRANSACTION_DATE);
+
+CREATE TABLE ET_TRANSACTIONS_DEFAULT PARTITION OF ET_TRANSACTIONS DEFAULT;
+
+-- One partition per month holding data, plus the current month and the next three
+DO $$
+DECLARE
+    MONTH_START TIMESTAMP;
+    PARTITION_NAME TEXT;
+BEGIN
+    FOR MONTH_START IN
+        SELECT DISTINCT DATE_TRUNC('month', TO_TIMESTAMP(TRANSACTION_DATE / 1000.0) AT TIME ZONE 'UTC')
+        FROM ET_TRANSACTIONS_UNPARTITIONED
+        UNION
+        SELECT GENERATE_SERIES(DATE_TRUNC('month', NOW() AT TIME ZONE 'UTC'),
+                               DATE_TRUNC('month', NOW() AT TIME ZONE 'UTC') + INTERVAL '3 months',
+                               INTERVAL '1 month')
+    LOOP
+        PARTITION_NAME := 'ET_TRANSACTIONS_Y' || TO_CHAR(MONTH_START, 'YYYY') || 'M' || TO_CHAR(MONTH_START, 'MM');
+        EXECUTE FORMAT('CREATE TABLE %s PARTITION OF ET_TRANSACTIONS FOR VALUES FROM (%s) TO (%s)',
+                       PARTITION_NAME,
+                       (EXTRACT(EPOCH FROM MONTH_START) * 1000)::BIGINT,
+                       (EXTRACT(EPOCH FROM MONTH_START + INTERVAL '1 month') * 1000)::BIGINT);
+    END LOOP;
+END $$;
+
+INSERT INTO ET_TRANSACTIONS SELECT * FROM ET_TRANSACTIONS_UNPARTITIONED;
+
+-- The sequence must survive the old table
+ALTER SEQUENCE ET_TRANSACTIONS_SEQ OWNED BY NONE;
+
+DROP TABLE ET_TRANSACTIONS_UNPARTITIONED;
+
+ALTER TABLE ET_TRANSACTIONS ADD PRIMARY KEY (TRANSACTION_ID, TRANSACTION_DATE);
+ALTER TABLE ET_TRANSACTIONS ADD CONSTRAINT ET_TRANSACTIONS_CATEGORY_FK
+    FOREIGN KEY (CATEGORY_ID) REFERENCES ET_CATEGORIES (CATEGORY_ID);
+ALTER TABLE ET_TRANSACTIONS ADD CONSTRAINT ET_TRANSACTIONS_USER_FK
+    FOREIGN KEY (USER_ID) REFERENCES ET_USERS (USER_ID);
+
+-- Partitioned versions of the indexes of migrations 001 and 004
+CREATE INDEX ET_TRANSACTIONS_USER_CAT_DATE_IDX
+    ON ET_TRANSACTIONS (USER_ID, CATEGORY_ID, TRANSACTION_DATE DESC, TRANSACTION_ID DESC);
+CREATE INDEX ET_TRANSACTIONS_USER_DATE_IDX
+    ON ET_TRANSACTIONS (USER_ID, TRANSACTION_DATE DESC, TRANSACTION_ID DESC);
+
+COMMIT;
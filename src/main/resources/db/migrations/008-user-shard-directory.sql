@@ -0,0 +1,29 @@
+-- Directory of the shard holding each user's categories, transactions, budget and rollups.
+-- The directory, ET_USERS and the ID sequences stay on shard 0, the database configured with
+-- spring.datasource.*; users missing from the directory are on shard 0 too.
+-- Run on shard 0 only. MOVING is set while ShardMigrationService copies a user to another
+-- shard, during which the user's writes are refused with 503.
+--
+-- Preparing another shard: create the per-user tables, indexes and functions from a dump of
+-- shard 0, without the users and the directory, then drop the foreign keys to ET_USERS,
+-- which only exists on shard 0:
+--   pg_dump --schema-only -t 'et_categories' -t 'et_budgets' -t 'et_transactions*' \
+--       -t 'et_spending_*' siw_personal_db | psql shard_db
+--   (plus the ET_DAY_BUCKET and ET_MONTH_BUCKET functions of 003)
+--   ALTER TABLE ET_TRANSACTIONS DROP CONSTRAINT ET_TRANSACTIONS_USER_FK; -- and likewise on the other tables
+-- Then append the shard to expensetracker.sharding.shards and restart every instance.
+
+BEGIN;
+
+CREATE TABLE ET_USER_SHARDS (
+    USER_ID INTEGER PRIMARY KEY NOT NULL REFERENCES ET_USERS (USER_ID) ON DELETE CASCADE,
+    SHARD_ID INTEGER NOT NULL DEFAULT 0,
+    MOVING BOOLEAN NOT NULL DEFAULT FALSE
+);
+
+INSERT INTO ET_USER_SHARDS (USER_ID, SHARD_ID)
+SELECT USER_ID, 0 FROM ET_USERS;
+
+CREATE INDEX ET_USER_SHARDS_SHARD_IDX ON ET_USER_SHARDS (SHARD_ID);
+
+COMMIT;
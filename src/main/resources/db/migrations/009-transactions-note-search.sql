@@ -0,0 +1,15 @@
+-- Full-text search over the transaction notes (GET /api/transactions/search).
+-- The notes are indexed as a 'simple' tsvector: words are lower-cased but not stemmed, which
+-- suits merchant names and notes written in any language. btree_gin lets USER_ID be the first
+-- column of the GIN index, so a search only visits the posting lists of the user's rows.
+-- The expression must stay identical to the one in TransactionRepositoryImpl for the index
+-- to be used. Partitions created later inherit the index.
+--
+-- The index is built on every partition while ET_TRANSACTIONS accepts no writes: run it at a
+-- quiet time, or build it partition by partition with CREATE INDEX CONCURRENTLY ... ON ONLY
+-- and ALTER INDEX ... ATTACH PARTITION.
+
+CREATE EXTENSION IF NOT EXISTS btree_gin;
+
+CREATE INDEX ET_TRANSACTIONS_NOTE_SEARCH_IDX ON ET_TRANSACTIONS
+    USING GIN (USER_ID, TO_TSVECTOR('simple', COALESCE(NOTE, '')));
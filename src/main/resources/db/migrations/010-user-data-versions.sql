@@ -0,0 +1,11 @@
+-- Version of each user's data, incremented in the same database transaction as every write to
+-- their categories, transactions or budget. The GET endpoints of those resources send it as the
+-- ETag, so that a client polling with If-None-Match gets a 304 for the cost of a primary key
+-- lookup. Users without a row are at version 0.
+-- Run on every shard. There is no foreign key to ET_USERS, which only exists on shard 0;
+-- ShardMigrationService moves the rows with the rest of the user's data.
+
+CREATE TABLE ET_DATA_VERSIONS (
+    USER_ID INTEGER PRIMARY KEY NOT NULL,
+    VERSION BIGINT NOT NULL
+);
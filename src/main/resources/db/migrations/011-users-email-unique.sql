@@ -0,0 +1,10 @@
+-- Makes EMAIL unique, so that registration is a single INSERT ... ON CONFLICT (EMAIL) DO NOTHING
+-- RETURNING: a taken email inserts and returns nothing, which UserRepositoryImpl.create reports
+-- as "Email already in use", instead of a COUNT(*) first and a race between the two.
+-- Emails are stored lowercase by UserServiceImpl.
+-- Run on shard 0 only. Fails if duplicates exist; list them first with
+--   SELECT EMAIL, COUNT(*) FROM ET_USERS GROUP BY EMAIL HAVING COUNT(*) > 1;
+--
+-- Apply manually with psql; CONCURRENTLY avoids blocking registrations while it is built.
+
+CREATE UNIQUE INDEX CONCURRENTLY IF NOT EXISTS ET_USERS_EMAIL_UNIQUE_IDX ON ET_USERS (EMAIL);
@@ -0,0 +1,9 @@
+-- Fences a user's writes on a shard while ShardMigrationService copies the user's data away.
+-- Every write transaction increments the user's ET_DATA_VERSIONS row, and the increment fails
+-- once the row is fenced, rolling the write back. Fencing the row waits for the write
+-- transactions that already incremented it, so no write of the user commits on the source
+-- shard after the copy starts, however long it was in progress. After a move the fenced row
+-- stays on the source shard, refusing writes sent there by instances that missed the move.
+-- Run on every shard.
+
+ALTER TABLE ET_DATA_VERSIONS ADD COLUMN IF NOT EXISTS FENCED BOOLEAN NOT NULL DEFAULT FALSE;
@@ -0,0 +1,150 @@
+package it.uniroma3.expensetracker;
+
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.util.StreamUtils;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Creates throwaway PostgreSQL databases for the tests needing a real one, with the base schema
+ * of src/test/resources/db and every migration applied. The server is the one of the
+ * {@code expensetracker.test.postgres-url} system property, by default the local one; tests
+ * are skipped when it cannot be reached. Databases are dropped when created again, by the next run.
+ */
+public final class PostgresTestDatabase {
+
+	private static final String URL = System.getProperty("expensetracker.test.postgres-url", "jdbc:postgresql://localhost:5432/postgres");
+	private static final String USERNAME = System.getProperty("expensetracker.test.postgres-username", "postgres");
+	private static final String PASSWORD = System.getProperty("expensetracker.test.postgres-password", "postgres");
+
+	private PostgresTestDatabase() {
+	}
+
+	/**
+	 * Checks whether the PostgreSQL server can be reached.
+	 *
+	 * @return whether the server accepts connections
+	 */
+	public static boolean isAvailable() {
+		try (Connection ignored = DriverManager.getConnection(URL, USERNAME, PASSWORD)) {
+			return true;
+		} catch (SQLException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Creates a database like shard 0, holding the users, the ID sequences and the shard directory.
+	 *
+	 * @param name the name of the database, replaced if it exists
+	 * @return the JDBC URL of the database
+	 */
+	public static String create(String name) throws SQLException, IOException {
+		try (Connection connection = DriverManager.getConnection(URL, USERNAME, PASSWORD);
+			 Statement statement = connection.createStatement()) {
+			statement.execute("DROP DATABASE IF EXISTS " + name);
+			statement.execute("CREATE DATABASE " + name);
+		}
+		String url = URL.substring(0, URL.lastIndexOf('/') + 1) + name;
+		try (Connection connection = DriverManager.getConnection(url, USERNAME, PASSWORD);
+			 Statement statement = connection.createStatement()) {
+			List<Resource> scripts = new ArrayList<>();
+			scripts.add(new ClassPathResource("db/base-schema.sql"));
+			Resource[] migrations = new PathMatchingResourcePatternResolver().getResources("classpath:db/migrations/*.sql");
+			Arrays.sort(migrations, Comparator.comparing(Resource::getFilename));
+			scripts.addAll(Arrays.asList(migrations));
+			for (Resource script : scripts)
+				for (String sql : statements(StreamUtils.copyToString(script.getInputStream(), StandardCharsets.UTF_8)))
+					statement.execute(sql);
+		}
+		return url;
+	}
+
+	/**
+	 * Creates a database like a further shard, prepared as migration 008 describes:
+	 * the per-user tables without the users, the directory and the foreign keys to the users.
+	 *
+	 * @param name the name of the database, replaced if it exists
+	 * @return the JDBC URL of the database
+	 */
+	public static String createShard(String name) throws SQLException, IOException {
+		String url = create(name);
+		try (Connection connection = DriverManager.getConnection(url, USERNAME, PASSWORD);
+			 Statement statement = connection.createStatement()) {
+			statement.execute("DROP TABLE ET_USER_SHARDS, ET_USERS CASCADE");
+		}
+		return url;
+	}
+
+	/**
+	 * Opens a DataSource on a database, for the tests to inspect it directly.
+	 *
+	 * @param url the JDBC URL of the database
+	 * @return the DataSource, opening a connection per use
+	 */
+	public static DataSource dataSource(String url) {
+		return new DriverManagerDataSource(url, USERNAME, PASSWORD);
+	}
+
+	/**
+	 * Gets the username the databases are accessed with.
+	 *
+	 * @return the username
+	 */
+	public static String username() {
+		return USERNAME;
+	}
+
+	/**
+	 * Gets the password the databases are accessed with.
+	 *
+	 * @return the password
+	 */
+	public static String password() {
+		return PASSWORD;
+	}
+
+	/**
+	 * Splits a script into statements, keeping dollar-quoted bodies whole and dropping comments.
+	 * Statements run one at a time, so CREATE INDEX CONCURRENTLY is never in a transaction block.
+	 */
+	private static List<String> statements(String script) {
+		StringBuilder code = new StringBuilder();
+		for (String line : script.split("\n"))
+			if (!line.trim().startsWith("--"))
+				code.append(line).append('\n');
+		List<String> statements = new ArrayList<>();
+		StringBuilder current = new StringBuilder();
+		boolean quoted = false;
+		for (int i = 0; i < code.length(); i++) {
+			char c = code.charAt(i);
+			if (c == '$' && i + 1 < code.length() && code.charAt(i + 1) == '$') {
+				quoted = !quoted;
+				current.append("$$");
+				i++;
+			} else if (c == ';' && !quoted) {
+				if (!current.toString().trim().isEmpty())
+					statements.add(current.toString().trim());
+				current.setLength(0);
+			} else {
+				current.append(c);
+			}
+		}
+		if (!current.toString().trim().isEmpty())
+			statements.add(current.toString().trim());
+		return statements;
+	}
+}
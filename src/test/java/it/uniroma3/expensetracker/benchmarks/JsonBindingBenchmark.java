@@ -0,0 +1,77 @@
+package it.uniroma3.expensetracker.benchmarks;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import it.uniroma3.expensetracker.domain.SuccessResponse;
+import it.uniroma3.expensetracker.domain.TransactionRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares binding a transaction request body to a Map, as the resources used to, with binding
+ * it to a TransactionRequest, with and without Afterburner; and likewise for the success response.
+ * Not run by the tests; run it with
+ * {@code mvn test-compile exec:exec -Dexec.classpathScope=test -Dexec.executable=java
+ * -Dexec.args="-cp %classpath org.openjdk.jmh.Main JsonBindingBenchmark -prof gc"},
+ * where {@code -prof gc} adds the allocation per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JsonBindingBenchmark {
+
+	private static final byte[] BODY = "{\"amount\":42.5,\"note\":\"Groceries at the market\",\"transactionDate\":1700000000000}"
+			.getBytes(StandardCharsets.UTF_8);
+
+	private final ObjectMapper plain = new ObjectMapper();
+	private final ObjectMapper afterburner = new ObjectMapper().registerModule(new AfterburnerModule());
+
+	@Benchmark
+	public double readMap() throws IOException {
+		Map<String, Object> map = plain.readValue(BODY, new TypeReference<Map<String, Object>>() {});
+		Double amount = Double.valueOf(map.get("amount").toString());
+		Long transactionDate = Long.valueOf(map.get("transactionDate").toString());
+		return amount + transactionDate + ((String) map.get("note")).length();
+	}
+
+	@Benchmark
+	public double readRequest() throws IOException {
+		TransactionRequest request = plain.readValue(BODY, TransactionRequest.class);
+		return request.getAmount() + request.getTransactionDate() + request.getNote().length();
+	}
+
+	@Benchmark
+	public double readRequestAfterburner() throws IOException {
+		TransactionRequest request = afterburner.readValue(BODY, TransactionRequest.class);
+		return request.getAmount() + request.getTransactionDate() + request.getNote().length();
+	}
+
+	@Benchmark
+	public byte[] writeMap() throws IOException {
+		Map<String, Boolean> map = new HashMap<>();
+		map.put("success", true);
+		return plain.writeValueAsBytes(map);
+	}
+
+	@Benchmark
+	public byte[] writeSuccessAfterburner() throws IOException {
+		return afterburner.writeValueAsBytes(SuccessResponse.INSTANCE);
+	}
+}
@@ -0,0 +1,55 @@
+package it.uniroma3.expensetracker.config;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ReplicaRoutingDataSourceTests {
+
+	private final ReplicaRoutingDataSource dataSource =
+			new ReplicaRoutingDataSource(Arrays.asList("replica-0", "replica-1"), 60000, 1000);
+
+	@AfterEach
+	void clearContext() {
+		if (TransactionSynchronizationManager.isSynchronizationActive())
+			TransactionSynchronizationManager.clearSynchronization();
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+		RequestContextHolder.resetRequestAttributes();
+	}
+
+	@Test
+	void readOnlyTransactionsAreSpreadOverReplicas() {
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		assertEquals("replica-0", dataSource.determineCurrentLookupKey());
+		assertEquals("replica-1", dataSource.determineCurrentLookupKey());
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+		assertEquals(ReplicaRoutingDataSource.PRIMARY, dataSource.determineCurrentLookupKey());
+	}
+
+	@Test
+	void readsStayOnPrimaryAfterTheUsersCommittedWrite() {
+		MockHttpServletRequest request = new MockHttpServletRequest();
+		request.setAttribute("userId", 7);
+		RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request));
+
+		TransactionSynchronizationManager.initSynchronization();
+		assertEquals(ReplicaRoutingDataSource.PRIMARY, dataSource.determineCurrentLookupKey());
+		for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations())
+			synchronization.afterCommit();
+		TransactionSynchronizationManager.clearSynchronization();
+
+		TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+		assertEquals(ReplicaRoutingDataSource.PRIMARY, dataSource.determineCurrentLookupKey());
+		request.setAttribute("userId", 8);
+		assertEquals("replica-0", dataSource.determineCurrentLookupKey());
+	}
+
+}
@@ -0,0 +1,24 @@
+package it.uniroma3.expensetracker.domain;
+
+import it.uniroma3.expensetracker.exceptions.EtBadRequestException;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransactionCursorTests {
+
+	@Test
+	void encodedCursorDecodesToSameSortKey() {
+		TransactionCursor cursor = TransactionCursor.decode(new TransactionCursor(1718000000000L, 42).encode());
+		assertEquals(1718000000000L, cursor.getTransactionDate());
+		assertEquals(42, cursor.getTransactionId());
+	}
+
+	@Test
+	void malformedCursorIsRejected() {
+		assertThrows(EtBadRequestException.class, () -> TransactionCursor.decode("not a cursor"));
+		assertThrows(EtBadRequestException.class, () -> TransactionCursor.decode("MTIz"));
+	}
+
+}
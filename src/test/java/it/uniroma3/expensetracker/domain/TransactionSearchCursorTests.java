@@ -0,0 +1,58 @@
+package it.uniroma3.expensetracker.domain;
+
+import it.uniroma3.expensetracker.exceptions.EtBadRequestException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransactionSearchCursorTests {
+
+	@Test
+	void encodedCursorDecodesToSameSortKey() {
+		float rank = Math.nextUp(0.0607927f);
+		TransactionSearchCursor cursor = TransactionSearchCursor.decode(new TransactionSearchCursor(rank, 1718000000000L, 42).encode());
+		assertEquals(Float.floatToIntBits(rank), Float.floatToIntBits(cursor.getRank()));
+		assertEquals(1718000000000L, cursor.getTransactionDate());
+		assertEquals(42, cursor.getTransactionId());
+	}
+
+	@Test
+	void cursorAfterAHitDecodesToItsSortKey() {
+		Transaction transaction = new Transaction(42, 3, 7, 12.5, "Groceries", 1718000000000L);
+		TransactionSearchCursor cursor = TransactionSearchCursor.decode(
+				TransactionSearchCursor.after(new TransactionSearchHit(transaction, 0.5f)).encode());
+		assertEquals(0.5f, cursor.getRank());
+		assertEquals(1718000000000L, cursor.getTransactionDate());
+		assertEquals(42, cursor.getTransactionId());
+	}
+
+	@Test
+	void malformedCursorIsRejected() {
+		assertThrows(EtBadRequestException.class, () -> TransactionSearchCursor.decode("not a cursor"));
+		assertThrows(EtBadRequestException.class, () -> TransactionSearchCursor.decode("MTIz"));
+		assertThrows(EtBadRequestException.class, () -> TransactionSearchCursor.decode(""));
+		assertThrows(EtBadRequestException.class, () ->
+				TransactionSearchCursor.decode(new TransactionCursor(1718000000000L, 42).encode()));
+	}
+
+	@Test
+	void tamperedCursorIsRejected() {
+		assertThrows(EtBadRequestException.class, () -> TransactionSearchCursor.decode(raw("0.5:1718000000000:42")));
+		assertThrows(EtBadRequestException.class, () -> TransactionSearchCursor.decode(raw("1056964608:yesterday:42")));
+		assertThrows(EtBadRequestException.class, () -> TransactionSearchCursor.decode(raw("1056964608:1718000000000:4294967296")));
+		assertThrows(EtBadRequestException.class, () -> TransactionSearchCursor.decode(raw("1056964608:1718000000000:42:1")));
+		assertThrows(EtBadRequestException.class, () ->
+				TransactionSearchCursor.decode(raw(Float.floatToIntBits(Float.NaN) + ":1718000000000:42")));
+		assertThrows(EtBadRequestException.class, () ->
+				TransactionSearchCursor.decode(raw(Float.floatToIntBits(Float.POSITIVE_INFINITY) + ":1718000000000:42")));
+	}
+
+	private static String raw(String value) {
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.US_ASCII));
+	}
+
+}
@@ -0,0 +1,62 @@
+package it.uniroma3.expensetracker.filters;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import it.uniroma3.expensetracker.Constants;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class AuthFilterTests {
+
+	private final AuthFilter filter = new AuthFilter(100);
+
+	@Test
+	void validTokenIsAcceptedAgainFromTheCache() throws Exception {
+		String token = token(42, System.currentTimeMillis() + 60000);
+		for (int i = 0; i < 2; i++) {
+			MockHttpServletRequest request = request("Bearer " + token);
+			MockHttpServletResponse response = new MockHttpServletResponse();
+			filter.doFilter(request, response, new MockFilterChain());
+			assertEquals(200, response.getStatus());
+			assertEquals(42, request.getAttribute("userId"));
+		}
+	}
+
+	@Test
+	void malformedExpiredAndForgedTokensAreRejected() throws Exception {
+		String valid = token(42, System.currentTimeMillis() + 60000);
+		assertRejected(request(valid), "Authorization token must be Bearer [token]");
+		assertRejected(request("Bearer "), "Authorization token must be Bearer [token]");
+		assertRejected(request("Bearer " + token(42, System.currentTimeMillis() - 1000)), "invalid/expired token");
+		assertRejected(request("Bearer " + valid.substring(0, valid.length() - 2) + "xx"), "invalid/expired token");
+	}
+
+	private void assertRejected(MockHttpServletRequest request, String message) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		filter.doFilter(request, response, new MockFilterChain());
+		assertEquals(403, response.getStatus());
+		assertEquals(message, response.getErrorMessage());
+		assertNull(request.getAttribute("userId"));
+	}
+
+	private static MockHttpServletRequest request(String authorization) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/categories");
+		request.addHeader("Authorization", authorization);
+		return request;
+	}
+
+	private static String token(int userId, long expiresAt) {
+		return Jwts.builder()
+				.signWith(SignatureAlgorithm.HS256, Constants.API_SECRET_KEY)
+				.setExpiration(new Date(expiresAt))
+				.claim("userId", userId)
+				.compact();
+	}
+}
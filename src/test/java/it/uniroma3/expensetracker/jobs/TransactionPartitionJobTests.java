@@ -0,0 +1,57 @@
+package it.uniroma3.expensetracker.jobs;
+
+import it.uniroma3.expensetracker.PostgresTestDatabase;
+import it.uniroma3.expensetracker.repositories.ShardDirectory;
+import it.uniroma3.expensetracker.repositories.TransactionPartitionRepositoryImpl;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.YearMonth;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TransactionPartitionJobTests {
+
+	@BeforeAll
+	static void requirePostgres() {
+		assumeTrue(PostgresTestDatabase.isAvailable(), "PostgreSQL is not reachable");
+	}
+
+	@Test
+	void pastMonthsInTheDefaultPartitionGetTheirOwn() throws Exception {
+		DataSource dataSource = PostgresTestDatabase.dataSource(PostgresTestDatabase.create("et_test_partitions"));
+		JdbcTemplate database = new JdbcTemplate(dataSource);
+		database.update("INSERT INTO ET_USERS VALUES (1, 'Ada', 'Lovelace', 'ada@example.com', 'x')");
+		database.update("INSERT INTO ET_CATEGORIES (CATEGORY_ID, USER_ID, TITLE, DESCRIPTION) VALUES (10, 1, 'Food', '')");
+		long march2019 = TransactionPartitionJob.startOf(YearMonth.of(2019, 3));
+		long july2020 = TransactionPartitionJob.startOf(YearMonth.of(2020, 7));
+		for (long date : new long[]{march2019, march2019 + 86400000L, july2020})
+			database.update("INSERT INTO ET_TRANSACTIONS (TRANSACTION_ID, CATEGORY_ID, USER_ID, AMOUNT, NOTE, TRANSACTION_DATE) " +
+					"VALUES (NEXTVAL('ET_TRANSACTIONS_SEQ'), 10, 1, 5, '', ?)", date);
+		assertEquals(3, database.queryForObject("SELECT COUNT(*) FROM ET_TRANSACTIONS_DEFAULT", Integer.class));
+
+		TransactionPartitionJob job = new TransactionPartitionJob();
+		TransactionPartitionRepositoryImpl repository = new TransactionPartitionRepositoryImpl();
+		ReflectionTestUtils.setField(repository, "jdbcTemplate", database);
+		job.transactionPartitionRepository = repository;
+		job.shardDirectory = mock(ShardDirectory.class);
+		when(job.shardDirectory.shardIds()).thenReturn(Collections.singletonList(0));
+		job.transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+		job.monthsAhead = 1;
+		job.createPartitions();
+
+		assertEquals(0, database.queryForObject("SELECT COUNT(*) FROM ET_TRANSACTIONS_DEFAULT", Integer.class));
+		assertEquals(2, database.queryForObject("SELECT COUNT(*) FROM ET_TRANSACTIONS_Y2019M03", Integer.class));
+		assertEquals(1, database.queryForObject("SELECT COUNT(*) FROM ET_TRANSACTIONS_Y2020M07", Integer.class));
+		assertEquals(3, database.queryForObject("SELECT COUNT(*) FROM ET_TRANSACTIONS", Integer.class));
+	}
+}
@@ -0,0 +1,125 @@
+package it.uniroma3.expensetracker.repositories;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IdAllocatorImplTests {
+
+	@Test
+	void idsAreUniqueAcrossInstancesAndThreads() throws Exception {
+		FakeSequence sequence = new FakeSequence(100);
+		IdAllocatorImpl first = allocator(sequence, 100);
+		IdAllocatorImpl second = allocator(sequence, 100);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		List<Future<List<Integer>>> results = new ArrayList<>();
+		for (int t = 0; t < 8; t++) {
+			IdAllocatorImpl allocator = t % 2 == 0 ? first : second;
+			int batch = t * 37 + 1;
+			results.add(executor.submit(() -> {
+				List<Integer> ids = new ArrayList<>();
+				for (int i = 0; i < 200; i++) {
+					ids.add(allocator.nextId(IdAllocator.TRANSACTIONS_SEQ));
+					ids.addAll(allocator.nextIds(IdAllocator.TRANSACTIONS_SEQ, batch));
+				}
+				return ids;
+			}));
+		}
+		Set<Integer> unique = new HashSet<>();
+		int total = 0;
+		for (Future<List<Integer>> result : results) {
+			List<Integer> ids = result.get();
+			total += ids.size();
+			unique.addAll(ids);
+		}
+		executor.shutdown();
+		assertEquals(total, unique.size());
+	}
+
+	@Test
+	void singleIdsOnlyReachTheDatabaseOncePerBlock() {
+		FakeSequence sequence = new FakeSequence(1000);
+		IdAllocatorImpl allocator = allocator(sequence, 1000);
+		for (int i = 1; i <= 2500; i++)
+			assertEquals(i, allocator.nextId(IdAllocator.USERS_SEQ));
+		assertEquals(3, sequence.calls.get());
+	}
+
+	@Test
+	void aFreshSequenceStartsAtOne() {
+		IdAllocatorImpl allocator = allocator(new FakeSequence(1000, 1), 1000);
+		for (int i = 1; i <= 1500; i++)
+			assertEquals(i, allocator.nextId(IdAllocator.CATEGORIES_SEQ));
+	}
+
+	@Test
+	void aMismatchedIncrementIsRejected() {
+		IdAllocatorImpl allocator = allocator(new FakeSequence(1000), 500);
+		assertThrows(IllegalStateException.class, allocator::afterPropertiesSet);
+		assertThrows(IllegalStateException.class, () -> allocator.nextId(IdAllocator.USERS_SEQ));
+	}
+
+	private static IdAllocatorImpl allocator(FakeSequence sequence, int blockSize) {
+		IdAllocatorImpl allocator = new IdAllocatorImpl();
+		allocator.jdbcTemplate = sequence;
+		allocator.transactionTemplate = new TransactionTemplate() {
+			@Override
+			public <T> T execute(TransactionCallback<T> action) {
+				return action.doInTransaction((TransactionStatus) null);
+			}
+		};
+		allocator.blockSize = blockSize;
+		return allocator;
+	}
+
+	/**
+	 * Stands in for a PostgreSQL sequence shared by every allocator using it.
+	 */
+	private static class FakeSequence extends JdbcTemplate {
+
+		private final AtomicLong value = new AtomicLong();
+		private final AtomicLong calls = new AtomicLong();
+		private final long increment;
+
+		private FakeSequence(long increment) {
+			this.increment = increment;
+		}
+
+		private FakeSequence(long increment, long start) {
+			this(increment);
+			value.set(start - increment);
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> List<T> queryForList(String sql, Class<T> elementType, Object... args) {
+			calls.incrementAndGet();
+			int count = args.length > 1 ? (Integer) args[1] : 1;
+			List<T> values = new ArrayList<>();
+			for (int i = 0; i < count; i++)
+				values.add((T) Long.valueOf(value.addAndGet(increment)));
+			return values;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public <T> T queryForObject(String sql, Class<T> requiredType, Object... args) {
+			return (T) Long.valueOf(increment);
+		}
+	}
+
+}
@@ -0,0 +1,87 @@
+package it.uniroma3.expensetracker.repositories;
+
+import it.uniroma3.expensetracker.domain.Transaction;
+import it.uniroma3.expensetracker.exceptions.EtBadRequestException;
+import it.uniroma3.expensetracker.exceptions.EtResourceNotFoundException;
+import it.uniroma3.expensetracker.services.CacheInvalidationBus;
+import it.uniroma3.expensetracker.services.CategoryCache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class JournaledTransactionRepositoryTests {
+
+	@TempDir
+	Path directory;
+
+	private JournaledTransactionRepository repository;
+
+	@BeforeEach
+	void setUp() throws IOException {
+		repository = new JournaledTransactionRepository(directory.toString(), 4096, false);
+		repository.database = mock(TransactionRepositoryImpl.class);
+		repository.categoryCache = mock(CategoryCache.class);
+		repository.idAllocator = mock(IdAllocator.class);
+		repository.shardDirectory = mock(ShardDirectory.class);
+		repository.dataVersionRepository = mock(DataVersionRepository.class);
+		repository.cacheInvalidationBus = mock(CacheInvalidationBus.class);
+		repository.transactionTemplate = new TransactionTemplate(mock(PlatformTransactionManager.class));
+		when(repository.idAllocator.nextId(IdAllocator.TRANSACTIONS_SEQ)).thenReturn(43);
+		when(repository.categoryCache.fetchById(8, 3)).thenThrow(new EtResourceNotFoundException("Category not found"));
+		when(repository.database.findById(8, 3, 42)).thenThrow(new EtResourceNotFoundException("Transaction not found"));
+		when(repository.database.findById(7, 3, 42)).thenReturn(new Transaction(42, 3, 7, 10.0, "coffee", 0L));
+	}
+
+	@AfterEach
+	void tearDown() throws IOException {
+		repository.destroy();
+	}
+
+	@Test
+	void writesToMissingOrOtherUsersDataAreRefusedBeforeBeingJournaled() {
+		Transaction changed = new Transaction(null, null, null, 12.5, "tea", 0L);
+		assertThrows(EtBadRequestException.class, () -> repository.create(8, 3, 10.0, "coffee", 0L));
+		assertThrows(EtBadRequestException.class, () -> repository.update(8, 3, 42, changed));
+		assertThrows(EtResourceNotFoundException.class, () -> repository.removeById(8, 3, 42));
+		assertEquals(0, repository.applyPending(10));
+	}
+
+	@Test
+	void writesTheDatabaseWouldRejectAreRefusedBeforeBeingJournaled() {
+		assertThrows(EtBadRequestException.class, () -> repository.create(7, 3, 10.0, null, 0L));
+		assertThrows(EtBadRequestException.class, () -> repository.create(7, 3, 1e8, "coffee", 0L));
+		assertThrows(EtBadRequestException.class, () -> repository.update(7, 3, 42,
+				new Transaction(null, null, null, 12.5, String.join("", Collections.nCopies(51, "x")), 0L)));
+		assertEquals(0, repository.applyPending(10));
+	}
+
+	@Test
+	void writesToTheUsersOwnDataAreReadBackBeforeBeingApplied() {
+		repository.update(7, 3, 42, new Transaction(null, null, null, 12.5, "tea", 0L));
+		assertEquals("tea", repository.findById(7, 3, 42).getNote());
+		Integer created = repository.create(7, 3, 5.0, "cake", 0L).getTransactionId();
+		repository.removeById(7, 3, created);
+		assertThrows(EtResourceNotFoundException.class, () -> repository.findById(7, 3, created));
+	}
+
+	@Test
+	void applyingWritesBumpsTheUsersDataVersions() {
+		repository.update(7, 3, 42, new Transaction(null, null, null, 12.5, "tea", 0L));
+		assertEquals(1, repository.applyPending(10));
+		verify(repository.dataVersionRepository).increment(7);
+		verify(repository.cacheInvalidationBus).transactionsChanged(7, 3);
+	}
+}
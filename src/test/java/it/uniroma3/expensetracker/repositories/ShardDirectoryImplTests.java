@@ -0,0 +1,33 @@
+package it.uniroma3.expensetracker.repositories;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ShardDirectoryImplTests {
+
+	@Test
+	void addingAShardOnlyMovesUsersToIt() {
+		List<Integer> before = Arrays.asList(0, 1, 2);
+		List<Integer> after = Arrays.asList(0, 1, 2, 3);
+		for (int userId = 1; userId <= 10000; userId++) {
+			int shard = ShardDirectoryImpl.rendezvous(userId, after);
+			if (shard != 3)
+				assertEquals(ShardDirectoryImpl.rendezvous(userId, before), shard);
+		}
+	}
+
+	@Test
+	void usersAreSpreadEvenly() {
+		List<Integer> shards = Arrays.asList(0, 1, 2, 3);
+		int[] counts = new int[shards.size()];
+		for (int userId = 1; userId <= 40000; userId++)
+			counts[ShardDirectoryImpl.rendezvous(userId, shards)]++;
+		for (int count : counts)
+			assertTrue(Math.abs(count - 10000) < 500, "Uneven spread: " + Arrays.toString(counts));
+	}
+}
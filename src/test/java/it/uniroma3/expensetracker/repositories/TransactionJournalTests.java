@@ -0,0 +1,97 @@
+package it.uniroma3.expensetracker.repositories;
+
+import it.uniroma3.expensetracker.domain.Transaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class TransactionJournalTests {
+
+	private static final int SEGMENT_SIZE = 4096;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	void unappliedWritesAreReplayedInOrder() throws IOException {
+		try (TransactionJournal journal = new TransactionJournal(directory, SEGMENT_SIZE, false)) {
+			TransactionJournal.Entry first = journal.append(TransactionJournal.CREATE, transaction(1, "coffee"), entry -> {});
+			journal.append(TransactionJournal.UPDATE, transaction(1, null), entry -> {});
+			journal.append(TransactionJournal.DELETE, new Transaction(2, 7, 3, null, null, null), entry -> {});
+			journal.markApplied(first);
+		}
+		try (TransactionJournal journal = new TransactionJournal(directory, SEGMENT_SIZE, false)) {
+			List<TransactionJournal.Entry> pending = journal.pending(10);
+			assertEquals(2, pending.size());
+			assertEquals(TransactionJournal.UPDATE, pending.get(0).getType());
+			assertEquals(12.5, pending.get(0).getTransaction().getAmount());
+			assertNull(pending.get(0).getTransaction().getNote());
+			assertEquals(TransactionJournal.DELETE, pending.get(1).getType());
+			assertEquals(2, pending.get(1).getTransaction().getTransactionId());
+			assertEquals(7, pending.get(1).getTransaction().getCategoryId());
+		}
+	}
+
+	@Test
+	void tornRecordEndsTheJournal() throws IOException {
+		try (TransactionJournal journal = new TransactionJournal(directory, SEGMENT_SIZE, false)) {
+			journal.append(TransactionJournal.CREATE, transaction(1, "first"), entry -> {});
+			journal.append(TransactionJournal.CREATE, transaction(2, "second"), entry -> {});
+		}
+		Path segment = segments().get(0);
+		try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "rw")) {
+			long end = 16;
+			for (int i = 0; i < 2; i++) {
+				file.seek(end);
+				end += 8 + file.readInt();
+			}
+			file.seek(end - 1);
+			file.write(0x5A);  // Corrupts the last byte of the second record
+		}
+		try (TransactionJournal journal = new TransactionJournal(directory, SEGMENT_SIZE, false)) {
+			assertEquals(1, journal.pending(10).size());
+			journal.append(TransactionJournal.CREATE, transaction(3, "third"), entry -> {});
+		}
+		try (TransactionJournal journal = new TransactionJournal(directory, SEGMENT_SIZE, false)) {
+			List<TransactionJournal.Entry> pending = journal.pending(10);
+			assertEquals(2, pending.size());
+			assertEquals("third", pending.get(1).getTransaction().getNote());
+		}
+	}
+
+	@Test
+	void appliedSegmentsAreDeleted() throws IOException {
+		try (TransactionJournal journal = new TransactionJournal(directory, SEGMENT_SIZE, false)) {
+			TransactionJournal.Entry last = null;
+			for (int id = 1; id <= 200; id++)
+				last = journal.append(TransactionJournal.CREATE, transaction(id, "note " + id), entry -> {});
+			assertEquals(true, segments().size() > 1);
+			journal.markApplied(last);
+			assertEquals(1, segments().size());
+			assertEquals(0, journal.pending(10).size());
+		}
+		try (TransactionJournal journal = new TransactionJournal(directory, SEGMENT_SIZE, false)) {
+			assertEquals(0, journal.pending(10).size());
+		}
+	}
+
+	private List<Path> segments() throws IOException {
+		try (Stream<Path> files = Files.list(directory)) {
+			return files.sorted().collect(Collectors.toList());
+		}
+	}
+
+	private static Transaction transaction(int transactionId, String note) {
+		return new Transaction(transactionId, 5, 3, 12.5, note, 1700000000000L);
+	}
+}
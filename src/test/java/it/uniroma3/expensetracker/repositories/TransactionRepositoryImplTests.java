@@ -0,0 +1,157 @@
+package it.uniroma3.expensetracker.repositories;
+
+import it.uniroma3.expensetracker.PostgresTestDatabase;
+import it.uniroma3.expensetracker.domain.Transaction;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Checks that the category running totals and the spending rollups, maintained by every write,
+ * always agree with the transactions they summarize.
+ */
+class TransactionRepositoryImplTests {
+
+	// Rollup rows that differ from the transactions they summarize, in either direction; the
+	// transactions of deleted categories are left out, their rollups being dropped at once
+	private static final String SQL_ROLLUP_DRIFT = "SELECT COUNT(*) FROM (" +
+			"(SELECT USER_ID, CATEGORY_ID, BUCKET_START, TOTAL, TX_COUNT FROM %1$s WHERE TX_COUNT <> 0 OR TOTAL <> 0 " +
+			"EXCEPT SELECT USER_ID, CATEGORY_ID, %2$s(TRANSACTION_DATE), SUM(AMOUNT), COUNT(*) FROM ET_TRANSACTIONS " +
+			"WHERE CATEGORY_ID NOT IN (SELECT CATEGORY_ID FROM ET_CATEGORIES WHERE DELETED) GROUP BY 1, 2, 3) UNION ALL " +
+			"(SELECT USER_ID, CATEGORY_ID, %2$s(TRANSACTION_DATE), SUM(AMOUNT), COUNT(*) FROM ET_TRANSACTIONS " +
+			"WHERE CATEGORY_ID NOT IN (SELECT CATEGORY_ID FROM ET_CATEGORIES WHERE DELETED) GROUP BY 1, 2, 3 " +
+			"EXCEPT SELECT USER_ID, CATEGORY_ID, BUCKET_START, TOTAL, TX_COUNT FROM %1$s)) D";
+
+	private static JdbcTemplate database;
+	private static TransactionRepositoryImpl transactions;
+	private static CategoryRepositoryImpl categories;
+
+	@BeforeAll
+	static void createDatabase() throws Exception {
+		assumeTrue(PostgresTestDatabase.isAvailable(), "PostgreSQL is not reachable");
+		database = new JdbcTemplate(PostgresTestDatabase.dataSource(PostgresTestDatabase.create("et_test_transactions")));
+		IdAllocator sequences = new IdAllocator() {
+			@Override
+			public Integer nextId(String sequence) {
+				return database.queryForObject("SELECT NEXTVAL(?)::INTEGER", Integer.class, sequence);
+			}
+
+			@Override
+			public List<Integer> nextIds(String sequence, int count) {
+				return database.queryForList("SELECT NEXTVAL(?)::INTEGER FROM GENERATE_SERIES(1, ?)", Integer.class, sequence, count);
+			}
+		};
+		transactions = new TransactionRepositoryImpl();
+		transactions.jdbcTemplate = database;
+		transactions.idAllocator = sequences;
+		categories = new CategoryRepositoryImpl();
+		categories.jdbcTemplate = database;
+		categories.idAllocator = sequences;
+		database.update("INSERT INTO ET_USERS VALUES (1, 'Ada', 'Lovelace', 'ada@example.com', 'x')");
+	}
+
+	@Test
+	void totalsAndRollupsFollowEveryWrite() {
+		int food = categories.create(1, "Food", "").getCategoryId();
+		int rent = categories.create(1, "Rent", "").getCategoryId();
+
+		Transaction coffee = transactions.create(1, food, 2.5, "coffee", date(2024, 1, 5));
+		assertConsistent();
+
+		transactions.createEach(new ArrayList<>(Arrays.asList(
+				transaction(food, 10.0, "lunch", date(2024, 1, 5)),
+				transaction(rent, 800.0, "january", date(2024, 1, 1)))));
+		assertConsistent();
+
+		transactions.createBatch(new ArrayList<>(Arrays.asList(
+				transaction(food, 7.25, "dinner", date(2024, 1, 31)),
+				transaction(food, -3.0, "refund", date(2024, 2, 1)),
+				transaction(rent, 800.0, "february", date(2024, 2, 1)))));
+		assertConsistent();
+
+		List<Transaction> imported = new ArrayList<>(Arrays.asList(
+				transaction(food, 4.0, "", date(2023, 12, 31)),
+				transaction(food, 6.0, null, date(2023, 12, 31)),
+				transaction(food, 1.0, "tea, \"green\"", date(2024, 2, 2))));
+		assertEquals(3, transactions.copyIn(imported));
+		assertConsistent();
+		assertEquals("", transactions.findById(1, food, imported.get(0).getTransactionId()).getNote());
+		assertEquals("", transactions.findById(1, food, imported.get(1).getTransactionId()).getNote());
+		assertEquals("tea, \"green\"", transactions.findById(1, food, imported.get(2).getTransactionId()).getNote());
+
+		transactions.update(1, food, coffee.getTransactionId(), transaction(food, 3.0, "coffee", date(2024, 1, 5)));
+		assertConsistent();
+
+		// Moving a transaction to another day and month moves it between rollup buckets
+		transactions.update(1, food, coffee.getTransactionId(), transaction(food, 3.0, "coffee", date(2024, 3, 10)));
+		assertConsistent();
+		assertEquals(1, database.queryForObject("SELECT TX_COUNT FROM ET_SPENDING_DAILY WHERE CATEGORY_ID = ? AND BUCKET_START = ?",
+				Integer.class, food, date(2024, 1, 5)));  // Only the lunch is left on that day
+
+		transactions.removeById(1, rent, transactions.findAll(1, rent).get(0).getTransactionId());
+		assertConsistent();
+
+		assertEquals(0, new BigDecimal("28.25").compareTo(BigDecimal.valueOf(categories.findById(1, food).getTotalExpense())));
+		assertEquals(800.0, categories.findById(1, rent).getTotalExpense());
+		assertEquals(0, new BigDecimal("17.25").compareTo(monthlyTotal(food, date(2024, 1, 1))));  // Lunch and dinner
+	}
+
+	@Test
+	void deletedCategoriesArePurgedInChunks() {
+		int travel = categories.create(1, "Travel", "").getCategoryId();
+		List<Transaction> trips = new ArrayList<>();
+		for (int day = 1; day <= 5; day++)
+			trips.add(transaction(travel, 100.0, "trip " + day, date(2024, 4, day)));
+		transactions.createBatch(trips);
+		assertConsistent();
+
+		categories.removeById(1, travel);
+		assertEquals(0, database.queryForObject("SELECT COUNT(*) FROM ET_SPENDING_MONTHLY WHERE CATEGORY_ID = ?", Integer.class, travel));
+		assertTrue(transactions.findAll(1, travel).isEmpty());
+		assertConsistent();
+
+		assertEquals(2, categories.purgeTransactions(1, travel, 2));
+		assertFalse(categories.removePurged(travel));  // Transactions left
+		assertEquals(2, categories.purgeTransactions(1, travel, 2));
+		assertEquals(1, categories.purgeTransactions(1, travel, 2));
+		assertEquals(0, categories.purgeTransactions(1, travel, 2));
+		assertTrue(categories.removePurged(travel));
+		assertEquals(0, database.queryForObject("SELECT COUNT(*) FROM ET_TRANSACTIONS WHERE CATEGORY_ID = ?", Integer.class, travel));
+		assertEquals(0, database.queryForObject("SELECT COUNT(*) FROM ET_CATEGORIES WHERE CATEGORY_ID = ?", Integer.class, travel));
+		assertConsistent();
+	}
+
+	private static void assertConsistent() {
+		assertEquals(Collections.emptyList(), categories.findCategoriesWithTotalDrift(), "Categories whose total drifted");
+		assertEquals(0, database.queryForObject(String.format(SQL_ROLLUP_DRIFT, "ET_SPENDING_DAILY", "ET_DAY_BUCKET"), Integer.class),
+				"Daily rollups that drifted");
+		assertEquals(0, database.queryForObject(String.format(SQL_ROLLUP_DRIFT, "ET_SPENDING_MONTHLY", "ET_MONTH_BUCKET"), Integer.class),
+				"Monthly rollups that drifted");
+	}
+
+	private static BigDecimal monthlyTotal(int categoryId, long monthStart) {
+		return database.queryForObject("SELECT TOTAL FROM ET_SPENDING_MONTHLY WHERE CATEGORY_ID = ? AND BUCKET_START = ?",
+				BigDecimal.class, categoryId, monthStart);
+	}
+
+	private static Transaction transaction(int categoryId, double amount, String note, long date) {
+		return new Transaction(null, categoryId, 1, amount, note, date);
+	}
+
+	private static long date(int year, int month, int day) {
+		return LocalDate.of(year, month, day).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+	}
+}
@@ -0,0 +1,94 @@
+package it.uniroma3.expensetracker.resources;
+
+import it.uniroma3.expensetracker.domain.Category;
+import it.uniroma3.expensetracker.services.CategoryService;
+import it.uniroma3.expensetracker.services.DataVersionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Collections;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class CategoryResourceTests {
+
+	private CategoryResource resource;
+	private MockMvc mockMvc;
+
+	@BeforeEach
+	void setUp() {
+		resource = new CategoryResource();
+		resource.categoryService = mock(CategoryService.class);
+		resource.dataVersionService = mock(DataVersionService.class);
+		when(resource.dataVersionService.versionOf(7)).thenReturn(42L);
+		when(resource.dataVersionService.eTagOf(7, 42L)).thenReturn("\"7.42\"");
+		when(resource.categoryService.fetchAllCategories(7, 42L)).thenReturn(
+				Collections.singletonList(new Category(1, 7, "Food", "Groceries", 12.5)));
+		mockMvc = MockMvcBuilders.standaloneSetup(resource).build();
+	}
+
+	@Test
+	void currentETagIsAnsweredWithoutReadingTheCategories() throws Exception {
+		mockMvc.perform(get("/api/categories").requestAttr("userId", 7).header("If-None-Match", "\"7.42\""))
+				.andExpect(status().isNotModified())
+				.andExpect(header().string("ETag", "\"7.42\""))
+				.andExpect(content().string(""));
+		verify(resource.categoryService, never()).fetchAllCategories(7, 42L);
+	}
+
+	@Test
+	void staleETagGetsTheCategoriesWithTheCurrentOne() throws Exception {
+		mockMvc.perform(get("/api/categories").requestAttr("userId", 7).header("If-None-Match", "\"7.41\""))
+				.andExpect(status().isOk())
+				.andExpect(header().string("ETag", "\"7.42\""))
+				.andExpect(content().json("[{\"categoryId\":1,\"title\":\"Food\",\"totalExpense\":12.5}]"));
+	}
+
+	@Test
+	void categoriesAreBoundFromTypedBodiesAndValidated() throws Exception {
+		when(resource.categoryService.addCategory(7, "Rent", "")).thenReturn(new Category(2, 7, "Rent", "", 0.0));
+		mockMvc.perform(post("/api/categories").requestAttr("userId", 7)
+						.contentType(MediaType.APPLICATION_JSON).content("{\"title\":\"Rent\",\"description\":\"\"}"))
+				.andExpect(status().isCreated())
+				.andExpect(content().json("{\"categoryId\":2,\"title\":\"Rent\"}"));
+
+		mockMvc.perform(post("/api/categories").requestAttr("userId", 7)
+						.contentType(MediaType.APPLICATION_JSON).content("{\"description\":\"No title\"}"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(post("/api/categories").requestAttr("userId", 7)
+						.contentType(MediaType.APPLICATION_JSON).content("{\"title\":\"Rent\"}"))
+				.andExpect(status().isBadRequest());
+		mockMvc.perform(put("/api/categories/2").requestAttr("userId", 7)
+						.contentType(MediaType.APPLICATION_JSON).content("{\"title\":\"Longer than twenty chars\",\"description\":\"\"}"))
+				.andExpect(status().isBadRequest());
+		verify(resource.categoryService, times(1)).addCategory(any(), any(), any());  // Only the valid one
+		verify(resource.categoryService, never()).updateCategory(any(), any(), any());
+
+		mockMvc.perform(put("/api/categories/2").requestAttr("userId", 7)
+						.contentType(MediaType.APPLICATION_JSON).content("{\"title\":\"Housing\",\"description\":\"Rent and bills\"}"))
+				.andExpect(status().isOk());
+		verify(resource.categoryService).updateCategory(eq(7), eq(2), argThat(category ->
+				"Housing".equals(category.getTitle()) && "Rent and bills".equals(category.getDescription())));
+
+		mockMvc.perform(delete("/api/categories/2").requestAttr("userId", 7))
+				.andExpect(status().isOk())
+				.andExpect(content().json("{\"success\":true}", true));
+	}
+}
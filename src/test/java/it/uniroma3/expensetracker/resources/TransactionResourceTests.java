@@ -0,0 +1,85 @@
+package it.uniroma3.expensetracker.resources;
+
+import it.uniroma3.expensetracker.domain.Transaction;
+import it.uniroma3.expensetracker.services.DataVersionService;
+import it.uniroma3.expensetracker.services.TransactionService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+class TransactionResourceTests {
+
+	private TransactionResource resource;
+	private MockMvc mockMvc;
+
+	@BeforeEach
+	void setUp() {
+		resource = new TransactionResource();
+		resource.transactionService = mock(TransactionService.class);
+		resource.dataVersionService = mock(DataVersionService.class);
+		mockMvc = MockMvcBuilders.standaloneSetup(resource).build();
+	}
+
+	@Test
+	void batchItemsThatDoNotFitTheColumnsAreReportedOneByOne() throws Exception {
+		when(resource.transactionService.addTransactions(eq(7), eq(3), anyList())).thenReturn(Collections.singletonList(1001));
+		String longNote = String.join("", Collections.nCopies(51, "x"));
+		String body = "[{\"amount\":10.0,\"note\":\"coffee\",\"transactionDate\":0}," +
+				"{\"amount\":10.0,\"transactionDate\":0}," +
+				"{\"amount\":10.0,\"note\":\"" + longNote + "\",\"transactionDate\":0}," +
+				"{\"amount\":1e8,\"note\":\"car\",\"transactionDate\":0}]";
+
+		mockMvc.perform(post("/api/categories/3/transactions/batch").requestAttr("userId", 7)
+						.contentType(MediaType.APPLICATION_JSON).content(body))
+				.andExpect(status().isCreated())
+				.andExpect(content().json("{\"transactionIds\":[1001,null,null,null],\"errors\":[" +
+						"{\"index\":1,\"message\":\"Note is required\"}," +
+						"{\"index\":2,\"message\":\"Note cannot be longer than 50 characters\"}," +
+						"{\"index\":3,\"message\":\"Amount cannot exceed 99999999.99 in absolute value\"}]}", true));
+
+		@SuppressWarnings("unchecked")
+		ArgumentCaptor<List<Transaction>> written = ArgumentCaptor.forClass(List.class);
+		verify(resource.transactionService).addTransactions(eq(7), eq(3), written.capture());
+		assertEquals(1, written.getValue().size());
+		assertEquals("coffee", written.getValue().get(0).getNote());
+	}
+
+	@Test
+	void updatesAreValidatedAgainstTheColumns() throws Exception {
+		String longNote = String.join("", Collections.nCopies(51, "x"));
+		for (String body : new String[]{"{\"amount\":10.0,\"transactionDate\":0}",
+				"{\"amount\":10.0,\"note\":\"" + longNote + "\",\"transactionDate\":0}",
+				"{\"amount\":-1e8,\"note\":\"car\",\"transactionDate\":0}"}) {
+			mockMvc.perform(put("/api/categories/3/transactions/5").requestAttr("userId", 7)
+							.contentType(MediaType.APPLICATION_JSON).content(body))
+					.andExpect(status().isBadRequest());
+		}
+		verify(resource.transactionService, never()).updateTransaction(any(), any(), any(), any());
+
+		mockMvc.perform(put("/api/categories/3/transactions/5").requestAttr("userId", 7)
+						.contentType(MediaType.APPLICATION_JSON).content("{\"amount\":-99999999.99,\"note\":\"car\",\"transactionDate\":0}"))
+				.andExpect(status().isOk());
+		ArgumentCaptor<Transaction> updated = ArgumentCaptor.forClass(Transaction.class);
+		verify(resource.transactionService).updateTransaction(eq(7), eq(3), eq(5), updated.capture());
+		assertEquals("car", updated.getValue().getNote());
+	}
+}
@@ -0,0 +1,71 @@
+package it.uniroma3.expensetracker.resources;
+
+import it.uniroma3.expensetracker.PostgresTestDatabase;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+class UserResourceIntegrationTests {
+
+	private static String url;
+
+	@Autowired
+	MockMvc mockMvc;
+
+	@BeforeAll
+	static void createDatabase() throws Exception {
+		assumeTrue(PostgresTestDatabase.isAvailable(), "PostgreSQL is not reachable");
+		url = PostgresTestDatabase.create("et_test_registration");
+	}
+
+	@DynamicPropertySource
+	static void database(DynamicPropertyRegistry registry) {
+		registry.add("spring.datasource.url", () -> url);
+		registry.add("spring.datasource.username", PostgresTestDatabase::username);
+		registry.add("spring.datasource.password", PostgresTestDatabase::password);
+	}
+
+	@Test
+	void registeredUsersAreStoredWithTheirShardAndCanSignIn() throws Exception {
+		String body = "{\"firstName\":\"Ada\",\"lastName\":\"Lovelace\",\"email\":\"Ada@Example.com\",\"password\":\"engine\"}";
+		MvcResult registration = mockMvc.perform(post("/api/users/register").contentType(MediaType.APPLICATION_JSON).content(body))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		mockMvc.perform(asyncDispatch(registration))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.token").isString());
+
+		JdbcTemplate database = new JdbcTemplate(PostgresTestDatabase.dataSource(url));
+		Integer userId = database.queryForObject("SELECT USER_ID FROM ET_USERS WHERE EMAIL = ?", Integer.class, "ada@example.com");
+		assertEquals(0, database.queryForObject("SELECT SHARD_ID FROM ET_USER_SHARDS WHERE USER_ID = ?", Integer.class, userId));
+
+		mockMvc.perform(post("/api/users/register").contentType(MediaType.APPLICATION_JSON).content(body))
+				.andExpect(status().isUnauthorized());
+
+		MvcResult login = mockMvc.perform(post("/api/users/login").contentType(MediaType.APPLICATION_JSON)
+						.content("{\"email\":\"ada@example.com\",\"password\":\"engine\"}"))
+				.andExpect(request().asyncStarted())
+				.andReturn();
+		mockMvc.perform(asyncDispatch(login))
+				.andExpect(status().isOk())
+				.andExpect(jsonPath("$.token").isString());
+	}
+}
@@ -0,0 +1,43 @@
+package it.uniroma3.expensetracker.services;
+
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class CacheInvalidationBusImplTests {
+
+	@Test
+	void invalidationsOfATransactionAreSentOnceBeforeItCommits() {
+		CacheInvalidationBusImpl bus = new CacheInvalidationBusImpl();
+		bus.categoryCache = mock(CategoryCache.class);
+		bus.jdbcTemplate = mock(JdbcTemplate.class);
+		bus.enabled = true;
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			bus.transactionsChanged(1, 10);
+			bus.transactionsChanged(1, 10);
+			bus.categoryChanged(2, 20);
+			verify(bus.jdbcTemplate, never()).queryForList(anyString(), eq("et_invalidation"), anyString());
+			for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations())
+				synchronization.beforeCommit(false);
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+
+		ArgumentCaptor<String> payload = ArgumentCaptor.forClass(String.class);
+		verify(bus.jdbcTemplate, times(1)).queryForList(anyString(), eq("et_invalidation"), payload.capture());
+		assertTrue(payload.getValue().endsWith("|t1.10,c2.20"), payload.getValue());
+		verify(bus.categoryCache, times(2)).categoryChanged(1, 10);
+	}
+}
@@ -0,0 +1,89 @@
+package it.uniroma3.expensetracker.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.uniroma3.expensetracker.domain.Category;
+import it.uniroma3.expensetracker.exceptions.EtResourceNotFoundException;
+import it.uniroma3.expensetracker.repositories.CategoryRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CategoryCacheImplTests {
+
+	@Test
+	void listsAreServedFromTheCacheUntilAChangeCommits() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		CategoryCacheImpl cache = new CategoryCacheImpl(100, 100, 60000, registry);
+		cache.categoryRepository = mock(CategoryRepository.class);
+		when(cache.categoryRepository.findAll(1)).thenReturn(Arrays.asList(
+				new Category(10, 1, "Food", null, 5.0), new Category(11, 1, "Rent", null, 500.0)));
+
+		cache.fetchAll(1).get(0).setTotalExpense(99.0);  // Callers get copies
+		assertEquals(5.0, cache.fetchAll(1).get(0).getTotalExpense());
+		assertEquals("Rent", cache.fetchById(1, 11).getTitle());
+		assertThrows(EtResourceNotFoundException.class, () -> cache.fetchById(1, 12));
+		verify(cache.categoryRepository, times(1)).findAll(1);
+
+		TransactionSynchronizationManager.initSynchronization();
+		try {
+			cache.categoryChanged(1, 10);
+			cache.fetchAll(1);
+			verify(cache.categoryRepository, times(1)).findAll(1);  // Not evicted before the commit
+			for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations())
+				synchronization.afterCommit();
+		} finally {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+		cache.fetchAll(1);
+		verify(cache.categoryRepository, times(2)).findAll(1);
+		assertEquals(4.0, registry.get("cache.gets").tag("cache", "categories").tag("result", "hit").functionCounter().count());
+	}
+
+	@Test
+	void singleCategoriesAreCachedWhenTheListIsNot() {
+		CategoryCacheImpl cache = new CategoryCacheImpl(100, 100, 60000, new SimpleMeterRegistry());
+		cache.categoryRepository = mock(CategoryRepository.class);
+		when(cache.categoryRepository.findById(1, 10)).thenReturn(new Category(10, 1, "Food", null, 5.0));
+
+		cache.fetchById(1, 10);
+		cache.fetchById(1, 10);
+		verify(cache.categoryRepository, times(1)).findById(1, 10);
+		cache.categoryChanged(1, 11);
+		cache.fetchById(1, 10);
+		verify(cache.categoryRepository, times(1)).findById(1, 10);
+		cache.categoryChanged(1, 10);
+		cache.fetchById(1, 10);
+		verify(cache.categoryRepository, times(2)).findById(1, 10);
+	}
+
+	@Test
+	void entriesOlderThanTheRequestedVersionAreLoadedAgain() {
+		CategoryCacheImpl cache = new CategoryCacheImpl(100, 100, 60000, new SimpleMeterRegistry());
+		cache.categoryRepository = mock(CategoryRepository.class);
+		when(cache.categoryRepository.findAll(1)).thenReturn(Arrays.asList(new Category(10, 1, "Food", null, 5.0)));
+		when(cache.categoryRepository.findById(1, 11)).thenReturn(new Category(11, 1, "Rent", null, 500.0));
+
+		cache.fetchAll(1, 3);
+		cache.fetchAll(1, 3);
+		cache.fetchAll(1, 2);
+		verify(cache.categoryRepository, times(1)).findAll(1);
+		cache.fetchAll(1, 4);  // Written through another instance since the load
+		verify(cache.categoryRepository, times(2)).findAll(1);
+		assertEquals("Food", cache.fetchById(1, 10, 4).getTitle());
+
+		cache.categoryChanged(1, 10);
+		cache.fetchById(1, 11, 5);
+		cache.fetchById(1, 11, 5);
+		cache.fetchById(1, 11, 6);
+		verify(cache.categoryRepository, times(2)).findById(1, 11);
+	}
+}
@@ -0,0 +1,46 @@
+package it.uniroma3.expensetracker.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import it.uniroma3.expensetracker.exceptions.EtServiceUnavailableException;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PasswordHasherImplTests {
+
+	@Test
+	void hashesAreCheckedAndRehashedWhenTheCostChanges() {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		PasswordHasherImpl hasher = new PasswordHasherImpl(4, 2, 10, registry);
+		try {
+			String hash = hasher.hash("secret").join();
+			assertTrue(hasher.verify("secret", hash).join());
+			assertFalse(hasher.verify("wrong", hash).join());
+			assertFalse(hasher.needsRehash(hash));
+			assertTrue(new PasswordHasherImpl(5, 1, 1, registry).needsRehash(hash));
+			assertEquals(3, registry.get("expensetracker.password.hash").timers().stream()
+					.mapToLong(timer -> timer.count()).sum());
+		} finally {
+			hasher.destroy();
+		}
+	}
+
+	@Test
+	void hashesBeyondTheQueueAreRejected() {
+		PasswordHasherImpl hasher = new PasswordHasherImpl(12, 1, 1, new SimpleMeterRegistry());
+		try {
+			CompletableFuture<String> running = hasher.hash("first");
+			CompletableFuture<String> queued = hasher.hash("second");
+			assertThrows(EtServiceUnavailableException.class, () -> hasher.hash("third"));
+			assertTrue(hasher.verify("second", queued.join()).join());
+			assertTrue(running.isDone());
+		} finally {
+			hasher.destroy();
+		}
+	}
+}
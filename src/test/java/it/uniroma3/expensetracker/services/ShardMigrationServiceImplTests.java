@@ -0,0 +1,139 @@
+package it.uniroma3.expensetracker.services;
+
+import it.uniroma3.expensetracker.PostgresTestDatabase;
+import it.uniroma3.expensetracker.config.ShardContext;
+import it.uniroma3.expensetracker.domain.Category;
+import it.uniroma3.expensetracker.domain.ShardMove;
+import it.uniroma3.expensetracker.exceptions.EtServiceUnavailableException;
+import it.uniroma3.expensetracker.repositories.BudgetRepository;
+import it.uniroma3.expensetracker.repositories.DataVersionRepository;
+import it.uniroma3.expensetracker.repositories.ShardDirectory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+@SpringBootTest(properties = {
+		"expensetracker.sharding.new-user-shards=0",
+		"expensetracker.sharding.directory-cache-ttl-ms=200"
+})
+class ShardMigrationServiceImplTests {
+
+	private static final List<String> USER_TABLES = Arrays.asList(
+			"ET_CATEGORIES", "ET_BUDGETS", "ET_TRANSACTIONS", "ET_SPENDING_DAILY", "ET_SPENDING_MONTHLY", "ET_DATA_VERSIONS");
+
+	private static String shard0Url;
+	private static String shard1Url;
+
+	@Autowired
+	ShardMigrationService shardMigrationService;
+
+	@Autowired
+	UserService userService;
+
+	@Autowired
+	CategoryService categoryService;
+
+	@Autowired
+	TransactionService transactionService;
+
+	@Autowired
+	BudgetRepository budgetRepository;
+
+	@Autowired
+	ShardDirectory shardDirectory;
+
+	@Autowired
+	DataVersionRepository dataVersionRepository;
+
+	@BeforeAll
+	static void createDatabases() throws Exception {
+		assumeTrue(PostgresTestDatabase.isAvailable(), "PostgreSQL is not reachable");
+		shard0Url = PostgresTestDatabase.create("et_test_move_shard0");
+		shard1Url = PostgresTestDatabase.createShard("et_test_move_shard1");
+	}
+
+	@DynamicPropertySource
+	static void databases(DynamicPropertyRegistry registry) {
+		registry.add("spring.datasource.url", () -> shard0Url);
+		registry.add("spring.datasource.username", PostgresTestDatabase::username);
+		registry.add("spring.datasource.password", PostgresTestDatabase::password);
+		registry.add("expensetracker.sharding.shards[0].url", () -> shard1Url);
+	}
+
+	@Test
+	void usersAreMovedInTheBackgroundWithAllTheirRowsAndWritesInProgress() throws Exception {
+		Integer userId = userService.registerUser("Grace", "Hopper", "grace@example.com", "compiler").get().getUserId();
+		ShardContext.forUser(userId, () -> {
+			Category category = categoryService.addCategory(userId, "Books", "Manuals");
+			transactionService.addTransaction(userId, category.getCategoryId(), 12.5, "COBOL", 1700000000000L);
+			transactionService.addTransaction(userId, category.getCategoryId(), 30.0, "FLOW-MATIC", 1710000000000L);
+			budgetRepository.create(userId, 500.0);
+		});
+		JdbcTemplate shard0 = new JdbcTemplate(PostgresTestDatabase.dataSource(shard0Url));
+		JdbcTemplate shard1 = new JdbcTemplate(PostgresTestDatabase.dataSource(shard1Url));
+		Integer categoryId = shard0.queryForObject("SELECT CATEGORY_ID FROM ET_CATEGORIES WHERE USER_ID = ?", Integer.class, userId);
+
+		// A write already past the moving flag, still in progress when the copy is due
+		try (Connection write = PostgresTestDatabase.dataSource(shard0Url).getConnection()) {
+			write.setAutoCommit(false);
+			try (Statement statement = write.createStatement()) {
+				statement.execute("INSERT INTO ET_TRANSACTIONS (TRANSACTION_ID, CATEGORY_ID, USER_ID, AMOUNT, NOTE, TRANSACTION_DATE) " +
+						"VALUES (900000, " + categoryId + ", " + userId + ", 7.5, 'UNIVAC', 1720000000000)");
+				statement.execute("UPDATE ET_DATA_VERSIONS SET VERSION = VERSION + 1 WHERE USER_ID = " + userId);
+			}
+			ShardMove move = shardMigrationService.moveUser(userId, 1);
+			assertSame(move, shardMigrationService.moveUser(userId, 1));
+			Thread.sleep(3000);  // Past the directory cache wait: the move waits on the fence
+			assertEquals(ShardMove.State.RUNNING, move.getState());
+			write.commit();
+		}
+		Map<String, Integer> before = rowCounts(shard0, userId);
+		assertEquals(3, before.get("ET_TRANSACTIONS"));
+
+		ShardMove move = shardMigrationService.findMove(userId);
+		long deadline = System.currentTimeMillis() + 30000;
+		while (!move.isFinished() && System.currentTimeMillis() < deadline)
+			Thread.sleep(50);
+
+		assertEquals(ShardMove.State.COMPLETED, move.getState(), move.getError());
+		assertEquals(0, move.getSourceShard());
+		assertEquals(before, rowCounts(shard1, userId));
+		assertFalse(shard1.queryForObject("SELECT FENCED FROM ET_DATA_VERSIONS WHERE USER_ID = ?", Boolean.class, userId));
+		for (Map.Entry<String, Integer> count : rowCounts(shard0, userId).entrySet())
+			assertEquals(count.getKey().equals("ET_DATA_VERSIONS") ? 1 : 0, count.getValue(), count.getKey());
+		// Writes still sent to the old shard fail there
+		assertTrue(shard0.queryForObject("SELECT FENCED FROM ET_DATA_VERSIONS WHERE USER_ID = ?", Boolean.class, userId));
+		assertThrows(EtServiceUnavailableException.class, () ->
+				ShardContext.forShard(0, () -> dataVersionRepository.increment(userId)));
+		assertEquals(1, shard0.queryForObject("SELECT SHARD_ID FROM ET_USER_SHARDS WHERE USER_ID = ?", Integer.class, userId));
+		assertFalse(shard0.queryForObject("SELECT MOVING FROM ET_USER_SHARDS WHERE USER_ID = ?", Boolean.class, userId));
+		assertEquals(1, shardDirectory.shardOf(userId));
+		ShardContext.forUser(userId, () -> assertEquals(3, transactionService.fetchAllTransactions(userId,
+				categoryService.fetchAllCategories(userId).get(0).getCategoryId()).size()));
+	}
+
+	private static Map<String, Integer> rowCounts(JdbcTemplate database, Integer userId) {
+		Map<String, Integer> counts = new LinkedHashMap<>();
+		for (String table : USER_TABLES)
+			counts.put(table, database.queryForObject("SELECT COUNT(*) FROM " + table + " WHERE USER_ID = ?", Integer.class, userId));
+		return counts;
+	}
+}
@@ -0,0 +1,55 @@
+package it.uniroma3.expensetracker.services;
+
+import it.uniroma3.expensetracker.domain.Category;
+import it.uniroma3.expensetracker.domain.Transaction;
+import it.uniroma3.expensetracker.domain.TransactionImportResult;
+import it.uniroma3.expensetracker.repositories.CategoryRepository;
+import it.uniroma3.expensetracker.repositories.TransactionRepository;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TransactionServiceImplTests {
+
+	@Test
+	void importedLinesThatDoNotFitTheColumnsAreRejectedOneByOne() {
+		TransactionServiceImpl service = new TransactionServiceImpl();
+		service.transactionRepository = mock(TransactionRepository.class);
+		service.categoryRepository = mock(CategoryRepository.class);
+		service.ledgerAnalyticsService = mock(LedgerAnalyticsService.class);
+		service.cacheInvalidationBus = mock(CacheInvalidationBus.class);
+		service.dataVersionService = mock(DataVersionService.class);
+		when(service.categoryRepository.findAll(1)).thenReturn(Collections.singletonList(new Category(10, 1, "Food", "", 0.0)));
+		List<Transaction> copied = new ArrayList<>();
+		when(service.transactionRepository.copyIn(anyList())).thenAnswer(invocation -> {
+			List<Transaction> chunk = invocation.getArgument(0);
+			copied.addAll(chunk);
+			return (long) chunk.size();
+		});
+
+		String csv = "date,category,amount\n" +
+				"2024-01-05,Food,12.50\n" +
+				"2024-01-06,Food,100000000\n" +
+				"2024-01-07,Food,-99999999.99\n";
+		TransactionImportResult result = service.importTransactions(1, new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+
+		assertEquals(2, result.getImportedCount());
+		assertEquals(1, result.getRejectedCount());
+		assertEquals(3, result.getRejectedLines().get(0).getLine());
+		assertEquals("", copied.get(0).getNote());
+
+		csv = "date,category,amount,note\n2024-01-05,Food,1," + String.join("", Collections.nCopies(51, "x")) + "\n";
+		result = service.importTransactions(1, new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)));
+		assertEquals(0, result.getImportedCount());
+		assertEquals("Note cannot be longer than 50 characters", result.getRejectedLines().get(0).getMessage());
+	}
+}
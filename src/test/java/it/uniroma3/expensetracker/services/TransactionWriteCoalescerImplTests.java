@@ -0,0 +1,145 @@
+package it.uniroma3.expensetracker.services;
+
+import it.uniroma3.expensetracker.domain.Transaction;
+import it.uniroma3.expensetracker.exceptions.EtBadRequestException;
+import it.uniroma3.expensetracker.repositories.ShardDirectory;
+import it.uniroma3.expensetracker.repositories.TransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TransactionWriteCoalescerImplTests {
+
+	@Test
+	void concurrentCreatesShareCommitsAndGetTheirOwnOutcome() throws Exception {
+		AtomicInteger commits = new AtomicInteger();
+		AtomicInteger nextId = new AtomicInteger();
+		TransactionRepository repository = mock(TransactionRepository.class);
+		when(repository.createEach(anyList())).thenAnswer(invocation -> {
+			List<Transaction> created = new ArrayList<>();
+			for (Transaction transaction : invocation.<List<Transaction>>getArgument(0)) {
+				transaction.setTransactionId(nextId.incrementAndGet());
+				created.add(transaction.getCategoryId() == 0 ? null : transaction);
+			}
+			return created;
+		});
+		when(repository.create(anyInt(), anyInt(), any(), any(), any())).thenAnswer(invocation ->
+				new Transaction(nextId.incrementAndGet(), invocation.getArgument(1), invocation.getArgument(0),
+						invocation.getArgument(2), invocation.getArgument(3), invocation.getArgument(4)));
+		when(repository.create(anyInt(), eq(0), any(), any(), any())).thenThrow(new EtBadRequestException("Invalid request"));
+
+		TransactionWriteCoalescerImpl coalescer = coalescer(repository, commits, 20L);
+
+		int threads = 32;
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch start = new CountDownLatch(1);
+		List<Future<Transaction>> results = new ArrayList<>();
+		for (int t = 0; t < threads; t++) {
+			int userId = t;
+			results.add(executor.submit(() -> {
+				start.await();
+				return coalescer.create(userId, userId % 8, 10.0, "note", 0L);
+			}));
+		}
+		start.countDown();
+		int created = 0;
+		for (int t = 0; t < threads; t++) {
+			if (t % 8 == 0) {
+				Future<Transaction> result = results.get(t);
+				Exception e = assertThrows(Exception.class, result::get);
+				assertTrue(e.getCause() instanceof EtBadRequestException);
+			} else {
+				assertEquals(t, results.get(t).get().getUserId());
+				created++;
+			}
+		}
+		executor.shutdown();
+		assertEquals(28, created);
+		assertTrue(commits.get() < threads / 2, "Expected shared commits, got " + commits.get());
+		verify(coalescer.dataVersionService).dataChanged(1);
+		verify(coalescer.dataVersionService, never()).dataChanged(8);
+	}
+
+	@Test
+	void anInterruptedLeaderStillWritesTheQueuedCreates() throws Exception {
+		TransactionRepository repository = mock(TransactionRepository.class);
+		when(repository.createEach(anyList())).thenAnswer(invocation -> invocation.getArgument(0));
+		TransactionWriteCoalescerImpl coalescer = coalescer(repository, new AtomicInteger(), 60000L);
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		CompletableFuture<Thread> leaderThread = new CompletableFuture<>();
+		Future<Boolean> leader = executor.submit(() -> {
+			leaderThread.complete(Thread.currentThread());
+			coalescer.create(1, 1, 10.0, "leader", 0L);
+			return Thread.currentThread().isInterrupted();
+		});
+		awaitTimedWaiting(leaderThread.get());
+		CompletableFuture<Thread> followerThread = new CompletableFuture<>();
+		Future<Transaction> follower = executor.submit(() -> {
+			followerThread.complete(Thread.currentThread());
+			return coalescer.create(2, 1, 20.0, "follower", 0L);
+		});
+		awaitTimedWaiting(followerThread.get());
+
+		leaderThread.get().interrupt();
+		assertTrue(leader.get(5, TimeUnit.SECONDS), "The leader's interrupt was lost");
+		assertEquals(2, follower.get(5, TimeUnit.SECONDS).getUserId());
+		executor.shutdownNow();
+	}
+
+	private static void awaitTimedWaiting(Thread thread) throws InterruptedException {
+		while (thread.getState() != Thread.State.TIMED_WAITING)
+			Thread.sleep(1);
+	}
+
+	private static TransactionWriteCoalescerImpl coalescer(TransactionRepository repository, AtomicInteger commits, long windowMs) {
+		TransactionWriteCoalescerImpl coalescer = new TransactionWriteCoalescerImpl(new PlatformTransactionManager() {
+			@Override
+			public TransactionStatus getTransaction(TransactionDefinition definition) {
+				return new SimpleTransactionStatus();
+			}
+
+			@Override
+			public void commit(TransactionStatus status) {
+				commits.incrementAndGet();
+			}
+
+			@Override
+			public void rollback(TransactionStatus status) {
+			}
+		});
+		coalescer.transactionRepository = repository;
+		coalescer.shardDirectory = mock(ShardDirectory.class);
+		coalescer.dataVersionService = mock(DataVersionService.class);
+		coalescer.cacheInvalidationBus = mock(CacheInvalidationBus.class);
+		coalescer.ledgerAnalyticsService = mock(LedgerAnalyticsService.class);
+		ReflectionTestUtils.setField(coalescer, "windowMs", windowMs);
+		ReflectionTestUtils.setField(coalescer, "maxGroupSize", 200);
+		return coalescer;
+	}
+}
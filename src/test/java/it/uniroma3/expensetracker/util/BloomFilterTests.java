@@ -0,0 +1,24 @@
+package it.uniroma3.expensetracker.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BloomFilterTests {
+
+	@Test
+	void addedStringsAreFoundAndOthersMostlyNot() {
+		BloomFilter filter = new BloomFilter(10000, 0.01);
+		for (int i = 0; i < 10000; i++)
+			filter.put("user" + i + "@example.com");
+		for (int i = 0; i < 10000; i++)
+			assertTrue(filter.mightContain("user" + i + "@example.com"));
+
+		int falsePositives = 0;
+		for (int i = 10000; i < 110000; i++) {
+			if (filter.mightContain("user" + i + "@example.com"))
+				falsePositives++;
+		}
+		assertTrue(falsePositives < 2000, "False positive rate too high: " + falsePositives);
+	}
+}
@@ -0,0 +1,55 @@
+package it.uniroma3.expensetracker.util;
+
+import it.uniroma3.expensetracker.domain.CategorySpending;
+import it.uniroma3.expensetracker.domain.SpendingPoint;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class ColumnarLedgerTests {
+
+	@Test
+	void monthArithmeticMatchesTheCalendar() {
+		for (long day = -800000; day <= 800000; day += 13) {
+			long millis = day * 86400000L + 12345;
+			ZonedDateTime date = Instant.ofEpochMilli(millis).atZone(ZoneOffset.UTC);
+			long month = ColumnarLedger.monthOf(millis);
+			assertEquals(date.getYear() * 12L + date.getMonthValue() - 1, month);
+			assertEquals(LocalDate.of(date.getYear(), date.getMonthValue(), 1).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli(),
+					ColumnarLedger.startOfMonth(month));
+		}
+	}
+
+	@Test
+	void totalsFollowWrites() {
+		long january = LocalDate.of(2024, 1, 10).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+		long march = LocalDate.of(2024, 3, 5).atStartOfDay(ZoneOffset.UTC).toInstant().toEpochMilli();
+		ColumnarLedger ledger = new ColumnarLedger();
+		for (int id = 1; id <= 1000; id++)
+			ledger.append(id, id % 2 == 0 ? 10 : 20, id <= 600 ? january : march, 1.0);
+		ledger.put(1001, 30, march, 600.0);
+		ledger.put(1001, 30, march, 600.0);
+		ledger.update(2, 10, march, 3.0);
+		ledger.update(3, 10, march, 99.0);  // Not in category 10, ignored
+		ledger.remove(4);
+
+		List<CategorySpending> top = ledger.totalsByCategory(Long.MIN_VALUE, Long.MAX_VALUE, 2);
+		assertEquals(2, top.size());
+		assertEquals(30, top.get(0).getCategoryId());
+		assertEquals(600.0, top.get(0).getTotal());
+		assertEquals(10, top.get(1).getCategoryId());
+		assertEquals(499, top.get(1).getTransactionCount());
+
+		List<SpendingPoint> months = ledger.totalsByMonth(Long.MIN_VALUE, Long.MAX_VALUE, 10);
+		assertEquals(2, months.size());
+		assertEquals(january - 9 * 86400000L, months.get(0).getBucketStart());
+		assertEquals(298, months.get(0).getTransactionCount());
+		assertEquals(203.0, months.get(1).getTotal());
+	}
+}
@@ -0,0 +1,39 @@
+package it.uniroma3.expensetracker.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RateLimiterTests {
+
+	private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+	@Test
+	void burstIsAllowedThenTokensRefillAtTheRate() {
+		RateLimiter limiter = new RateLimiter(2, 3, 100);
+		long now = 1000 * SECOND;
+		for (int i = 0; i < 3; i++)
+			assertEquals(0, limiter.tryAcquire(42, now));
+		assertEquals(SECOND / 2, limiter.tryAcquire(42, now));
+		assertEquals(0, limiter.tryAcquire(7, now));  // Other keys have their own bucket
+
+		assertEquals(SECOND / 4, limiter.tryAcquire(42, now + SECOND / 4));
+		assertEquals(0, limiter.tryAcquire(42, now + SECOND / 2));
+		assertEquals(SECOND / 2, limiter.tryAcquire(42, now + SECOND / 2));
+
+		now += 10 * SECOND;  // Idle long enough to be full again
+		for (int i = 0; i < 3; i++)
+			assertEquals(0, limiter.tryAcquire(42, now));
+		assertEquals(SECOND / 2, limiter.tryAcquire(42, now));
+	}
+
+	@Test
+	void bucketsAreBounded() {
+		RateLimiter limiter = new RateLimiter(1, 1, 10, Runnable::run);  // Evict on this thread, before size() returns
+		for (int key = 0; key < 1000; key++)
+			limiter.tryAcquire(key);
+		assertEquals(10, limiter.size());
+	}
+}
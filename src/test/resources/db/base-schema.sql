@@ -0,0 +1,41 @@
+-- Schema the migrations in src/main/resources/db/migrations start from, for the tests
+-- running against PostgreSQL. PostgresTestDatabase applies it, then every migration in order.
+
+CREATE TABLE ET_USERS (
+    USER_ID INTEGER PRIMARY KEY NOT NULL,
+    FIRST_NAME VARCHAR(20) NOT NULL,
+    LAST_NAME VARCHAR(20) NOT NULL,
+    EMAIL VARCHAR(30) NOT NULL,
+    PASSWORD TEXT NOT NULL
+);
+
+CREATE TABLE ET_CATEGORIES (
+    CATEGORY_ID INTEGER PRIMARY KEY NOT NULL,
+    USER_ID INTEGER NOT NULL,
+    TITLE VARCHAR(20) NOT NULL,
+    DESCRIPTION VARCHAR(50) NOT NULL
+);
+ALTER TABLE ET_CATEGORIES ADD CONSTRAINT ET_CATEGORIES_USER_FK
+    FOREIGN KEY (USER_ID) REFERENCES ET_USERS (USER_ID);
+
+CREATE TABLE ET_TRANSACTIONS (
+    TRANSACTION_ID INTEGER PRIMARY KEY NOT NULL,
+    CATEGORY_ID INTEGER NOT NULL,
+    USER_ID INTEGER NOT NULL,
+    AMOUNT NUMERIC(10, 2) NOT NULL,
+    NOTE VARCHAR(50) NOT NULL,
+    TRANSACTION_DATE BIGINT NOT NULL
+);
+
+CREATE TABLE ET_BUDGETS (
+    BUDGET_ID INTEGER PRIMARY KEY NOT NULL,
+    USER_ID INTEGER NOT NULL,
+    TOTAL_BUDGET NUMERIC(10, 2) NOT NULL
+);
+ALTER TABLE ET_BUDGETS ADD CONSTRAINT ET_BUDGETS_USER_FK
+    FOREIGN KEY (USER_ID) REFERENCES ET_USERS (USER_ID);
+
+CREATE SEQUENCE ET_USERS_SEQ INCREMENT 1 START 1;
+CREATE SEQUENCE ET_CATEGORIES_SEQ INCREMENT 1 START 1;
+CREATE SEQUENCE ET_TRANSACTIONS_SEQ INCREMENT 1 START 1000;
+CREATE SEQUENCE ET_BUDGETS_SEQ INCREMENT 1 START 1;